@@ -0,0 +1,58 @@
+package src.Jmh;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import src.Comunicacao.Pedido;
+import src.Contagem.Kernels;
+
+/**
+ * Pedido.contar com cada kernel de contagem. Cada combinação de parâmetros roda
+ * num fork próprio, então o kernel é escolhido via -Dkernel antes do primeiro uso.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector", "-Xmx2g"})
+public class ContagemBenchmark {
+
+    @Param({"1024", "1048576", "67108864"})
+    int tamanho;
+
+    @Param({"escalar", "swar", "vetorial"})
+    String kernel;
+
+    private Pedido pedido;
+
+    @Setup(Level.Trial)
+    public void preparar() {
+        System.setProperty("kernel", kernel);
+        if (!Kernels.padrao().getNome().startsWith(kernel)) {
+            throw new IllegalStateException("Kernel " + kernel + " indisponível nesta JVM");
+        }
+        pedido = new Pedido(1, Dados.vetor(tamanho), (byte) 7);
+    }
+
+    @Benchmark
+    public int pedidoContar(Vazao vazao) {
+        vazao.bytes += tamanho;
+        return pedido.contar();
+    }
+
+    static final class Dados {
+        private Dados() {
+        }
+
+        // Mesma distribuição do Distribuidor: bytes uniformes em [-100, 100]
+        static byte[] vetor(int tamanho) {
+            SplittableRandom rnd = new SplittableRandom(42);
+            byte[] v = new byte[tamanho];
+            for (int i = 0; i < tamanho; i++) {
+                v[i] = (byte) (-100 + rnd.nextInt(201));
+            }
+            return v;
+        }
+    }
+}
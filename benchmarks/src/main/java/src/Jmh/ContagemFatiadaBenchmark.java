@@ -0,0 +1,59 @@
+package src.Jmh;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import src.Receptor.ContadorRecursivo;
+import src.Receptor.Receptor;
+
+/**
+ * Contagem paralela do Receptor variando o tamanho do vetor e o número de threads:
+ * divisão fixa em fatias (ContadorTask num pool fixo) contra o ContadorRecursivo
+ * com roubo de trabalho usado por processarPedidoParalelo.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector", "-Xmx2g"})
+public class ContagemFatiadaBenchmark {
+
+    @Param({"1024", "1048576", "67108864"})
+    int tamanho;
+
+    @Param({"1", "2", "4", "8"})
+    int threads;
+
+    private byte[] numeros;
+    private ExecutorService pool;
+    private ForkJoinPool forkJoin;
+
+    @Setup(Level.Trial)
+    public void preparar() {
+        numeros = ContagemBenchmark.Dados.vetor(tamanho);
+        pool = Executors.newFixedThreadPool(threads);
+        forkJoin = new ForkJoinPool(threads);
+    }
+
+    @TearDown(Level.Trial)
+    public void encerrar() {
+        pool.shutdownNow();
+        forkJoin.shutdownNow();
+    }
+
+    @Benchmark
+    public int contadorTaskFatiado(Vazao vazao) throws InterruptedException, ExecutionException {
+        vazao.bytes += tamanho;
+        return Receptor.contarEmFatias(pool, threads, numeros, (byte) 7);
+    }
+
+    @Benchmark
+    public int contadorRecursivo(Vazao vazao) {
+        vazao.bytes += tamanho;
+        return ContadorRecursivo.contar(forkJoin, numeros, (byte) 7);
+    }
+}
@@ -0,0 +1,45 @@
+package src.Jmh;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import src.Contagem.Histograma;
+import src.Contagem.Kernels;
+
+/**
+ * Custo de responder às 201 contagens possíveis do vetor: um histograma numa
+ * passada contra uma varredura do kernel padrão por valor.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector", "-Xmx2g"})
+public class HistogramaBenchmark {
+
+    @Param({"1048576", "67108864"})
+    int tamanho;
+
+    private byte[] vetor;
+
+    @Setup(Level.Trial)
+    public void preparar() {
+        vetor = ContagemBenchmark.Dados.vetor(tamanho);
+    }
+
+    @Benchmark
+    public int[] histograma() {
+        int[] tabela = new int[Histograma.VALORES];
+        Histograma.acumular(vetor, 0, vetor.length, tabela);
+        return tabela;
+    }
+
+    @Benchmark
+    public long umaVarreduraPorValor() {
+        long total = 0;
+        for (int v = -100; v <= 100; v++) {
+            total += Kernels.padrao().contar(vetor, 0, vetor.length, (byte) v);
+        }
+        return total;
+    }
+}
@@ -0,0 +1,105 @@
+package src.Jmh;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import src.Comunicacao.*;
+
+/**
+ * Ida e volta Distribuidor→Receptor em loopback: um Receptor real roda num
+ * processo separado e cada operação envia um Pedido e espera a Resposta.
+ * Em {@link #emPipeline} os pedidos seguem em rajadas de {@link #PIPELINE}
+ * antes de ler as respostas, que podem chegar fora de ordem.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector", "-Xmx2g"})
+public class IdaVoltaBenchmark {
+
+    static final int PIPELINE = 16;
+
+    @Param({"1024", "1048576", "67108864"})
+    int tamanho;
+
+    @Param({"OBJETOS", "BINARIO"})
+    Protocolo protocolo;
+
+    private Process receptor;
+    private Socket socket;
+    private Canal canal;
+    private Pedido pedido;
+    private long proximoId;
+
+    @Setup(Level.Trial)
+    public void preparar() throws Exception {
+        int porta;
+        try (ServerSocket livre = new ServerSocket(0)) {
+            porta = livre.getLocalPort();
+        }
+
+        receptor = new ProcessBuilder(
+                Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                "--add-modules", "jdk.incubator.vector",
+                "-cp", System.getProperty("java.class.path"),
+                "src.Receptor.Receptor", String.valueOf(porta))
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .redirectError(ProcessBuilder.Redirect.DISCARD)
+                .start();
+
+        socket = conectar(porta);
+        socket.setTcpNoDelay(true);
+        canal = Canais.conectar(socket, protocolo);
+        pedido = new Pedido(0, ContagemBenchmark.Dados.vetor(tamanho), (byte) 7);
+    }
+
+    @TearDown(Level.Trial)
+    public void encerrar() throws IOException {
+        try {
+            canal.enviar(new ComunicadoEncerramento());
+            socket.close();
+        } finally {
+            receptor.destroy();
+        }
+    }
+
+    @Benchmark
+    public long idaVolta(Vazao vazao) throws IOException, ClassNotFoundException {
+        canal.enviar(new Pedido(++proximoId, pedido.getNumeros(), pedido.getProcurado()));
+        Comunicado resposta = canal.receber();
+        vazao.bytes += tamanho;
+        return ((Resposta) resposta).getContagem();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PIPELINE)
+    public long emPipeline(Vazao vazao) throws IOException, ClassNotFoundException {
+        for (int i = 0; i < PIPELINE; i++) {
+            canal.enviar(new Pedido(++proximoId, pedido.getNumeros(), pedido.getProcurado()));
+        }
+        long total = 0;
+        for (int i = 0; i < PIPELINE; i++) {
+            total += ((Resposta) canal.receber()).getContagem();
+        }
+        vazao.bytes += (long) tamanho * PIPELINE;
+        return total;
+    }
+
+    // O receptor leva um tempo para subir; tenta por até 10 s
+    private static Socket conectar(int porta) throws Exception {
+        long limite = System.currentTimeMillis() + 10_000;
+        while (true) {
+            try {
+                return new Socket("localhost", porta);
+            } catch (IOException e) {
+                if (System.currentTimeMillis() > limite) throw e;
+                Thread.sleep(100);
+            }
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package src.Jmh;
+
+import java.io.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import src.Comunicacao.*;
+
+/**
+ * Codificação e decodificação de um Pedido com serialização Java (ObjectOutputStream)
+ * e com o protocolo binário, de 1 KB a 512 MB.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector", "-Xmx6g"})
+public class SerializacaoBenchmark {
+
+    @Param({"1024", "1048576", "67108864", "536870912"})
+    int tamanho;
+
+    @Param({"OBJETOS", "BINARIO"})
+    Protocolo protocolo;
+
+    private Pedido pedido;
+    private ByteArrayOutputStream destino;
+    private byte[] codificado;
+
+    @Setup(Level.Trial)
+    public void preparar() throws IOException {
+        pedido = new Pedido(1, ContagemBenchmark.Dados.vetor(tamanho), (byte) 7);
+        destino = new ByteArrayOutputStream(tamanho + 4096);
+        codificar(pedido, destino);
+        codificado = destino.toByteArray();
+    }
+
+    @Benchmark
+    public int codificar(Vazao vazao) throws IOException {
+        destino.reset();
+        codificar(pedido, destino);
+        vazao.bytes += tamanho;
+        return destino.size();
+    }
+
+    @Benchmark
+    public Comunicado decodificar(Vazao vazao) throws IOException, ClassNotFoundException {
+        InputStream origem = new ByteArrayInputStream(codificado);
+        vazao.bytes += tamanho;
+        if (protocolo == Protocolo.BINARIO) {
+            return ProtocoloBinario.ler(new DataInputStream(origem));
+        }
+        return (Comunicado) new ObjectInputStream(origem).readObject();
+    }
+
+    private void codificar(Pedido p, OutputStream saida) throws IOException {
+        if (protocolo == Protocolo.BINARIO) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(saida, ProtocoloBinario.TAMANHO_BUFFER));
+            ProtocoloBinario.escrever(out, p);
+            out.flush();
+        } else {
+            ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(saida, ProtocoloBinario.TAMANHO_BUFFER));
+            out.writeObject(p);
+            out.flush();
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package src.Jmh;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Contador auxiliar de bytes processados. Como é do tipo OPERATIONS, o JMH o
+ * reporta como taxa: a coluna "bytes" sai em bytes/s (divida por 1e9 para GB/s),
+ * comparável entre tamanhos de vetor e entre versões.
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class Vazao {
+    public long bytes;
+
+    @Setup(Level.Iteration)
+    public void zerar() {
+        bytes = 0;
+    }
+}
@@ -0,0 +1,189 @@
+package src.Benchmark;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import src.Comunicacao.*;
+
+/**
+ * Mede o pico de memória (RSS) e o tempo até o primeiro byte ao enviar um vetor
+ * grande em fatias para um receptor de descarte em loopback.
+ *
+ * Modos:
+ *   copia    - Arrays.copyOfRange por fatia antes do envio (comportamento antigo)
+ *   direto   - fatias enviadas do vetor original por escrita agrupada no SocketChannel
+ *   mapeado  - fatias de um arquivo mapeado em memória, sem passar pelo heap
+ *
+ * Sem argumento de modo, executa cada modo num processo separado para que o
+ * pico de RSS de um não contamine o outro.
+ *
+ * Uso: java src.Benchmark.BenchmarkEnvioFatias [modo] [tamanho em MB] [partes]
+ */
+public class BenchmarkEnvioFatias {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0 || !Arrays.asList("copia", "direto", "mapeado").contains(args[0])) {
+            String[] resto = args.length > 0 && !Character.isLetter(args[0].charAt(0)) ? args : new String[0];
+            for (String modo : new String[]{"copia", "direto", "mapeado"}) {
+                executarEmProcesso(modo, resto);
+            }
+            return;
+        }
+
+        String modo = args[0];
+        int megas = args.length > 1 ? Integer.parseInt(args[1]) : 1024;
+        int partes = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+        int tamanho = (int) Math.min(Integer.MAX_VALUE - 8, megas * 1024L * 1024L);
+
+        try (ServerSocketChannel servidor = ServerSocketChannel.open().bind(new InetSocketAddress("localhost", 0))) {
+            Descarte descarte = new Descarte(servidor, tamanho + (long) partes * (ProtocoloBinario.TAMANHO_CABECALHO + 1));
+            Thread threadDescarte = new Thread(descarte, "Benchmark-Descarte");
+            threadDescarte.start();
+
+            Path arquivo = null;
+            ByteBuffer mapeado = null;
+            byte[] vetor = null;
+            if (modo.equals("mapeado")) {
+                arquivo = criarArquivo(tamanho);
+                try (FileChannel fc = FileChannel.open(arquivo, StandardOpenOption.READ)) {
+                    mapeado = fc.map(FileChannel.MapMode.READ_ONLY, 0, tamanho);
+                }
+            } else {
+                vetor = new byte[tamanho];
+                for (int i = 0; i < tamanho; i++) vetor[i] = (byte) (-100 + (i * 31) % 201);
+            }
+
+            try (SocketChannel canal = SocketChannel.open(servidor.getLocalAddress())) {
+                canal.socket().setTcpNoDelay(true);
+                long t0 = System.nanoTime();
+                descarte.inicio = t0;
+
+                int tamanhoParte = tamanho / partes;
+                if (modo.equals("copia")) {
+                    // Como o Distribuidor fazia: todas as cópias existem antes do envio terminar
+                    List<byte[]> copias = new ArrayList<>();
+                    for (int i = 0; i < partes; i++) {
+                        int ini = i * tamanhoParte;
+                        int fim = i == partes - 1 ? tamanho : ini + tamanhoParte;
+                        copias.add(Arrays.copyOfRange(vetor, ini, fim));
+                    }
+                    DataOutputStream out = new DataOutputStream(
+                            new BufferedOutputStream(canal.socket().getOutputStream(), ProtocoloBinario.TAMANHO_BUFFER));
+                    for (int i = 0; i < partes; i++) {
+                        ProtocoloBinario.escrever(out, new Pedido(i, copias.get(i), (byte) 7));
+                    }
+                    out.flush();
+                } else {
+                    for (int i = 0; i < partes; i++) {
+                        int ini = i * tamanhoParte;
+                        int fim = i == partes - 1 ? tamanho : ini + tamanhoParte;
+                        Pedido pedido = modo.equals("direto")
+                                ? new Pedido(i, vetor, ini, fim, (byte) 7)
+                                : new Pedido(i, mapeado.slice(ini, fim - ini), (byte) 7);
+                        ProtocoloBinario.escreverComFatia(canal, pedido);
+                    }
+                }
+
+                threadDescarte.join();
+                long t1 = System.nanoTime();
+
+                System.out.printf("%-8s %6d MB  primeiro byte=%8.2f ms  total=%8.1f ms  (%.2f GB/s)  " +
+                                "pico RSS=%6d MB  pico heap=%6d MB%n",
+                        modo, megas, (descarte.primeiroByte - t0) / 1e6, (t1 - t0) / 1e6,
+                        tamanho / (double) (t1 - t0), picoRssKb() / 1024, picoHeapBytes() / (1024 * 1024));
+            } finally {
+                if (arquivo != null) Files.deleteIfExists(arquivo);
+            }
+        }
+    }
+
+    private static void executarEmProcesso(String modo, String[] args) throws Exception {
+        List<String> comando = new ArrayList<>();
+        comando.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        comando.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+        comando.add("-cp");
+        comando.add(System.getProperty("java.class.path"));
+        comando.add(BenchmarkEnvioFatias.class.getName());
+        comando.add(modo);
+        comando.addAll(Arrays.asList(args));
+        Process p = new ProcessBuilder(comando).inheritIO().start();
+        p.waitFor();
+    }
+
+    private static Path criarArquivo(int tamanho) throws IOException {
+        Path arquivo = Files.createTempFile("benchmark-fatias", ".bin");
+        ByteBuffer bloco = ByteBuffer.allocateDirect(1024 * 1024);
+        try (FileChannel fc = FileChannel.open(arquivo, StandardOpenOption.WRITE)) {
+            long escrito = 0;
+            while (escrito < tamanho) {
+                bloco.clear();
+                while (bloco.hasRemaining()) bloco.put((byte) (-100 + (int) ((escrito + bloco.position()) * 31 % 201)));
+                bloco.flip();
+                bloco.limit((int) Math.min(bloco.limit(), tamanho - escrito));
+                escrito += fc.write(bloco);
+            }
+        }
+        return arquivo;
+    }
+
+    // VmHWM do Linux; -1 em outros sistemas
+    private static long picoRssKb() {
+        try {
+            for (String linha : Files.readAllLines(Paths.get("/proc/self/status"))) {
+                if (linha.startsWith("VmHWM:")) {
+                    return Long.parseLong(linha.replaceAll("[^0-9]", ""));
+                }
+            }
+        } catch (IOException | NumberFormatException ignorada) {
+        }
+        return -1;
+    }
+
+    private static long picoHeapBytes() {
+        long total = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) total += pool.getPeakUsage().getUsed();
+        }
+        return total;
+    }
+
+    /** Receptor que só lê e descarta os bytes, anotando quando chega o primeiro. */
+    private static class Descarte implements Runnable {
+        private final ServerSocketChannel servidor;
+        private final long esperado;
+        volatile long inicio;
+        volatile long primeiroByte;
+
+        Descarte(ServerSocketChannel servidor, long esperado) {
+            this.servidor = servidor;
+            this.esperado = esperado;
+        }
+
+        @Override
+        public void run() {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(1024 * 1024);
+            try (SocketChannel canal = servidor.accept()) {
+                long lido = 0;
+                while (lido < esperado) {
+                    buffer.clear();
+                    int n = canal.read(buffer);
+                    if (n < 0) break;
+                    if (lido == 0 && n > 0) primeiroByte = System.nanoTime();
+                    lido += n;
+                }
+            } catch (IOException e) {
+                System.err.println("[ERRO] Descarte: " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package src.Benchmark;
+
+import java.io.*;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import src.Comunicacao.*;
+
+/**
+ * Compara o protocolo binário com a serialização Java:
+ * vazão de codificação/decodificação de um Pedido e latência por pedido
+ * num ida-e-volta pela interface de loopback.
+ *
+ * Uso: java src.Benchmark.BenchmarkProtocolo [tamanhos em bytes...]
+ */
+public class BenchmarkProtocolo {
+
+    private static final int[] TAMANHOS_PADRAO = {1024, 1024 * 1024, 64 * 1024 * 1024};
+
+    public static void main(String[] args) throws Exception {
+        int[] tamanhos = args.length > 0
+                ? Arrays.stream(args).mapToInt(Integer::parseInt).toArray()
+                : TAMANHOS_PADRAO;
+
+        System.out.printf("%-10s %-8s %12s %12s %14s%n",
+                "tamanho", "proto", "codif GB/s", "decod GB/s", "latência µs");
+
+        for (int tamanho : tamanhos) {
+            byte[] numeros = gerar(tamanho);
+            Pedido pedido = new Pedido(1, numeros, (byte) 7);
+            int repeticoes = Math.max(3, (int) Math.min(2000, (256L * 1024 * 1024) / tamanho));
+
+            for (Protocolo protocolo : Protocolo.values()) {
+                double codif = vazaoCodificacao(protocolo, pedido, repeticoes);
+                double decod = vazaoDecodificacao(protocolo, pedido, repeticoes);
+                double latencia = latenciaIdaVolta(protocolo, pedido, repeticoes);
+                System.out.printf("%-10d %-8s %12.3f %12.3f %14.1f%n",
+                        tamanho, protocolo, codif, decod, latencia);
+            }
+        }
+    }
+
+    private static byte[] gerar(int tamanho) {
+        SplittableRandom rnd = new SplittableRandom(42);
+        byte[] v = new byte[tamanho];
+        for (int i = 0; i < tamanho; i++) {
+            v[i] = (byte) (-100 + rnd.nextInt(201));
+        }
+        return v;
+    }
+
+    private static double vazaoCodificacao(Protocolo protocolo, Pedido pedido, int repeticoes) throws IOException {
+        // Destino reaproveitado: mede a cópia para o buffer de envio, sem custo de alocação
+        ByteArrayOutputStream destino = new ByteArrayOutputStream(pedido.getNumeros().length + 1024);
+        for (int i = 0; i < 3; i++) {
+            destino.reset();
+            codificar(protocolo, pedido, destino);
+        }
+
+        long t0 = System.nanoTime();
+        for (int i = 0; i < repeticoes; i++) {
+            destino.reset();
+            codificar(protocolo, pedido, destino);
+        }
+        long t1 = System.nanoTime();
+        return gbPorSegundo((long) pedido.getNumeros().length * repeticoes, t1 - t0);
+    }
+
+    private static double vazaoDecodificacao(Protocolo protocolo, Pedido pedido, int repeticoes) throws Exception {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(pedido.getNumeros().length + 1024);
+        codificar(protocolo, pedido, buffer);
+        byte[] codificado = buffer.toByteArray();
+
+        for (int i = 0; i < 3; i++) decodificar(protocolo, codificado);
+
+        long t0 = System.nanoTime();
+        for (int i = 0; i < repeticoes; i++) decodificar(protocolo, codificado);
+        long t1 = System.nanoTime();
+        return gbPorSegundo((long) pedido.getNumeros().length * repeticoes, t1 - t0);
+    }
+
+    private static void codificar(Protocolo protocolo, Pedido pedido, OutputStream destino) throws IOException {
+        if (protocolo == Protocolo.BINARIO) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(destino, ProtocoloBinario.TAMANHO_BUFFER));
+            ProtocoloBinario.escrever(out, pedido);
+            out.flush();
+        } else {
+            ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(destino, ProtocoloBinario.TAMANHO_BUFFER));
+            out.writeObject(pedido);
+            out.flush();
+        }
+    }
+
+    private static Comunicado decodificar(Protocolo protocolo, byte[] codificado) throws Exception {
+        InputStream origem = new ByteArrayInputStream(codificado);
+        if (protocolo == Protocolo.BINARIO) {
+            return ProtocoloBinario.ler(new DataInputStream(origem));
+        }
+        return (Comunicado) new ObjectInputStream(origem).readObject();
+    }
+
+    // Servidor de eco em loopback: responde cada Pedido com a sua contagem
+    private static double latenciaIdaVolta(Protocolo protocolo, Pedido pedido, int repeticoes) throws Exception {
+        try (ServerSocket servidor = new ServerSocket(0)) {
+            Thread eco = new Thread(() -> {
+                try (Socket s = servidor.accept(); Canal canal = Canais.aceitar(s)) {
+                    s.setTcpNoDelay(true);
+                    while (true) {
+                        Comunicado c = canal.receber();
+                        if (!(c instanceof Pedido)) break;
+                        Pedido p = (Pedido) c;
+                        canal.enviar(new Resposta(p.getId(), p.contar()));
+                    }
+                } catch (Exception e) {
+                    System.err.println("[ERRO] Servidor de eco: " + e.getMessage());
+                }
+            }, "Benchmark-Eco");
+            eco.start();
+
+            try (Socket socket = new Socket("localhost", servidor.getLocalPort())) {
+                socket.setTcpNoDelay(true);
+                Canal canal = Canais.conectar(socket, protocolo);
+                for (int i = 0; i < 3; i++) {
+                    canal.enviar(pedido);
+                    canal.receber();
+                }
+
+                long t0 = System.nanoTime();
+                for (int i = 0; i < repeticoes; i++) {
+                    canal.enviar(pedido);
+                    canal.receber();
+                }
+                long t1 = System.nanoTime();
+
+                canal.enviar(new ComunicadoEncerramento());
+                eco.join();
+                return (t1 - t0) / 1_000.0 / repeticoes;
+            }
+        }
+    }
+
+    private static double gbPorSegundo(long bytes, long nanos) {
+        return bytes / (double) nanos;
+    }
+}
@@ -0,0 +1,314 @@
+package src.Benchmark;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import src.Contagem.GeradorVetor;
+import src.Contagem.Histograma;
+import src.Distribuidor.ClienteContagem;
+import src.Metricas.HistogramaLatencia;
+import src.Metricas.Log;
+
+/**
+ * Gerador de carga do par Distribuidor/Receptor em loopback. Para cada número
+ * de receptores sobe os Receptores em processos separados, conecta um
+ * ClienteContagem e, para cada tamanho de vetor, dispara contagens por um
+ * tempo fixo depois de um aquecimento. Relata consultas/s, GB/s varridos e os
+ * percentis p50/p99/p999 da latência num {@link HistogramaLatencia}.
+ *
+ * Modos:
+ *   fechado  - N clientes, cada um envia a próxima consulta quando a anterior responde
+ *   aberto   - consultas em ritmo fixo (--qps), sem esperar as respostas; a latência
+ *              conta do instante previsto para o envio, então um atraso do próprio
+ *              gerador ou do cliente aparece na cauda em vez de sumir
+ *
+ * Cada resposta é conferida com um histograma local do vetor; divergências e
+ * falhas entram na coluna de erros.
+ *
+ * Uso: java src.Benchmark.GeradorCarga [--opcao=valor ...]
+ *   --modo=fechado|aberto   (fechado)
+ *   --receptores=1,2,4      números de receptores locais (2)
+ *   --tamanhos=1M,16M,64M   tamanhos de vetor, com sufixo K, M ou G (16M)
+ *   --clientes=N            clientes do modo fechado (8)
+ *   --qps=N                 ritmo do modo aberto (100)
+ *   --duracao=s             medição por combinação (10)
+ *   --aquecimento=s         consultas descartadas antes da medição (2)
+ *   --args-receptor="..."   opções repassadas a cada Receptor, ex. "--modo=nio"
+ *
+ * Propriedades do Distribuidor (-Descalonamento, -Dcompressao...) valem para o cliente.
+ */
+public class GeradorCarga {
+
+    private static final int MINIMO = -100;
+    private static final int MAXIMO = 100;
+    private static final long SEMENTE = 42;
+
+    private static String modo = "fechado";
+    private static int[] receptores = {2};
+    private static int[] tamanhos = {16 * 1024 * 1024};
+    private static int clientes = 8;
+    private static int qps = 100;
+    private static long duracaoNs = 10_000_000_000L;
+    private static long aquecimentoNs = 2_000_000_000L;
+    private static String[] argsReceptor = new String[0];
+
+    public static void main(String[] args) throws Exception {
+        try {
+            lerOpcoes(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println("[ERRO] " + e.getMessage());
+            System.exit(1);
+        }
+        if (System.getProperty("log.nivel") == null) {
+            // As linhas de conexão e reconexão atrapalhariam a tabela
+            Log.setNivel(Log.Nivel.AVISO);
+        }
+
+        System.out.printf("%-8s %10s %9s %9s %6s %10s %8s %9s %9s %9s %9s%n",
+                "modo", "receptores", "tamanho", "consultas", "erros", "consultas/s", "GB/s",
+                "p50 ms", "p99 ms", "p999 ms", "máx ms");
+        for (int numero : receptores) {
+            List<Process> processos = new ArrayList<>();
+            try {
+                List<String> enderecos = new ArrayList<>();
+                for (int i = 0; i < numero; i++) {
+                    int porta = portaLivre();
+                    processos.add(iniciarReceptor(porta));
+                    enderecos.add("localhost:" + porta);
+                }
+                for (String endereco : enderecos) {
+                    aguardarPorta(Integer.parseInt(endereco.substring(endereco.indexOf(':') + 1)));
+                }
+                try (ClienteContagem cliente = ClienteContagem.conectar(enderecos)) {
+                    for (int tamanho : tamanhos) {
+                        executar(cliente, numero, tamanho);
+                    }
+                }
+            } finally {
+                for (Process p : processos) {
+                    p.destroy();
+                }
+                for (Process p : processos) {
+                    p.waitFor();
+                }
+            }
+        }
+    }
+
+    private static void executar(ClienteContagem cliente, int numero, int tamanho) throws Exception {
+        byte[] vetor = GeradorVetor.gerar(tamanho, MINIMO, MAXIMO, SEMENTE);
+        Histograma esperado = new Histograma();
+        int[] tabela = new int[Histograma.VALORES];
+        Histograma.acumular(vetor, 0, vetor.length, tabela);
+        esperado.somar(tabela);
+
+        Medicao medicao = new Medicao(cliente, vetor, esperado);
+        if (modo.equals("aberto")) {
+            medicao.abrir();
+        } else {
+            medicao.fechar();
+        }
+
+        HistogramaLatencia latencias = medicao.latencias;
+        long consultas = latencias.getContagem();
+        double segundos = Math.max(duracaoNs, medicao.ultimaConclusao.get()) / 1e9;
+        System.out.printf("%-8s %10d %9s %9d %6d %10.1f %8.2f %9.2f %9.2f %9.2f %9.2f%n",
+                modo, numero, formatar(tamanho), consultas, medicao.erros.sum(),
+                consultas / segundos, consultas * (double) tamanho / segundos / 1e9,
+                latencias.percentil(0.50) / 1e6, latencias.percentil(0.99) / 1e6,
+                latencias.percentil(0.999) / 1e6, latencias.getMaximo() / 1e6);
+    }
+
+    /** Uma combinação de receptores e tamanho: aquecimento, medição e espera das respostas pendentes. */
+    private static final class Medicao {
+
+        final ClienteContagem cliente;
+        final byte[] vetor;
+        final Histograma esperado;
+        final HistogramaLatencia latencias = new HistogramaLatencia();
+        final LongAdder erros = new LongAdder();
+        // Última resposta medida, em ns desde o início da medição
+        final AtomicLong ultimaConclusao = new AtomicLong();
+        final long inicio;
+        final long fim;
+
+        Medicao(ClienteContagem cliente, byte[] vetor, Histograma esperado) {
+            this.cliente = cliente;
+            this.vetor = vetor;
+            this.esperado = esperado;
+            this.inicio = System.nanoTime() + aquecimentoNs;
+            this.fim = inicio + duracaoNs;
+        }
+
+        // Consulta enviada no instante "previsto"; só entra na medição se previsto cai na janela
+        CompletableFuture<Long> consultar(long previsto) {
+            byte alvo = (byte) ThreadLocalRandom.current().nextInt(MINIMO, MAXIMO + 1);
+            return cliente.contar(vetor, alvo).whenComplete((total, erro) -> {
+                long agora = System.nanoTime();
+                if (previsto < inicio) {
+                    return;
+                }
+                if (erro != null || total != esperado.contar(alvo)) {
+                    erros.increment();
+                } else {
+                    latencias.registrar(agora - previsto);
+                }
+                ultimaConclusao.accumulateAndGet(agora - inicio, Math::max);
+            });
+        }
+
+        void fechar() throws InterruptedException {
+            List<Thread> threads = new ArrayList<>();
+            for (int i = 0; i < clientes; i++) {
+                Thread thread = new Thread(() -> {
+                    long agora;
+                    while ((agora = System.nanoTime()) < fim) {
+                        try {
+                            consultar(agora).join();
+                        } catch (RuntimeException contada) {
+                            // Já registrada em erros
+                        }
+                    }
+                }, "Carga-" + i);
+                thread.start();
+                threads.add(thread);
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        }
+
+        void abrir() {
+            long intervalo = 1_000_000_000L / qps;
+            List<CompletableFuture<Long>> pendentes = new ArrayList<>();
+            for (long previsto = System.nanoTime(); previsto < fim; previsto += intervalo) {
+                long espera;
+                while ((espera = previsto - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(espera);
+                }
+                pendentes.add(consultar(previsto));
+            }
+            try {
+                CompletableFuture.allOf(pendentes.toArray(new CompletableFuture<?>[0])).join();
+            } catch (RuntimeException contada) {
+                // Já registrada em erros
+            }
+        }
+    }
+
+    private static Process iniciarReceptor(int porta) throws IOException {
+        List<String> comando = new ArrayList<>();
+        comando.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        // Módulos (o kernel vetorial) e heap do gerador valem também para os receptores
+        for (String arg : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+            if (arg.startsWith("--add-modules") || arg.startsWith("-Xm")) {
+                comando.add(arg);
+            }
+        }
+        comando.add("-cp");
+        comando.add(System.getProperty("java.class.path"));
+        comando.add("src.Receptor.Receptor");
+        comando.add(String.valueOf(porta));
+        comando.addAll(Arrays.asList(argsReceptor));
+        return new ProcessBuilder(comando)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .redirectError(ProcessBuilder.Redirect.DISCARD)
+                .start();
+    }
+
+    private static int portaLivre() throws IOException {
+        try (ServerSocket livre = new ServerSocket(0)) {
+            return livre.getLocalPort();
+        }
+    }
+
+    // O receptor mede a vazão antes de abrir a porta
+    private static void aguardarPorta(int porta) throws Exception {
+        long limite = System.currentTimeMillis() + 30_000;
+        while (true) {
+            try {
+                new Socket("localhost", porta).close();
+                return;
+            } catch (IOException e) {
+                if (System.currentTimeMillis() > limite) throw e;
+                Thread.sleep(100);
+            }
+        }
+    }
+
+    private static void lerOpcoes(String[] args) {
+        for (String arg : args) {
+            int igual = arg.indexOf('=');
+            if (!arg.startsWith("--") || igual < 0) {
+                throw new IllegalArgumentException("Argumento inválido: " + arg + " (use --opcao=valor)");
+            }
+            String chave = arg.substring(2, igual);
+            String valor = arg.substring(igual + 1);
+            switch (chave) {
+                case "modo":
+                    if (!valor.equals("fechado") && !valor.equals("aberto")) {
+                        throw new IllegalArgumentException("--modo deve ser fechado ou aberto");
+                    }
+                    modo = valor;
+                    break;
+                case "receptores":
+                    receptores = Arrays.stream(valor.split(",")).mapToInt(v -> positivo(chave, Integer.parseInt(v.trim()))).toArray();
+                    break;
+                case "tamanhos":
+                    tamanhos = Arrays.stream(valor.split(",")).mapToInt(v -> positivo(chave, lerTamanho(v.trim()))).toArray();
+                    break;
+                case "clientes":
+                    clientes = positivo(chave, Integer.parseInt(valor));
+                    break;
+                case "qps":
+                    qps = positivo(chave, Integer.parseInt(valor));
+                    break;
+                case "duracao":
+                    duracaoNs = positivo(chave, Integer.parseInt(valor)) * 1_000_000_000L;
+                    break;
+                case "aquecimento":
+                    aquecimentoNs = Integer.parseInt(valor) * 1_000_000_000L;
+                    break;
+                case "args-receptor":
+                    argsReceptor = valor.isBlank() ? new String[0] : valor.trim().split("\\s+");
+                    break;
+                default:
+                    throw new IllegalArgumentException("Opção desconhecida: --" + chave);
+            }
+        }
+    }
+
+    private static int positivo(String chave, int valor) {
+        if (valor <= 0) {
+            throw new IllegalArgumentException("--" + chave + " deve ser positivo");
+        }
+        return valor;
+    }
+
+    // "64K", "16M", "1G" ou bytes
+    private static int lerTamanho(String texto) {
+        char sufixo = Character.toUpperCase(texto.charAt(texto.length() - 1));
+        long multiplicador = sufixo == 'K' ? 1024 : sufixo == 'M' ? 1024 * 1024 : sufixo == 'G' ? 1024 * 1024 * 1024 : 1;
+        long bytes = Long.parseLong(multiplicador == 1 ? texto : texto.substring(0, texto.length() - 1)) * multiplicador;
+        if (bytes > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Tamanho acima do limite de um vetor: " + texto);
+        }
+        return (int) bytes;
+    }
+
+    private static String formatar(int bytes) {
+        if (bytes % (1024 * 1024) == 0) return bytes / (1024 * 1024) + "M";
+        if (bytes % 1024 == 0) return bytes / 1024 + "K";
+        return String.valueOf(bytes);
+    }
+}
@@ -0,0 +1,128 @@
+package src.Benchmark;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import src.Comunicacao.*;
+
+/**
+ * Teste de carga de conexões do Receptor, com threads de plataforma, virtuais e no modo nio.
+ *
+ * Para cada modo sobe um Receptor em processo separado, abre N conexões ociosas
+ * (já com o protocolo negociado) e mede o RSS do receptor por conexão. Com as
+ * conexões ociosas ainda abertas, mede a latência de "accept até a primeira
+ * resposta": abrir uma conexão nova, negociar, enviar um Pedido pequeno e
+ * receber a Resposta.
+ *
+ * Uso: java src.Benchmark.TesteCargaConexoes [conexões ociosas] [amostras de latência]
+ * (o limite de descritores do sistema, ulimit -n, precisa comportar as conexões)
+ */
+public class TesteCargaConexoes {
+
+    public static void main(String[] args) throws Exception {
+        int ociosas = args.length > 0 ? Integer.parseInt(args[0]) : 5_000;
+        int amostras = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+
+        System.out.printf("%-11s %9s %14s %10s %10s %10s%n",
+                "modo", "conexões", "KB/conexão", "p50 µs", "p99 µs", "máx µs");
+        for (String modo : new String[]{"plataforma", "virtual", "nio"}) {
+            executar(modo, ociosas, amostras);
+        }
+    }
+
+    private static void executar(String modo, int ociosas, int amostras) throws Exception {
+        int porta;
+        try (ServerSocket livre = new ServerSocket(0)) {
+            porta = livre.getLocalPort();
+        }
+
+        Process receptor = new ProcessBuilder(
+                Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                "-cp", System.getProperty("java.class.path"),
+                "src.Receptor.Receptor", String.valueOf(porta),
+                modo.equals("nio") ? "--modo=nio" : "--conexoes=" + modo,
+                "--max-conexoes=" + (ociosas + amostras + 16))
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .redirectError(ProcessBuilder.Redirect.DISCARD)
+                .start();
+
+        List<Socket> abertas = new ArrayList<>(ociosas);
+        try {
+            // Primeira ida e volta aquece o receptor antes da medição de memória
+            idaVolta(conectarComEspera(porta));
+            Thread.sleep(500);
+            long rssAntes = rssKb(receptor.pid());
+
+            for (int i = 0; i < ociosas; i++) {
+                Socket socket = new Socket("localhost", porta);
+                Canais.conectar(socket, Protocolo.BINARIO);
+                abertas.add(socket);
+            }
+            Thread.sleep(1_000);
+            long rssDepois = rssKb(receptor.pid());
+
+            long[] latencias = new long[amostras];
+            for (int i = 0; i < amostras; i++) {
+                long t0 = System.nanoTime();
+                idaVolta(new Socket("localhost", porta));
+                latencias[i] = System.nanoTime() - t0;
+            }
+            Arrays.sort(latencias);
+
+            System.out.printf("%-11s %9d %14.1f %10.1f %10.1f %10.1f%n",
+                    modo, ociosas, (rssDepois - rssAntes) / (double) Math.max(1, ociosas),
+                    latencias[amostras / 2] / 1e3,
+                    latencias[Math.min(amostras - 1, (int) (amostras * 0.99))] / 1e3,
+                    latencias[amostras - 1] / 1e3);
+        } finally {
+            for (Socket s : abertas) {
+                try {
+                    s.close();
+                } catch (IOException ignorada) {
+                }
+            }
+            receptor.destroy();
+            receptor.waitFor();
+        }
+    }
+
+    private static void idaVolta(Socket socket) throws Exception {
+        try (socket) {
+            socket.setTcpNoDelay(true);
+            Canal canal = Canais.conectar(socket, Protocolo.BINARIO);
+            canal.enviar(new Pedido(1, new byte[64], (byte) 0));
+            canal.receber();
+            canal.enviar(new ComunicadoEncerramento());
+        }
+    }
+
+    private static Socket conectarComEspera(int porta) throws Exception {
+        long limite = System.currentTimeMillis() + 10_000;
+        while (true) {
+            try {
+                return new Socket("localhost", porta);
+            } catch (IOException e) {
+                if (System.currentTimeMillis() > limite) throw e;
+                Thread.sleep(100);
+            }
+        }
+    }
+
+    // VmRSS do processo no Linux; -1 em outros sistemas
+    private static long rssKb(long pid) {
+        try {
+            for (String linha : Files.readAllLines(Paths.get("/proc/" + pid + "/status"))) {
+                if (linha.startsWith("VmRSS:")) {
+                    return Long.parseLong(linha.replaceAll("[^0-9]", ""));
+                }
+            }
+        } catch (IOException | NumberFormatException ignorada) {
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,13 @@
+package src.Comunicacao;
+
+/**
+ * Decide, só pelo cabeçalho de um quadro, se o corpo deve ser lido. O receptor
+ * a usa para reservar o orçamento de um pedido antes de alocar os números, que
+ * podem chegar a 2 GB; um corpo recusado é pulado sem ser guardado e no lugar
+ * do comunicado chega um {@link QuadroRecusado}.
+ */
+public interface AdmissaoQuadros {
+
+    /** true para ler o corpo do quadro; false para descartá-lo. */
+    boolean admitir(byte tipo, long id, int comprimento);
+}
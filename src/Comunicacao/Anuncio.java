@@ -0,0 +1,72 @@
+package src.Comunicacao;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Datagrama UDP de um receptor para o registro de receptores: "ANUNCIO
+ * host:porta" a cada intervalo, enquanto atende, e "SAIDA host:porta" ao
+ * encerrar. Texto simples, para que um script ou outra ferramenta possa fazer
+ * o papel do receptor ou do registro.
+ */
+public class Anuncio {
+
+    private static final String ANUNCIO = "ANUNCIO";
+    private static final String SAIDA = "SAIDA";
+
+    private final String endereco;
+    private final boolean saida;
+
+    public Anuncio(String endereco, boolean saida) {
+        this.endereco = endereco;
+        this.saida = saida;
+    }
+
+    /** "host:porta" em que o receptor atende. */
+    public String getEndereco() {
+        return endereco;
+    }
+
+    /** Se o receptor está saindo em vez de se anunciar. */
+    public boolean isSaida() {
+        return saida;
+    }
+
+    public byte[] codificar() {
+        return ((saida ? SAIDA : ANUNCIO) + " " + endereco + "\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @throws IllegalArgumentException se o datagrama não é um anúncio válido
+     */
+    public static Anuncio decodificar(byte[] dados, int tamanho) {
+        String[] partes = new String(dados, 0, tamanho, StandardCharsets.UTF_8).trim().split(" ");
+        if (partes.length != 2 || !(partes[0].equals(ANUNCIO) || partes[0].equals(SAIDA))
+                || !enderecoValido(partes[1])) {
+            throw new IllegalArgumentException("Anúncio inválido: " + new String(dados, 0, tamanho,
+                    StandardCharsets.UTF_8).trim());
+        }
+        return new Anuncio(partes[1], partes[0].equals(SAIDA));
+    }
+
+    /**
+     * Se o texto é um "host:porta" com porta numérica entre 1 e 65535; o que não
+     * passa aqui faria o socket falhar com exceção não verificada mais adiante.
+     */
+    public static boolean enderecoValido(String endereco) {
+        int separador = endereco.lastIndexOf(':');
+        if (separador <= 0 || separador != endereco.indexOf(':') || separador == endereco.length() - 1) {
+            return false;
+        }
+        String porta = endereco.substring(separador + 1);
+        if (porta.length() > 5) {
+            return false;
+        }
+        for (int i = 0; i < porta.length(); i++) {
+            if (porta.charAt(i) < '0' || porta.charAt(i) > '9') {
+                return false;
+            }
+        }
+        int numero = Integer.parseInt(porta);
+        return numero >= 1 && numero <= 65535;
+    }
+}
@@ -0,0 +1,51 @@
+package src.Comunicacao;
+
+/**
+ * Um bloco de um {@link PedidoFluxo} numa codificação de {@link Compressao}.
+ * O receptor conta direto sobre os bytes codificados; o bloco vale
+ * {@link #getTamanho()} números no total do pedido.
+ */
+public class BlocoComprimido extends Comunicado implements Identificado {
+    private final long id;
+    private final byte codificacao;
+    private final int tamanho;
+    private final byte[] dados;
+
+    public BlocoComprimido(long id, byte codificacao, int tamanho, byte[] dados) {
+        this.id = id;
+        this.codificacao = codificacao;
+        this.tamanho = tamanho;
+        this.dados = dados;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public byte getCodificacao() {
+        return codificacao;
+    }
+
+    /** Números que o bloco representa. */
+    public int getTamanho() {
+        return tamanho;
+    }
+
+    /** Bytes que o bloco ocupa codificado. */
+    public int getTamanhoCodificado() {
+        return dados.length;
+    }
+
+    public int contar(byte procurado) {
+        return Compressao.contar(codificacao, dados, tamanho, procurado);
+    }
+
+    /** Os números do bloco, descomprimidos. */
+    public byte[] getNumeros() {
+        return Compressao.decodificar(codificacao, dados, tamanho);
+    }
+
+    byte[] getDados() {
+        return dados;
+    }
+}
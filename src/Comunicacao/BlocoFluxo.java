@@ -0,0 +1,41 @@
+package src.Comunicacao;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+
+/** Um bloco de números de um {@link PedidoFluxo}. */
+public class BlocoFluxo extends Comunicado implements Identificado {
+    private final long id;
+    private transient ByteBuffer dados;
+
+    public BlocoFluxo(long id, ByteBuffer dados) {
+        this.id = id;
+        this.dados = dados.slice();
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public byte[] getNumeros() {
+        return Fatias.comoVetor(dados);
+    }
+
+    public int getTamanho() {
+        return dados.remaining();
+    }
+
+    ByteBuffer fatia() {
+        return dados.duplicate();
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        Fatias.escrever(out, dados);
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        dados = Fatias.ler(in);
+    }
+}
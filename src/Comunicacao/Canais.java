@@ -0,0 +1,53 @@
+package src.Comunicacao;
+
+import java.io.*;
+import java.net.Socket;
+
+/**
+ * Negociação do protocolo no início da conexão.
+ *
+ * O cliente que prefere o protocolo binário envia {@link ProtocoloBinario#MAGICO}
+ * e espera o mesmo valor de volta. O servidor espia os primeiros 4 bytes: se for o
+ * número mágico responde com ele e passa a usar o canal binário; caso contrário os
+ * bytes são o cabeçalho de um ObjectOutputStream e a conexão segue com serialização Java.
+ */
+public final class Canais {
+
+    private Canais() {
+    }
+
+    public static Canal conectar(Socket socket, Protocolo preferido) throws IOException {
+        if (preferido == Protocolo.OBJETOS) {
+            return new CanalObjetos(socket.getOutputStream(), socket.getInputStream(), true);
+        }
+
+        DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+        out.writeInt(ProtocoloBinario.MAGICO);
+        out.flush();
+
+        InputStream entrada = new BufferedInputStream(socket.getInputStream(), ProtocoloBinario.TAMANHO_BUFFER);
+        int confirmacao = new DataInputStream(entrada).readInt();
+        if (confirmacao != ProtocoloBinario.MAGICO) {
+            throw new IOException("Receptor não confirmou o protocolo binário");
+        }
+        return new CanalBinario(socket.getOutputStream(), entrada, socket.getChannel(), ProtocoloBinario.TAMANHO_BUFFER);
+    }
+
+    public static Canal aceitar(Socket socket) throws IOException {
+        BufferedInputStream entrada = new BufferedInputStream(socket.getInputStream(), ProtocoloBinario.TAMANHO_BUFFER_SERVIDOR);
+        entrada.mark(4);
+        DataInputStream din = new DataInputStream(entrada);
+        int inicio = din.readInt();
+
+        if (inicio == ProtocoloBinario.MAGICO) {
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            out.writeInt(ProtocoloBinario.MAGICO);
+            out.flush();
+            return new CanalBinario(socket.getOutputStream(), entrada, socket.getChannel(),
+                    ProtocoloBinario.TAMANHO_BUFFER_SERVIDOR);
+        }
+
+        entrada.reset();
+        return new CanalObjetos(socket.getOutputStream(), entrada, false);
+    }
+}
@@ -0,0 +1,25 @@
+package src.Comunicacao;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Canal bidirecional de troca de {@link Comunicado}s sobre uma conexão TCP.
+ * Envio e recebimento podem ser feitos por threads diferentes, mas cada
+ * direção deve ser usada por uma única thread por vez.
+ */
+public interface Canal extends Closeable {
+
+    void enviar(Comunicado comunicado) throws IOException;
+
+    Comunicado receber() throws IOException, ClassNotFoundException;
+
+    Protocolo getProtocolo();
+
+    /**
+     * Passa a consultar {@code admissao} a cada cabeçalho recebido, antes de ler
+     * o corpo. Canais que só veem o comunicado inteiro (serialização Java) a ignoram.
+     */
+    default void setAdmissao(AdmissaoQuadros admissao) {
+    }
+}
@@ -0,0 +1,58 @@
+package src.Comunicacao;
+
+import java.io.*;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Canal que troca comunicados usando o enquadramento de {@link ProtocoloBinario}.
+ */
+public class CanalBinario implements Canal {
+    private final DataOutputStream out;
+    private final DataInputStream in;
+    // Presente quando o socket foi aberto via SocketChannel: pedidos saem por escrita agrupada
+    private final SocketChannel canal;
+    private AdmissaoQuadros admissao;
+
+    CanalBinario(OutputStream saida, InputStream entrada, SocketChannel canal, int tamanhoBuffer) {
+        this.canal = canal;
+        this.out = new DataOutputStream(new BufferedOutputStream(saida, tamanhoBuffer));
+        this.in = new DataInputStream(entrada instanceof BufferedInputStream
+                ? entrada
+                : new BufferedInputStream(entrada, tamanhoBuffer));
+    }
+
+    @Override
+    public void enviar(Comunicado comunicado) throws IOException {
+        if (canal != null && ProtocoloBinario.temFatia(comunicado)) {
+            out.flush();
+            ProtocoloBinario.escreverComFatia(canal, comunicado);
+            return;
+        }
+        ProtocoloBinario.escrever(out, comunicado);
+        out.flush();
+    }
+
+    @Override
+    public Comunicado receber() throws IOException {
+        return ProtocoloBinario.ler(in, admissao);
+    }
+
+    @Override
+    public void setAdmissao(AdmissaoQuadros admissao) {
+        this.admissao = admissao;
+    }
+
+    @Override
+    public Protocolo getProtocolo() {
+        return Protocolo.BINARIO;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            out.close();
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package src.Comunicacao;
+
+import java.io.*;
+
+/**
+ * Canal baseado em serialização Java padrão. Mantido como fallback para
+ * receptores/distribuidores que não falam o protocolo binário.
+ */
+public class CanalObjetos implements Canal {
+    private final ObjectOutputStream out;
+    private final ObjectInputStream in;
+
+    // A ordem (saída antes da entrada) evita o deadlock na troca dos cabeçalhos de stream
+    CanalObjetos(OutputStream saida, InputStream entrada, boolean cliente) throws IOException {
+        if (cliente) {
+            this.out = new ObjectOutputStream(new BufferedOutputStream(saida, ProtocoloBinario.TAMANHO_BUFFER));
+            this.out.flush();
+            this.in = new ObjectInputStream(new BufferedInputStream(entrada, ProtocoloBinario.TAMANHO_BUFFER));
+        } else {
+            this.in = new ObjectInputStream(entrada);
+            this.out = new ObjectOutputStream(new BufferedOutputStream(saida, ProtocoloBinario.TAMANHO_BUFFER_SERVIDOR));
+            this.out.flush();
+        }
+    }
+
+    @Override
+    public void enviar(Comunicado comunicado) throws IOException {
+        out.writeObject(comunicado);
+        // reset() descarta a tabela de handles; sem ele cada vetor enviado ficaria preso em memória
+        out.reset();
+        out.flush();
+    }
+
+    @Override
+    public Comunicado receber() throws IOException, ClassNotFoundException {
+        Object obj = in.readObject();
+        if (obj instanceof Comunicado) {
+            return (Comunicado) obj;
+        }
+        throw new IOException("Objeto desconhecido recebido: " + obj.getClass().getName());
+    }
+
+    @Override
+    public Protocolo getProtocolo() {
+        return Protocolo.OBJETOS;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            out.close();
+        } finally {
+            in.close();
+        }
+    }
+}
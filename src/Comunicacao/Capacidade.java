@@ -0,0 +1,56 @@
+package src.Comunicacao;
+
+/**
+ * Capacidade anunciada por um receptor: núcleos do pool de contagem, vazão de
+ * varredura medida na partida (bytes por segundo, com todos os núcleos) e
+ * tarefas esperando no pool no momento da resposta. Os recursos dizem que
+ * comunicados opcionais o receptor entende.
+ */
+public class Capacidade extends Comunicado implements Identificado {
+
+    /** Recurso: conta blocos em {@link BlocoComprimido}. */
+    public static final int COMPRESSAO = 1;
+
+    private final long id;
+    private final int nucleos;
+    private final long vazao;
+    private final int fila;
+    private final int recursos;
+
+    public Capacidade(long id, int nucleos, long vazao, int fila) {
+        this(id, nucleos, vazao, fila, 0);
+    }
+
+    public Capacidade(long id, int nucleos, long vazao, int fila, int recursos) {
+        this.id = id;
+        this.nucleos = nucleos;
+        this.vazao = vazao;
+        this.fila = fila;
+        this.recursos = recursos;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public int getNucleos() {
+        return nucleos;
+    }
+
+    /** Bytes por segundo que o receptor varre com todos os núcleos. */
+    public long getVazao() {
+        return vazao;
+    }
+
+    public int getFila() {
+        return fila;
+    }
+
+    public int getRecursos() {
+        return recursos;
+    }
+
+    public boolean aceita(int recurso) {
+        return (recursos & recurso) != 0;
+    }
+}
@@ -0,0 +1,62 @@
+package src.Comunicacao;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+
+/**
+ * Envia uma fatia para ficar residente no receptor sob {@code datasetId}. Consultas
+ * posteriores ({@link PedidoDataset}) só levam o id, sem reenviar os números.
+ *
+ * Com {@code anexar} a fatia é acrescentada ao fim do dataset existente, o que
+ * permite carregar datasets maiores que um quadro em várias partes; sem ele, um
+ * dataset de mesmo id é substituído. O receptor confirma com uma {@link Resposta}
+ * cuja contagem é o número de bytes recebidos, ou {@link RespostaErro}.
+ */
+public class CarregarDataset extends Comunicado implements Identificado {
+    private final long id;
+    private final long datasetId;
+    private final boolean anexar;
+    // Serializada à mão em writeObject, como em Pedido
+    private transient ByteBuffer dados;
+
+    public CarregarDataset(long id, long datasetId, boolean anexar, ByteBuffer dados) {
+        this.id = id;
+        this.datasetId = datasetId;
+        this.anexar = anexar;
+        this.dados = dados.slice();
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public long getDatasetId() {
+        return datasetId;
+    }
+
+    public boolean isAnexar() {
+        return anexar;
+    }
+
+    public byte[] getNumeros() {
+        return Fatias.comoVetor(dados);
+    }
+
+    public int getTamanho() {
+        return dados.remaining();
+    }
+
+    ByteBuffer fatia() {
+        return dados.duplicate();
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        Fatias.escrever(out, dados);
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        dados = Fatias.ler(in);
+    }
+}
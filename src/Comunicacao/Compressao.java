@@ -0,0 +1,386 @@
+package src.Comunicacao;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Codificações compactas de um bloco de números, para enlaces lentos, que o
+ * receptor conta sem descomprimir.
+ * <pre>
+ *   RLE        corridas: valor (1 byte) | comprimento (varint, 7 bits por byte)
+ *   DICIONARIO valores distintos - 1 (1 byte) | valores | bits por código (1 byte: 1, 2 ou 4) | códigos
+ * </pre>
+ * No RLE, a contagem soma o comprimento das corridas do valor procurado. No
+ * dicionário, cada número vira o índice do seu valor, com os códigos
+ * empacotados a partir do bit menos significativo de cada byte; a contagem
+ * compara os códigos de 64 bits em 64 bits (SWAR) com o código do procurado.
+ *
+ * A codificação de cada pedido sai de uma amostra ({@link #escolher}); um
+ * bloco que não encolhe até {@link #FRACAO_MAXIMA} segue sem compressão.
+ */
+public final class Compressao {
+
+    public static final byte RLE = 1;
+    public static final byte DICIONARIO = 2;
+
+    // Só vale comprimir se o bloco cair para no máximo esta fração do original
+    private static final double FRACAO_MAXIMA = 0.75;
+
+    // Maior dicionário com ganho: 16 valores cabem em 4 bits, metade do byte
+    private static final int MAX_VALORES_DICIONARIO = 16;
+
+    private static final int JANELAS_AMOSTRA = 8;
+    private static final int TAMANHO_JANELA = 4 * 1024;
+
+    private Compressao() {
+    }
+
+    /**
+     * Codificação indicada por uma amostra de {@code dados} (algumas janelas
+     * espalhadas pela fatia), ou 0 se nenhuma deve compensar.
+     */
+    public static byte escolher(ByteBuffer dados) {
+        int inicio = dados.position();
+        int tamanho = dados.remaining();
+        int janela = Math.min(TAMANHO_JANELA, tamanho);
+        int passo = tamanho > janela * JANELAS_AMOSTRA ? tamanho / JANELAS_AMOSTRA : janela;
+
+        boolean[] vistos = new boolean[256];
+        int distintos = 0;
+        long amostra = 0;
+        long bytesRle = 0;
+        for (int base = inicio; base + janela <= inicio + tamanho; base += passo) {
+            byte anterior = dados.get(base);
+            int corrida = 0;
+            for (int i = base; i < base + janela; i++) {
+                byte valor = dados.get(i);
+                if (!vistos[valor & 0xFF]) {
+                    vistos[valor & 0xFF] = true;
+                    distintos++;
+                }
+                if (valor != anterior) {
+                    bytesRle += 1 + tamanhoVarint(corrida);
+                    corrida = 0;
+                    anterior = valor;
+                }
+                corrida++;
+            }
+            bytesRle += 1 + tamanhoVarint(corrida);
+            amostra += janela;
+        }
+        if (amostra == 0) {
+            return 0;
+        }
+
+        double fracaoRle = (double) bytesRle / amostra;
+        double fracaoDicionario = distintos <= MAX_VALORES_DICIONARIO ? bitsPorCodigo(distintos) / 8.0 : 1;
+        double melhor = Math.min(fracaoRle, fracaoDicionario);
+        if (melhor > FRACAO_MAXIMA) {
+            return 0;
+        }
+        return fracaoRle <= fracaoDicionario ? RLE : DICIONARIO;
+    }
+
+    /**
+     * {@code dados} (da posição ao limite) na codificação {@code codificacao}, ou
+     * null se o resultado não ficar abaixo de {@link #FRACAO_MAXIMA} do original.
+     */
+    public static byte[] codificar(byte codificacao, ByteBuffer dados) {
+        switch (codificacao) {
+            case RLE:
+                return codificarRle(dados);
+            case DICIONARIO:
+                return codificarDicionario(dados);
+            default:
+                throw new IllegalArgumentException("Codificação desconhecida: " + codificacao);
+        }
+    }
+
+    /** Ocorrências de {@code procurado} num bloco codificado de {@code tamanho} números. */
+    public static int contar(byte codificacao, byte[] dados, int tamanho, byte procurado) {
+        switch (codificacao) {
+            case RLE:
+                return contarRle(dados, tamanho, procurado);
+            case DICIONARIO:
+                return contarDicionario(dados, tamanho, procurado);
+            default:
+                throw new IllegalArgumentException("Codificação desconhecida: " + codificacao);
+        }
+    }
+
+    /** Os {@code tamanho} números de um bloco codificado. */
+    public static byte[] decodificar(byte codificacao, byte[] dados, int tamanho) {
+        byte[] numeros = new byte[tamanho];
+        if (codificacao == RLE) {
+            int pos = 0;
+            int saida = 0;
+            while (pos < dados.length) {
+                byte valor = dados[pos++];
+                int comprimento = 0;
+                for (int deslocamento = 0; ; deslocamento += 7) {
+                    byte b = dados[pos++];
+                    comprimento |= (b & 0x7F) << deslocamento;
+                    if (b >= 0) {
+                        break;
+                    }
+                }
+                Arrays.fill(numeros, saida, saida + comprimento, valor);
+                saida += comprimento;
+            }
+            return numeros;
+        }
+        if (codificacao != DICIONARIO) {
+            throw new IllegalArgumentException("Codificação desconhecida: " + codificacao);
+        }
+        int valores = (dados[0] & 0xFF) + 1;
+        int bits = dados[1 + valores];
+        int porByte = 8 / bits;
+        int mascara = (1 << bits) - 1;
+        int inicio = 2 + valores;
+        for (int i = 0; i < tamanho; i++) {
+            int codigo = (dados[inicio + i / porByte] >>> ((i % porByte) * bits)) & mascara;
+            numeros[i] = dados[1 + codigo];
+        }
+        return numeros;
+    }
+
+    /**
+     * Checagem de um bloco recebido, antes de aceitá-lo: no RLE, cada corrida
+     * completa (varint de até 5 bytes que caiba num int) e a soma igual a
+     * {@code tamanho}; no dicionário, o cabeçalho, o número de bytes e cada
+     * código dentro do dicionário.
+     */
+    static void validar(byte codificacao, byte[] dados, int tamanho) throws IOException {
+        if (tamanho < 0) {
+            throw new IOException("Tamanho de bloco comprimido inválido: " + tamanho);
+        }
+        if (codificacao == RLE) {
+            validarRle(dados, tamanho);
+            return;
+        }
+        if (codificacao != DICIONARIO) {
+            throw new IOException("Codificação desconhecida: " + codificacao);
+        }
+        if (dados.length < 2) {
+            throw new IOException("Bloco de dicionário sem cabeçalho");
+        }
+        int valores = (dados[0] & 0xFF) + 1;
+        int bits = dados.length > 1 + valores ? dados[1 + valores] : 0;
+        if (bits != 1 && bits != 2 && bits != 4 || valores > 1 << bits) {
+            throw new IOException("Dicionário inválido: " + valores + " valores em " + bits + " bits");
+        }
+        long esperado = 2 + valores + ((long) tamanho * bits + 7) / 8;
+        if (dados.length != esperado) {
+            throw new IOException("Bloco de dicionário com " + dados.length + " bytes; esperado " + esperado);
+        }
+        if (valores < 1 << bits) {
+            // Só os campos dos números; os de enchimento do último byte são ignorados na leitura
+            int porByte = 8 / bits;
+            int mascara = (1 << bits) - 1;
+            int inicio = 2 + valores;
+            for (int i = 0; i < tamanho; i++) {
+                int codigo = (dados[inicio + i / porByte] >>> ((i % porByte) * bits)) & mascara;
+                if (codigo >= valores) {
+                    throw new IOException("Código " + codigo + " do número " + i + " fora do dicionário de " +
+                            valores + " valores");
+                }
+            }
+        }
+    }
+
+    private static void validarRle(byte[] dados, int tamanho) throws IOException {
+        long soma = 0;
+        int pos = 0;
+        while (pos < dados.length) {
+            pos++;
+            long comprimento = 0;
+            for (int deslocamento = 0; ; deslocamento += 7) {
+                if (pos == dados.length) {
+                    throw new IOException("Bloco RLE truncado no byte " + pos);
+                }
+                byte b = dados[pos++];
+                comprimento |= (long) (b & 0x7F) << deslocamento;
+                if (b >= 0) {
+                    break;
+                }
+                if (deslocamento == 28) {
+                    throw new IOException("Comprimento de corrida RLE com mais de 5 bytes");
+                }
+            }
+            soma += comprimento;
+            if (comprimento > Integer.MAX_VALUE || soma > tamanho) {
+                throw new IOException("Corridas do bloco RLE passam de " + tamanho + " números");
+            }
+        }
+        if (soma != tamanho) {
+            throw new IOException("Corridas do bloco RLE somam " + soma + " números; esperado " + tamanho);
+        }
+    }
+
+    private static byte[] codificarRle(ByteBuffer dados) {
+        int inicio = dados.position();
+        int fim = dados.limit();
+        // Passar deste tamanho já desqualifica o bloco; a folga cobre a última corrida
+        int limite = (int) ((fim - inicio) * FRACAO_MAXIMA);
+        byte[] saida = new byte[limite + 6];
+        int pos = 0;
+        int i = inicio;
+        while (i < fim) {
+            byte valor = dados.get(i);
+            int j = i + 1;
+            while (j < fim && dados.get(j) == valor) {
+                j++;
+            }
+            if (pos > limite) {
+                return null;
+            }
+            saida[pos++] = valor;
+            int comprimento = j - i;
+            while (comprimento >= 0x80) {
+                saida[pos++] = (byte) (comprimento | 0x80);
+                comprimento >>>= 7;
+            }
+            saida[pos++] = (byte) comprimento;
+            i = j;
+        }
+        return pos > limite ? null : Arrays.copyOf(saida, pos);
+    }
+
+    private static byte[] codificarDicionario(ByteBuffer dados) {
+        int inicio = dados.position();
+        int tamanho = dados.remaining();
+        int[] codigos = new int[256];
+        Arrays.fill(codigos, -1);
+        byte[] valores = new byte[MAX_VALORES_DICIONARIO];
+        int distintos = 0;
+        for (int i = inicio; i < inicio + tamanho; i++) {
+            int v = dados.get(i) & 0xFF;
+            if (codigos[v] < 0) {
+                if (distintos == MAX_VALORES_DICIONARIO) {
+                    return null;
+                }
+                valores[distintos] = (byte) v;
+                codigos[v] = distintos++;
+            }
+        }
+        if (distintos == 0) {
+            return null;
+        }
+        int bits = bitsPorCodigo(distintos);
+        if (bits / 8.0 > FRACAO_MAXIMA) {
+            return null;
+        }
+
+        int porByte = 8 / bits;
+        int cabecalho = 2 + distintos;
+        byte[] saida = new byte[cabecalho + (int) (((long) tamanho * bits + 7) / 8)];
+        saida[0] = (byte) (distintos - 1);
+        System.arraycopy(valores, 0, saida, 1, distintos);
+        saida[1 + distintos] = (byte) bits;
+        int pos = cabecalho;
+        int i = inicio;
+        for (int cheios = tamanho / porByte; cheios > 0; cheios--) {
+            int acumulado = 0;
+            for (int campo = 0; campo < porByte; campo++) {
+                acumulado |= codigos[dados.get(i++) & 0xFF] << (campo * bits);
+            }
+            saida[pos++] = (byte) acumulado;
+        }
+        int acumulado = 0;
+        for (int campo = 0; i < inicio + tamanho; campo++) {
+            acumulado |= codigos[dados.get(i++) & 0xFF] << (campo * bits);
+        }
+        if (tamanho % porByte != 0) {
+            saida[pos] = (byte) acumulado;
+        }
+        return saida;
+    }
+
+    private static int contarRle(byte[] dados, int tamanho, byte procurado) {
+        int total = 0;
+        long restantes = tamanho;
+        int pos = 0;
+        while (pos < dados.length) {
+            byte valor = dados[pos++];
+            int comprimento = 0;
+            for (int deslocamento = 0; ; deslocamento += 7) {
+                byte b = dados[pos++];
+                comprimento |= (b & 0x7F) << deslocamento;
+                if (b >= 0) {
+                    break;
+                }
+            }
+            if (valor == procurado) {
+                total += comprimento;
+            }
+            restantes -= comprimento;
+        }
+        if (restantes != 0) {
+            throw new IllegalArgumentException("Corridas do bloco RLE não somam " + tamanho + " números");
+        }
+        return total;
+    }
+
+    private static int contarDicionario(byte[] dados, int tamanho, byte procurado) {
+        int valores = (dados[0] & 0xFF) + 1;
+        int codigo = -1;
+        for (int i = 0; i < valores; i++) {
+            if (dados[1 + i] == procurado) {
+                codigo = i;
+                break;
+            }
+        }
+        if (codigo < 0) {
+            return 0;
+        }
+        int bits = dados[1 + valores];
+        int porByte = 8 / bits;
+        int inicio = 2 + valores;
+        // Bytes com todos os campos preenchidos; o último pode ter campos de enchimento
+        int fimCheios = inicio + tamanho / porByte;
+
+        long padrao = repetir(codigo, bits);
+        long primeiros = repetir(1, bits);
+        int camposPorPalavra = 64 / bits;
+        ByteBuffer palavras = ByteBuffer.wrap(dados).order(ByteOrder.LITTLE_ENDIAN);
+        int total = 0;
+        int i = inicio;
+        for (; i + Long.BYTES <= fimCheios; i += Long.BYTES) {
+            // Campos iguais ao código viram zero; cada campo diferente deixa um bit no seu bit mais baixo
+            long x = palavras.getLong(i) ^ padrao;
+            for (int s = 1; s < bits; s <<= 1) {
+                x |= x >>> s;
+            }
+            total += camposPorPalavra - Long.bitCount(x & primeiros);
+        }
+        int mascara = (1 << bits) - 1;
+        for (; i < fimCheios; i++) {
+            for (int campo = 0; campo < porByte; campo++) {
+                total += ((dados[i] >>> (campo * bits)) & mascara) == codigo ? 1 : 0;
+            }
+        }
+        for (int campo = 0; campo < tamanho % porByte; campo++) {
+            total += ((dados[fimCheios] >>> (campo * bits)) & mascara) == codigo ? 1 : 0;
+        }
+        return total;
+    }
+
+    // O valor repetido em cada campo de {@code bits} de uma palavra de 64 bits
+    private static long repetir(int valor, int bits) {
+        long palavra = 0;
+        for (int deslocamento = 0; deslocamento < 64; deslocamento += bits) {
+            palavra |= (long) valor << deslocamento;
+        }
+        return palavra;
+    }
+
+    private static int bitsPorCodigo(int distintos) {
+        return distintos <= 2 ? 1 : distintos <= 4 ? 2 : 4;
+    }
+
+    private static int tamanhoVarint(int valor) {
+        return valor < 1 << 7 ? 1 : valor < 1 << 14 ? 2 : valor < 1 << 21 ? 3 : valor < 1 << 28 ? 4 : 5;
+    }
+}
@@ -0,0 +1,133 @@
+package src.Comunicacao;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import src.Metricas.HistogramaLatencia;
+import src.Metricas.Metricas;
+
+/**
+ * Decodificação incremental de quadros do {@link ProtocoloBinario} para servidores
+ * não bloqueantes: os bytes chegam em pedaços de qualquer tamanho e cada chamada a
+ * {@link #consumir} avança o quadro corrente sem esperar pelo resto.
+ *
+ * Os bytes de entrada são copiados para o cabeçalho, o prefixo e a carga do quadro,
+ * então o buffer de leitura pode ser reaproveitado logo após a chamada.
+ *
+ * Com uma {@link AdmissaoQuadros}, ela é consultada a cada cabeçalho; um corpo
+ * recusado é pulado conforme chega, sem ser alocado, e vira um {@link QuadroRecusado}.
+ *
+ * Quadros mal formados viram IOException; depois de uma, o decodificador fica
+ * num estado indefinido e a conexão deve ser fechada.
+ */
+public class DecodificadorQuadros {
+
+    private static final HistogramaLatencia DESSERIALIZACAO = Metricas.estagio(Metricas.DESSERIALIZACAO);
+
+    private final AdmissaoQuadros admissao;
+    private final ByteBuffer cabecalho = ByteBuffer.allocate(ProtocoloBinario.TAMANHO_CABECALHO);
+    private byte tipo;
+    private long id;
+    private ByteBuffer prefixo;
+    private byte[] carga;
+    private int cargaLida;
+    private int comprimento;
+    private boolean prefixoCompleto;
+    private boolean descartando;
+    private long cabecalhoEm;
+
+    public DecodificadorQuadros() {
+        this(null);
+    }
+
+    public DecodificadorQuadros(AdmissaoQuadros admissao) {
+        this.admissao = admissao;
+    }
+
+    /**
+     * Consome bytes de {@code entrada} até completar um quadro.
+     *
+     * @return o comunicado completo, ou null se {@code entrada} acabou antes do fim do quadro
+     */
+    public Comunicado consumir(ByteBuffer entrada) throws IOException {
+        if (prefixo == null && !descartando) {
+            copiar(entrada, cabecalho);
+            if (cabecalho.hasRemaining()) {
+                return null;
+            }
+            cabecalho.flip();
+            tipo = cabecalho.get();
+            id = cabecalho.getLong();
+            comprimento = cabecalho.getInt();
+            // Antes de alocar: o comprimento vem do cliente
+            ProtocoloBinario.validarCabecalho(tipo, comprimento);
+            cargaLida = 0;
+            if (admissao != null && !admissao.admitir(tipo, id, comprimento)) {
+                descartando = true;
+            } else {
+                int tamanhoPrefixo = ProtocoloBinario.tamanhoPrefixo(tipo, comprimento);
+                prefixo = ByteBuffer.allocate(tamanhoPrefixo);
+                prefixoCompleto = false;
+                cabecalhoEm = System.nanoTime();
+            }
+        }
+
+        if (descartando) {
+            int n = Math.min(entrada.remaining(), comprimento - cargaLida);
+            entrada.position(entrada.position() + n);
+            cargaLida += n;
+            if (cargaLida < comprimento) {
+                return null;
+            }
+            descartando = false;
+            cabecalho.clear();
+            return new QuadroRecusado(id);
+        }
+
+        copiar(entrada, prefixo);
+        if (prefixo.hasRemaining()) {
+            return null;
+        }
+        if (!prefixoCompleto) {
+            int completo = ProtocoloBinario.tamanhoPrefixo(tipo, comprimento, prefixo.duplicate().flip());
+            prefixoCompleto = true;
+            if (completo > prefixo.capacity()) {
+                // Prefixo variável (ex.: predicados de uma consulta): cresce e continua lendo
+                ByteBuffer maior = ByteBuffer.allocate(completo);
+                maior.put(prefixo.flip());
+                prefixo = maior;
+            }
+        }
+        if (carga == null) {
+            copiar(entrada, prefixo);
+            if (prefixo.hasRemaining()) {
+                return null;
+            }
+            // Só agora o tamanho do prefixo é definitivo: a carga é alocada uma vez
+            carga = new byte[comprimento - prefixo.capacity()];
+        }
+
+        int n = Math.min(entrada.remaining(), carga.length - cargaLida);
+        entrada.get(carga, cargaLida, n);
+        cargaLida += n;
+        if (cargaLida < carga.length) {
+            return null;
+        }
+
+        prefixo.flip();
+        Comunicado comunicado = ProtocoloBinario.decodificar(tipo, id, prefixo, carga);
+        DESSERIALIZACAO.registrar(System.nanoTime() - cabecalhoEm);
+        cabecalho.clear();
+        prefixo = null;
+        carga = null;
+        return comunicado;
+    }
+
+    private static void copiar(ByteBuffer origem, ByteBuffer destino) {
+        int n = Math.min(origem.remaining(), destino.remaining());
+        if (n > 0) {
+            ByteBuffer parte = origem.slice(origem.position(), n);
+            destino.put(parte);
+            origem.position(origem.position() + n);
+        }
+    }
+}
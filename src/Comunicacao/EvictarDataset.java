@@ -0,0 +1,23 @@
+package src.Comunicacao;
+
+/**
+ * Libera um dataset residente no receptor. A {@link Resposta} tem contagem 1
+ * se o dataset existia e 0 se ele já não estava em memória.
+ */
+public class EvictarDataset extends Comunicado implements Identificado {
+    private final long id;
+    private final long datasetId;
+
+    public EvictarDataset(long id, long datasetId) {
+        this.id = id;
+        this.datasetId = datasetId;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public long getDatasetId() {
+        return datasetId;
+    }
+}
@@ -0,0 +1,46 @@
+package src.Comunicacao;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+
+/**
+ * Serialização Java de fatias de bytes (ByteBuffer) usada pelos comunicados que
+ * carregam dados. Só os bytes da fatia vão para o stream, sem o vetor de origem.
+ */
+final class Fatias {
+
+    private Fatias() {
+    }
+
+    static void escrever(ObjectOutputStream out, ByteBuffer dados) throws IOException {
+        out.writeInt(dados.remaining());
+        if (dados.hasArray()) {
+            out.write(dados.array(), dados.arrayOffset() + dados.position(), dados.remaining());
+            return;
+        }
+        byte[] bloco = new byte[Math.min(dados.remaining(), ProtocoloBinario.TAMANHO_BUFFER)];
+        ByteBuffer leitura = dados.duplicate();
+        while (leitura.hasRemaining()) {
+            int n = Math.min(bloco.length, leitura.remaining());
+            leitura.get(bloco, 0, n);
+            out.write(bloco, 0, n);
+        }
+    }
+
+    static ByteBuffer ler(ObjectInputStream in) throws IOException {
+        byte[] numeros = new byte[in.readInt()];
+        in.readFully(numeros);
+        return ByteBuffer.wrap(numeros);
+    }
+
+    // Devolve o vetor de apoio quando a fatia o cobre inteiro; senão, uma cópia
+    static byte[] comoVetor(ByteBuffer dados) {
+        if (dados.hasArray() && dados.arrayOffset() == 0 && dados.position() == 0
+                && dados.remaining() == dados.array().length) {
+            return dados.array();
+        }
+        byte[] copia = new byte[dados.remaining()];
+        dados.duplicate().get(copia);
+        return copia;
+    }
+}
@@ -0,0 +1,10 @@
+package src.Comunicacao;
+
+/**
+ * Comunicado que carrega o id do pedido a que pertence. É por ele que o
+ * Distribuidor casa cada resposta com o pedido pendente na conexão.
+ */
+public interface Identificado {
+
+    long getId();
+}
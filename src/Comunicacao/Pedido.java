@@ -1,16 +1,71 @@
 package src.Comunicacao;
 
-public class Pedido extends Comunicado {
-    private final byte[] numeros;
-    private final byte procurado;
+import java.io.*;
+import java.nio.ByteBuffer;
+import src.Contagem.Kernels;
+
+public class Pedido extends Comunicado implements Identificado {
+    // Forma serializada da versão original (numeros, procurado) mais o id, para a
+    // serialização Java continuar falando com pares antigos; deles o id chega como 0
+    private static final long serialVersionUID = -7538664313468145987L;
+    private static final ObjectStreamField[] serialPersistentFields = {
+            new ObjectStreamField("numeros", byte[].class),
+            new ObjectStreamField("procurado", byte.class),
+            new ObjectStreamField("id", long.class)
+    };
+
+    // Não finais só para o readObject
+    private long id;
+    private byte procurado;
+    // Fatia [posição, limite) a ser contada; pode ser parte de um vetor maior,
+    // um ByteBuffer direto ou uma região de arquivo mapeado. Vai como o campo
+    // numeros na serialização Java.
+    private transient ByteBuffer dados;
 
     public Pedido(byte[] numeros, byte procurado) {
-        this.numeros = numeros;
+        this(0, numeros, procurado);
+    }
+
+    public Pedido(long id, byte[] numeros, byte procurado) {
+        this(id, numeros, 0, numeros.length, procurado);
+    }
+
+    /** Pedido sobre a fatia [inicio, fim) de {@code numeros}, sem copiá-la. */
+    public Pedido(long id, byte[] numeros, int inicio, int fim, byte procurado) {
+        this(id, ByteBuffer.wrap(numeros, inicio, fim - inicio), procurado);
+    }
+
+    /** Pedido sobre os bytes restantes de {@code dados} (heap, direto ou mapeado), sem copiá-los. */
+    public Pedido(long id, ByteBuffer dados, byte procurado) {
+        this.id = id;
+        this.dados = dados.slice();
         this.procurado = procurado;
     }
 
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * Retorna os números do pedido. Quando o pedido cobre um vetor inteiro o
+     * próprio vetor é devolvido; para fatias e buffers fora do heap é feita uma cópia.
+     */
     public byte[] getNumeros() {
-        return numeros;
+        return Fatias.comoVetor(dados);
+    }
+
+    /** Visão somente leitura da fatia, com posição 0 e limite igual ao tamanho. */
+    public ByteBuffer getDados() {
+        return dados.asReadOnlyBuffer();
+    }
+
+    // Visão mutável da fatia para escrita direta no canal (ver ProtocoloBinario)
+    ByteBuffer fatia() {
+        return dados.duplicate();
+    }
+
+    public int getTamanho() {
+        return dados.remaining();
     }
 
     public byte getProcurado() {
@@ -18,12 +73,26 @@ public class Pedido extends Comunicado {
     }
 
     public int contar() {
-        int cont = 0;
-        for (int n : numeros) {
-            if (n == procurado) cont++;
-        }
-        return cont;
+        return Kernels.padrao().contar(dados, 0, dados.limit(), procurado);
     }
-}
 
+    // Fatias parciais ou fora do heap são copiadas para o vetor; o protocolo binário não copia
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField campos = out.putFields();
+        campos.put("numeros", getNumeros());
+        campos.put("procurado", procurado);
+        campos.put("id", id);
+        out.writeFields();
+    }
 
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField campos = in.readFields();
+        byte[] numeros = (byte[]) campos.get("numeros", null);
+        if (numeros == null) {
+            throw new InvalidObjectException("Pedido sem números");
+        }
+        dados = ByteBuffer.wrap(numeros);
+        procurado = campos.get("procurado", (byte) 0);
+        id = campos.get("id", 0L);
+    }
+}
@@ -0,0 +1,18 @@
+package src.Comunicacao;
+
+/**
+ * Pergunta ao receptor quanto ele aguenta; a resposta é uma {@link Capacidade}.
+ * O Distribuidor envia ao conectar, para dar a cada receptor uma fatia
+ * proporcional desde a primeira consulta.
+ */
+public class PedidoCapacidade extends Comunicado implements Identificado {
+    private final long id;
+
+    public PedidoCapacidade(long id) {
+        this.id = id;
+    }
+
+    public long getId() {
+        return id;
+    }
+}
@@ -0,0 +1,69 @@
+package src.Comunicacao;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import src.Contagem.Predicado;
+
+/**
+ * Consulta com vários predicados (valores, conjuntos, intervalos ou máscaras)
+ * sobre uma fatia. O receptor avalia todos numa única varredura e devolve uma
+ * {@link RespostaConsulta} com uma contagem por predicado, na mesma ordem.
+ */
+public class PedidoConsulta extends Comunicado implements Identificado {
+
+    /** Predicados por consulta; o quadro binário guarda a quantidade em 2 bytes. */
+    public static final int MAX_PREDICADOS = 0xFFFF;
+
+    private final long id;
+    private final Predicado[] predicados;
+    // Serializada à mão em writeObject, como em Pedido
+    private transient ByteBuffer dados;
+
+    /** Consulta sobre a fatia [inicio, fim) de {@code numeros}, sem copiá-la. */
+    public PedidoConsulta(long id, byte[] numeros, int inicio, int fim, Predicado... predicados) {
+        this(id, ByteBuffer.wrap(numeros, inicio, fim - inicio), predicados);
+    }
+
+    public PedidoConsulta(long id, ByteBuffer dados, Predicado... predicados) {
+        if (predicados.length == 0 || predicados.length > MAX_PREDICADOS) {
+            throw new IllegalArgumentException("Consulta deve ter de 1 a " + MAX_PREDICADOS + " predicados");
+        }
+        this.id = id;
+        this.predicados = predicados.clone();
+        this.dados = dados.slice();
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public Predicado[] getPredicados() {
+        return predicados.clone();
+    }
+
+    public byte[] getNumeros() {
+        return Fatias.comoVetor(dados);
+    }
+
+    public int getTamanho() {
+        return dados.remaining();
+    }
+
+    ByteBuffer fatia() {
+        return dados.duplicate();
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        Fatias.escrever(out, dados);
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        // A desserialização não passa pelo construtor; sem isto a contagem não caberia no quadro binário
+        if (predicados == null || predicados.length == 0 || predicados.length > MAX_PREDICADOS) {
+            throw new InvalidObjectException("Consulta deve ter de 1 a " + MAX_PREDICADOS + " predicados");
+        }
+        dados = Fatias.ler(in);
+    }
+}
@@ -0,0 +1,51 @@
+package src.Comunicacao;
+
+/**
+ * Conta {@code procurado} num dataset já residente no receptor (ver
+ * {@link CarregarDataset}). A resposta é uma {@link Resposta}, ou uma
+ * {@link RespostaErro} se o dataset não estiver mais em memória.
+ *
+ * Opcionalmente só nas posições [inicio, fim) da parte guardada neste
+ * receptor; {@link #ATE_O_FIM} vai até o fim dela.
+ */
+public class PedidoDataset extends Comunicado implements Identificado {
+    private final long id;
+    private final long datasetId;
+    private final byte procurado;
+    private final long inicio;
+    private final long fim;
+
+    public static final long ATE_O_FIM = Long.MAX_VALUE;
+
+    public PedidoDataset(long id, long datasetId, byte procurado) {
+        this(id, datasetId, procurado, 0, ATE_O_FIM);
+    }
+
+    public PedidoDataset(long id, long datasetId, byte procurado, long inicio, long fim) {
+        this.id = id;
+        this.datasetId = datasetId;
+        this.procurado = procurado;
+        this.inicio = inicio;
+        this.fim = fim;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public long getDatasetId() {
+        return datasetId;
+    }
+
+    public byte getProcurado() {
+        return procurado;
+    }
+
+    public long getInicio() {
+        return inicio;
+    }
+
+    public long getFim() {
+        return fim;
+    }
+}
@@ -0,0 +1,31 @@
+package src.Comunicacao;
+
+/**
+ * Abre um pedido em fluxo: os números chegam depois em uma sequência de
+ * {@link BlocoFluxo}s com o mesmo id, e o receptor conta cada bloco assim que
+ * ele chega. Uma única {@link Resposta} é enviada após o último bloco, isto é,
+ * quando {@code tamanhoTotal} bytes tiverem sido recebidos.
+ */
+public class PedidoFluxo extends Comunicado implements Identificado {
+    private final long id;
+    private final byte procurado;
+    private final long tamanhoTotal;
+
+    public PedidoFluxo(long id, byte procurado, long tamanhoTotal) {
+        this.id = id;
+        this.procurado = procurado;
+        this.tamanhoTotal = tamanhoTotal;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public byte getProcurado() {
+        return procurado;
+    }
+
+    public long getTamanhoTotal() {
+        return tamanhoTotal;
+    }
+}
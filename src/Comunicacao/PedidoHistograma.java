@@ -0,0 +1,50 @@
+package src.Comunicacao;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+
+/**
+ * Pede o histograma completo (256 valores) de uma fatia, respondido com uma
+ * {@link RespostaHistograma}. Uma varredura responde a contagem de qualquer valor.
+ */
+public class PedidoHistograma extends Comunicado implements Identificado {
+    private final long id;
+    // Serializada à mão em writeObject, como em Pedido
+    private transient ByteBuffer dados;
+
+    /** Pedido sobre a fatia [inicio, fim) de {@code numeros}, sem copiá-la. */
+    public PedidoHistograma(long id, byte[] numeros, int inicio, int fim) {
+        this(id, ByteBuffer.wrap(numeros, inicio, fim - inicio));
+    }
+
+    public PedidoHistograma(long id, ByteBuffer dados) {
+        this.id = id;
+        this.dados = dados.slice();
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public byte[] getNumeros() {
+        return Fatias.comoVetor(dados);
+    }
+
+    public int getTamanho() {
+        return dados.remaining();
+    }
+
+    ByteBuffer fatia() {
+        return dados.duplicate();
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        Fatias.escrever(out, dados);
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        dados = Fatias.ler(in);
+    }
+}
@@ -0,0 +1,18 @@
+package src.Comunicacao;
+
+/**
+ * Formatos de serialização suportados entre Distribuidor e Receptor.
+ * O formato é negociado no início de cada conexão (ver {@link Canais}).
+ */
+public enum Protocolo {
+    /** Enquadramento binário compacto (ver {@link ProtocoloBinario}). */
+    BINARIO,
+    /** Serialização Java padrão (ObjectOutputStream/ObjectInputStream), mantida como fallback. */
+    OBJETOS;
+
+    // Permite forçar o protocolo via -Dprotocolo=objetos|binario
+    public static Protocolo padrao() {
+        String valor = System.getProperty("protocolo", "binario");
+        return valor.equalsIgnoreCase("objetos") ? OBJETOS : BINARIO;
+    }
+}
@@ -0,0 +1,504 @@
+package src.Comunicacao;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.util.Arrays;
+import src.Contagem.Histograma;
+import src.Contagem.Predicado;
+import src.Metricas.HistogramaLatencia;
+import src.Metricas.Metricas;
+
+/**
+ * Enquadramento binário dos comunicados, usado no lugar da serialização Java.
+ *
+ * Cada quadro tem o formato:
+ * <pre>
+ *   tipo (1 byte) | id (8 bytes) | comprimento do corpo (4 bytes) | corpo
+ * </pre>
+ * Corpo de cada tipo:
+ * <pre>
+ *   PEDIDO       procurado (1 byte) | numeros (comprimento - 1 bytes)
+ *   RESPOSTA     contagem (4 bytes)
+ *   RESPOSTA_LONGA      contagem (8 bytes), para contagens que não cabem em 4
+ *   ENCERRAMENTO vazio
+ *   PEDIDO_FLUXO procurado (1 byte) | tamanho total (8 bytes)
+ *   BLOCO        numeros (comprimento bytes)
+ *   PEDIDO_HISTOGRAMA   numeros (comprimento bytes)
+ *   RESPOSTA_HISTOGRAMA histograma compacto (ver {@link RespostaHistograma})
+ *   PEDIDO_CONSULTA     quantidade de predicados (2 bytes) | máscaras (32 bytes cada) | numeros
+ *   RESPOSTA_CONSULTA   contagens (4 bytes cada)
+ *   CARREGAR_DATASET    dataset (8 bytes) | anexar (1 byte) | numeros
+ *   PEDIDO_DATASET      dataset (8 bytes) | procurado (1 byte) | inicio (8 bytes) | fim (8 bytes)
+ *   EVICTAR_DATASET     dataset (8 bytes)
+ *   RESPOSTA_ERRO       mensagem (writeUTF)
+ *   PEDIDO_CAPACIDADE   vazio
+ *   CAPACIDADE          núcleos (4 bytes) | vazão em bytes/s (8 bytes) | fila (4 bytes) | recursos (4 bytes)
+ *   BLOCO_COMPRIMIDO    codificação (1 byte) | números no bloco (4 bytes) | bloco codificado ({@link Compressao})
+ *   RESPOSTA_OCUPADO    espera sugerida em ms (4 bytes)
+ * </pre>
+ * Os recursos da CAPACIDADE ficam de fora nas respostas de receptores antigos e
+ * valem 0; o cliente só envia BLOCO_COMPRIMIDO a quem anuncia
+ * {@link Capacidade#COMPRESSAO}.
+ * Todos os inteiros são big-endian (ordem do DataOutputStream).
+ */
+public final class ProtocoloBinario {
+
+    private static final HistogramaLatencia DESSERIALIZACAO = Metricas.estagio(Metricas.DESSERIALIZACAO);
+
+    /** Enviado pelo cliente ao abrir a conexão para pedir o protocolo binário ("DRB1"). */
+    public static final int MAGICO = 0x44524231;
+
+    public static final int TAMANHO_CABECALHO = 1 + 8 + 4;
+    public static final int TAMANHO_BUFFER = 64 * 1024;
+
+    // Lado do receptor: com milhares de conexões ociosas, 64 KB por direção pesaria no heap.
+    // Leituras e escritas grandes não passam pelo buffer, então 8 KB não custa vazão
+    public static final int TAMANHO_BUFFER_SERVIDOR = 8 * 1024;
+
+    // O JDK copia buffers do heap para um buffer direto temporário do tamanho do
+    // que resta a escrever; janelas limitam essa cópia em vez de duplicar a fatia inteira
+    private static final int JANELA_HEAP = 256 * 1024;
+
+    public static final byte TIPO_PEDIDO = 1;
+    public static final byte TIPO_RESPOSTA = 2;
+    public static final byte TIPO_ENCERRAMENTO = 3;
+    public static final byte TIPO_PEDIDO_FLUXO = 4;
+    public static final byte TIPO_BLOCO = 5;
+    public static final byte TIPO_PEDIDO_HISTOGRAMA = 6;
+    public static final byte TIPO_RESPOSTA_HISTOGRAMA = 7;
+    public static final byte TIPO_PEDIDO_CONSULTA = 8;
+    public static final byte TIPO_RESPOSTA_CONSULTA = 9;
+    public static final byte TIPO_CARREGAR_DATASET = 10;
+    public static final byte TIPO_PEDIDO_DATASET = 11;
+    public static final byte TIPO_EVICTAR_DATASET = 12;
+    public static final byte TIPO_RESPOSTA_ERRO = 13;
+    public static final byte TIPO_PEDIDO_CAPACIDADE = 14;
+    public static final byte TIPO_CAPACIDADE = 15;
+    public static final byte TIPO_BLOCO_COMPRIMIDO = 16;
+    public static final byte TIPO_RESPOSTA_OCUPADO = 17;
+    public static final byte TIPO_RESPOSTA_LONGA = 18;
+
+    private ProtocoloBinario() {
+    }
+
+    public static void escrever(DataOutputStream out, Comunicado comunicado) throws IOException {
+        if (comunicado instanceof Pedido) {
+            Pedido pedido = (Pedido) comunicado;
+            ByteBuffer dados = pedido.fatia();
+            escreverCabecalho(out, TIPO_PEDIDO, pedido.getId(), 1 + dados.remaining());
+            out.writeByte(pedido.getProcurado());
+            escreverBytes(out, dados);
+        } else if (comunicado instanceof Resposta) {
+            Resposta resposta = (Resposta) comunicado;
+            long contagem = resposta.getContagem();
+            if (contagem == (int) contagem) {
+                escreverCabecalho(out, TIPO_RESPOSTA, resposta.getId(), 4);
+                out.writeInt((int) contagem);
+            } else {
+                escreverCabecalho(out, TIPO_RESPOSTA_LONGA, resposta.getId(), 8);
+                out.writeLong(contagem);
+            }
+        } else if (comunicado instanceof ComunicadoEncerramento) {
+            escreverCabecalho(out, TIPO_ENCERRAMENTO, 0, 0);
+        } else if (comunicado instanceof PedidoFluxo) {
+            PedidoFluxo pedido = (PedidoFluxo) comunicado;
+            escreverCabecalho(out, TIPO_PEDIDO_FLUXO, pedido.getId(), 1 + 8);
+            out.writeByte(pedido.getProcurado());
+            out.writeLong(pedido.getTamanhoTotal());
+        } else if (comunicado instanceof BlocoFluxo) {
+            BlocoFluxo bloco = (BlocoFluxo) comunicado;
+            ByteBuffer dados = bloco.fatia();
+            escreverCabecalho(out, TIPO_BLOCO, bloco.getId(), dados.remaining());
+            escreverBytes(out, dados);
+        } else if (comunicado instanceof PedidoHistograma) {
+            PedidoHistograma pedido = (PedidoHistograma) comunicado;
+            ByteBuffer dados = pedido.fatia();
+            escreverCabecalho(out, TIPO_PEDIDO_HISTOGRAMA, pedido.getId(), dados.remaining());
+            escreverBytes(out, dados);
+        } else if (comunicado instanceof RespostaHistograma) {
+            RespostaHistograma resposta = (RespostaHistograma) comunicado;
+            byte[] corpo = resposta.codificar();
+            escreverCabecalho(out, TIPO_RESPOSTA_HISTOGRAMA, resposta.getId(), corpo.length);
+            out.write(corpo);
+        } else if (comunicado instanceof PedidoConsulta) {
+            PedidoConsulta pedido = (PedidoConsulta) comunicado;
+            ByteBuffer dados = pedido.fatia();
+            byte[] predicados = codificarPredicados(pedido.getPredicados());
+            escreverCabecalho(out, TIPO_PEDIDO_CONSULTA, pedido.getId(), predicados.length + dados.remaining());
+            out.write(predicados);
+            escreverBytes(out, dados);
+        } else if (comunicado instanceof RespostaConsulta) {
+            RespostaConsulta resposta = (RespostaConsulta) comunicado;
+            int[] contagens = resposta.getContagens();
+            escreverCabecalho(out, TIPO_RESPOSTA_CONSULTA, resposta.getId(), 4 * contagens.length);
+            for (int c : contagens) {
+                out.writeInt(c);
+            }
+        } else if (comunicado instanceof CarregarDataset) {
+            CarregarDataset carga = (CarregarDataset) comunicado;
+            ByteBuffer dados = carga.fatia();
+            escreverCabecalho(out, TIPO_CARREGAR_DATASET, carga.getId(), 8 + 1 + dados.remaining());
+            out.writeLong(carga.getDatasetId());
+            out.writeBoolean(carga.isAnexar());
+            escreverBytes(out, dados);
+        } else if (comunicado instanceof PedidoDataset) {
+            PedidoDataset pedido = (PedidoDataset) comunicado;
+            escreverCabecalho(out, TIPO_PEDIDO_DATASET, pedido.getId(), 8 + 1 + 8 + 8);
+            out.writeLong(pedido.getDatasetId());
+            out.writeByte(pedido.getProcurado());
+            out.writeLong(pedido.getInicio());
+            out.writeLong(pedido.getFim());
+        } else if (comunicado instanceof EvictarDataset) {
+            EvictarDataset pedido = (EvictarDataset) comunicado;
+            escreverCabecalho(out, TIPO_EVICTAR_DATASET, pedido.getId(), 8);
+            out.writeLong(pedido.getDatasetId());
+        } else if (comunicado instanceof RespostaErro) {
+            RespostaErro resposta = (RespostaErro) comunicado;
+            ByteArrayOutputStream corpo = new ByteArrayOutputStream();
+            new DataOutputStream(corpo).writeUTF(resposta.getMensagem());
+            escreverCabecalho(out, TIPO_RESPOSTA_ERRO, resposta.getId(), corpo.size());
+            corpo.writeTo(out);
+        } else if (comunicado instanceof PedidoCapacidade) {
+            escreverCabecalho(out, TIPO_PEDIDO_CAPACIDADE, ((PedidoCapacidade) comunicado).getId(), 0);
+        } else if (comunicado instanceof Capacidade) {
+            Capacidade capacidade = (Capacidade) comunicado;
+            escreverCabecalho(out, TIPO_CAPACIDADE, capacidade.getId(), 4 + 8 + 4 + 4);
+            out.writeInt(capacidade.getNucleos());
+            out.writeLong(capacidade.getVazao());
+            out.writeInt(capacidade.getFila());
+            out.writeInt(capacidade.getRecursos());
+        } else if (comunicado instanceof BlocoComprimido) {
+            BlocoComprimido bloco = (BlocoComprimido) comunicado;
+            byte[] dados = bloco.getDados();
+            escreverCabecalho(out, TIPO_BLOCO_COMPRIMIDO, bloco.getId(), 1 + 4 + dados.length);
+            out.writeByte(bloco.getCodificacao());
+            out.writeInt(bloco.getTamanho());
+            out.write(dados);
+        } else if (comunicado instanceof RespostaOcupado) {
+            RespostaOcupado resposta = (RespostaOcupado) comunicado;
+            escreverCabecalho(out, TIPO_RESPOSTA_OCUPADO, resposta.getId(), 4);
+            out.writeInt(resposta.getEsperaMs());
+        } else {
+            throw new IOException("Tipo de comunicado sem codificação binária: " + comunicado.getClass().getName());
+        }
+    }
+
+    /**
+     * Escreve um comunicado com fatia de dados (ver {@link #temFatia}) direto no
+     * canal com escritas agrupadas (cabeçalho + fatia), sem copiar a fatia para
+     * um byte[] intermediário.
+     * Fatias diretas ou mapeadas vão inteiras para o kernel; fatias do heap vão
+     * em janelas de {@link #JANELA_HEAP}.
+     */
+    public static void escreverComFatia(GatheringByteChannel canal, Comunicado comunicado) throws IOException {
+        ByteBuffer cabecalho;
+        ByteBuffer dados;
+        if (comunicado instanceof Pedido) {
+            Pedido pedido = (Pedido) comunicado;
+            dados = pedido.fatia();
+            cabecalho = ByteBuffer.allocate(TAMANHO_CABECALHO + 1);
+            cabecalho.put(TIPO_PEDIDO).putLong(pedido.getId()).putInt(1 + dados.remaining())
+                    .put(pedido.getProcurado());
+        } else if (comunicado instanceof BlocoFluxo) {
+            BlocoFluxo bloco = (BlocoFluxo) comunicado;
+            dados = bloco.fatia();
+            cabecalho = ByteBuffer.allocate(TAMANHO_CABECALHO);
+            cabecalho.put(TIPO_BLOCO).putLong(bloco.getId()).putInt(dados.remaining());
+        } else if (comunicado instanceof PedidoHistograma) {
+            PedidoHistograma pedido = (PedidoHistograma) comunicado;
+            dados = pedido.fatia();
+            cabecalho = ByteBuffer.allocate(TAMANHO_CABECALHO);
+            cabecalho.put(TIPO_PEDIDO_HISTOGRAMA).putLong(pedido.getId()).putInt(dados.remaining());
+        } else if (comunicado instanceof PedidoConsulta) {
+            PedidoConsulta pedido = (PedidoConsulta) comunicado;
+            dados = pedido.fatia();
+            byte[] predicados = codificarPredicados(pedido.getPredicados());
+            cabecalho = ByteBuffer.allocate(TAMANHO_CABECALHO + predicados.length);
+            cabecalho.put(TIPO_PEDIDO_CONSULTA).putLong(pedido.getId()).putInt(predicados.length + dados.remaining())
+                    .put(predicados);
+        } else if (comunicado instanceof CarregarDataset) {
+            CarregarDataset carga = (CarregarDataset) comunicado;
+            dados = carga.fatia();
+            cabecalho = ByteBuffer.allocate(TAMANHO_CABECALHO + 8 + 1);
+            cabecalho.put(TIPO_CARREGAR_DATASET).putLong(carga.getId()).putInt(8 + 1 + dados.remaining())
+                    .putLong(carga.getDatasetId()).put((byte) (carga.isAnexar() ? 1 : 0));
+        } else {
+            throw new IOException("Comunicado sem fatia de dados: " + comunicado.getClass().getName());
+        }
+        cabecalho.flip();
+
+        ByteBuffer[] partes = {cabecalho, dados};
+        int fim = dados.limit();
+        do {
+            if (!dados.isDirect()) {
+                dados.limit(Math.min(fim, dados.position() + JANELA_HEAP));
+            }
+            while (cabecalho.hasRemaining() || dados.hasRemaining()) {
+                canal.write(partes);
+            }
+        } while (dados.limit() < fim);
+    }
+
+    /** Comunicados que carregam uma fatia de números e podem ir por {@link #escreverComFatia}. */
+    public static boolean temFatia(Comunicado comunicado) {
+        return comunicado instanceof Pedido || comunicado instanceof BlocoFluxo
+                || comunicado instanceof PedidoHistograma || comunicado instanceof PedidoConsulta
+                || comunicado instanceof CarregarDataset;
+    }
+
+    public static Comunicado ler(DataInputStream in) throws IOException {
+        return ler(in, null);
+    }
+
+    /**
+     * Lê um quadro consultando {@code admissao} (se não for null) antes do corpo:
+     * um corpo recusado é pulado sem ser alocado e vira um {@link QuadroRecusado}.
+     */
+    public static Comunicado ler(DataInputStream in, AdmissaoQuadros admissao) throws IOException {
+        byte tipo = in.readByte();
+        long id = in.readLong();
+        int comprimento = in.readInt();
+        validarCabecalho(tipo, comprimento);
+        if (admissao != null && !admissao.admitir(tipo, id, comprimento)) {
+            in.skipNBytes(comprimento);
+            return new QuadroRecusado(id);
+        }
+        // A espera pelo próximo quadro fica de fora; a leitura do corpo entra
+        long inicio = System.nanoTime();
+
+        byte[] prefixo = new byte[tamanhoPrefixo(tipo, comprimento)];
+        in.readFully(prefixo);
+        int completo = tamanhoPrefixo(tipo, comprimento, ByteBuffer.wrap(prefixo));
+        if (completo > prefixo.length) {
+            int lido = prefixo.length;
+            prefixo = Arrays.copyOf(prefixo, completo);
+            in.readFully(prefixo, lido, completo - lido);
+        }
+        byte[] carga = new byte[comprimento - prefixo.length];
+        in.readFully(carga);
+        Comunicado comunicado = decodificar(tipo, id, ByteBuffer.wrap(prefixo), carga);
+        DESSERIALIZACAO.registrar(System.nanoTime() - inicio);
+        return comunicado;
+    }
+
+    /**
+     * Confere o comprimento do corpo declarado no cabeçalho contra os limites do
+     * tipo, antes de qualquer alocação: tipo desconhecido, corpo menor que os
+     * campos fixos ou maior do que o tipo comporta viram IOException.
+     */
+    public static void validarCabecalho(byte tipo, int comprimento) throws IOException {
+        int minimo;
+        int maximo = Integer.MAX_VALUE;
+        switch (tipo) {
+            case TIPO_PEDIDO:
+                minimo = 1;
+                break;
+            case TIPO_BLOCO:
+            case TIPO_PEDIDO_HISTOGRAMA:
+                minimo = 0;
+                break;
+            case TIPO_PEDIDO_CONSULTA:
+                minimo = 2;
+                break;
+            case TIPO_CARREGAR_DATASET:
+                minimo = 8 + 1;
+                break;
+            case TIPO_BLOCO_COMPRIMIDO:
+                minimo = 1 + 4;
+                break;
+            case TIPO_ENCERRAMENTO:
+            case TIPO_PEDIDO_CAPACIDADE:
+                minimo = maximo = 0;
+                break;
+            case TIPO_RESPOSTA:
+            case TIPO_RESPOSTA_OCUPADO:
+                minimo = maximo = 4;
+                break;
+            case TIPO_PEDIDO_FLUXO:
+                minimo = maximo = 1 + 8;
+                break;
+            case TIPO_PEDIDO_DATASET:
+                minimo = maximo = 8 + 1 + 8 + 8;
+                break;
+            case TIPO_EVICTAR_DATASET:
+            case TIPO_RESPOSTA_LONGA:
+                minimo = maximo = 8;
+                break;
+            case TIPO_RESPOSTA_HISTOGRAMA:
+                // Mapa de presença mais um varint de até 5 bytes por valor
+                minimo = Histograma.VALORES / 8;
+                maximo = minimo + 5 * Histograma.VALORES;
+                break;
+            case TIPO_RESPOSTA_CONSULTA:
+                minimo = 0;
+                maximo = 4 * 0xFFFF;
+                break;
+            case TIPO_RESPOSTA_ERRO:
+                // writeUTF: 2 bytes de tamanho e até 65535 de texto
+                minimo = 2;
+                maximo = 2 + 0xFFFF;
+                break;
+            case TIPO_CAPACIDADE:
+                // Receptores antigos não mandam os recursos
+                minimo = 4 + 8 + 4;
+                maximo = minimo + 4;
+                break;
+            default:
+                throw new IOException("Tipo de quadro desconhecido: " + tipo);
+        }
+        if (comprimento < minimo || comprimento > maximo) {
+            throw new IOException("Comprimento " + comprimento + " inválido para quadro do tipo " + tipo);
+        }
+    }
+
+    /**
+     * Quantos bytes do início do corpo são campos fixos. O restante (a carga) é
+     * lido direto para o byte[] que o comunicado vai guardar, sem cópia extra.
+     */
+    public static int tamanhoPrefixo(byte tipo, int comprimento) {
+        switch (tipo) {
+            case TIPO_PEDIDO:
+                return 1;
+            case TIPO_BLOCO:
+            case TIPO_PEDIDO_HISTOGRAMA:
+                return 0;
+            case TIPO_PEDIDO_CONSULTA:
+                return 2;
+            case TIPO_CARREGAR_DATASET:
+                return 8 + 1;
+            case TIPO_BLOCO_COMPRIMIDO:
+                return 1 + 4;
+            default:
+                return comprimento;
+        }
+    }
+
+    /**
+     * Tamanho final do prefixo, para tipos em que ele depende dos primeiros bytes
+     * ({@code lido}, com pelo menos {@link #tamanhoPrefixo(byte, int)} bytes).
+     * Hoje só PEDIDO_CONSULTA, cujo prefixo cresce com a quantidade de predicados.
+     */
+    public static int tamanhoPrefixo(byte tipo, int comprimento, ByteBuffer lido) throws IOException {
+        if (tipo != TIPO_PEDIDO_CONSULTA) {
+            return tamanhoPrefixo(tipo, comprimento);
+        }
+        int tamanho = 2 + (lido.getShort(lido.position()) & 0xFFFF) * Predicado.TAMANHO_MASCARA;
+        if (tamanho > comprimento) {
+            throw new IOException("Consulta com predicados além do comprimento do quadro");
+        }
+        return tamanho;
+    }
+
+    /**
+     * Monta o comunicado a partir do cabeçalho, do prefixo e da carga de um quadro.
+     * Campos incoerentes com o tipo viram IOException, não exceções de runtime.
+     */
+    public static Comunicado decodificar(byte tipo, long id, ByteBuffer prefixo, byte[] carga) throws IOException {
+        try {
+            return montar(tipo, id, prefixo, carga);
+        } catch (RuntimeException e) {
+            throw new IOException("Quadro do tipo " + tipo + " mal formado: " + e, e);
+        }
+    }
+
+    private static Comunicado montar(byte tipo, long id, ByteBuffer prefixo, byte[] carga) throws IOException {
+        switch (tipo) {
+            case TIPO_PEDIDO:
+                return new Pedido(id, carga, prefixo.get());
+            case TIPO_RESPOSTA:
+                return new Resposta(id, prefixo.getInt());
+            case TIPO_RESPOSTA_LONGA:
+                return new Resposta(id, prefixo.getLong());
+            case TIPO_ENCERRAMENTO:
+                return new ComunicadoEncerramento();
+            case TIPO_PEDIDO_FLUXO:
+                return new PedidoFluxo(id, prefixo.get(), prefixo.getLong());
+            case TIPO_BLOCO:
+                return new BlocoFluxo(id, ByteBuffer.wrap(carga));
+            case TIPO_PEDIDO_HISTOGRAMA:
+                return new PedidoHistograma(id, ByteBuffer.wrap(carga));
+            case TIPO_RESPOSTA_HISTOGRAMA:
+                return new RespostaHistograma(id, RespostaHistograma.decodificar(
+                        new DataInputStream(new ByteArrayInputStream(prefixo.array(), prefixo.position(),
+                                prefixo.remaining()))));
+            case TIPO_PEDIDO_CONSULTA: {
+                Predicado[] predicados = new Predicado[prefixo.getShort() & 0xFFFF];
+                byte[] mascara = new byte[Predicado.TAMANHO_MASCARA];
+                for (int i = 0; i < predicados.length; i++) {
+                    prefixo.get(mascara);
+                    predicados[i] = Predicado.mascara(mascara);
+                }
+                return new PedidoConsulta(id, ByteBuffer.wrap(carga), predicados);
+            }
+            case TIPO_RESPOSTA_CONSULTA: {
+                int[] contagens = new int[prefixo.remaining() / 4];
+                for (int i = 0; i < contagens.length; i++) {
+                    contagens[i] = prefixo.getInt();
+                }
+                return new RespostaConsulta(id, contagens);
+            }
+            case TIPO_CARREGAR_DATASET:
+                return new CarregarDataset(id, prefixo.getLong(), prefixo.get() != 0, ByteBuffer.wrap(carga));
+            case TIPO_PEDIDO_DATASET:
+                return new PedidoDataset(id, prefixo.getLong(), prefixo.get(), prefixo.getLong(), prefixo.getLong());
+            case TIPO_EVICTAR_DATASET:
+                return new EvictarDataset(id, prefixo.getLong());
+            case TIPO_RESPOSTA_ERRO:
+                return new RespostaErro(id, new DataInputStream(new ByteArrayInputStream(prefixo.array(),
+                        prefixo.position(), prefixo.remaining())).readUTF());
+            case TIPO_PEDIDO_CAPACIDADE:
+                return new PedidoCapacidade(id);
+            case TIPO_CAPACIDADE:
+                return new Capacidade(id, prefixo.getInt(), prefixo.getLong(), prefixo.getInt(),
+                        prefixo.remaining() >= 4 ? prefixo.getInt() : 0);
+            case TIPO_BLOCO_COMPRIMIDO: {
+                byte codificacao = prefixo.get();
+                int tamanho = prefixo.getInt();
+                Compressao.validar(codificacao, carga, tamanho);
+                return new BlocoComprimido(id, codificacao, tamanho, carga);
+            }
+            case TIPO_RESPOSTA_OCUPADO:
+                return new RespostaOcupado(id, prefixo.getInt());
+            default:
+                throw new IOException("Tipo de quadro desconhecido: " + tipo);
+        }
+    }
+
+    /** Codifica um comunicado num buffer do heap pronto para escrita (usado pelo receptor NIO). */
+    public static ByteBuffer codificar(Comunicado comunicado) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(64);
+        DataOutputStream out = new DataOutputStream(buffer);
+        escrever(out, comunicado);
+        out.flush();
+        return ByteBuffer.wrap(buffer.toByteArray());
+    }
+
+    private static byte[] codificarPredicados(Predicado[] predicados) {
+        ByteBuffer corpo = ByteBuffer.allocate(2 + predicados.length * Predicado.TAMANHO_MASCARA);
+        corpo.putShort((short) predicados.length);
+        for (Predicado predicado : predicados) {
+            corpo.put(predicado.getMascara());
+        }
+        return corpo.array();
+    }
+
+    private static void escreverBytes(DataOutputStream out, ByteBuffer dados) throws IOException {
+        if (dados.hasArray()) {
+            out.write(dados.array(), dados.arrayOffset() + dados.position(), dados.remaining());
+            return;
+        }
+        byte[] bloco = new byte[Math.min(dados.remaining(), TAMANHO_BUFFER)];
+        while (dados.hasRemaining()) {
+            int n = Math.min(bloco.length, dados.remaining());
+            dados.get(bloco, 0, n);
+            out.write(bloco, 0, n);
+        }
+    }
+
+    private static void escreverCabecalho(DataOutputStream out, byte tipo, long id, int comprimento) throws IOException {
+        out.writeByte(tipo);
+        out.writeLong(id);
+        out.writeInt(comprimento);
+    }
+}
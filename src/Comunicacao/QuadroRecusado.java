@@ -0,0 +1,18 @@
+package src.Comunicacao;
+
+/**
+ * Quadro cujo corpo a {@link AdmissaoQuadros} mandou descartar. Não trafega:
+ * só avisa o servidor que o pedido {@code id} chegou e deve receber uma
+ * {@link RespostaOcupado}.
+ */
+public class QuadroRecusado extends Comunicado implements Identificado {
+    private final long id;
+
+    public QuadroRecusado(long id) {
+        this.id = id;
+    }
+
+    public long getId() {
+        return id;
+    }
+}
@@ -1,16 +1,51 @@
 package src.Comunicacao;
 
-public class Resposta extends Comunicado {
+import java.io.*;
 
-    private int contagem;
+public class Resposta extends Comunicado implements Identificado {
 
-    public Resposta(int contagem) {
+    // O da versão original: o id é campo novo e chega como 0 de pares antigos
+    private static final long serialVersionUID = -6008349365649169335L;
+    // Forma serializada original (contagem como int) mais o id e o total em long
+    private static final ObjectStreamField[] serialPersistentFields = {
+            new ObjectStreamField("contagem", int.class),
+            new ObjectStreamField("id", long.class),
+            new ObjectStreamField("total", long.class)
+    };
+
+    private long id;
+    // Datasets com anexos e agregadores podem passar de Integer.MAX_VALUE ocorrências
+    private long contagem;
+
+    public Resposta(long contagem) {
+        this(0, contagem);
+    }
+
+    public Resposta(long id, long contagem) {
+        this.id = id;
         this.contagem = contagem;
     }
 
-    public int getContagem() {
+    public long getId() {
+        return id;
+    }
+
+    public long getContagem() {
         return contagem;
     }
-}
 
+    // Pares antigos não conhecem datasets nem agregadores, então não recebem contagens acima de int
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField campos = out.putFields();
+        campos.put("contagem", (int) Math.min(contagem, Integer.MAX_VALUE));
+        campos.put("id", id);
+        campos.put("total", contagem);
+        out.writeFields();
+    }
 
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField campos = in.readFields();
+        id = campos.get("id", 0L);
+        contagem = campos.defaulted("total") ? campos.get("contagem", 0) : campos.get("total", 0L);
+    }
+}
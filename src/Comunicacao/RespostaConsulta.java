@@ -0,0 +1,20 @@
+package src.Comunicacao;
+
+/** Uma contagem por predicado de uma {@link PedidoConsulta}, na ordem dos predicados. */
+public class RespostaConsulta extends Comunicado implements Identificado {
+    private final long id;
+    private final int[] contagens;
+
+    public RespostaConsulta(long id, int[] contagens) {
+        this.id = id;
+        this.contagens = contagens;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public int[] getContagens() {
+        return contagens;
+    }
+}
@@ -0,0 +1,20 @@
+package src.Comunicacao;
+
+/** O receptor não pôde atender o pedido {@code id}; {@code mensagem} diz por quê. */
+public class RespostaErro extends Comunicado implements Identificado {
+    private final long id;
+    private final String mensagem;
+
+    public RespostaErro(long id, String mensagem) {
+        this.id = id;
+        this.mensagem = mensagem;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getMensagem() {
+        return mensagem;
+    }
+}
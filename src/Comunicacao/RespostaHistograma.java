@@ -0,0 +1,92 @@
+package src.Comunicacao;
+
+import java.io.*;
+import src.Contagem.Histograma;
+
+/**
+ * Histograma de uma fatia: {@code contagens[valor & 0xFF]} ocorrências de cada valor.
+ *
+ * Codificação compacta, usada tanto no protocolo binário quanto na serialização Java:
+ * <pre>
+ *   mapa de valores presentes (32 bytes, 1 bit por valor) | contagem de cada valor presente (varint)
+ * </pre>
+ * Valores ausentes não ocupam nada e contagens pequenas ocupam 1 ou 2 bytes, em
+ * vez de 4 bytes fixos para cada um dos 256 valores.
+ */
+public class RespostaHistograma extends Comunicado implements Identificado {
+    private final long id;
+    private transient int[] contagens;
+
+    public RespostaHistograma(long id, int[] contagens) {
+        if (contagens.length != Histograma.VALORES) {
+            throw new IllegalArgumentException("Histograma deve ter " + Histograma.VALORES + " posições");
+        }
+        this.id = id;
+        this.contagens = contagens;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public int[] getContagens() {
+        return contagens;
+    }
+
+    byte[] codificar() {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(64);
+        byte[] mapa = new byte[Histograma.VALORES / 8];
+        for (int v = 0; v < Histograma.VALORES; v++) {
+            if (contagens[v] != 0) {
+                mapa[v >>> 3] |= (byte) (1 << (v & 7));
+            }
+        }
+        buffer.write(mapa, 0, mapa.length);
+        for (int v = 0; v < Histograma.VALORES; v++) {
+            if (contagens[v] != 0) {
+                // varint sem sinal: 7 bits por byte, bit alto indica continuação
+                int c = contagens[v];
+                while ((c & ~0x7F) != 0) {
+                    buffer.write((c & 0x7F) | 0x80);
+                    c >>>= 7;
+                }
+                buffer.write(c);
+            }
+        }
+        return buffer.toByteArray();
+    }
+
+    static int[] decodificar(DataInput in) throws IOException {
+        byte[] mapa = new byte[Histograma.VALORES / 8];
+        in.readFully(mapa);
+        int[] contagens = new int[Histograma.VALORES];
+        for (int v = 0; v < Histograma.VALORES; v++) {
+            if ((mapa[v >>> 3] & (1 << (v & 7))) != 0) {
+                int c = 0;
+                for (int deslocamento = 0; ; deslocamento += 7) {
+                    if (deslocamento > 28) {
+                        throw new IOException("Contagem de histograma mal codificada");
+                    }
+                    int b = in.readUnsignedByte();
+                    c |= (b & 0x7F) << deslocamento;
+                    if ((b & 0x80) == 0) break;
+                }
+                contagens[v] = c;
+            }
+        }
+        return contagens;
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        byte[] corpo = codificar();
+        out.writeInt(corpo.length);
+        out.write(corpo);
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        in.readInt();
+        contagens = decodificar(in);
+    }
+}
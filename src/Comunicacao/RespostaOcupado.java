@@ -0,0 +1,25 @@
+package src.Comunicacao;
+
+/**
+ * O receptor recusou o pedido {@code id} sem processá-lo: o orçamento de bytes
+ * ou a fila de pedidos em andamento está cheia. O cliente pode mandar o pedido
+ * a outro receptor ou repeti-lo neste depois de {@code esperaMs}.
+ */
+public class RespostaOcupado extends Comunicado implements Identificado {
+    private final long id;
+    private final int esperaMs;
+
+    public RespostaOcupado(long id, int esperaMs) {
+        this.id = id;
+        this.esperaMs = esperaMs;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    /** Espera sugerida antes de repetir o pedido neste receptor. */
+    public int getEsperaMs() {
+        return esperaMs;
+    }
+}
@@ -0,0 +1,43 @@
+package src.Contagem;
+
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+/**
+ * Geração paralela de vetores sintéticos. O vetor é cortado em blocos de
+ * {@link #TAMANHO_BLOCO} bytes, cada um com seu próprio SplittableRandom tirado
+ * de um gerador raiz; os blocos são preenchidos em paralelo no pool comum.
+ * Como os geradores saem da raiz na ordem dos blocos, a mesma semente dá o
+ * mesmo vetor com qualquer número de threads.
+ */
+public final class GeradorVetor {
+
+    static final int TAMANHO_BLOCO = 1024 * 1024;
+
+    private GeradorVetor() {
+    }
+
+    /** Vetor de {@code tamanho} bytes uniformes em [minimo, maximo]. */
+    public static byte[] gerar(int tamanho, int minimo, int maximo, long semente) {
+        if (minimo > maximo || minimo < Byte.MIN_VALUE || maximo > Byte.MAX_VALUE) {
+            throw new IllegalArgumentException("Intervalo inválido para byte: [" + minimo + ", " + maximo + "]");
+        }
+        byte[] vetor = new byte[tamanho];
+        int blocos = (int) (((long) tamanho + TAMANHO_BLOCO - 1) / TAMANHO_BLOCO);
+        SplittableRandom raiz = new SplittableRandom(semente);
+        SplittableRandom[] geradores = new SplittableRandom[blocos];
+        for (int b = 0; b < blocos; b++) {
+            geradores[b] = raiz.split();
+        }
+        int faixa = maximo - minimo + 1;
+        IntStream.range(0, blocos).parallel().forEach(b -> {
+            SplittableRandom rnd = geradores[b];
+            int inicio = b * TAMANHO_BLOCO;
+            int fim = (int) Math.min(tamanho, (long) inicio + TAMANHO_BLOCO);
+            for (int i = inicio; i < fim; i++) {
+                vetor[i] = (byte) (minimo + rnd.nextInt(faixa));
+            }
+        });
+        return vetor;
+    }
+}
@@ -0,0 +1,91 @@
+package src.Contagem;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Histograma completo dos 256 valores de byte: com ele, a contagem de qualquer
+ * valor (ou intervalo de valores) sai sem varrer o vetor de novo.
+ *
+ * O índice de cada valor na tabela é {@code valor & 0xFF}.
+ */
+public final class Histograma {
+
+    public static final int VALORES = 256;
+
+    private final long[] contagens = new long[VALORES];
+
+    public Histograma() {
+    }
+
+    /** Soma uma tabela parcial (ex.: a de uma {@code RespostaHistograma}) elemento a elemento. */
+    public void somar(int[] tabela) {
+        for (int i = 0; i < VALORES; i++) {
+            contagens[i] += tabela[i];
+        }
+    }
+
+    public void somar(Histograma outro) {
+        for (int i = 0; i < VALORES; i++) {
+            contagens[i] += outro.contagens[i];
+        }
+    }
+
+    public long contar(byte valor) {
+        return contagens[valor & 0xFF];
+    }
+
+    /** Ocorrências de valores em [menor, maior], com sinal (ex.: -100 a 100). */
+    public long contarIntervalo(byte menor, byte maior) {
+        long total = 0;
+        for (int v = menor; v <= maior; v++) {
+            total += contagens[v & 0xFF];
+        }
+        return total;
+    }
+
+    public long getTotal() {
+        long total = 0;
+        for (long c : contagens) {
+            total += c;
+        }
+        return total;
+    }
+
+    public long[] getContagens() {
+        return contagens.clone();
+    }
+
+    /**
+     * Acumula os valores de [inicio, fim) em {@code tabela} (256 posições).
+     * Quatro subtabelas intercaladas evitam que valores repetidos em sequência
+     * fiquem esperando o incremento anterior na mesma posição de memória.
+     */
+    public static void acumular(byte[] numeros, int inicio, int fim, int[] tabela) {
+        int[] t0 = new int[VALORES], t1 = new int[VALORES], t2 = new int[VALORES], t3 = new int[VALORES];
+        int i = inicio;
+        for (; i + 4 <= fim; i += 4) {
+            t0[numeros[i] & 0xFF]++;
+            t1[numeros[i + 1] & 0xFF]++;
+            t2[numeros[i + 2] & 0xFF]++;
+            t3[numeros[i + 3] & 0xFF]++;
+        }
+        for (; i < fim; i++) {
+            t0[numeros[i] & 0xFF]++;
+        }
+        for (int v = 0; v < VALORES; v++) {
+            tabela[v] += t0[v] + t1[v] + t2[v] + t3[v];
+        }
+    }
+
+    /** Como {@link #acumular(byte[], int, int, int[])} sobre um ByteBuffer, com índices absolutos. */
+    public static void acumular(ByteBuffer numeros, int inicio, int fim, int[] tabela) {
+        if (numeros.hasArray()) {
+            int deslocamento = numeros.arrayOffset();
+            acumular(numeros.array(), deslocamento + inicio, deslocamento + fim, tabela);
+            return;
+        }
+        for (int i = inicio; i < fim; i++) {
+            tabela[numeros.get(i) & 0xFF]++;
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package src.Contagem;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Núcleo de contagem: quantas vezes {@code procurado} aparece em [inicio, fim).
+ * As implementações diferem só na forma de varrer a memória; todas devem dar o
+ * mesmo resultado. Use {@link Kernels#padrao()} para obter a melhor disponível.
+ */
+public interface KernelContagem {
+
+    int contar(byte[] numeros, int inicio, int fim, byte procurado);
+
+    /** Mesma contagem sobre um ByteBuffer (heap, direto ou mapeado), com índices absolutos. */
+    int contar(ByteBuffer numeros, int inicio, int fim, byte procurado);
+
+    String getNome();
+}
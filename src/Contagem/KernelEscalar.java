@@ -0,0 +1,34 @@
+package src.Contagem;
+
+import java.nio.ByteBuffer;
+
+/** Uma comparação por elemento; referência para as outras implementações. */
+public class KernelEscalar implements KernelContagem {
+
+    @Override
+    public int contar(byte[] numeros, int inicio, int fim, byte procurado) {
+        int cont = 0;
+        for (int i = inicio; i < fim; i++) {
+            if (numeros[i] == procurado) cont++;
+        }
+        return cont;
+    }
+
+    @Override
+    public int contar(ByteBuffer numeros, int inicio, int fim, byte procurado) {
+        if (numeros.hasArray()) {
+            int deslocamento = numeros.arrayOffset();
+            return contar(numeros.array(), deslocamento + inicio, deslocamento + fim, procurado);
+        }
+        int cont = 0;
+        for (int i = inicio; i < fim; i++) {
+            if (numeros.get(i) == procurado) cont++;
+        }
+        return cont;
+    }
+
+    @Override
+    public String getNome() {
+        return "escalar";
+    }
+}
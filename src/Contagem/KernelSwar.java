@@ -0,0 +1,66 @@
+package src.Contagem;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * SWAR (SIMD within a register): lê 8 bytes por vez como um long e conta os
+ * bytes iguais ao procurado com aritmética de bits e Long.bitCount.
+ * A ordem dos bytes não importa para a contagem, então usamos a nativa.
+ */
+public class KernelSwar implements KernelContagem {
+
+    private static final VarHandle LONGS =
+            MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private static final long BAIXOS = 0x0101010101010101L;
+    private static final long SETE_BITS = 0x7F7F7F7F7F7F7F7FL;
+
+    @Override
+    public int contar(byte[] numeros, int inicio, int fim, byte procurado) {
+        long padrao = (procurado & 0xFFL) * BAIXOS;
+        int cont = 0;
+        int i = inicio;
+        for (; i <= fim - Long.BYTES; i += Long.BYTES) {
+            cont += iguais((long) LONGS.get(numeros, i), padrao);
+        }
+        for (; i < fim; i++) {
+            if (numeros[i] == procurado) cont++;
+        }
+        return cont;
+    }
+
+    @Override
+    public int contar(ByteBuffer numeros, int inicio, int fim, byte procurado) {
+        if (numeros.hasArray()) {
+            int deslocamento = numeros.arrayOffset();
+            return contar(numeros.array(), deslocamento + inicio, deslocamento + fim, procurado);
+        }
+        long padrao = (procurado & 0xFFL) * BAIXOS;
+        int cont = 0;
+        int i = inicio;
+        for (; i <= fim - Long.BYTES; i += Long.BYTES) {
+            cont += iguais(numeros.getLong(i), padrao);
+        }
+        for (; i < fim; i++) {
+            if (numeros.get(i) == procurado) cont++;
+        }
+        return cont;
+    }
+
+    // Bytes iguais ao padrão viram zero no XOR; o bit alto de cada byte do
+    // resultado final é 1 exatamente para esses bytes (sem falsos positivos)
+    static int iguais(long palavra, long padrao) {
+        long x = palavra ^ padrao;
+        long y = (x & SETE_BITS) + SETE_BITS;
+        y = ~(y | x | SETE_BITS);
+        return Long.bitCount(y);
+    }
+
+    @Override
+    public String getNome() {
+        return "swar";
+    }
+}
@@ -0,0 +1,56 @@
+package src.Contagem;
+
+import java.nio.ByteBuffer;
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Compara um vetor SIMD inteiro de bytes por vez (Vector API) e conta as
+ * posições iguais com a máscara resultante.
+ *
+ * Só é carregado por reflexão em {@link Kernels}, pois depende de
+ * {@code --add-modules jdk.incubator.vector} na compilação e na execução.
+ */
+class KernelVetorial implements KernelContagem {
+
+    private static final VectorSpecies<Byte> ESPECIE = ByteVector.SPECIES_PREFERRED;
+
+    // Buffers diretos/mapeados: a leitura vetorial de ByteBuffer muda entre versões
+    // da API incubadora, então eles usam o SWAR
+    private final KernelSwar swar = new KernelSwar();
+
+    KernelVetorial() {
+        // Com vetores de 64 bits ou menos não há ganho sobre o SWAR
+        if (ESPECIE.vectorBitSize() <= Long.SIZE) {
+            throw new UnsupportedOperationException("Espécie vetorial pequena demais: " + ESPECIE);
+        }
+    }
+
+    @Override
+    public int contar(byte[] numeros, int inicio, int fim, byte procurado) {
+        int cont = 0;
+        int i = inicio;
+        int limite = inicio + ESPECIE.loopBound(fim - inicio);
+        for (; i < limite; i += ESPECIE.length()) {
+            cont += ByteVector.fromArray(ESPECIE, numeros, i).eq(procurado).trueCount();
+        }
+        for (; i < fim; i++) {
+            if (numeros[i] == procurado) cont++;
+        }
+        return cont;
+    }
+
+    @Override
+    public int contar(ByteBuffer numeros, int inicio, int fim, byte procurado) {
+        if (numeros.hasArray()) {
+            int deslocamento = numeros.arrayOffset();
+            return contar(numeros.array(), deslocamento + inicio, deslocamento + fim, procurado);
+        }
+        return swar.contar(numeros, inicio, fim, procurado);
+    }
+
+    @Override
+    public String getNome() {
+        return "vetorial (" + ESPECIE.vectorBitSize() + " bits)";
+    }
+}
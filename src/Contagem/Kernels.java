@@ -0,0 +1,66 @@
+package src.Contagem;
+
+/**
+ * Escolhe, uma vez por JVM, o kernel de contagem usado em todo o sistema.
+ *
+ * Ordem de preferência: vetorial (se o módulo jdk.incubator.vector estiver
+ * presente), SWAR, escalar. Pode ser forçado com -Dkernel=escalar|swar|vetorial.
+ */
+public final class Kernels {
+
+    private static final KernelContagem PADRAO = escolher(System.getProperty("kernel", ""));
+
+    private Kernels() {
+    }
+
+    public static KernelContagem padrao() {
+        return PADRAO;
+    }
+
+    public static KernelContagem porNome(String nome) {
+        switch (nome.toLowerCase()) {
+            case "escalar":
+                return new KernelEscalar();
+            case "swar":
+                return new KernelSwar();
+            case "vetorial": {
+                KernelContagem vetorial = carregarVetorial();
+                if (vetorial == null) {
+                    throw new IllegalArgumentException("Kernel vetorial indisponível: execute com --add-modules jdk.incubator.vector");
+                }
+                return vetorial;
+            }
+            default:
+                throw new IllegalArgumentException("Kernel desconhecido: " + nome);
+        }
+    }
+
+    private static KernelContagem escolher(String forcado) {
+        if (!forcado.isEmpty()) {
+            try {
+                return porNome(forcado);
+            } catch (IllegalArgumentException e) {
+                System.err.println("[AVISO] " + e.getMessage() + "; escolhendo automaticamente");
+            }
+        }
+        KernelContagem vetorial = carregarVetorial();
+        return vetorial != null ? vetorial : new KernelSwar();
+    }
+
+    // Sem o módulo incubador a classe nem carrega (NoClassDefFoundError); o construtor
+    // recusa espécies que não ganhariam do SWAR (InvocationTargetException)
+    private static KernelContagem carregarVetorial() {
+        try {
+            Class<?> classe = Class.forName("src.Contagem.KernelVetorial");
+            KernelContagem kernel = (KernelContagem) classe.getDeclaredConstructor().newInstance();
+            // Conferência rápida antes de adotar o kernel para todo o processo
+            byte[] teste = {1, 2, 1, 3, 1, 4, 1, 5, 1};
+            if (kernel.contar(teste, 0, teste.length, (byte) 1) != 5) {
+                return null;
+            }
+            return kernel;
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+}
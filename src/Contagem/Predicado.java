@@ -0,0 +1,111 @@
+package src.Contagem;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Predicado sobre valores de byte, guardado como máscara de 256 bits: o bit
+ * {@code valor & 0xFF} diz se o valor satisfaz o predicado. Conjuntos,
+ * intervalos e valores únicos viram a mesma representação, e a contagem de
+ * qualquer um deles sai de um histograma da fatia ({@link #avaliar}).
+ */
+public final class Predicado implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /** Tamanho da máscara em bytes, como vai pela rede. */
+    public static final int TAMANHO_MASCARA = Histograma.VALORES / 8;
+
+    private final long[] mascara;
+
+    private Predicado(long[] mascara) {
+        this.mascara = mascara;
+    }
+
+    /** Igualdade a um único valor (o mesmo que um Pedido comum). */
+    public static Predicado valor(byte valor) {
+        return conjunto(valor);
+    }
+
+    public static Predicado conjunto(byte... valores) {
+        long[] mascara = new long[4];
+        for (byte v : valores) {
+            int i = v & 0xFF;
+            mascara[i >>> 6] |= 1L << i;
+        }
+        return new Predicado(mascara);
+    }
+
+    /** Valores em [menor, maior], com sinal; vazio se menor > maior. */
+    public static Predicado intervalo(byte menor, byte maior) {
+        long[] mascara = new long[4];
+        for (int v = menor; v <= maior; v++) {
+            int i = v & 0xFF;
+            mascara[i >>> 6] |= 1L << i;
+        }
+        return new Predicado(mascara);
+    }
+
+    /** Máscara de 32 bytes: bit {@code i % 8} do byte {@code i / 8} corresponde ao valor {@code (byte) i}. */
+    public static Predicado mascara(byte[] bits) {
+        if (bits.length != TAMANHO_MASCARA) {
+            throw new IllegalArgumentException("Máscara deve ter " + TAMANHO_MASCARA + " bytes");
+        }
+        long[] mascara = new long[4];
+        for (int i = 0; i < Histograma.VALORES; i++) {
+            if ((bits[i >>> 3] & (1 << (i & 7))) != 0) {
+                mascara[i >>> 6] |= 1L << i;
+            }
+        }
+        return new Predicado(mascara);
+    }
+
+    public byte[] getMascara() {
+        byte[] bits = new byte[TAMANHO_MASCARA];
+        for (int i = 0; i < Histograma.VALORES; i++) {
+            if (testar((byte) i)) {
+                bits[i >>> 3] |= (byte) (1 << (i & 7));
+            }
+        }
+        return bits;
+    }
+
+    public boolean testar(byte valor) {
+        int i = valor & 0xFF;
+        return (mascara[i >>> 6] & (1L << i)) != 0;
+    }
+
+    /** O único valor aceito (como {@code valor & 0xFF}), ou -1 se o predicado aceita zero ou vários. */
+    public int valorUnico() {
+        int unico = -1;
+        for (int p = 0; p < 4; p++) {
+            int bits = Long.bitCount(mascara[p]);
+            if (bits > 1 || (bits == 1 && unico >= 0)) return -1;
+            if (bits == 1) unico = (p << 6) + Long.numberOfTrailingZeros(mascara[p]);
+        }
+        return unico;
+    }
+
+    /** Ocorrências que satisfazem o predicado, dada a tabela de 256 posições de um histograma. */
+    public int avaliar(int[] tabela) {
+        int total = 0;
+        for (int p = 0; p < 4; p++) {
+            long bits = mascara[p];
+            while (bits != 0) {
+                total += tabela[(p << 6) + Long.numberOfTrailingZeros(bits)];
+                bits &= bits - 1;
+            }
+        }
+        return total;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Predicado && Arrays.equals(mascara, ((Predicado) o).mascara);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(mascara);
+    }
+}
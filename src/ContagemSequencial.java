@@ -1,6 +1,9 @@
 package src;
 
 import java.util.Random;
+import src.Contagem.GeradorVetor;
+import src.Contagem.KernelContagem;
+import src.Contagem.Kernels;
 
 /**
  * Programa que faz a contagem sem paralelismo/distribuição,
@@ -9,36 +12,48 @@ import java.util.Random;
 
 public class ContagemSequencial {
 
-    public static int[] gerarVetorAleatorio(int tamanho, int minIncl, int maxIncl) {
-        Random rnd = new Random();
-        int[] v = new int[tamanho];
-        for (int i = 0; i < tamanho; i++) {
-            v[i] = rnd.nextInt(maxIncl - minIncl + 1) + minIncl;
-        }
-        return v;
+    // byte, como no Distribuidor, para que a comparação de tempos seja justa
+    public static byte[] gerarVetorAleatorio(int tamanho, int minIncl, int maxIncl) {
+        return GeradorVetor.gerar(tamanho, minIncl, maxIncl, new Random().nextLong());
+    }
+
+    public static int contarSequencial(byte[] v, byte procurado) {
+        return contarSequencial(Kernels.padrao(), v, procurado);
     }
 
-    public static int contarSequencial(int[] v, int procurado) {
-        int cont = 0;
-        for (int n : v) if (n == procurado) cont++;
-        return cont;
+    public static int contarSequencial(KernelContagem kernel, byte[] v, byte procurado) {
+        return kernel.contar(v, 0, v.length, procurado);
     }
 
     public static void main(String[] args) {
         int tamanho = 5_000_000; // usar mesmo tamanho que no Distribuidor para comparação
         System.out.println("[SEQ] Gerando vetor...");
-        int[] v = gerarVetorAleatorio(tamanho, -100, 100);
+        byte[] v = gerarVetorAleatorio(tamanho, -100, 100);
 
-        int procurado = v[new Random().nextInt(v.length)];
-        // int procurado = 111; // para testar inexistente
+        byte procurado = v[new Random().nextInt(v.length)];
+        // byte procurado = 111; // para testar inexistente
 
         System.out.printf("[SEQ] Procurando por %d%n", procurado);
 
+        // Uma linha por kernel; o primeiro é o escolhido por padrão nesta JVM
+        KernelContagem padrao = Kernels.padrao();
         long t0 = System.currentTimeMillis();
-        int cont = contarSequencial(v, procurado);
+        int cont = contarSequencial(padrao, v, procurado);
         long t1 = System.currentTimeMillis();
-
-        System.out.printf("[SEQ] Resultado: %d (tempo=%d ms)%n", cont, (t1 - t0));
+        System.out.printf("[SEQ] Resultado: %d (kernel=%s, tempo=%d ms)%n", cont, padrao.getNome(), (t1 - t0));
+
+        for (String nome : new String[]{"escalar", "swar", "vetorial"}) {
+            KernelContagem kernel;
+            try {
+                kernel = Kernels.porNome(nome);
+            } catch (IllegalArgumentException e) {
+                System.out.println("[SEQ] " + e.getMessage());
+                continue;
+            }
+            t0 = System.currentTimeMillis();
+            cont = contarSequencial(kernel, v, procurado);
+            t1 = System.currentTimeMillis();
+            System.out.printf("[SEQ] Resultado: %d (kernel=%s, tempo=%d ms)%n", cont, kernel.getNome(), (t1 - t0));
+        }
     }
 }
-
@@ -0,0 +1,80 @@
+package src.Distribuidor;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Arquivo de dados (um byte por número) lido em regiões mapeadas de até
+ * {@link #TAMANHO_REGIAO} bytes, sem passar o conteúdo pelo heap. Cada região
+ * é mapeada quando pedida e liberada pelo coletor depois do uso, então o
+ * arquivo pode ser maior que a memória e que o limite de um ByteBuffer.
+ */
+public final class ArquivoDados implements Closeable {
+
+    // -Dingestao.regiao=N: bytes por região mapeada (256 MB por padrão)
+    static final int TAMANHO_REGIAO = Integer.getInteger("ingestao.regiao", 256 * 1024 * 1024);
+
+    private final Path caminho;
+    private final FileChannel canal;
+    private final long tamanho;
+    private final int tamanhoRegiao;
+
+    private ArquivoDados(Path caminho, FileChannel canal, int tamanhoRegiao) throws IOException {
+        this.caminho = caminho;
+        this.canal = canal;
+        this.tamanho = canal.size();
+        this.tamanhoRegiao = tamanhoRegiao;
+    }
+
+    public static ArquivoDados abrir(Path caminho) throws IOException {
+        return abrir(caminho, TAMANHO_REGIAO);
+    }
+
+    public static ArquivoDados abrir(Path caminho, int tamanhoRegiao) throws IOException {
+        if (tamanhoRegiao <= 0) {
+            throw new IllegalArgumentException("Tamanho de região inválido: " + tamanhoRegiao);
+        }
+        return new ArquivoDados(caminho, FileChannel.open(caminho, StandardOpenOption.READ), tamanhoRegiao);
+    }
+
+    public long getTamanho() {
+        return tamanho;
+    }
+
+    public int getNumeroRegioes() {
+        return (int) ((tamanho + tamanhoRegiao - 1) / tamanhoRegiao);
+    }
+
+    /** Região {@code indice} do arquivo, mapeada somente leitura; a última pode ser menor. */
+    public ByteBuffer regiao(int indice) throws IOException {
+        long inicio = (long) indice * tamanhoRegiao;
+        if (indice < 0 || inicio >= tamanho) {
+            throw new IndexOutOfBoundsException("Região " + indice + " fora de " + caminho);
+        }
+        return canal.map(FileChannel.MapMode.READ_ONLY, inicio, Math.min(tamanhoRegiao, tamanho - inicio));
+    }
+
+    /** Byte na posição {@code posicao} do arquivo, lido sem mapear a região. */
+    public byte ler(long posicao) throws IOException {
+        ByteBuffer um = ByteBuffer.allocate(1);
+        if (canal.read(um, posicao) != 1) {
+            throw new IOException("Posição " + posicao + " fora de " + caminho);
+        }
+        return um.get(0);
+    }
+
+    /** Regiões já mapeadas continuam válidas depois de fechar. */
+    @Override
+    public void close() throws IOException {
+        canal.close();
+    }
+
+    @Override
+    public String toString() {
+        return caminho.toString();
+    }
+}
@@ -0,0 +1,58 @@
+package src.Distribuidor;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import src.Comunicacao.Anuncio;
+import src.Metricas.Log;
+
+/**
+ * Lista de receptores num arquivo de texto, um "host:porta" por linha; linhas
+ * vazias e as começadas por # são ignoradas, e as que não são "host:porta"
+ * válidos são ignoradas com um aviso. O arquivo é relido quando a data
+ * de modificação muda, então editar o arquivo acrescenta ou retira receptores
+ * do cliente em uso.
+ */
+public class ArquivoReceptores implements FonteReceptores {
+
+    private final Path arquivo;
+    private FileTime lidoEm;
+    private Set<String> receptores = Collections.emptySet();
+
+    public ArquivoReceptores(Path arquivo) {
+        this.arquivo = arquivo;
+    }
+
+    @Override
+    public synchronized Set<String> receptores() throws IOException {
+        FileTime modificadoEm = Files.getLastModifiedTime(arquivo);
+        if (!modificadoEm.equals(lidoEm)) {
+            Set<String> lidos = new LinkedHashSet<>();
+            for (String linha : Files.readAllLines(arquivo, StandardCharsets.UTF_8)) {
+                linha = linha.trim();
+                if (linha.isEmpty() || linha.startsWith("#")) {
+                    continue;
+                }
+                if (Anuncio.enderecoValido(linha)) {
+                    lidos.add(linha);
+                } else {
+                    Log.aviso(this + ": linha ignorada, não é host:porta: " + linha);
+                }
+            }
+            receptores = Collections.unmodifiableSet(lidos);
+            lidoEm = modificadoEm;
+        }
+        return receptores;
+    }
+
+    @Override
+    public String toString() {
+        return "arquivo " + arquivo;
+    }
+}
@@ -0,0 +1,1037 @@
+package src.Distribuidor;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import src.Comunicacao.Capacidade;
+import src.Comunicacao.CarregarDataset;
+import src.Comunicacao.EvictarDataset;
+import src.Comunicacao.Pedido;
+import src.Comunicacao.PedidoCapacidade;
+import src.Comunicacao.PedidoDataset;
+import src.Comunicacao.PedidoConsulta;
+import src.Comunicacao.PedidoHistograma;
+import src.Comunicacao.Resposta;
+import src.Comunicacao.RespostaConsulta;
+import src.Comunicacao.RespostaHistograma;
+import src.Contagem.Histograma;
+import src.Contagem.Predicado;
+import src.Metricas.Log;
+import src.Metricas.Metricas;
+
+/**
+ * Biblioteca cliente da contagem distribuída.
+ *
+ * Mantém as conexões persistentes com os receptores e um executor de longa
+ * duração (threads virtuais no Java 21+, senão um pool em cache de threads
+ * daemon). Cada consulta divide o vetor entre os receptores, envia as partes
+ * pelo pipeline de cada conexão e devolve um CompletableFuture com a soma;
+ * várias consultas podem estar em andamento ao mesmo tempo.
+ *
+ * As partes são proporcionais à vazão estimada de cada receptor: a anunciada
+ * na conexão ({@link Capacidade}) e, depois, a média móvel das vazões
+ * observadas nas respostas, para que o receptor mais lento não dite a latência.
+ * Com -Descalonamento=dinamico, os receptores puxam pedaços menores de uma
+ * fila comum ({@link EscalonadorDinamico}).
+ *
+ * Tolerância a falhas: uma fatia cujo receptor cai ou estoura o prazo é
+ * reenviada a outro receptor ativo (ou, sem nenhum, depois de uma espera). Uma
+ * thread de manutenção reconecta as conexões caídas, com espera crescente
+ * entre as tentativas, e manda um PedidoCapacidade como ping às conexões
+ * ociosas; sem resposta, a conexão é derrubada e entra na reconexão. Conexões
+ * por serialização Java podem ser de receptores antigos, que não conhecem o
+ * PedidoCapacidade: essas não recebem ping nem pedido de capacidade.
+ *
+ * O conjunto de receptores pode mudar com o cliente em uso: por
+ * {@link #adicionar}/{@link #remover} ou por uma {@link FonteReceptores}
+ * (arquivo ou registro), conferida a cada ciclo de manutenção. Cada consulta
+ * usa os receptores do momento em que começou; quem entra participa a partir
+ * da próxima.
+ *
+ * <pre>
+ *   try (ClienteContagem cliente = ClienteContagem.conectar(List.of("host1:12345", "host2:12345"))) {
+ *       long total = cliente.contar(vetor, (byte) 7).join();
+ *   }
+ * </pre>
+ */
+public class ClienteContagem implements Closeable {
+
+    // Partes de dataset maiores que isto seguem em vários CarregarDataset anexados
+    static final int TAMANHO_CARGA_DATASET = 64 * 1024 * 1024;
+
+    // Em vetores menores que isto o tempo de resposta mede mais a latência da rede que a vazão.
+    // Conta o vetor, não a fatia: um receptor reduzido ao mínimo continua sendo observado
+    static final int TAMANHO_MINIMO_OBSERVACAO = 1024 * 1024;
+
+    // Nenhum receptor fica com menos que esta fração da parte média: continua sendo observado
+    static final double FRACAO_MINIMA = 0.05;
+
+    private static final long TEMPO_CAPACIDADE_MS = 5000;
+
+    // Regiões de um arquivo em andamento ao mesmo tempo: enquanto os receptores contam uma,
+    // a seguinte já está sendo mapeada e enviada
+    static final int REGIOES_EM_ANDAMENTO = 2;
+
+    // -Descalonamento=dinamico: pedaços puxados de uma fila comum em vez de uma parte fixa por receptor
+    static final boolean ESCALONAMENTO_DINAMICO =
+            System.getProperty("escalonamento", "estatico").equalsIgnoreCase("dinamico");
+
+    // -Descalonamento.pedaco=N: bytes por pedaço no modo dinâmico (0 = automático)
+    static final int TAMANHO_PEDACO = Integer.getInteger("escalonamento.pedaco", 0);
+
+    // Tentativas de cada fatia, contando a primeira, antes de a consulta falhar
+    static final int MAX_TENTATIVAS = 8;
+
+    // Recusas por ocupação (RespostaOcupado) que uma fatia aceita antes de a consulta falhar.
+    // Não gastam tentativas: a fatia vai a um receptor livre ou espera o que o receptor pediu
+    static final int MAX_RECUSAS = 64;
+
+    // Espera antes de tentar de novo quando não há nenhum receptor ativo; dobra a cada tentativa
+    private static final long ESPERA_FAILOVER_MS = 250;
+    private static final long ESPERA_FAILOVER_MAXIMA_MS = 5000;
+
+    private static final long INTERVALO_MANUTENCAO_MS = 1000;
+
+    // -Dheartbeat=ms: conexão sem tráfego por este tempo recebe um ping (0 desliga)
+    static final long INTERVALO_HEARTBEAT_MS = Long.getLong("heartbeat", 5000);
+    private static final long PRAZO_HEARTBEAT_MS = 10_000;
+
+    private static final long ESPERA_RECONEXAO_MINIMA_MS = 100;
+    private static final long ESPERA_RECONEXAO_MAXIMA_MS = 30_000;
+
+    private static final LongAdder fatiasReatribuidas = Metricas.contador("fatias_reatribuidas");
+    private static final LongAdder reconexoesFeitas = Metricas.contador("reconexoes");
+
+    // Lista imutável, trocada inteira quando um receptor entra ou sai; cada consulta lê uma vez
+    private volatile List<ConexaoR> conexoes;
+    private final FonteReceptores fonte;
+    private final ExecutorService executor;
+    // Como cada dataset carregado por este cliente foi dividido: um segmento por carregar/anexar
+    private final Map<Long, List<Segmento>> segmentos = new HashMap<>();
+
+    private final ScheduledExecutorService manutencao;
+    // Só a thread de manutenção mexe neste mapa e em erroFonte
+    private final Map<ConexaoR, Reconexao> reconexoes = new HashMap<>();
+    private final Set<ConexaoR> pingsEmAndamento = ConcurrentHashMap.newKeySet();
+    private String erroFonte;
+
+    /** Espera entre tentativas de reconexão de uma conexão caída. */
+    private static final class Reconexao {
+        long espera = ESPERA_RECONEXAO_MINIMA_MS;
+        long proxima;
+    }
+
+    ClienteContagem(List<ConexaoR> conexoes, FonteReceptores fonte) {
+        if (conexoes.isEmpty() && fonte == null) {
+            throw new IllegalArgumentException("Nenhuma conexão com receptores");
+        }
+        this.conexoes = List.copyOf(conexoes);
+        this.fonte = fonte;
+        this.executor = criarExecutor();
+        this.manutencao = Executors.newSingleThreadScheduledExecutor(tarefa -> {
+            Thread thread = new Thread(tarefa, "ManutencaoConexoes");
+            thread.setDaemon(true);
+            return thread;
+        });
+        manutencao.scheduleWithFixedDelay(this::verificarConexoes, INTERVALO_MANUTENCAO_MS,
+                INTERVALO_MANUTENCAO_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Conecta aos receptores no formato "host:porta". Receptores inacessíveis são
+     * registrados no log e ficam para a reconexão em segundo plano; falha só se
+     * nenhum responder.
+     */
+    public static ClienteContagem conectar(List<String> servidores) throws IOException {
+        List<ConexaoR> conexoes = abrirTodas(servidores);
+        if (conexoes.stream().noneMatch(ConexaoR::isAtiva)) {
+            throw new IOException("Nenhuma conexão estabelecida com " + servidores);
+        }
+        return new ClienteContagem(conexoes, null);
+    }
+
+    /**
+     * Conecta aos receptores que a {@code fonte} listar agora e passa a segui-la:
+     * a cada ciclo de manutenção, receptores novos na lista são conectados e os
+     * que saíram são desconectados. A lista pode começar vazia (receptores que
+     * ainda vão se registrar); veja {@link #aguardarReceptores(long)}.
+     */
+    public static ClienteContagem conectar(FonteReceptores fonte) throws IOException {
+        return new ClienteContagem(abrirTodas(new ArrayList<>(fonte.receptores())), fonte);
+    }
+
+    private static List<ConexaoR> abrirTodas(List<String> servidores) throws IOException {
+        List<ConexaoR> conexoes = new ArrayList<>();
+        for (String s : servidores) {
+            conexoes.add(abrir(s));
+        }
+        for (ConexaoR c : conexoes) {
+            if (!c.isAtiva() || !c.isBinaria()) {
+                continue;
+            }
+            try {
+                c.registrarCapacidade(c.enviarPedidoCapacidade(new PedidoCapacidade(c.proximoId()))
+                        .get(TEMPO_CAPACIDADE_MS, TimeUnit.MILLISECONDS));
+            } catch (ExecutionException | TimeoutException e) {
+                // Sem capacidade anunciada, a parte sai igual às demais até as primeiras observações
+                Log.aviso(c + " não anunciou capacidade: " + e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrompido esperando a capacidade de " + c, e);
+            }
+        }
+        return conexoes;
+    }
+
+    // Receptor inacessível vira uma conexão desconectada, que a manutenção tenta reabrir
+    private static ConexaoR abrir(String servidor) {
+        String[] partes = servidor.split(":");
+        if (partes.length != 2) {
+            throw new IllegalArgumentException("Receptor deve ser host:porta: " + servidor);
+        }
+        try {
+            return new ConexaoR(partes[0], Integer.parseInt(partes[1]));
+        } catch (IOException e) {
+            Log.erro("Não foi possível conectar a " + servidor + ": " + e.getMessage());
+            Log.aviso("Verifique se o servidor está rodando nesta porta!");
+            return ConexaoR.desconectada(partes[0], Integer.parseInt(partes[1]));
+        }
+    }
+
+    /**
+     * Inclui o receptor "host:porta" a partir da próxima consulta. Se ele estiver
+     * fora do ar, entra desconectado e a manutenção tenta reconectá-lo.
+     *
+     * @return false se o receptor já fazia parte
+     */
+    public boolean adicionar(String servidor) {
+        synchronized (this) {
+            if (buscar(servidor) != null) {
+                return false;
+            }
+        }
+        ConexaoR nova = abrir(servidor);
+        synchronized (this) {
+            if (buscar(servidor) != null) {
+                nova.fechar();
+                return false;
+            }
+            List<ConexaoR> lista = new ArrayList<>(conexoes);
+            lista.add(nova);
+            conexoes = List.copyOf(lista);
+        }
+        Log.info("Receptor " + servidor + " entrou (" + conexoes.size() + " receptores)");
+        if (nova.isAtiva() && nova.isBinaria() && pingsEmAndamento.add(nova)) {
+            pingar(nova, true);
+        }
+        return true;
+    }
+
+    /**
+     * Tira o receptor "host:porta" das próximas consultas e fecha a conexão; as
+     * fatias que ele ainda devia são reatribuídas aos demais.
+     *
+     * @return false se o receptor não fazia parte
+     */
+    public boolean remover(String servidor) {
+        ConexaoR removida;
+        synchronized (this) {
+            removida = buscar(servidor);
+            if (removida == null) {
+                return false;
+            }
+            List<ConexaoR> lista = new ArrayList<>(conexoes);
+            lista.remove(removida);
+            conexoes = List.copyOf(lista);
+        }
+        Log.info("Receptor " + servidor + " saiu (" + conexoes.size() + " receptores)");
+        if (removida.isAtiva()) {
+            try {
+                removida.enviarEncerramento();
+            } catch (IOException e) {
+                // Já está saindo; a conexão é fechada de qualquer forma
+            }
+        }
+        removida.fechar();
+        return true;
+    }
+
+    private ConexaoR buscar(String servidor) {
+        for (ConexaoR c : conexoes) {
+            if (c.toString().equals(servidor)) {
+                return c;
+            }
+        }
+        return null;
+    }
+
+    /** Receptores que a conferência de agora da fonte acrescentou ou retirou. */
+    private void sincronizar(Set<String> servidores) {
+        for (ConexaoR c : conexoes) {
+            if (!servidores.contains(c.toString())) {
+                remover(c.toString());
+            }
+        }
+        for (String servidor : servidores) {
+            try {
+                adicionar(servidor);
+            } catch (RuntimeException e) {
+                // Uma entrada ruim da fonte não impede as demais
+                Log.erro("Receptor " + servidor + " não adicionado: " + e);
+            }
+        }
+    }
+
+    /**
+     * Espera até haver um receptor ativo, por no máximo {@code tempoMs}; útil logo
+     * após conectar a um registro, antes de os receptores se anunciarem.
+     *
+     * @return se há algum receptor ativo
+     */
+    public boolean aguardarReceptores(long tempoMs) throws InterruptedException {
+        long limite = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(tempoMs);
+        while (getReceptoresAtivos() == 0) {
+            if (System.nanoTime() >= limite) {
+                return false;
+            }
+            Thread.sleep(50);
+        }
+        return true;
+    }
+
+    public int getNumeroReceptores() {
+        return conexoes.size();
+    }
+
+    /** Soma das vazões estimadas dos receptores ativos, em bytes/s; 0 enquanto nenhuma é conhecida. */
+    public double getVazaoEstimada() {
+        double total = 0;
+        for (ConexaoR c : conexoes) {
+            if (c.isAtiva()) total += c.getVazaoEstimada();
+        }
+        return total;
+    }
+
+    /** Receptores com conexão aberta agora. */
+    public int getReceptoresAtivos() {
+        int ativos = 0;
+        for (ConexaoR c : conexoes) {
+            if (c.isAtiva()) ativos++;
+        }
+        return ativos;
+    }
+
+    /** Conta as ocorrências de {@code alvo} em {@code dados}, dividindo o vetor entre os receptores. */
+    public CompletableFuture<Long> contar(byte[] dados, byte alvo) {
+        // A fatia [inicio, fim) é enviada direto do vetor original, sem cópia
+        return enviarFatias(dados.length,
+                (c, inicio, fim) -> c.enviarPedido(new Pedido(c.proximoId(), dados, inicio, fim, alvo)))
+                .thenApply(parciais -> {
+                    long total = 0;
+                    for (Resposta parcial : parciais) {
+                        total += parcial.getContagem();
+                    }
+                    return total;
+                });
+    }
+
+    /**
+     * Histograma completo de {@code dados}: cada receptor devolve o da sua parte e
+     * as tabelas são somadas elemento a elemento. Com ele, a contagem de qualquer
+     * valor sai de {@link Histograma#contar(byte)} sem nova varredura.
+     */
+    public CompletableFuture<Histograma> histograma(byte[] dados) {
+        return enviarFatias(dados.length,
+                (c, inicio, fim) -> c.enviarPedidoHistograma(new PedidoHistograma(c.proximoId(), dados, inicio, fim)))
+                .thenApply(parciais -> {
+                    Histograma total = new Histograma();
+                    for (RespostaHistograma parcial : parciais) {
+                        total.somar(parcial.getContagens());
+                    }
+                    return total;
+                });
+    }
+
+    /**
+     * Como {@link #contar(byte[], byte)}, sobre os bytes restantes de {@code dados}:
+     * heap, direto ou região mapeada. Cada receptor recebe uma fatia do buffer, sem cópia.
+     */
+    public CompletableFuture<Long> contar(ByteBuffer dados, byte alvo) {
+        ByteBuffer base = dados.slice();
+        return enviarFatias(base.limit(),
+                (c, inicio, fim) -> c.enviarPedido(new Pedido(c.proximoId(), base.slice(inicio, fim - inicio), alvo)))
+                .thenApply(parciais -> {
+                    long total = 0;
+                    for (Resposta parcial : parciais) {
+                        total += parcial.getContagem();
+                    }
+                    return total;
+                });
+    }
+
+    /** Como {@link #histograma(byte[])}, sobre os bytes restantes de {@code dados}. */
+    public CompletableFuture<Histograma> histograma(ByteBuffer dados) {
+        ByteBuffer base = dados.slice();
+        return enviarFatias(base.limit(),
+                (c, inicio, fim) -> c.enviarPedidoHistograma(
+                        new PedidoHistograma(c.proximoId(), base.slice(inicio, fim - inicio))))
+                .thenApply(parciais -> {
+                    Histograma total = new Histograma();
+                    for (RespostaHistograma parcial : parciais) {
+                        total.somar(parcial.getContagens());
+                    }
+                    return total;
+                });
+    }
+
+    /**
+     * Conta {@code alvo} num arquivo de qualquer tamanho, região mapeada por região:
+     * cada região é dividida entre os receptores como um vetor, com até
+     * {@link #REGIOES_EM_ANDAMENTO} em andamento, então o arquivo nunca passa pelo heap.
+     */
+    public CompletableFuture<Long> contar(ArquivoDados arquivo, byte alvo) {
+        return porRegioes(arquivo, regiao -> contar(regiao, alvo)).thenApply(parciais -> {
+            long total = 0;
+            for (Long parcial : parciais) {
+                total += parcial;
+            }
+            return total;
+        });
+    }
+
+    /** Histograma de um arquivo, região mapeada por região como em {@link #contar(ArquivoDados, byte)}. */
+    public CompletableFuture<Histograma> histograma(ArquivoDados arquivo) {
+        return porRegioes(arquivo, this::histograma).thenApply(parciais -> {
+            Histograma total = new Histograma();
+            for (Histograma parcial : parciais) {
+                total.somar(parcial);
+            }
+            return total;
+        });
+    }
+
+    // Uma consulta por região do arquivo; cada uma das REGIOES_EM_ANDAMENTO cadeias mapeia
+    // a próxima região livre quando a sua termina. O resultado vem na ordem do arquivo
+    @SuppressWarnings("unchecked")
+    private <R> CompletableFuture<List<R>> porRegioes(ArquivoDados arquivo,
+                                                      Function<ByteBuffer, CompletableFuture<R>> consulta) {
+        Object[] respostas = new Object[arquivo.getNumeroRegioes()];
+        AtomicInteger proxima = new AtomicInteger();
+        List<CompletableFuture<Void>> cadeias = new ArrayList<>(REGIOES_EM_ANDAMENTO);
+        for (int i = 0; i < Math.min(REGIOES_EM_ANDAMENTO, respostas.length); i++) {
+            cadeias.add(proximaRegiao(arquivo, proxima, respostas, consulta));
+        }
+        return CompletableFuture.allOf(cadeias.toArray(new CompletableFuture<?>[0]))
+                .thenApply(ignorado -> {
+                    List<R> lista = new ArrayList<>(respostas.length);
+                    for (Object resposta : respostas) {
+                        lista.add((R) resposta);
+                    }
+                    return lista;
+                });
+    }
+
+    private <R> CompletableFuture<Void> proximaRegiao(ArquivoDados arquivo, AtomicInteger proxima, Object[] respostas,
+                                                      Function<ByteBuffer, CompletableFuture<R>> consulta) {
+        int r = proxima.getAndIncrement();
+        if (r >= respostas.length) {
+            return CompletableFuture.completedFuture(null);
+        }
+        ByteBuffer regiao;
+        try {
+            regiao = arquivo.regiao(r);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return consulta.apply(regiao).thenCompose(resposta -> {
+            respostas[r] = resposta;
+            return proximaRegiao(arquivo, proxima, respostas, consulta);
+        });
+    }
+
+    /** Uma consulta por vetor, todas em andamento ao mesmo tempo. */
+    public List<CompletableFuture<Long>> contarTodos(List<byte[]> vetores, byte alvo) {
+        List<CompletableFuture<Long>> resultados = new ArrayList<>(vetores.size());
+        for (byte[] dados : vetores) {
+            resultados.add(contar(dados, alvo));
+        }
+        return resultados;
+    }
+
+    /**
+     * Uma contagem por predicado (valores, conjuntos, intervalos ou máscaras), com
+     * todos avaliados numa única varredura de cada parte; a posição i do resultado
+     * corresponde a {@code predicados[i]}.
+     */
+    public CompletableFuture<long[]> consultar(byte[] dados, Predicado... predicados) {
+        return enviarFatias(dados.length,
+                (c, inicio, fim) -> c.enviarPedidoConsulta(
+                        new PedidoConsulta(c.proximoId(), dados, inicio, fim, predicados)))
+                .thenApply(parciais -> {
+                    long[] totais = new long[predicados.length];
+                    for (RespostaConsulta parcial : parciais) {
+                        int[] contagens = parcial.getContagens();
+                        for (int i = 0; i < totais.length; i++) {
+                            totais[i] += contagens[i];
+                        }
+                    }
+                    return totais;
+                });
+    }
+
+    /** Contagem de cada alvo no mesmo vetor, numa única consulta; a posição i corresponde a {@code alvos[i]}. */
+    public CompletableFuture<long[]> contarAlvos(byte[] dados, byte[] alvos) {
+        Predicado[] predicados = new Predicado[alvos.length];
+        for (int i = 0; i < alvos.length; i++) {
+            predicados[i] = Predicado.valor(alvos[i]);
+        }
+        return consultar(dados, predicados);
+    }
+
+    /**
+     * Deixa {@code dados} residente nos receptores sob {@code datasetId}, uma parte
+     * em cada um, substituindo um dataset anterior de mesmo id. Depois disso,
+     * {@link #contar(long, byte)} consulta sem reenviar os números.
+     */
+    public CompletableFuture<Void> carregar(long datasetId, byte[] dados) {
+        return enviarDataset(datasetId, dados, false);
+    }
+
+    /**
+     * Acrescenta {@code dados} ao fim do dataset, dividido entre os receptores como
+     * em {@link #carregar}. Permite montar datasets maiores que um único byte[].
+     */
+    public CompletableFuture<Void> anexar(long datasetId, byte[] dados) {
+        return enviarDataset(datasetId, dados, true);
+    }
+
+    private CompletableFuture<Void> enviarDataset(long datasetId, byte[] dados, boolean anexar) {
+        // Só os ativos recebem parte: o dataset fica com quem estava no ar na carga
+        List<ConexaoR> destinos = new ArrayList<>();
+        for (ConexaoR c : conexoes) {
+            if (c.isAtiva()) destinos.add(c);
+        }
+        if (destinos.isEmpty()) {
+            return CompletableFuture.failedFuture(new IOException("Nenhum receptor ativo"));
+        }
+        int n = destinos.size();
+        int[] limites = dividir(destinos, dados.length);
+        List<ConexaoR> anteriores = registrarSegmento(datasetId, destinos, limites, anexar);
+
+        List<CompletableFuture<Resposta>> partes = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            ConexaoR c = destinos.get(i);
+            int inicio = limites[i];
+            int fim = limites[i + 1];
+            // Receptor que entrou depois da carga ainda não tem o dataset: o primeiro pedaço o cria
+            boolean anexarAqui = anexar && (anteriores == null || anteriores.contains(c));
+            // Cada pedaço só sai depois da confirmação do anterior: um pedaço recusado por
+            // ocupação e repetido depois seria anexado fora de ordem se o seguinte já tivesse ido
+            CompletableFuture<Resposta> parte = CompletableFuture.completedFuture(null);
+            int pos = inicio;
+            do {
+                int tamanho = Math.min(TAMANHO_CARGA_DATASET, fim - pos);
+                int deslocamento = pos;
+                boolean anexarPedaco = anexarAqui || pos > inicio;
+                parte = parte.thenComposeAsync(anterior -> insistir(() -> c.enviarCarregarDataset(
+                        new CarregarDataset(c.proximoId(), datasetId, anexarPedaco,
+                                ByteBuffer.wrap(dados, deslocamento, tamanho))), 0), executor);
+                pos += tamanho;
+            } while (pos < fim);
+            partes.add(parte);
+        }
+
+        return CompletableFuture.allOf(partes.toArray(new CompletableFuture<?>[0]));
+    }
+
+    /** Conta {@code alvo} num dataset residente: só o id e o alvo vão pela rede. */
+    public CompletableFuture<Long> contar(long datasetId, byte alvo) {
+        List<ConexaoR> membros = membrosDataset(datasetId);
+        List<CompletableFuture<Resposta>> parciais = new ArrayList<>(membros.size());
+        for (ConexaoR c : membros) {
+            parciais.add(insistir(() -> c.enviarPedidoDataset(new PedidoDataset(c.proximoId(), datasetId, alvo)), 0));
+        }
+        return CompletableFuture.allOf(parciais.toArray(new CompletableFuture<?>[0]))
+                .thenApply(ignorado -> {
+                    long total = 0;
+                    for (CompletableFuture<Resposta> parcial : parciais) {
+                        total += parcial.join().getContagem();
+                    }
+                    return total;
+                });
+    }
+
+    /**
+     * Conta {@code alvo} nas posições [inicio, fim) do dataset, na ordem em que os
+     * dados foram carregados e anexados. Cada receptor recebe o intervalo
+     * correspondente da sua parte e responde pelo índice de blocos, varrendo só as
+     * pontas. Só vale para datasets carregados por este cliente.
+     */
+    public CompletableFuture<Long> contar(long datasetId, byte alvo, long inicio, long fim) {
+        if (inicio < 0 || fim < inicio) {
+            throw new IllegalArgumentException("Intervalo inválido: [" + inicio + ", " + fim + ")");
+        }
+        List<Segmento> divisao;
+        synchronized (segmentos) {
+            divisao = segmentos.get(datasetId);
+            divisao = divisao == null ? null : new ArrayList<>(divisao);
+        }
+        if (divisao == null) {
+            return CompletableFuture.failedFuture(new IllegalStateException(
+                    "Dataset " + datasetId + " não foi carregado por este cliente"));
+        }
+
+        List<ConexaoR> membros = membrosDataset(datasetId);
+        List<CompletableFuture<Resposta>> parciais = new ArrayList<>(membros.size());
+        for (ConexaoR c : membros) {
+            long inicioLocal = Segmento.posicaoLocal(divisao, c, inicio);
+            long fimLocal = Segmento.posicaoLocal(divisao, c, fim);
+            if (inicioLocal == fimLocal) {
+                continue;
+            }
+            parciais.add(insistir(() -> c.enviarPedidoDataset(
+                    new PedidoDataset(c.proximoId(), datasetId, alvo, inicioLocal, fimLocal)), 0));
+        }
+        return CompletableFuture.allOf(parciais.toArray(new CompletableFuture<?>[0]))
+                .thenApply(ignorado -> {
+                    long total = 0;
+                    for (CompletableFuture<Resposta> parcial : parciais) {
+                        total += parcial.join().getContagem();
+                    }
+                    return total;
+                });
+    }
+
+    /** Libera o dataset em todos os receptores. */
+    public CompletableFuture<Void> evictar(long datasetId) {
+        List<ConexaoR> membros = membrosDataset(datasetId);
+        synchronized (segmentos) {
+            segmentos.remove(datasetId);
+        }
+        List<CompletableFuture<Resposta>> confirmacoes = new ArrayList<>(membros.size());
+        for (ConexaoR c : membros) {
+            confirmacoes.add(c.enviarEvictarDataset(new EvictarDataset(c.proximoId(), datasetId)));
+        }
+        return CompletableFuture.allOf(confirmacoes.toArray(new CompletableFuture<?>[0]));
+    }
+
+    /**
+     * Envia uma fatia de um vetor de {@code tamanho} bytes a cada receptor, com a
+     * parte proporcional à vazão estimada dele, e alimenta a estimativa com o
+     * tempo de cada resposta. Receptores com parte vazia ficam de fora.
+     * No escalonamento dinâmico, quem divide é o {@link EscalonadorDinamico}.
+     */
+    private <R> CompletableFuture<List<R>> enviarFatias(int tamanho, EnvioFatia<R> envio) {
+        List<ConexaoR> atuais = conexoes;
+        if (atuais.isEmpty()) {
+            return CompletableFuture.failedFuture(new IOException("Nenhum receptor registrado"));
+        }
+        if (ESCALONAMENTO_DINAMICO) {
+            return new EscalonadorDinamico<>(atuais, executor, tamanho, TAMANHO_PEDACO, envio).executar();
+        }
+        int[] limites = dividir(atuais, tamanho);
+        List<CompletableFuture<R>> parciais = new ArrayList<>(atuais.size());
+        for (int i = 0; i < atuais.size(); i++) {
+            int inicio = limites[i];
+            int fim = limites[i + 1];
+            if (inicio == fim && tamanho > 0) {
+                continue;
+            }
+            parciais.add(enviarFatia(atuais.get(i), inicio, fim, tamanho, envio, 1, 0));
+        }
+        return CompletableFuture.allOf(parciais.toArray(new CompletableFuture<?>[0]))
+                .thenApply(ignorado -> {
+                    List<R> respostas = new ArrayList<>(parciais.size());
+                    for (CompletableFuture<R> parcial : parciais) {
+                        respostas.add(parcial.join());
+                    }
+                    return respostas;
+                });
+    }
+
+    // Fatia [inicio, fim) pelo receptor c; se ele falhar ou recusar, a mesma fatia vai para outro receptor
+    private <R> CompletableFuture<R> enviarFatia(ConexaoR c, int inicio, int fim, int tamanho, EnvioFatia<R> envio,
+                                                 int tentativa, int recusas) {
+        // A escrita de uma parte grande pode demorar; vai para o executor para não prender quem chamou
+        return CompletableFuture
+                .supplyAsync(() -> {
+                    long envioInicio = System.nanoTime();
+                    return envio.enviar(c, inicio, fim).thenApply(resposta -> {
+                        if (tamanho >= TAMANHO_MINIMO_OBSERVACAO) {
+                            c.observar(fim - inicio, System.nanoTime() - envioInicio);
+                        }
+                        return resposta;
+                    });
+                }, executor)
+                .thenCompose(resposta -> resposta)
+                .handle((resposta, erro) -> erro == null
+                        ? CompletableFuture.completedFuture(resposta)
+                        : reatribuir(c, inicio, fim, tamanho, envio, tentativa, recusas, erro))
+                .thenCompose(resposta -> resposta);
+    }
+
+    // O substituto sai dos receptores atuais, não dos do início da consulta: pode ser um que acabou de entrar
+    private <R> CompletableFuture<R> reatribuir(ConexaoR falhou, int inicio, int fim, int tamanho,
+                                                EnvioFatia<R> envio, int tentativa, int recusas, Throwable erro) {
+        Throwable causa = erro instanceof CompletionException && erro.getCause() != null ? erro.getCause() : erro;
+        if (causa instanceof ReceptorOcupado) {
+            return redirecionar(falhou, inicio, fim, tamanho, envio, tentativa, recusas, (ReceptorOcupado) causa);
+        }
+        if (!(causa instanceof IOException || causa instanceof TimeoutException) || tentativa >= MAX_TENTATIVAS) {
+            return CompletableFuture.failedFuture(causa);
+        }
+        ConexaoR outro = proximaAtiva(falhou);
+        if (outro != null) {
+            fatiasReatribuidas.increment();
+            Log.aviso("Fatia [" + inicio + ", " + fim + ") de " + falhou +
+                    " reatribuída a " + outro + ": " + descrever(causa));
+            return enviarFatia(outro, inicio, fim, tamanho, envio, tentativa + 1, recusas);
+        }
+        // Nenhum receptor ativo: espera a manutenção reconectar algum
+        long espera = Math.min(ESPERA_FAILOVER_MAXIMA_MS, ESPERA_FAILOVER_MS << (tentativa - 1));
+        Log.aviso("Nenhum receptor ativo para a fatia [" + inicio + ", " + fim +
+                "); nova tentativa em " + espera + " ms");
+        Executor atrasado = CompletableFuture.delayedExecutor(espera, TimeUnit.MILLISECONDS, executor);
+        return CompletableFuture
+                .supplyAsync(() -> reatribuir(falhou, inicio, fim, tamanho, envio, tentativa + 1, recusas, causa),
+                        atrasado)
+                .thenCompose(resposta -> resposta);
+    }
+
+    // Recusa por ocupação: a fatia vai ao próximo receptor livre ou, com todos ocupados,
+    // espera o que o receptor pediu e procura de novo
+    private <R> CompletableFuture<R> redirecionar(ConexaoR recusou, int inicio, int fim, int tamanho,
+                                                  EnvioFatia<R> envio, int tentativa, int recusas,
+                                                  ReceptorOcupado ocupado) {
+        if (recusas >= MAX_RECUSAS) {
+            return CompletableFuture.failedFuture(ocupado);
+        }
+        ConexaoR livre = proximaLivre(recusou);
+        if (livre != null) {
+            if (Log.isDetalhe()) {
+                Log.detalhe("Fatia [" + inicio + ", " + fim + ") recusada por " + recusou + "; enviada a " + livre);
+            }
+            return enviarFatia(livre, inicio, fim, tamanho, envio, tentativa, recusas + 1);
+        }
+        if (Log.isDetalhe()) {
+            Log.detalhe("Todos os receptores ocupados; fatia [" + inicio + ", " + fim + ") espera " +
+                    ocupado.getEsperaMs() + " ms");
+        }
+        Executor atrasado = CompletableFuture.delayedExecutor(ocupado.getEsperaMs(), TimeUnit.MILLISECONDS, executor);
+        return CompletableFuture
+                .supplyAsync(() -> redirecionar(recusou, inicio, fim, tamanho, envio, tentativa, recusas + 1, ocupado),
+                        atrasado)
+                .thenCompose(resposta -> resposta);
+    }
+
+    /**
+     * Pedido que só um receptor pode atender (parte de um dataset residente):
+     * recusado por ocupação, repete no mesmo receptor depois da espera pedida,
+     * até {@link #MAX_RECUSAS} vezes.
+     */
+    private <R> CompletableFuture<R> insistir(Supplier<CompletableFuture<R>> envio, int recusas) {
+        return envio.get()
+                .handle((resposta, erro) -> {
+                    if (erro == null) {
+                        return CompletableFuture.completedFuture(resposta);
+                    }
+                    Throwable causa = erro instanceof CompletionException && erro.getCause() != null
+                            ? erro.getCause() : erro;
+                    if (!(causa instanceof ReceptorOcupado) || recusas >= MAX_RECUSAS) {
+                        return CompletableFuture.<R>failedFuture(causa);
+                    }
+                    Executor atrasado = CompletableFuture.delayedExecutor(((ReceptorOcupado) causa).getEsperaMs(),
+                            TimeUnit.MILLISECONDS, executor);
+                    return CompletableFuture.supplyAsync(() -> insistir(envio, recusas + 1), atrasado)
+                            .thenCompose(r -> r);
+                })
+                .thenCompose(resposta -> resposta);
+    }
+
+    // Próximo receptor ativo e não ocupado depois de c (c inclusive, por último); null se nenhum
+    private ConexaoR proximaLivre(ConexaoR c) {
+        List<ConexaoR> atuais = conexoes;
+        int r = atuais.indexOf(c);
+        for (int k = 1; k <= atuais.size(); k++) {
+            ConexaoR candidata = atuais.get(Math.floorMod(r + k, atuais.size()));
+            if (candidata.isAtiva() && !candidata.isOcupada()) {
+                return candidata;
+            }
+        }
+        return null;
+    }
+
+    // Próximo receptor ativo depois de c (c inclusive, por último, se já reconectou); null se nenhum
+    private ConexaoR proximaAtiva(ConexaoR c) {
+        List<ConexaoR> atuais = conexoes;
+        int r = atuais.indexOf(c);
+        for (int k = 1; k <= atuais.size(); k++) {
+            ConexaoR candidata = atuais.get(Math.floorMod(r + k, atuais.size()));
+            if (candidata.isAtiva()) {
+                return candidata;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Limites das partes de um vetor de {@code tamanho} bytes: a parte do
+     * receptor i é [limites[i], limites[i + 1]), proporcional à sua vazão estimada.
+     * Receptores sem estimativa recebem a média dos demais (partes iguais no início);
+     * receptores desconectados ficam sem parte enquanto houver algum ativo, e os
+     * ocupados (que recusaram um pedido há pouco), enquanto houver algum livre.
+     */
+    static int[] dividir(List<ConexaoR> conexoes, int tamanho) {
+        int n = conexoes.size();
+        double[] pesos = new double[n];
+        boolean[] ativos = new boolean[n];
+        boolean[] livres = new boolean[n];
+        boolean algumAtivo = false;
+        boolean algumLivre = false;
+        double soma = 0;
+        int conhecidos = 0;
+        for (int i = 0; i < n; i++) {
+            ativos[i] = conexoes.get(i).isAtiva();
+            livres[i] = ativos[i] && !conexoes.get(i).isOcupada();
+            algumAtivo |= ativos[i];
+            algumLivre |= livres[i];
+            pesos[i] = conexoes.get(i).getVazaoEstimada();
+            if (pesos[i] > 0) {
+                soma += pesos[i];
+                conhecidos++;
+            }
+        }
+        double media = conhecidos == 0 ? 1 : soma / conhecidos;
+        soma = 0;
+        for (int i = 0; i < n; i++) {
+            boolean semParte = algumLivre ? !livres[i] : algumAtivo && !ativos[i];
+            pesos[i] = semParte ? 0 : Math.max(pesos[i] > 0 ? pesos[i] : media, FRACAO_MINIMA * media);
+            soma += pesos[i];
+        }
+
+        int[] limites = new int[n + 1];
+        double acumulado = 0;
+        for (int i = 0; i < n; i++) {
+            acumulado += pesos[i];
+            limites[i + 1] = i == n - 1 ? tamanho : (int) Math.round(tamanho * (acumulado / soma));
+        }
+        return limites;
+    }
+
+    // Envio de uma fatia [inicio, fim) por uma conexão
+    interface EnvioFatia<R> {
+        CompletableFuture<R> enviar(ConexaoR conexao, int inicio, int fim);
+    }
+
+    /**
+     * Registra a divisão de um carregar/anexar e devolve os receptores que já
+     * tinham o dataset antes dele (null se a divisão é desconhecida).
+     */
+    private List<ConexaoR> registrarSegmento(long datasetId, List<ConexaoR> destinos, int[] limites,
+                                             boolean anexar) {
+        synchronized (segmentos) {
+            List<Segmento> divisao = segmentos.get(datasetId);
+            if (!anexar) {
+                divisao = new ArrayList<>();
+                segmentos.put(datasetId, divisao);
+            } else if (divisao == null) {
+                // Anexo a um dataset que outro cliente carregou: a divisão é desconhecida
+                return null;
+            }
+            List<ConexaoR> anteriores = Segmento.membros(divisao);
+            long inicio = divisao.isEmpty() ? 0 : divisao.get(divisao.size() - 1).fimGlobal();
+            divisao.add(new Segmento(inicio, destinos, limites));
+            return anteriores;
+        }
+    }
+
+    // Receptores com partes do dataset; sem divisão conhecida, todos os atuais
+    private List<ConexaoR> membrosDataset(long datasetId) {
+        synchronized (segmentos) {
+            List<Segmento> divisao = segmentos.get(datasetId);
+            return divisao == null ? conexoes : Segmento.membros(divisao);
+        }
+    }
+
+    /**
+     * Um vetor enviado por carregar ou anexar: ocupa [inicioGlobal, inicioGlobal +
+     * tamanho) do dataset, e o receptor conexoes[r] recebeu [limites[r], limites[r + 1]) dele.
+     */
+    static final class Segmento {
+        final long inicioGlobal;
+        final List<ConexaoR> conexoes;
+        final int[] limites;
+
+        Segmento(long inicioGlobal, List<ConexaoR> conexoes, int[] limites) {
+            this.inicioGlobal = inicioGlobal;
+            this.conexoes = conexoes;
+            this.limites = limites;
+        }
+
+        static List<ConexaoR> membros(List<Segmento> divisao) {
+            Set<ConexaoR> membros = new LinkedHashSet<>();
+            for (Segmento s : divisao) {
+                membros.addAll(s.conexoes);
+            }
+            return new ArrayList<>(membros);
+        }
+
+        long fimGlobal() {
+            return inicioGlobal + limites[limites.length - 1];
+        }
+
+        /**
+         * Posição na parte do receptor {@code c} que corresponde à posição global
+         * {@code posicao}: quantos bytes desse receptor vêm antes dela. Como cada
+         * receptor guarda seus pedaços na ordem dos segmentos, um intervalo global
+         * contíguo vira um intervalo contíguo em cada receptor.
+         */
+        static long posicaoLocal(List<Segmento> divisao, ConexaoR c, long posicao) {
+            long local = 0;
+            for (Segmento s : divisao) {
+                int r = s.conexoes.indexOf(c);
+                if (r < 0) {
+                    continue;
+                }
+                long dentro = posicao - s.inicioGlobal;
+                local += Math.max(0, Math.min(dentro, s.limites[r + 1]) - s.limites[r]);
+            }
+            return local;
+        }
+    }
+
+    /**
+     * Tarefa periódica da thread de manutenção: confere a fonte de receptores,
+     * reconecta as conexões caídas, respeitando a espera de cada uma (dobra a
+     * cada falha, até {@link #ESPERA_RECONEXAO_MAXIMA_MS}), e pinga as ociosas.
+     */
+    private void verificarConexoes() {
+        try {
+            manterConexoes();
+        } catch (RuntimeException e) {
+            // Exceção escapando da tarefa agendada a cancelaria em silêncio, sem mais reconexões
+            Log.erro("Na manutenção das conexões: " + e);
+        }
+    }
+
+    private void manterConexoes() {
+        if (fonte != null) {
+            try {
+                sincronizar(fonte.receptores());
+                erroFonte = null;
+            } catch (IOException e) {
+                // Fonte indisponível por ora: segue com os receptores que já tem, avisando uma vez por erro
+                if (!e.toString().equals(erroFonte)) {
+                    Log.aviso(fonte + " indisponível: " + e);
+                    erroFonte = e.toString();
+                }
+            }
+        }
+        reconexoes.keySet().retainAll(conexoes);
+        for (ConexaoR c : conexoes) {
+            if (!c.isAtiva()) {
+                Reconexao estado = reconexoes.computeIfAbsent(c, k -> new Reconexao());
+                long agora = System.currentTimeMillis();
+                if (agora < estado.proxima) {
+                    continue;
+                }
+                try {
+                    c.reconectar();
+                    reconexoes.remove(c);
+                    reconexoesFeitas.increment();
+                    Log.info(c + " reconectado");
+                    // O receptor pode ter voltado com outra capacidade; a resposta também confirma que ele atende
+                    if (c.isBinaria() && pingsEmAndamento.add(c)) {
+                        pingar(c, true);
+                    }
+                } catch (IOException e) {
+                    estado.proxima = agora + estado.espera;
+                    Log.aviso("Reconexão com " + c + " falhou (" + e.getMessage() +
+                            "); nova tentativa em " + estado.espera + " ms");
+                    estado.espera = Math.min(ESPERA_RECONEXAO_MAXIMA_MS, estado.espera * 2);
+                }
+            } else if (INTERVALO_HEARTBEAT_MS > 0 && c.isBinaria()
+                    && c.getTempoOcioso() > TimeUnit.MILLISECONDS.toNanos(INTERVALO_HEARTBEAT_MS)
+                    && pingsEmAndamento.add(c)) {
+                pingar(c, false);
+            }
+        }
+    }
+
+    // Heartbeat: um PedidoCapacidade; sem resposta no prazo, derruba a conexão. Após reconectar,
+    // a capacidade respondida recomeça a estimativa de vazão; nos pings de rotina ela é ignorada
+    // para não apagar o que as fatias observaram
+    private void pingar(ConexaoR c, boolean registrar) {
+        // Pelo executor: a escrita do ping pode ficar presa atrás de uma escrita travada
+        CompletableFuture.supplyAsync(() -> c.enviarPedidoCapacidade(new PedidoCapacidade(c.proximoId())), executor)
+                .thenCompose(resposta -> resposta)
+                .orTimeout(PRAZO_HEARTBEAT_MS, TimeUnit.MILLISECONDS)
+                .whenComplete((capacidade, erro) -> {
+                    pingsEmAndamento.remove(c);
+                    if (erro != null) {
+                        c.derrubar("sem resposta ao heartbeat (" + descrever(erro) + ")");
+                    } else if (registrar) {
+                        c.registrarCapacidade(capacidade);
+                    }
+                });
+    }
+
+    static String descrever(Throwable erro) {
+        Throwable causa = erro instanceof CompletionException && erro.getCause() != null ? erro.getCause() : erro;
+        return causa instanceof TimeoutException ? "prazo esgotado" : causa.getMessage();
+    }
+
+    /** Envia o encerramento a cada receptor e fecha as conexões e o executor. */
+    @Override
+    public void close() {
+        manutencao.shutdownNow();
+        if (fonte != null) {
+            fonte.close();
+        }
+        for (ConexaoR c : conexoes) {
+            try {
+                c.enviarEncerramento();
+            } catch (IOException e) {
+                Log.erro("Ao enviar encerramento para " + c + ": " + e.getMessage());
+            }
+            c.fechar();
+        }
+        executor.shutdown();
+    }
+
+    // Threads virtuais vêm de Executors.newVirtualThreadPerTaskExecutor (Java 21+),
+    // obtido por reflexão para que o código continue compilando em Java 17
+    private static ExecutorService criarExecutor() {
+        try {
+            Method fabrica = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) fabrica.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(tarefa -> {
+                Thread thread = new Thread(tarefa, "ClienteContagem");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}
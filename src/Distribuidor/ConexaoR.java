@@ -0,0 +1,475 @@
+package src.Distribuidor;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import src.Comunicacao.*;
+import src.Metricas.HistogramaLatencia;
+import src.Metricas.Log;
+import src.Metricas.Metricas;
+
+/**
+ * Conexão persistente com um receptor, com pedidos em pipeline: vários pedidos
+ * seguem pelo mesmo socket sem esperar resposta, cada um com seu id, e uma
+ * thread leitora completa o CompletableFuture de cada Resposta conforme chega
+ * (o receptor pode responder fora de ordem).
+ *
+ * Cada pedido tem um prazo proporcional ao tamanho; estourado o prazo, a
+ * conexão é derrubada e todos os pedidos dela falham, para que o
+ * ClienteContagem os reatribua. Uma conexão caída (ou que nunca conectou) pode
+ * ser reaberta com {@link #reconectar()}: cada abertura é uma sessão nova, com
+ * seus próprios pedidos pendentes e sua thread leitora.
+ *
+ * Com -Dcompressao=auto e receptores que anunciam {@link Capacidade#COMPRESSAO},
+ * um Pedido cuja amostra indica ganho segue em blocos comprimidos
+ * ({@link Compressao}), que o receptor conta sem descomprimir. Vale em enlaces
+ * lentos (1 GbE): a codificação passa de 400 MB/s, mas perde para o loopback.
+ */
+class ConexaoR {
+
+    // Fatias maiores que isto seguem como PedidoFluxo + BlocoFluxo (0 desliga o modo em fluxo)
+    static final int TAMANHO_BLOCO_FLUXO = Integer.getInteger("fluxo.bloco", 1024 * 1024);
+
+    // -Dpedido.timeout=ms: prazo base de cada pedido, somado ao tempo de enviar a fatia a VAZAO_MINIMA
+    static final long PRAZO_BASE_MS = Long.getLong("pedido.timeout", 30_000);
+
+    // Vazão mínima aceitável antes de considerar o receptor travado (bytes por ms, 10 MB/s)
+    private static final long VAZAO_MINIMA = 10_000;
+
+    private static final int TEMPO_CONEXAO_MS = 5000;
+
+    static final boolean COMPRESSAO = "auto".equals(System.getProperty("compressao", "nao"));
+
+    // Abaixo disto a fatia vai crua: o ganho na rede não paga a amostra e a codificação
+    private static final int TAMANHO_MINIMO_COMPRESSAO = 64 * 1024;
+
+    private static final HistogramaLatencia IDA_E_VOLTA = Metricas.estagio(Metricas.IDA_E_VOLTA);
+    private static final HistogramaLatencia SERIALIZACAO = Metricas.estagio(Metricas.SERIALIZACAO);
+    private static final LongAdder pedidosEnviados = Metricas.contador("pedidos_enviados");
+    private static final LongAdder prazosEsgotados = Metricas.contador("prazos_esgotados");
+    private static final LongAdder recusasOcupado = Metricas.contador("recusas_ocupado");
+    private static final LongAdder bytesAntesCompressao = Metricas.contador("compressao_bytes_entrada");
+    private static final LongAdder bytesAposCompressao = Metricas.contador("compressao_bytes_saida");
+
+    String host;
+    int porta;
+    private final Protocolo protocolo;
+
+    // Só serializa a escrita de cada quadro; ninguém segura o canal esperando resposta
+    private final Lock escrita = new ReentrantLock();
+    private final AtomicLong proximoId = new AtomicLong();
+    private volatile Sessao sessao;
+    private volatile long ultimaAtividade = System.nanoTime();
+    // Recurso anunciado pelo receptor da sessão atual; volta a false a cada reconexão
+    private volatile boolean aceitaCompressao;
+    // Até quando (System.nanoTime) o receptor pediu para não receber pedidos, pela última RespostaOcupado
+    private volatile long ocupadaAte = System.nanoTime();
+
+    // Peso da média móvel exponencial: cada observação nova conta 30% na estimativa
+    private static final double ALFA_VAZAO = 0.3;
+
+    // Vazão estimada do receptor em bytes/s; 0 enquanto não há capacidade anunciada nem observações
+    private double vazaoEstimada;
+
+    /** Um socket aberto e os pedidos que aguardam resposta nele. */
+    private static final class Sessao {
+        final Socket socket;
+        final Canal canal;
+        final Map<Long, CompletableFuture<Comunicado>> pendentes = new ConcurrentHashMap<>();
+        volatile IOException falha;
+
+        Sessao(Socket socket, Canal canal) {
+            this.socket = socket;
+            this.canal = canal;
+        }
+    }
+
+    public ConexaoR(String host, int porta) throws IOException {
+        this(host, porta, Protocolo.padrao());
+        reconectar();
+    }
+
+    private ConexaoR(String host, int porta, Protocolo protocolo) {
+        this.host = host;
+        this.porta = porta;
+        this.protocolo = protocolo;
+    }
+
+    /** Conexão ainda não aberta, para um receptor fora do ar na partida; abre com {@link #reconectar()}. */
+    static ConexaoR desconectada(String host, int porta) {
+        return new ConexaoR(host, porta, Protocolo.padrao());
+    }
+
+    /**
+     * Abre uma sessão nova com o receptor, negociando o protocolo. Pedidos da
+     * sessão anterior já falharam quando ela caiu.
+     */
+    synchronized void reconectar() throws IOException {
+        Sessao anterior = sessao;
+        if (anterior != null && anterior.falha == null) {
+            derrubar(anterior, "reconexão");
+        }
+        aceitaCompressao = false;
+        Sessao nova;
+        try {
+            nova = abrir(protocolo);
+        } catch (EOFException e) {
+            // Receptor antigo: não entende o número mágico e fecha a conexão
+            Log.aviso(this + " não suporta protocolo binário, usando serialização Java");
+            nova = abrir(Protocolo.OBJETOS);
+        }
+        Log.info("Conectado a " + host + ":" + porta + " (protocolo " + nova.canal.getProtocolo() + ")");
+        ultimaAtividade = System.nanoTime();
+        sessao = nova;
+
+        Sessao lida = nova;
+        Thread leitor = new Thread(() -> lerRespostas(lida), "Leitor-" + this);
+        leitor.setDaemon(true);
+        leitor.start();
+    }
+
+    private Sessao abrir(Protocolo protocolo) throws IOException {
+        // Aberto via SocketChannel para que as fatias sigam por escrita agrupada, sem cópia
+        SocketChannel canalSocket = SocketChannel.open();
+        try {
+            canalSocket.socket().connect(new InetSocketAddress(host, porta), TEMPO_CONEXAO_MS);
+            canalSocket.socket().setTcpNoDelay(true);
+            return new Sessao(canalSocket.socket(), Canais.conectar(canalSocket.socket(), protocolo));
+        } catch (IOException e) {
+            canalSocket.close();
+            throw e;
+        }
+    }
+
+    /** Se a sessão atual usa o protocolo binário; por serialização Java o receptor pode ser antigo. */
+    boolean isBinaria() {
+        Sessao atual = sessao;
+        return atual != null && atual.canal.getProtocolo() == Protocolo.BINARIO;
+    }
+
+    /** Se há uma sessão aberta e sem falha. */
+    boolean isAtiva() {
+        Sessao atual = sessao;
+        return atual != null && atual.falha == null;
+    }
+
+    /** Se o receptor recusou um pedido por ocupação e a espera que ele pediu ainda não passou. */
+    boolean isOcupada() {
+        return getOcupacaoRestante() > 0;
+    }
+
+    /** Nanossegundos até o fim da espera pedida pela última recusa; zero ou negativo se já passou. */
+    long getOcupacaoRestante() {
+        return ocupadaAte - System.nanoTime();
+    }
+
+    /** Nanossegundos desde o último quadro recebido (ou desde a conexão). */
+    long getTempoOcioso() {
+        return System.nanoTime() - ultimaAtividade;
+    }
+
+    /** Prazo de resposta de um pedido com {@code bytes} de dados. */
+    static long prazoMs(long bytes) {
+        return PRAZO_BASE_MS + bytes / VAZAO_MINIMA;
+    }
+
+    /**
+     * Derruba a sessão atual: o socket é fechado, escritas presas nele falham e
+     * todos os pedidos pendentes falham com {@code motivo}.
+     */
+    void derrubar(String motivo) {
+        Sessao atual = sessao;
+        if (atual != null) {
+            derrubar(atual, motivo);
+        }
+    }
+
+    private void derrubar(Sessao alvo, String motivo) {
+        synchronized (alvo) {
+            if (alvo.falha == null) {
+                alvo.falha = new IOException("Conexão com " + this + " derrubada: " + motivo);
+                Log.aviso(alvo.falha.getMessage());
+            }
+        }
+        try {
+            alvo.socket.close();
+        } catch (IOException e) {
+            Log.erro("Ao fechar conexão com " + this + ": " + e.getMessage());
+        }
+    }
+
+    /** Id livre nesta conexão para um novo pedido. */
+    public long proximoId() {
+        return proximoId.getAndIncrement();
+    }
+
+    /**
+     * Envia o pedido e retorna sem esperar a resposta. O id do pedido precisa ser
+     * único entre os pedidos pendentes desta conexão (veja {@link #proximoId()}).
+     */
+    public CompletableFuture<Resposta> enviarPedido(Pedido pedido) {
+        return enviar(pedido, Resposta.class);
+    }
+
+    /** Como {@link #enviarPedido}, pedindo o histograma completo da fatia. */
+    public CompletableFuture<RespostaHistograma> enviarPedidoHistograma(PedidoHistograma pedido) {
+        return enviar(pedido, RespostaHistograma.class);
+    }
+
+    /** Como {@link #enviarPedido}, com uma contagem por predicado da consulta. */
+    public CompletableFuture<RespostaConsulta> enviarPedidoConsulta(PedidoConsulta pedido) {
+        return enviar(pedido, RespostaConsulta.class);
+    }
+
+    /** Carrega (ou anexa) uma fatia residente; a contagem da resposta é o número de bytes recebidos. */
+    public CompletableFuture<Resposta> enviarCarregarDataset(CarregarDataset carga) {
+        return enviar(carga, Resposta.class);
+    }
+
+    /** Conta num dataset residente; falha com a mensagem do receptor se ele não estiver mais em memória. */
+    public CompletableFuture<Resposta> enviarPedidoDataset(PedidoDataset pedido) {
+        return enviar(pedido, Resposta.class);
+    }
+
+    public CompletableFuture<Resposta> enviarEvictarDataset(EvictarDataset pedido) {
+        return enviar(pedido, Resposta.class);
+    }
+
+    /** Capacidade anunciada pelo receptor (núcleos, vazão medida e fila). */
+    public CompletableFuture<Capacidade> enviarPedidoCapacidade(PedidoCapacidade pedido) {
+        return enviar(pedido, Capacidade.class);
+    }
+
+    /**
+     * Ponto de partida da estimativa de vazão: a vazão medida pelo receptor,
+     * descontada pela fila (tarefas já esperando dividem os mesmos núcleos).
+     */
+    synchronized void registrarCapacidade(Capacidade capacidade) {
+        int nucleos = Math.max(1, capacidade.getNucleos());
+        vazaoEstimada = capacidade.getVazao() * (double) nucleos / (nucleos + capacidade.getFila());
+        aceitaCompressao = capacidade.aceita(Capacidade.COMPRESSAO);
+        Log.info(String.format("%s: %d núcleos, %.2f GB/s, fila %d%s", this, capacidade.getNucleos(),
+                capacidade.getVazao() / 1e9, capacidade.getFila(), aceitaCompressao ? ", aceita compressão" : ""));
+    }
+
+    /**
+     * Reajusta a estimativa com uma fatia de {@code bytes} respondida em
+     * {@code nanos} (envio, contagem e resposta: o que o receptor custa de fato).
+     */
+    synchronized void observar(long bytes, long nanos) {
+        double observada = bytes * 1e9 / Math.max(1, nanos);
+        vazaoEstimada = vazaoEstimada == 0 ? observada : ALFA_VAZAO * observada + (1 - ALFA_VAZAO) * vazaoEstimada;
+    }
+
+    /** Vazão estimada em bytes/s; 0 se ainda desconhecida. */
+    synchronized double getVazaoEstimada() {
+        return vazaoEstimada;
+    }
+
+    private <R extends Comunicado> CompletableFuture<R> enviar(Identificado pedido, Class<R> tipoResposta) {
+        long id = pedido.getId();
+        Sessao atual = sessao;
+        if (atual == null) {
+            return CompletableFuture.failedFuture(new IOException("Sem conexão com " + this));
+        }
+        CompletableFuture<Comunicado> resposta = new CompletableFuture<>();
+        long enviadoEm = System.nanoTime();
+        if (atual.pendentes.putIfAbsent(id, resposta) != null) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException(
+                    "Pedido " + id + " já pendente em " + this));
+        }
+        // A thread leitora pode ter falhado antes do registro acima
+        if (atual.falha != null) {
+            atual.pendentes.remove(id);
+            return CompletableFuture.failedFuture(atual.falha);
+        }
+
+        // O prazo corre desde antes da escrita: com a janela TCP do receptor cheia ela bloqueia, e só
+        // derrubar a sessão a solta
+        long prazo = prazoMs(tamanhoDe(pedido));
+        resposta.orTimeout(prazo, TimeUnit.MILLISECONDS).whenComplete((r, erro) -> {
+            if (erro == null) {
+                IDA_E_VOLTA.registrar(System.nanoTime() - enviadoEm);
+            } else if (erro instanceof TimeoutException) {
+                prazosEsgotados.increment();
+                // Receptor travado: derrubar a sessão libera escritas presas e falha os demais pedidos dela
+                atual.pendentes.remove(id, resposta);
+                derrubar(atual, "pedido " + id + " sem resposta em " + prazo + " ms");
+            }
+        });
+
+        try {
+            byte codificacao = pedido instanceof Pedido ? codificacaoPara(atual, (Pedido) pedido) : 0;
+            if (pedido instanceof Pedido && (codificacao != 0 || usarFluxo(atual, (Pedido) pedido))) {
+                enviarEmBlocos(atual, (Pedido) pedido, codificacao);
+            } else {
+                enviarQuadro(atual, (Comunicado) pedido);
+            }
+            pedidosEnviados.increment();
+            if (Log.isDetalhe()) {
+                Log.detalhe("Pedido " + id + " enviado para " + this);
+            }
+        } catch (IOException e) {
+            atual.pendentes.remove(id);
+            resposta.completeExceptionally(atual.falha != null ? atual.falha : e);
+        }
+
+        return resposta.thenApply(r -> {
+            if (r instanceof RespostaErro) {
+                throw new CompletionException(new IOException(this + ": " + ((RespostaErro) r).getMensagem()));
+            }
+            if (r instanceof RespostaOcupado) {
+                int espera = ((RespostaOcupado) r).getEsperaMs();
+                ocupadaAte = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(espera);
+                recusasOcupado.increment();
+                throw new CompletionException(new ReceptorOcupado(this + " ocupado", espera));
+            }
+            if (!tipoResposta.isInstance(r)) {
+                throw new CompletionException(new IOException("Resposta inesperada ao pedido " + id + " de " +
+                        this + ": " + r.getClass().getSimpleName()));
+            }
+            return tipoResposta.cast(r);
+        });
+    }
+
+    // Bytes de números que o pedido leva, para o prazo de resposta
+    private static long tamanhoDe(Identificado pedido) {
+        if (pedido instanceof Pedido) return ((Pedido) pedido).getTamanho();
+        if (pedido instanceof PedidoHistograma) return ((PedidoHistograma) pedido).getTamanho();
+        if (pedido instanceof PedidoConsulta) return ((PedidoConsulta) pedido).getTamanho();
+        if (pedido instanceof CarregarDataset) return ((CarregarDataset) pedido).getTamanho();
+        return 0;
+    }
+
+    private void enviarQuadro(Sessao alvo, Comunicado comunicado) throws IOException {
+        escrita.lock();
+        try {
+            long inicio = System.nanoTime();
+            alvo.canal.enviar(comunicado);
+            SERIALIZACAO.registrar(System.nanoTime() - inicio);
+        } finally {
+            escrita.unlock();
+        }
+    }
+
+    private void lerRespostas(Sessao lida) {
+        IOException erro;
+        try {
+            while (true) {
+                Comunicado obj = lida.canal.receber();
+                ultimaAtividade = System.nanoTime();
+                if (!(obj instanceof Identificado)) {
+                    throw new IOException("Resposta inválida recebida de " + this);
+                }
+                long id = ((Identificado) obj).getId();
+                if (id == 0 && lida.canal.getProtocolo() == Protocolo.OBJETOS) {
+                    // Receptor antigo responde sem id, um pedido por vez, na ordem de chegada
+                    id = lida.pendentes.keySet().stream().min(Long::compare).orElse(0L);
+                }
+                CompletableFuture<Comunicado> pendente = lida.pendentes.remove(id);
+                if (pendente == null) {
+                    Log.aviso("Resposta para pedido desconhecido " + id + " de " + this);
+                } else {
+                    if (Log.isDetalhe()) {
+                        Log.detalhe("Resposta do pedido " + id + " recebida de " + this);
+                    }
+                    pendente.complete(obj);
+                }
+            }
+        } catch (IOException | ClassNotFoundException e) {
+            erro = new IOException("Conexão com " + this + " interrompida: " + e.getMessage(), e);
+        }
+        synchronized (lida) {
+            if (lida.falha == null) {
+                lida.falha = erro;
+            }
+        }
+        for (Long id : lida.pendentes.keySet()) {
+            CompletableFuture<Comunicado> pendente = lida.pendentes.remove(id);
+            if (pendente != null) {
+                pendente.completeExceptionally(lida.falha);
+            }
+        }
+    }
+
+    // Receptores que só falam serialização Java podem ser anteriores ao modo em fluxo
+    private boolean usarFluxo(Sessao alvo, Pedido pedido) {
+        return TAMANHO_BLOCO_FLUXO > 0
+                && alvo.canal.getProtocolo() == Protocolo.BINARIO
+                && pedido.getTamanho() > TAMANHO_BLOCO_FLUXO;
+    }
+
+    // Codificação para o pedido, escolhida por amostra da fatia; 0 = sem compressão
+    private byte codificacaoPara(Sessao alvo, Pedido pedido) {
+        if (!COMPRESSAO || !aceitaCompressao || TAMANHO_BLOCO_FLUXO <= 0
+                || alvo.canal.getProtocolo() != Protocolo.BINARIO
+                || pedido.getTamanho() < TAMANHO_MINIMO_COMPRESSAO) {
+            return 0;
+        }
+        return Compressao.escolher(pedido.getDados());
+    }
+
+    // Envia o pedido como uma sequência de blocos para que o receptor conte enquanto recebe.
+    // Cada bloco leva o id do pedido, então blocos de pedidos diferentes podem se intercalar.
+    // Com uma codificação, cada bloco vai comprimido, ou cru se não encolher
+    private void enviarEmBlocos(Sessao alvo, Pedido pedido, byte codificacao) throws IOException {
+        ByteBuffer dados = pedido.getDados();
+        enviarQuadro(alvo, new PedidoFluxo(pedido.getId(), pedido.getProcurado(), dados.remaining()));
+        for (int pos = 0; pos < dados.limit(); pos += TAMANHO_BLOCO_FLUXO) {
+            int tamanho = Math.min(TAMANHO_BLOCO_FLUXO, dados.limit() - pos);
+            ByteBuffer bloco = dados.slice(pos, tamanho);
+            byte[] comprimido = codificacao != 0 ? Compressao.codificar(codificacao, bloco) : null;
+            if (comprimido != null) {
+                bytesAntesCompressao.add(tamanho);
+                bytesAposCompressao.add(comprimido.length);
+                enviarQuadro(alvo, new BlocoComprimido(pedido.getId(), codificacao, tamanho, comprimido));
+            } else {
+                enviarQuadro(alvo, new BlocoFluxo(pedido.getId(), bloco));
+            }
+        }
+    }
+
+    public void enviarEncerramento() throws IOException {
+        Sessao atual = sessao;
+        if (atual == null || atual.falha != null) {
+            return;
+        }
+        Log.info("Enviando encerramento para " + this);
+        enviarQuadro(atual, new ComunicadoEncerramento());
+    }
+
+    public void fechar() {
+        Sessao atual = sessao;
+        try {
+            if (atual != null && !atual.socket.isClosed()) {
+                synchronized (atual) {
+                    if (atual.falha == null) {
+                        atual.falha = new IOException("Conexão com " + this + " fechada");
+                    }
+                }
+                atual.socket.close();
+                Log.info("Conexão fechada com " + this);
+            }
+        } catch (IOException e) {
+            Log.erro("Ao fechar conexão com " + this + ": " + e.getMessage());
+        }
+    }
+
+    @Override
+    public String toString() {
+        return host + ":" + porta;
+    }
+}
@@ -1,137 +1,96 @@
 package src.Distribuidor;
 
+import com.sun.net.httpserver.HttpServer;
 import java.io.*;
-import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.security.SecureRandom;
 import java.util.*;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
-import src.Comunicacao.*;
+import java.util.concurrent.CompletionException;
+import src.Contagem.GeradorVetor;
+import src.Contagem.Histograma;
+import src.Contagem.Kernels;
+import src.Contagem.Predicado;
+import src.Metricas.HistogramaLatencia;
+import src.Metricas.Metricas;
 
 public class Distribuidor {
 
-    static class ConexaoR {
-        String host;
-        int porta;
-        Socket socket;
-        ObjectOutputStream out;
-        ObjectInputStream in;
-        private final Lock mutex = new ReentrantLock();
-
-        public ConexaoR(String host, int porta) throws IOException {
-            this.host = host;
-            this.porta = porta;
-            this.socket = new Socket(host, porta);
-            this.socket.setTcpNoDelay(true);
-            this.out = new ObjectOutputStream(socket.getOutputStream());
-            this.out.flush();
-            this.in = new ObjectInputStream(socket.getInputStream());
-            System.out.println("[LOG] Conectado a " + host + ":" + porta);
-        }
-
-        public Resposta enviarPedido(Pedido pedido) throws IOException, ClassNotFoundException {
-            mutex.lock();
-            try {
-                System.out.println("[LOG] Adquiriu mutex para " + this);
-                out.writeObject(pedido);
-                out.flush();
-                System.out.println("[LOG] Pedido enviado para " + this);
-
-                Object obj = in.readObject();
-                if (obj instanceof Resposta) {
-                    System.out.println("[LOG] Resposta recebida de " + this);
-                    return (Resposta) obj;
-                }
-                throw new IOException("Resposta inválida recebida de " + this);
-            } finally {
-                mutex.unlock();
-                System.out.println("[LOG] Mutex liberado para " + this);
-            }
-        }
-
-        public void enviarEncerramento() throws IOException {
-            mutex.lock();
-            try {
-                System.out.println("[LOG] Enviando encerramento para " + this);
-                out.writeObject(new ComunicadoEncerramento());
-                out.flush();
-            } finally {
-                mutex.unlock();
-            }
-        }
-
-        public void fechar() {
-            try {
-                if (socket != null && !socket.isClosed()) {
-                    socket.close();
-                    System.out.println("[LOG] Conexão fechada com " + this);
-                }
-            } catch (IOException e) {
-                System.err.println("[ERRO] Ao fechar conexão com " + this + ": " + e.getMessage());
-            }
-        }
-
-        @Override
-        public String toString() {
-            return host + ":" + porta;
-        }
-    }
+    // Espera pelos primeiros receptores quando eles vêm do registro ou do arquivo
+    private static final long ESPERA_RECEPTORES_MS = 10_000;
 
     public static void main(String[] args) {
         Scanner scanner = new Scanner(System.in);
-        List<ConexaoR> conexoes = new ArrayList<>();
+        ClienteContagem cliente = null;
+        HttpServer servidorMetricas = null;
 
         try {
             System.out.println("=== INICIANDO DISTRIBUIDOR ===");
 
-            // IPs e portas hard coded
-            String[] servidores = {
-                    "localhost:12345",
-                    "localhost:12346"
-            };
+            // -Dmetricas.porta=N expõe contadores e latências em http://127.0.0.1:N/metricas
+            int portaMetricas = Integer.getInteger("metricas.porta", 0);
+            if (portaMetricas > 0) {
+                servidorMetricas = Metricas.servir(portaMetricas);
+            }
+
+            // Receptores padrão; -Dreceptores=host:porta,... troca a lista fixa
+            String[] servidores = System.getProperty("receptores", "localhost:12345,localhost:12346").split(",");
 
-            // Criação das conexões persistentes
+            // Criação das conexões persistentes. Com -Dreceptores.arquivo=caminho ou
+            // -Dregistro.porta=N, a lista muda em uso (arquivo editado, receptores que se anunciam)
             System.out.println("\n[LOG] Estabelecendo conexões com os receptores...");
-            for (String s : servidores) {
-                try {
-                    String[] partes = s.split(":");
-                    ConexaoR conexao = new ConexaoR(partes[0], Integer.parseInt(partes[1]));
-                    conexoes.add(conexao);
-                } catch (IOException e) {
-                    System.err.println("[ERRO] Não foi possível conectar a " + s + ": " + e.getMessage());
-                    System.err.println("[AVISO] Verifique se o servidor está rodando nesta porta!");
+            String arquivo = System.getProperty("receptores.arquivo");
+            int portaRegistro = Integer.getInteger("registro.porta", 0);
+            try {
+                if (arquivo != null) {
+                    cliente = ClienteContagem.conectar(new ArquivoReceptores(Paths.get(arquivo)));
+                } else if (portaRegistro > 0) {
+                    cliente = ClienteContagem.conectar(new RegistroReceptores(portaRegistro));
+                } else {
+                    cliente = ClienteContagem.conectar(Arrays.asList(servidores));
+                }
+                if (!cliente.aguardarReceptores(ESPERA_RECEPTORES_MS)) {
+                    throw new IOException("nenhum receptor em " + ESPERA_RECEPTORES_MS + " ms");
                 }
+            } catch (IOException e) {
+                System.err.println("[ERRO FATAL] Nenhuma conexão estabelecida (" + e.getMessage() + "). Encerrando.");
+                return;
             }
 
-            if (conexoes.isEmpty()) {
-                System.err.println("[ERRO FATAL] Nenhuma conexão estabelecida. Encerrando.");
+            System.out.println("[LOG] Total de conexões estabelecidas: " + cliente.getReceptoresAtivos() + "/" +
+                    cliente.getNumeroReceptores());
+
+            // Modo não interativo: com -Dvetor.arquivo ou -Dvetor.tamanho, as perguntas saem das
+            // propriedades (-Dvetor.exibir, -Dvetor.procurado) ou ficam no padrão
+            String caminhoArquivo = System.getProperty("vetor.arquivo");
+            boolean interativo = caminhoArquivo == null && System.getProperty("vetor.tamanho") == null;
+            if (caminhoArquivo != null) {
+                contarArquivo(cliente, Paths.get(caminhoArquivo), System.getProperty("vetor.procurado"));
                 return;
             }
 
-            System.out.println("[LOG] Total de conexões estabelecidas: " + conexoes.size() + "/" + servidores.length);
-
             // Solicitar tamanho do vetor
-            System.out.print("\nDigite o tamanho do vetor (ex: 10, 1000, 5000000): ");
-            int TAM = scanner.nextInt();
+            int TAM = Integer.parseInt(perguntar(scanner, interativo,
+                    "\nDigite o tamanho do vetor (ex: 10, 1000, 5000000): ", "vetor.tamanho", null));
 
             if (TAM <= 0) {
                 System.err.println("[ERRO] Tamanho inválido. Encerrando.");
                 return;
             }
 
-            System.out.println("[LOG] Gerando vetor de " + TAM + " elementos...");
-
-            // Geração do vetor principal
-            SecureRandom rnd = new SecureRandom();
-            byte[] vetor = new byte[TAM];
-            for (int i = 0; i < TAM; i++) {
-                vetor[i] = (byte)(-100 + rnd.nextInt(201));
-            }
-            System.out.println("[LOG] Vetor gerado com sucesso!");
+            // Geração paralela do vetor principal; -Dvetor.semente=N repete o mesmo vetor
+            long semente = Long.getLong("vetor.semente", new SecureRandom().nextLong());
+            System.out.println("[LOG] Gerando vetor de " + TAM + " elementos (semente " + semente + ")...");
+            long inicioGeracao = System.currentTimeMillis();
+            byte[] vetor = GeradorVetor.gerar(TAM, -100, 100, semente);
+            SplittableRandom rnd = new SplittableRandom(semente);
+            System.out.println("[LOG] Vetor gerado com sucesso em " + (System.currentTimeMillis() - inicioGeracao) +
+                    " ms!");
 
             // Perguntar se deseja exibir o vetor
-            System.out.print("\nDeseja exibir o vetor na tela? (s/n): ");
-            String resposta = scanner.next();
+            String resposta = perguntar(scanner, interativo, "\nDeseja exibir o vetor na tela? (s/n): ",
+                    "vetor.exibir", "n");
             if (resposta.equalsIgnoreCase("s")) {
                 System.out.println("\n[VETOR]");
                 for (int i = 0; i < vetor.length; i++) {
@@ -142,33 +101,35 @@ public class Distribuidor {
                 System.out.println("\n");
             }
 
-            // Escolha do número a procurar
-            System.out.print("\nDeseja procurar um número que NÃO existe no vetor (111)? (s/n): ");
-            resposta = scanner.next();
-
+            // Escolha do número a procurar: -Dvetor.procurado=N fixa o número
+            String procuradoFixo = System.getProperty("vetor.procurado");
             byte procurado;
-            if (resposta.equalsIgnoreCase("s")) {
-                procurado = 111; // Número fora do intervalo [-100, 100]
-                System.out.println("[LOG] Número escolhido para contagem: " + procurado + " (não existe no vetor)");
+            if (procuradoFixo != null) {
+                procurado = Byte.parseByte(procuradoFixo);
+                System.out.println("[LOG] Número escolhido para contagem: " + procurado);
             } else {
-                procurado = vetor[rnd.nextInt(TAM)];
-                System.out.println("[LOG] Número escolhido para contagem: " + procurado + " (existe no vetor)");
+                resposta = perguntar(scanner, interativo,
+                        "\nDeseja procurar um número que NÃO existe no vetor (111)? (s/n): ", "vetor.ausente", "n");
+                if (resposta.equalsIgnoreCase("s")) {
+                    procurado = 111; // Número fora do intervalo [-100, 100]
+                    System.out.println("[LOG] Número escolhido para contagem: " + procurado + " (não existe no vetor)");
+                } else {
+                    procurado = vetor[rnd.nextInt(TAM)];
+                    System.out.println("[LOG] Número escolhido para contagem: " + procurado + " (existe no vetor)");
+                }
             }
 
             // Contagem distribuída principal
             System.out.println("\n[LOG] Iniciando contagem distribuída...");
             long inicio = System.currentTimeMillis();
-            int total = contarDistribuido(conexoes, vetor, procurado);
+            long total = cliente.contar(vetor, procurado).join();
             long fim = System.currentTimeMillis();
             System.out.println("\n[RESULTADO] Contagem distribuída total = " + total + " em " + (fim - inicio) + " ms");
 
             // Contagem local (sequencial para validação)
             System.out.println("[LOG] Realizando contagem local para validação...");
             long inicioLocal = System.currentTimeMillis();
-            int local = 0;
-            for (byte n : vetor) {
-                if (n == procurado) local++;
-            }
+            int local = Kernels.padrao().contar(vetor, 0, vetor.length, procurado);
             long fimLocal = System.currentTimeMillis();
             System.out.println("[RESULTADO] Contagem local (checagem) = " + local + " em " + (fimLocal - inicioLocal) + " ms");
             System.out.println("[RESULTADO] Contagem local (checagem) = " + local);
@@ -179,7 +140,67 @@ public class Distribuidor {
                 System.err.println("[ERRO] Contagens diferentes! Distribuída=" + total + ", Local=" + local);
             }
 
-        } catch (InputMismatchException e) {
+            // Histograma distribuído: uma varredura responde a contagem de qualquer valor
+            System.out.println("\n[LOG] Calculando histograma distribuído...");
+            long inicioHistograma = System.currentTimeMillis();
+            Histograma histograma = cliente.histograma(vetor).join();
+            long fimHistograma = System.currentTimeMillis();
+            System.out.println("[RESULTADO] Histograma distribuído em " + (fimHistograma - inicioHistograma) +
+                    " ms: " + histograma.contar(procurado) + " ocorrências de " + procurado + ", " +
+                    histograma.contarIntervalo((byte) -100, (byte) 100) + " valores em [-100, 100]");
+            if (histograma.contar(procurado) != local || histograma.getTotal() != vetor.length) {
+                System.err.println("[ERRO] Histograma não confere com a contagem local");
+            }
+
+            // Consulta com vários predicados: todos respondidos na mesma varredura
+            System.out.println("\n[LOG] Executando consulta com vários predicados...");
+            Predicado[] predicados = {
+                    Predicado.valor(procurado),
+                    Predicado.intervalo((byte) -100, (byte) -1),
+                    Predicado.intervalo((byte) 0, (byte) 100),
+                    Predicado.conjunto((byte) -1, (byte) 0, (byte) 1)
+            };
+            long inicioConsulta = System.currentTimeMillis();
+            long[] contagens = cliente.consultar(vetor, predicados).join();
+            long fimConsulta = System.currentTimeMillis();
+            System.out.println("[RESULTADO] Consulta em " + (fimConsulta - inicioConsulta) + " ms: " + procurado +
+                    " = " + contagens[0] + ", negativos = " + contagens[1] + ", [0, 100] = " + contagens[2] +
+                    ", {-1, 0, 1} = " + contagens[3]);
+            if (contagens[0] != local || contagens[1] != histograma.contarIntervalo((byte) -100, (byte) -1)
+                    || contagens[1] + contagens[2] != vetor.length) {
+                System.err.println("[ERRO] Consulta não confere com o histograma");
+            }
+
+            // Dataset residente: o vetor vai uma vez para os receptores e as consultas só levam o id
+            System.out.println("\n[LOG] Carregando o vetor como dataset residente nos receptores...");
+            long datasetId = 1;
+            long inicioCarga = System.currentTimeMillis();
+            cliente.carregar(datasetId, vetor).join();
+            long fimCarga = System.currentTimeMillis();
+            int consultas = 50;
+            boolean conferem = true;
+            for (int i = 0; i < consultas; i++) {
+                byte valor = (byte) (-100 + 4 * i);
+                conferem &= cliente.contar(datasetId, valor).join() == histograma.contar(valor);
+            }
+            long fimConsultas = System.currentTimeMillis();
+            // Intervalo no meio do vetor: blocos inteiros saem do índice dos receptores, só as pontas são varridas
+            int inicioIntervalo = TAM / 3, fimIntervalo = 2 * (TAM / 3);
+            long esperadoIntervalo = 0;
+            for (int i = inicioIntervalo; i < fimIntervalo; i++) {
+                if (vetor[i] == procurado) esperadoIntervalo++;
+            }
+            conferem &= cliente.contar(datasetId, procurado, inicioIntervalo, fimIntervalo).join() == esperadoIntervalo;
+            cliente.evictar(datasetId).join();
+            System.out.println("[RESULTADO] Dataset carregado em " + (fimCarga - inicioCarga) + " ms; " + consultas +
+                    " contagens sem reenvio em " + (fimConsultas - fimCarga) + " ms");
+            if (!conferem) {
+                System.err.println("[ERRO] Contagens no dataset residente não conferem com o histograma");
+            }
+
+        } catch (CompletionException e) {
+            System.err.println("[ERRO] Falhas na comunicação com receptores: " + e.getCause().getMessage());
+        } catch (InputMismatchException | NumberFormatException e) {
             System.err.println("[ERRO] Entrada inválida. Por favor, digite um número inteiro.");
         } catch (Exception e) {
             System.err.println("[ERRO] Exceção capturada no main: " + e.getMessage());
@@ -187,13 +208,17 @@ public class Distribuidor {
         } finally {
             // Envio do ComunicadoEncerramento e fechamento de conexões
             System.out.println("\n[LOG] Encerrando conexões...");
-            for (ConexaoR c : conexoes) {
-                try {
-                    c.enviarEncerramento();
-                    c.fechar();
-                } catch (IOException e) {
-                    System.err.println("[ERRO] Ao enviar encerramento para " + c + ": " + e.getMessage());
-                }
+            if (cliente != null) {
+                cliente.close();
+            }
+            HistogramaLatencia idaEVolta = Metricas.estagio(Metricas.IDA_E_VOLTA);
+            if (idaEVolta.getContagem() > 0) {
+                System.out.printf("[LOG] Ida e volta de %d pedidos: p50 %.2f ms, p99 %.2f ms, máximo %.2f ms%n",
+                        idaEVolta.getContagem(), idaEVolta.percentil(0.5) / 1e6, idaEVolta.percentil(0.99) / 1e6,
+                        idaEVolta.getMaximo() / 1e6);
+            }
+            if (servidorMetricas != null) {
+                servidorMetricas.stop(0);
             }
 
             scanner.close();
@@ -201,67 +226,71 @@ public class Distribuidor {
         }
     }
 
-    // Realiza a contagem distribuída enviando pedidos em paralelo
-    private static int contarDistribuido(List<ConexaoR> conexoes, byte[] vetor, byte procurado) throws Exception {
-        List<Thread> threads = new ArrayList<>();
-        List<Resposta> respostas = Collections.synchronizedList(new ArrayList<>());
-        List<Exception> excecoes = Collections.synchronizedList(new ArrayList<>());
-
-        int tamanhoParte = vetor.length / conexoes.size();
-        int resto = vetor.length % conexoes.size();
-
-        System.out.println("[LOG] Dividindo vetor em " + conexoes.size() + " partes...");
-
-        for (int i = 0; i < conexoes.size(); i++) {
-            final int inicio = i * tamanhoParte;
-            final int fim = inicio + tamanhoParte + (i == conexoes.size() - 1 ? resto : 0);
-            final byte[] subVetor = Arrays.copyOfRange(vetor, inicio, fim);
-
-            final int indice = i;
-            Thread thread = new Thread(() -> {
-                try {
-                    ConexaoR c = conexoes.get(indice);
-                    System.out.println("[LOG] Thread-" + indice + " enviando para " + c +
-                            " (tam=" + subVetor.length + ", alvo=" + procurado + ")");
-
-                    Pedido pedido = new Pedido(subVetor, procurado);
-                    Resposta r = c.enviarPedido(pedido);
+    // Resposta de uma pergunta: a propriedade, se definida; fora do modo interativo, o padrão
+    private static String perguntar(Scanner scanner, boolean interativo, String pergunta, String propriedade,
+                                    String padrao) {
+        String valor = System.getProperty(propriedade);
+        if (valor != null) {
+            return valor;
+        }
+        if (!interativo && padrao != null) {
+            return padrao;
+        }
+        System.out.print(pergunta);
+        return scanner.next();
+    }
 
-                    respostas.add(r);
-                    System.out.println("[LOG] Thread-" + indice + " recebeu resposta de " + c +
-                            ": " + r.getContagem() + " ocorrências");
-                } catch (Exception e) {
-                    System.err.println("[ERRO] Thread-" + indice + " falhou ao comunicar com " +
-                            conexoes.get(indice) + ": " + e.getMessage());
-                    excecoes.add(e);
-                }
-            }, "Thread-Receptor-" + i);
+    /**
+     * Modo arquivo: conta um byte num arquivo de dados, mapeado região por região
+     * ({@link ArquivoDados}) e enviado aos receptores em fatias, sem carregar o
+     * arquivo no heap. Sem {@code procuradoFixo}, conta o byte de uma posição
+     * sorteada. A validação local varre as mesmas regiões.
+     */
+    private static void contarArquivo(ClienteContagem cliente, Path caminho, String procuradoFixo) throws IOException {
+        try (ArquivoDados arquivo = ArquivoDados.abrir(caminho)) {
+            System.out.println("[LOG] Arquivo " + arquivo + ": " + arquivo.getTamanho() + " bytes em " +
+                    arquivo.getNumeroRegioes() + " regiões mapeadas");
+            if (arquivo.getTamanho() == 0) {
+                System.err.println("[ERRO] Arquivo vazio. Encerrando.");
+                return;
+            }
+            byte procurado = procuradoFixo != null
+                    ? Byte.parseByte(procuradoFixo)
+                    : arquivo.ler(new SplittableRandom().nextLong(arquivo.getTamanho()));
+            System.out.println("[LOG] Número escolhido para contagem: " + procurado);
 
-            threads.add(thread);
-            thread.start();
-            System.out.println("[LOG] Thread-" + indice + " iniciada");
-        }
+            System.out.println("\n[LOG] Iniciando contagem distribuída do arquivo...");
+            long inicio = System.currentTimeMillis();
+            long total = cliente.contar(arquivo, procurado).join();
+            long fim = System.currentTimeMillis();
+            System.out.printf("%n[RESULTADO] Contagem distribuída total = %d em %d ms (%.2f GB/s)%n", total,
+                    fim - inicio, arquivo.getTamanho() / 1e6 / Math.max(1, fim - inicio));
 
-        // Sincronização das threads usando join()
-        System.out.println("[LOG] Aguardando conclusão de todas as threads...");
-        for (int i = 0; i < threads.size(); i++) {
-            try {
-                threads.get(i).join();
-                System.out.println("[LOG] Thread-" + i + " finalizada");
-            } catch (InterruptedException e) {
-                System.err.println("[ERRO] Thread-" + i + " interrompida: " + e.getMessage());
-                Thread.currentThread().interrupt();
+            System.out.println("[LOG] Realizando contagem local para validação...");
+            long inicioLocal = System.currentTimeMillis();
+            long local = 0;
+            for (int r = 0; r < arquivo.getNumeroRegioes(); r++) {
+                ByteBuffer regiao = arquivo.regiao(r);
+                local += Kernels.padrao().contar(regiao, 0, regiao.limit(), procurado);
+            }
+            long fimLocal = System.currentTimeMillis();
+            System.out.println("[RESULTADO] Contagem local (checagem) = " + local + " em " + (fimLocal - inicioLocal) +
+                    " ms");
+            if (total == local) {
+                System.out.println("[SUCESSO] Contagens coincidem! Sistema funcionando corretamente.");
+            } else {
+                System.err.println("[ERRO] Contagens diferentes! Distribuída=" + total + ", Local=" + local);
             }
-        }
 
-        // Verificar se houve exceções
-        if (!excecoes.isEmpty()) {
-            System.err.println("[AVISO] " + excecoes.size() + " thread(s) falharam durante a execução");
-            throw new Exception("Falhas na comunicação com receptores: " + excecoes.size() + " erros");
+            System.out.println("\n[LOG] Calculando histograma distribuído do arquivo...");
+            long inicioHistograma = System.currentTimeMillis();
+            Histograma histograma = cliente.histograma(arquivo).join();
+            long fimHistograma = System.currentTimeMillis();
+            System.out.println("[RESULTADO] Histograma distribuído em " + (fimHistograma - inicioHistograma) +
+                    " ms: " + histograma.contar(procurado) + " ocorrências de " + procurado);
+            if (histograma.contar(procurado) != local || histograma.getTotal() != arquivo.getTamanho()) {
+                System.err.println("[ERRO] Histograma não confere com a contagem local");
+            }
         }
-
-        // Soma dos resultados
-        System.out.println("[LOG] Somando resultados parciais...");
-        return respostas.stream().mapToInt(r -> r.getContagem()).sum();
     }
-}
\ No newline at end of file
+}
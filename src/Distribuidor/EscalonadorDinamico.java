@@ -0,0 +1,281 @@
+package src.Distribuidor;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import src.Metricas.Log;
+
+/**
+ * Escalonamento dinâmico de uma consulta: o vetor é cortado em pedaços que os
+ * receptores puxam de uma fila comum, cada um com até {@link #JANELA} pedaços
+ * em andamento. Receptores rápidos levam mais pedaços, e um receptor travado
+ * segura só os pedaços que já tinha.
+ *
+ * Quando a fila esvazia, um receptor livre recebe uma cópia do pedaço em
+ * andamento há mais tempo (reemissão especulativa). Vale a primeira resposta,
+ * e as cópias que chegarem depois são descartadas. Se uma conexão falha, os
+ * pedaços dela voltam para a fila e ela sai da consulta; receptores já
+ * desconectados no início não participam. Um receptor que recusa um pedaço por
+ * ocupação continua na consulta: o pedaço volta para a fila e ele só recebe
+ * outro depois da espera que pediu.
+ *
+ * Uma instância atende uma única consulta.
+ */
+final class EscalonadorDinamico<R> {
+
+    /** Pedaços em andamento por receptor: esconde a ida e volta da rede entre um pedaço e o próximo. */
+    static final int JANELA = 2;
+
+    // Cópias de um mesmo pedaço em andamento ao mesmo tempo, contando a original
+    private static final int MAX_COPIAS = 2;
+
+    private static final int PEDACO_MINIMO = 256 * 1024;
+    private static final int PEDACO_MAXIMO = 8 * 1024 * 1024;
+
+    // Pedaços por receptor quando o tamanho é automático: folga para equilibrar a carga
+    private static final int PEDACOS_POR_RECEPTOR = 8;
+
+    private final List<ConexaoR> conexoes;
+    private final Executor executor;
+    private final ClienteContagem.EnvioFatia<R> envio;
+    private final int tamanho;
+    private final int tamanhoPedaco;
+    private final int numeroPedacos;
+
+    private final CompletableFuture<Void> resultado = new CompletableFuture<>();
+
+    // Estado da consulta, protegido por this
+    private final ArrayDeque<Integer> fila = new ArrayDeque<>();
+    private final Object[] respostas;
+    private final int[] copias;
+    private final int[] recusas;
+    private final long[] emitidoEm;
+    private final BitSet[] enviadoPara;
+    private final int[] emVoo;
+    private final boolean[] descartada;
+    // Receptor ocupado com um alimentar já agendado para o fim da espera
+    private final boolean[] aguardando;
+    private int concluidos;
+    private int reemissoes;
+
+    EscalonadorDinamico(List<ConexaoR> conexoes, Executor executor, int tamanho, int tamanhoPedaco,
+                        ClienteContagem.EnvioFatia<R> envio) {
+        this.conexoes = conexoes;
+        this.executor = executor;
+        this.envio = envio;
+        this.tamanho = tamanho;
+        this.tamanhoPedaco = tamanhoPedaco > 0 ? tamanhoPedaco : tamanhoAutomatico(tamanho, conexoes.size());
+        this.numeroPedacos = Math.max(1, (tamanho + this.tamanhoPedaco - 1) / this.tamanhoPedaco);
+        this.respostas = new Object[numeroPedacos];
+        this.copias = new int[numeroPedacos];
+        this.recusas = new int[numeroPedacos];
+        this.emitidoEm = new long[numeroPedacos];
+        this.enviadoPara = new BitSet[numeroPedacos];
+        this.emVoo = new int[conexoes.size()];
+        this.descartada = new boolean[conexoes.size()];
+        this.aguardando = new boolean[conexoes.size()];
+        for (int p = 0; p < numeroPedacos; p++) {
+            fila.add(p);
+            enviadoPara[p] = new BitSet(conexoes.size());
+        }
+        // Receptores desconectados ficam fora desta consulta
+        for (int r = 0; r < conexoes.size(); r++) {
+            descartada[r] = !conexoes.get(r).isAtiva();
+        }
+    }
+
+    static int tamanhoAutomatico(int tamanho, int receptores) {
+        return Math.max(PEDACO_MINIMO, Math.min(PEDACO_MAXIMO, tamanho / (receptores * PEDACOS_POR_RECEPTOR)));
+    }
+
+    /** Inicia a consulta; o resultado traz a resposta de cada pedaço, na ordem do vetor. */
+    @SuppressWarnings("unchecked")
+    CompletableFuture<List<R>> executar() {
+        boolean algumAtivo = false;
+        for (boolean d : descartada) {
+            algumAtivo |= !d;
+        }
+        if (!algumAtivo) {
+            return CompletableFuture.failedFuture(new IOException("Nenhum receptor ativo"));
+        }
+        for (int r = 0; r < conexoes.size(); r++) {
+            alimentar(r);
+        }
+        return resultado.thenApply(ignorado -> {
+            List<R> lista = new ArrayList<>(numeroPedacos);
+            for (Object resposta : respostas) {
+                lista.add((R) resposta);
+            }
+            return lista;
+        });
+    }
+
+    // Preenche a janela do receptor r com pedaços da fila ou, sem fila, com cópias de retardatários.
+    // Receptor ocupado (inclusive por recusas de outras consultas) volta a ser alimentado no fim da espera
+    private void alimentar(int r) {
+        while (true) {
+            int pedaco;
+            long espera = 0;
+            synchronized (this) {
+                if (resultado.isDone() || descartada[r] || emVoo[r] >= JANELA || aguardando[r]) {
+                    return;
+                }
+                espera = conexoes.get(r).getOcupacaoRestante();
+                aguardando[r] = espera > 0;
+            }
+            if (espera > 0) {
+                CompletableFuture.delayedExecutor(espera, TimeUnit.NANOSECONDS, executor).execute(() -> {
+                    synchronized (this) {
+                        aguardando[r] = false;
+                    }
+                    alimentar(r);
+                });
+                return;
+            }
+            synchronized (this) {
+                if (resultado.isDone() || descartada[r] || emVoo[r] >= JANELA) {
+                    return;
+                }
+                pedaco = proximoPedaco(r);
+                if (pedaco < 0) {
+                    return;
+                }
+                copias[pedaco]++;
+                enviadoPara[pedaco].set(r);
+                emitidoEm[pedaco] = copias[pedaco] == 1 ? System.nanoTime() : emitidoEm[pedaco];
+                emVoo[r]++;
+            }
+            emitir(r, pedaco);
+        }
+    }
+
+    // Chamado com o lock: próximo pedaço da fila, ou o retardatário mais antigo que r ainda não tem
+    private int proximoPedaco(int r) {
+        while (!fila.isEmpty()) {
+            int pedaco = fila.poll();
+            if (respostas[pedaco] == null) {
+                return pedaco;
+            }
+        }
+        int escolhido = -1;
+        for (int p = 0; p < numeroPedacos; p++) {
+            if (respostas[p] == null && copias[p] > 0 && copias[p] < MAX_COPIAS && !enviadoPara[p].get(r)
+                    && (escolhido < 0 || emitidoEm[p] < emitidoEm[escolhido])) {
+                escolhido = p;
+            }
+        }
+        if (escolhido >= 0) {
+            reemissoes++;
+        }
+        return escolhido;
+    }
+
+    private void emitir(int r, int pedaco) {
+        ConexaoR c = conexoes.get(r);
+        int inicio = pedaco * tamanhoPedaco;
+        int fim = Math.min(tamanho, inicio + tamanhoPedaco);
+        long enviadoEm = System.nanoTime();
+        // A escrita pode bloquear; vai para o executor como no escalonamento estático
+        CompletableFuture.supplyAsync(() -> envio.enviar(c, inicio, fim), executor)
+                .thenCompose(resposta -> resposta)
+                .whenComplete((resposta, erro) -> {
+                    if (erro == null) {
+                        if (fim - inicio >= ClienteContagem.TAMANHO_MINIMO_OBSERVACAO) {
+                            c.observar(fim - inicio, System.nanoTime() - enviadoEm);
+                        }
+                        concluir(r, pedaco, resposta);
+                    } else if (causa(erro) instanceof ReceptorOcupado) {
+                        adiar(r, pedaco, (ReceptorOcupado) causa(erro));
+                    } else {
+                        falhar(r, pedaco, erro);
+                    }
+                });
+    }
+
+    private void concluir(int r, int pedaco, R resposta) {
+        boolean terminou;
+        int reemitidos;
+        synchronized (this) {
+            emVoo[r]--;
+            copias[pedaco]--;
+            if (respostas[pedaco] != null) {
+                // Outra cópia chegou antes
+                terminou = false;
+            } else {
+                respostas[pedaco] = resposta;
+                concluidos++;
+                terminou = concluidos == numeroPedacos;
+            }
+            reemitidos = reemissoes;
+        }
+        if (terminou) {
+            if (Log.isDetalhe()) {
+                Log.detalhe("Consulta dinâmica concluída: " + numeroPedacos + " pedaços de " +
+                        tamanhoPedaco + " bytes, " + reemitidos + " reemissões especulativas");
+            }
+            resultado.complete(null);
+        } else {
+            alimentar(r);
+        }
+    }
+
+    private static Throwable causa(Throwable erro) {
+        return erro instanceof CompletionException && erro.getCause() != null ? erro.getCause() : erro;
+    }
+
+    // Recusa por ocupação: o pedaço volta à fila para os outros receptores
+    private void adiar(int r, int pedaco, ReceptorOcupado ocupado) {
+        boolean excedeu;
+        synchronized (this) {
+            emVoo[r]--;
+            copias[pedaco]--;
+            enviadoPara[pedaco].clear(r);
+            excedeu = ++recusas[pedaco] > ClienteContagem.MAX_RECUSAS;
+            if (respostas[pedaco] == null && copias[pedaco] == 0) {
+                fila.addFirst(pedaco);
+            }
+        }
+        if (excedeu) {
+            resultado.completeExceptionally(ocupado);
+            return;
+        }
+        // r, ocupado, só agenda a sua volta
+        for (int outro = 0; outro < conexoes.size(); outro++) {
+            alimentar(outro);
+        }
+    }
+
+    private void falhar(int r, int pedaco, Throwable erro) {
+        boolean semReceptores;
+        synchronized (this) {
+            emVoo[r]--;
+            copias[pedaco]--;
+            if (!descartada[r]) {
+                descartada[r] = true;
+                Log.aviso(conexoes.get(r) + " removido da consulta: " +
+                        (erro.getCause() != null ? erro.getCause().getMessage() : erro.getMessage()));
+            }
+            if (respostas[pedaco] == null && copias[pedaco] == 0) {
+                fila.addFirst(pedaco);
+            }
+            semReceptores = true;
+            for (boolean d : descartada) {
+                semReceptores &= d;
+            }
+        }
+        if (semReceptores) {
+            resultado.completeExceptionally(erro);
+            return;
+        }
+        // Quem estiver livre pega o pedaço devolvido
+        for (int outro = 0; outro < conexoes.size(); outro++) {
+            alimentar(outro);
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package src.Distribuidor;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Set;
+
+/**
+ * De onde o {@link ClienteContagem} tira a lista de receptores quando ela muda
+ * em uso: um arquivo ({@link ArquivoReceptores}) ou o registro em que os
+ * receptores se anunciam ({@link RegistroReceptores}). Consultada a cada ciclo
+ * de manutenção do cliente.
+ */
+public interface FonteReceptores extends Closeable {
+
+    /** Receptores de agora, no formato "host:porta". */
+    Set<String> receptores() throws IOException;
+
+    @Override
+    default void close() {
+    }
+}
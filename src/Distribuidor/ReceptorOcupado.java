@@ -0,0 +1,23 @@
+package src.Distribuidor;
+
+import java.io.IOException;
+
+/**
+ * O receptor recusou o pedido por estar ocupado ({@code RespostaOcupado}).
+ * Diferente de uma falha, a conexão segue boa: o pedido vai a outro receptor
+ * ou volta a este depois de {@link #getEsperaMs()}.
+ */
+public class ReceptorOcupado extends IOException {
+
+    private final int esperaMs;
+
+    public ReceptorOcupado(String mensagem, int esperaMs) {
+        super(mensagem);
+        this.esperaMs = esperaMs;
+    }
+
+    /** Espera sugerida pelo receptor antes de repetir o pedido nele. */
+    public int getEsperaMs() {
+        return esperaMs;
+    }
+}
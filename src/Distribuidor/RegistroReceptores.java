@@ -0,0 +1,86 @@
+package src.Distribuidor;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.SocketException;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import src.Comunicacao.Anuncio;
+import src.Metricas.Log;
+
+/**
+ * Registro de receptores: escuta numa porta UDP os {@link Anuncio}s que os
+ * receptores iniciados com --registro mandam a cada segundo. Um receptor sai
+ * da lista ao anunciar a saída ou quando fica {@link #PRAZO_MS} sem se anunciar
+ * (caiu ou perdeu a rede).
+ */
+public class RegistroReceptores implements FonteReceptores {
+
+    // -Dregistro.prazo=ms: silêncio depois do qual o receptor é dado como fora
+    static final long PRAZO_MS = Long.getLong("registro.prazo", 5000);
+
+    private final DatagramSocket socket;
+    // "host:porta" -> instante do último anúncio (System.nanoTime)
+    private final Map<String, Long> ultimoAnuncio = new ConcurrentHashMap<>();
+
+    public RegistroReceptores(int porta) throws SocketException {
+        this.socket = new DatagramSocket(porta);
+        Thread escuta = new Thread(this::escutar, "RegistroReceptores");
+        escuta.setDaemon(true);
+        escuta.start();
+        Log.info("Registro de receptores na porta UDP " + socket.getLocalPort());
+    }
+
+    public int getPorta() {
+        return socket.getLocalPort();
+    }
+
+    private void escutar() {
+        byte[] buffer = new byte[512];
+        DatagramPacket pacote = new DatagramPacket(buffer, buffer.length);
+        while (!socket.isClosed()) {
+            try {
+                socket.receive(pacote);
+                Anuncio anuncio = Anuncio.decodificar(pacote.getData(), pacote.getLength());
+                if (anuncio.isSaida()) {
+                    ultimoAnuncio.remove(anuncio.getEndereco());
+                } else if (ultimoAnuncio.put(anuncio.getEndereco(), System.nanoTime()) == null) {
+                    Log.info("Receptor " + anuncio.getEndereco() + " registrado");
+                }
+            } catch (IllegalArgumentException e) {
+                Log.aviso("De " + pacote.getSocketAddress() + ": " + e.getMessage());
+            } catch (IOException e) {
+                if (!socket.isClosed()) {
+                    Log.erro("No registro de receptores: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    @Override
+    public Set<String> receptores() {
+        long limite = System.nanoTime() - PRAZO_MS * 1_000_000;
+        ultimoAnuncio.entrySet().removeIf(entrada -> {
+            boolean expirou = entrada.getValue() - limite < 0;
+            if (expirou) {
+                Log.aviso("Receptor " + entrada.getKey() + " sem anúncio há mais de " +
+                        PRAZO_MS + " ms");
+            }
+            return expirou;
+        });
+        return new TreeSet<>(ultimoAnuncio.keySet());
+    }
+
+    @Override
+    public void close() {
+        socket.close();
+    }
+
+    @Override
+    public String toString() {
+        return "registro UDP :" + socket.getLocalPort();
+    }
+}
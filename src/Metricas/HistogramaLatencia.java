@@ -0,0 +1,115 @@
+package src.Metricas;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histograma de latências em nanossegundos, sem locks: baldes log-lineares
+ * (cada potência de 2 dividida em {@link #SUB} baldes, como no HdrHistogram),
+ * com erro relativo de no máximo 1/32 (~3%) até 2^40 ns (~18 min); acima
+ * disso os valores caem no último balde. Registrar é um incremento atômico num
+ * balde e dois LongAdder, barato o bastante para o caminho de cada pedido.
+ *
+ * Os percentis são calculados sobre uma leitura não atômica dos baldes: com
+ * registros concorrentes, o resultado pode não incluir os mais recentes.
+ */
+public final class HistogramaLatencia {
+
+    private static final int BITS_SUB = 5;
+    private static final int SUB = 1 << BITS_SUB;
+    private static final int MAGNITUDE_MAXIMA = 40;
+    private static final int BALDES = SUB + (MAGNITUDE_MAXIMA - BITS_SUB + 1) * SUB;
+
+    private final AtomicLongArray baldes = new AtomicLongArray(BALDES);
+    private final LongAdder contagem = new LongAdder();
+    private final LongAdder soma = new LongAdder();
+    private final LongAccumulator maximo = new LongAccumulator(Long::max, 0);
+
+    public void registrar(long nanos) {
+        long valor = Math.max(0, nanos);
+        baldes.incrementAndGet(indice(valor));
+        contagem.increment();
+        soma.add(valor);
+        maximo.accumulate(valor);
+    }
+
+    /** Soma as contagens de {@code outro} a este (por exemplo, histogramas de várias threads). */
+    public void somar(HistogramaLatencia outro) {
+        for (int i = 0; i < BALDES; i++) {
+            long n = outro.baldes.get(i);
+            if (n != 0) {
+                baldes.addAndGet(i, n);
+            }
+        }
+        contagem.add(outro.contagem.sum());
+        soma.add(outro.soma.sum());
+        maximo.accumulate(outro.maximo.get());
+    }
+
+    public long getContagem() {
+        return contagem.sum();
+    }
+
+    /** Soma das latências registradas, em nanossegundos. */
+    public long getSoma() {
+        return soma.sum();
+    }
+
+    public long getMaximo() {
+        return maximo.get();
+    }
+
+    public double getMedia() {
+        long n = contagem.sum();
+        return n == 0 ? 0 : (double) soma.sum() / n;
+    }
+
+    /**
+     * Latência abaixo da qual estão {@code fracao} dos registros (0.99 = p99),
+     * em nanossegundos: o maior valor do balde em que o percentil cai, limitado
+     * ao máximo observado. 0 sem registros.
+     */
+    public long percentil(double fracao) {
+        long[] copia = new long[BALDES];
+        long total = 0;
+        for (int i = 0; i < BALDES; i++) {
+            copia[i] = baldes.get(i);
+            total += copia[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long alvo = Math.max(1, (long) Math.ceil(fracao * total));
+        long acumulado = 0;
+        for (int i = 0; i < BALDES; i++) {
+            acumulado += copia[i];
+            if (acumulado >= alvo) {
+                return Math.min(limiteSuperior(i), maximo.get());
+            }
+        }
+        return maximo.get();
+    }
+
+    static int indice(long valor) {
+        if (valor < SUB) {
+            return (int) valor;
+        }
+        int magnitude = 63 - Long.numberOfLeadingZeros(valor);
+        if (magnitude > MAGNITUDE_MAXIMA) {
+            return BALDES - 1;
+        }
+        int deslocamento = magnitude - BITS_SUB;
+        return SUB + deslocamento * SUB + (int) ((valor >>> deslocamento) - SUB);
+    }
+
+    // Maior valor que cai no balde i
+    static long limiteSuperior(int i) {
+        if (i < SUB) {
+            return i;
+        }
+        int deslocamento = (i - SUB) / SUB;
+        long sub = SUB + (i - SUB) % SUB;
+        return ((sub + 1) << deslocamento) - 1;
+    }
+}
@@ -0,0 +1,149 @@
+package src.Metricas;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Log assíncrono com nível: quem registra só enfileira a linha, e uma thread
+ * daemon escreve no console. Com a fila cheia, linhas info e detalhe são
+ * descartadas (e contadas em log_linhas_descartadas) em vez de segurar quem
+ * registrou; erros e avisos esperam até {@link #ESPERA_GRAVE_MS} por uma vaga e,
+ * sem ela, são escritos na hora. A saída da JVM esvazia a fila.
+ *
+ * Nível pela propriedade -Dlog.nivel=erro|aviso|info|detalhe (padrão info) ou
+ * por {@link #setNivel}. O nível detalhe traz uma linha por pedido; no caminho
+ * de cada pedido, teste {@link #isDetalhe()} antes de montar a mensagem.
+ */
+public final class Log {
+
+    public enum Nivel { ERRO, AVISO, INFO, DETALHE }
+
+    private static final int CAPACIDADE_FILA = 16 * 1024;
+
+    // Espera máxima por uma vaga na fila para erros e avisos
+    private static final long ESPERA_GRAVE_MS = 50;
+
+    private static volatile Nivel nivel = nivelDe(System.getProperty("log.nivel", "info"));
+
+    private static final BlockingQueue<Linha> fila = new ArrayBlockingQueue<>(CAPACIDADE_FILA);
+    private static final LongAdder descartadas = Metricas.contador("log_linhas_descartadas");
+
+    private static final class Linha {
+        final Nivel nivel;
+        final String texto;
+
+        Linha(Nivel nivel, String texto) {
+            this.nivel = nivel;
+            this.texto = texto;
+        }
+    }
+
+    static {
+        Thread escritor = new Thread(Log::escrever, "Log");
+        escritor.setDaemon(true);
+        escritor.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(Log::esvaziar, "LogSaida"));
+    }
+
+    private Log() {
+    }
+
+    /** @throws IllegalArgumentException se o nome não é um nível */
+    public static Nivel nivelDe(String nome) {
+        return Nivel.valueOf(nome.toUpperCase());
+    }
+
+    public static void setNivel(Nivel novo) {
+        nivel = novo;
+    }
+
+    public static Nivel getNivel() {
+        return nivel;
+    }
+
+    public static boolean isDetalhe() {
+        return nivel == Nivel.DETALHE;
+    }
+
+    public static void erro(String mensagem) {
+        registrar(Nivel.ERRO, mensagem);
+    }
+
+    public static void aviso(String mensagem) {
+        registrar(Nivel.AVISO, mensagem);
+    }
+
+    public static void info(String mensagem) {
+        registrar(Nivel.INFO, mensagem);
+    }
+
+    public static void detalhe(String mensagem) {
+        registrar(Nivel.DETALHE, mensagem);
+    }
+
+    private static void registrar(Nivel nivelLinha, String mensagem) {
+        if (nivelLinha.compareTo(nivel) > 0) {
+            return;
+        }
+        Linha linha = new Linha(nivelLinha, mensagem);
+        if (fila.offer(linha)) {
+            return;
+        }
+        if (nivelLinha.compareTo(Nivel.AVISO) > 0) {
+            descartadas.increment();
+            return;
+        }
+        try {
+            if (fila.offer(linha, ESPERA_GRAVE_MS, TimeUnit.MILLISECONDS)) {
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Pode sair antes de linhas mais antigas ainda na fila, mas não se perde
+        imprimir(List.of(linha));
+    }
+
+    private static void escrever() {
+        List<Linha> lote = new ArrayList<>();
+        while (true) {
+            try {
+                lote.add(fila.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            fila.drainTo(lote);
+            imprimir(lote);
+            lote.clear();
+        }
+    }
+
+    private static void esvaziar() {
+        List<Linha> resto = new ArrayList<>();
+        fila.drainTo(resto);
+        imprimir(resto);
+    }
+
+    private static synchronized void imprimir(List<Linha> linhas) {
+        for (Linha linha : linhas) {
+            PrintStream saida = linha.nivel.compareTo(Nivel.AVISO) <= 0 ? System.err : System.out;
+            saida.println(prefixo(linha.nivel) + linha.texto);
+        }
+    }
+
+    private static String prefixo(Nivel nivel) {
+        switch (nivel) {
+            case ERRO:
+                return "[ERRO] ";
+            case AVISO:
+                return "[AVISO] ";
+            default:
+                return "[LOG] ";
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package src.Metricas;
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Métricas do processo: contadores (LongAdder) e um {@link HistogramaLatencia}
+ * por estágio do caminho de um pedido. Quem mede guarda o contador ou o
+ * histograma num campo static final, então medir não consulta o mapa.
+ *
+ * {@link #servir(int)} expõe tudo por HTTP em /metricas, no formato de texto
+ * do Prometheus, só na interface local.
+ */
+public final class Metricas {
+
+    /** Do cabeçalho de um quadro ao comunicado montado: leitura do corpo e decodificação (protocolo binário). */
+    public static final String DESSERIALIZACAO = "desserializacao";
+    /** Da submissão ao pool de contagem até a tarefa começar. */
+    public static final String FILA = "fila";
+    /** Contagem, histograma ou consulta de uma parte, já no pool. */
+    public static final String CONTAGEM = "contagem";
+    /** Codificação e escrita de um comunicado no socket. */
+    public static final String SERIALIZACAO = "serializacao";
+    /** Do envio de um pedido pelo cliente até a resposta chegar. */
+    public static final String IDA_E_VOLTA = "ida_e_volta";
+
+    private static final double[] QUANTIS = {0.5, 0.9, 0.99, 0.999};
+
+    private static final Map<String, HistogramaLatencia> estagios = new ConcurrentSkipListMap<>();
+    private static final Map<String, LongAdder> contadores = new ConcurrentSkipListMap<>();
+
+    private Metricas() {
+    }
+
+    public static HistogramaLatencia estagio(String nome) {
+        return estagios.computeIfAbsent(nome, n -> new HistogramaLatencia());
+    }
+
+    public static LongAdder contador(String nome) {
+        return contadores.computeIfAbsent(nome, n -> new LongAdder());
+    }
+
+    /** Todas as métricas no formato de texto do Prometheus; latências em segundos. */
+    public static String exportar() {
+        StringBuilder texto = new StringBuilder();
+        texto.append("# TYPE estagio_segundos summary\n");
+        for (Map.Entry<String, HistogramaLatencia> entrada : estagios.entrySet()) {
+            String rotulo = "estagio=\"" + entrada.getKey() + "\"";
+            HistogramaLatencia h = entrada.getValue();
+            for (double q : QUANTIS) {
+                texto.append("estagio_segundos{").append(rotulo).append(",quantile=\"").append(q).append("\"} ")
+                        .append(h.percentil(q) / 1e9).append('\n');
+            }
+            texto.append("estagio_segundos_sum{").append(rotulo).append("} ").append(h.getSoma() / 1e9).append('\n');
+            texto.append("estagio_segundos_count{").append(rotulo).append("} ").append(h.getContagem()).append('\n');
+        }
+        for (Map.Entry<String, LongAdder> entrada : contadores.entrySet()) {
+            // A família do contador não leva o sufixo _total; só a amostra leva
+            texto.append("# TYPE ").append(entrada.getKey()).append(" counter\n");
+            texto.append(entrada.getKey()).append("_total ").append(entrada.getValue().sum()).append('\n');
+        }
+        return texto.toString();
+    }
+
+    /**
+     * Abre o endpoint HTTP das métricas em 127.0.0.1:{@code porta} (GET
+     * /metricas). A thread do servidor não é daemon: pare o servidor devolvido
+     * ao encerrar o processo.
+     */
+    public static HttpServer servir(int porta) throws IOException {
+        HttpServer servidor = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), porta), 0);
+        servidor.createContext("/metricas", troca -> {
+            byte[] corpo = exportar().getBytes(StandardCharsets.UTF_8);
+            troca.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            troca.sendResponseHeaders(200, corpo.length);
+            try (OutputStream saida = troca.getResponseBody()) {
+                saida.write(corpo);
+            }
+        });
+        servidor.start();
+        Log.info("Métricas em http://127.0.0.1:" + servidor.getAddress().getPort() + "/metricas");
+        return servidor;
+    }
+}
@@ -0,0 +1,122 @@
+package src.Receptor;
+
+import java.io.IOException;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import src.Comunicacao.Capacidade;
+import src.Comunicacao.CarregarDataset;
+import src.Comunicacao.Comunicado;
+import src.Comunicacao.EvictarDataset;
+import src.Comunicacao.Pedido;
+import src.Comunicacao.PedidoConsulta;
+import src.Comunicacao.PedidoDataset;
+import src.Comunicacao.PedidoHistograma;
+import src.Comunicacao.Resposta;
+import src.Comunicacao.RespostaConsulta;
+import src.Comunicacao.RespostaHistograma;
+import src.Distribuidor.ClienteContagem;
+import src.Distribuidor.FonteReceptores;
+import src.Distribuidor.RegistroReceptores;
+
+/**
+ * Receptor agregador (--filhos ou --filhos-registro): em vez de contar, divide
+ * cada pedido entre receptores filhos por um {@link ClienteContagem} próprio e
+ * responde com a soma. Como o agregador fala o mesmo protocolo de um receptor
+ * comum, agregadores podem ser filhos de outros agregadores, formando uma
+ * árvore: cada nível só recebe as respostas dos filhos diretos, então a
+ * agregação cresce com a profundidade, não com o número de folhas.
+ *
+ * Divisão, pesos por vazão, failover e heartbeats são os do cliente. A
+ * capacidade anunciada para cima é a soma das vazões estimadas dos filhos.
+ */
+final class Agregador {
+
+    private final ClienteContagem filhos;
+
+    private Agregador(ClienteContagem filhos) {
+        this.filhos = filhos;
+    }
+
+    /**
+     * Conecta aos filhos da lista fixa ou, com {@code portaRegistro} > 0, abre um
+     * registro em que eles se anunciam. Filhos fora do ar na partida ficam para
+     * a reconexão: o agregador sobe mesmo sem nenhum.
+     */
+    static Agregador conectar(List<String> lista, int portaRegistro) throws IOException {
+        FonteReceptores fonte;
+        if (portaRegistro > 0) {
+            fonte = new RegistroReceptores(portaRegistro);
+        } else {
+            Set<String> fixos = new LinkedHashSet<>(lista);
+            fonte = () -> fixos;
+        }
+        return new Agregador(ClienteContagem.conectar(fonte));
+    }
+
+    /** Se o comunicado é repassado aos filhos por {@link #atender}. */
+    static boolean repassa(Comunicado objeto) {
+        return objeto instanceof Pedido || objeto instanceof PedidoHistograma || objeto instanceof PedidoConsulta
+                || Receptor.isDataset(objeto);
+    }
+
+    CompletableFuture<Comunicado> atender(Comunicado objeto) {
+        if (objeto instanceof Pedido) {
+            Pedido pedido = (Pedido) objeto;
+            return filhos.contar(pedido.getNumeros(), pedido.getProcurado())
+                    .thenApply(total -> new Resposta(pedido.getId(), total));
+        }
+        if (objeto instanceof PedidoHistograma) {
+            PedidoHistograma pedido = (PedidoHistograma) objeto;
+            return filhos.histograma(pedido.getNumeros())
+                    .thenApply(histograma -> new RespostaHistograma(pedido.getId(), paraInt(histograma.getContagens())));
+        }
+        if (objeto instanceof PedidoConsulta) {
+            PedidoConsulta pedido = (PedidoConsulta) objeto;
+            return filhos.consultar(pedido.getNumeros(), pedido.getPredicados())
+                    .thenApply(totais -> new RespostaConsulta(pedido.getId(), paraInt(totais)));
+        }
+        if (objeto instanceof CarregarDataset) {
+            CarregarDataset carga = (CarregarDataset) objeto;
+            byte[] numeros = carga.getNumeros();
+            CompletableFuture<Void> envio = carga.isAnexar()
+                    ? filhos.anexar(carga.getDatasetId(), numeros)
+                    : filhos.carregar(carga.getDatasetId(), numeros);
+            return envio.thenApply(ignorado -> new Resposta(carga.getId(), numeros.length));
+        }
+        if (objeto instanceof PedidoDataset) {
+            PedidoDataset pedido = (PedidoDataset) objeto;
+            CompletableFuture<Long> contagem = pedido.getInicio() == 0 && pedido.getFim() == PedidoDataset.ATE_O_FIM
+                    ? filhos.contar(pedido.getDatasetId(), pedido.getProcurado())
+                    : filhos.contar(pedido.getDatasetId(), pedido.getProcurado(), pedido.getInicio(), pedido.getFim());
+            return contagem.thenApply(total -> new Resposta(pedido.getId(), total));
+        }
+        EvictarDataset evictar = (EvictarDataset) objeto;
+        return filhos.evictar(evictar.getDatasetId()).thenApply(ignorado -> new Resposta(evictar.getId(), 1));
+    }
+
+    /** Contagem de um bloco de pedido em fluxo, dividido entre os filhos. */
+    CompletableFuture<Integer> contar(byte[] numeros, byte procurado) {
+        return filhos.contar(numeros, procurado).thenApply(Math::toIntExact);
+    }
+
+    /** Capacidade da subárvore: um "núcleo" por filho ativo e a soma das vazões estimadas deles. */
+    Capacidade capacidade(long idPedido) {
+        return new Capacidade(idPedido, Math.max(1, filhos.getReceptoresAtivos()), (long) filhos.getVazaoEstimada(),
+                0);
+    }
+
+    String descrever() {
+        return filhos.getReceptoresAtivos() + "/" + filhos.getNumeroReceptores() + " filhos ativos";
+    }
+
+    // Histogramas e consultas vêm de um vetor de um só pedido, que cabe em int
+    private static int[] paraInt(long[] valores) {
+        int[] convertidos = new int[valores.length];
+        for (int i = 0; i < valores.length; i++) {
+            convertidos[i] = Math.toIntExact(valores[i]);
+        }
+        return convertidos;
+    }
+}
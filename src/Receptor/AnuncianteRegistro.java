@@ -0,0 +1,59 @@
+package src.Receptor;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import src.Comunicacao.Anuncio;
+import src.Metricas.Log;
+
+/**
+ * Anuncia o receptor ao registro do distribuidor (--registro): um datagrama
+ * por segundo enquanto o processo vive e um de saída no desligamento da JVM.
+ * Um anúncio perdido não importa; o registro só descarta o receptor depois de
+ * vários segundos de silêncio.
+ */
+final class AnuncianteRegistro {
+
+    private static final long INTERVALO_MS = 1000;
+
+    private final InetSocketAddress registro;
+    private final String endereco;
+    private final DatagramSocket socket;
+
+    AnuncianteRegistro(InetSocketAddress registro, String endereco) throws SocketException {
+        this.registro = registro;
+        this.endereco = endereco;
+        this.socket = new DatagramSocket();
+    }
+
+    void iniciar() {
+        ScheduledExecutorService agenda = Executors.newSingleThreadScheduledExecutor(tarefa -> {
+            Thread thread = new Thread(tarefa, "AnuncianteRegistro");
+            thread.setDaemon(true);
+            return thread;
+        });
+        agenda.scheduleAtFixedRate(() -> enviar(false), 0, INTERVALO_MS, TimeUnit.MILLISECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            agenda.shutdownNow();
+            enviar(true);
+            socket.close();
+        }, "SaidaRegistro"));
+        Log.info("Anunciando " + endereco + " ao registro " + registro.getHostString() + ":" +
+                registro.getPort());
+    }
+
+    private void enviar(boolean saida) {
+        byte[] dados = new Anuncio(endereco, saida).codificar();
+        try {
+            socket.send(new DatagramPacket(dados, dados.length, registro));
+        } catch (IOException e) {
+            // O registro pode ainda não estar no ar; o próximo anúncio tenta de novo
+            Log.aviso("Anúncio ao registro falhou: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package src.Receptor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import src.Receptor.ConfiguracaoReceptor.Armazenamento;
+
+/**
+ * Onde ficam as partes dos datasets residentes.
+ *
+ * No heap, a parte é o próprio byte[] recebido. Direto, ela é copiada para um
+ * ByteBuffer fora do heap, que o GC não precisa varrer nem mover. Mapeado, ela
+ * vai para um arquivo no diretório de spill e é lida pelo mapeamento; quem
+ * guarda as páginas é o cache do sistema operacional, então o dataset pode
+ * passar do heap e da memória direta. O arquivo é apagado logo após o
+ * mapeamento e o espaço volta ao disco quando o buffer é coletado.
+ */
+final class ArmazenamentoDataset {
+
+    private final Armazenamento tipo;
+    private final Path dirSpill;
+
+    ArmazenamentoDataset(Armazenamento tipo, Path dirSpill) {
+        this.tipo = tipo;
+        this.dirSpill = dirSpill;
+    }
+
+    Armazenamento getTipo() {
+        return tipo;
+    }
+
+    /** Parte de {@code datasetId} com o conteúdo de {@code numeros}, do índice 0 ao fim. */
+    ByteBuffer guardar(long datasetId, byte[] numeros) throws IOException {
+        switch (tipo) {
+            case DIRETO:
+                ByteBuffer direto = ByteBuffer.allocateDirect(numeros.length);
+                direto.put(numeros).flip();
+                return direto;
+            case MAPEADO:
+                return mapear(datasetId, numeros);
+            default:
+                return ByteBuffer.wrap(numeros);
+        }
+    }
+
+    private ByteBuffer mapear(long datasetId, byte[] numeros) throws IOException {
+        Path arquivo = Files.createTempFile(dirSpill, "dataset-" + datasetId + "-", ".bin");
+        try (FileChannel canal = FileChannel.open(arquivo, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer origem = ByteBuffer.wrap(numeros);
+            while (origem.hasRemaining()) {
+                canal.write(origem);
+            }
+            // O mapeamento continua válido depois de fechar o canal e apagar o arquivo
+            return canal.map(FileChannel.MapMode.READ_ONLY, 0, numeros.length);
+        } finally {
+            try {
+                Files.deleteIfExists(arquivo);
+            } catch (IOException e) {
+                // Sistemas que não apagam arquivos mapeados (Windows): fica para a saída da JVM
+                arquivo.toFile().deleteOnExit();
+            }
+        }
+    }
+}
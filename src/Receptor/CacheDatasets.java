@@ -0,0 +1,81 @@
+package src.Receptor;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import src.Metricas.Log;
+
+/**
+ * Datasets residentes no receptor, limitados em bytes. Ao passar do limite os
+ * datasets usados há mais tempo saem primeiro (LRU); o Distribuidor também pode
+ * liberá-los explicitamente com EvictarDataset. Compartilhado entre conexões.
+ */
+class CacheDatasets {
+
+    private final long capacidade;
+    private long ocupado;
+    // Ordem de acesso: o primeiro da iteração é o menos usado recentemente
+    private final LinkedHashMap<Long, Dataset> datasets = new LinkedHashMap<>(16, 0.75f, true);
+
+    CacheDatasets(long capacidade) {
+        this.capacidade = capacidade;
+    }
+
+    /**
+     * Guarda {@code numeros} (com seu índice, ou null) sob {@code id}, substituindo
+     * o dataset anterior ou, com {@code anexar}, acrescentando ao fim dele.
+     *
+     * @throws IllegalStateException se não cabe no cache ou se não há dataset para anexar
+     */
+    synchronized Dataset carregar(long id, ByteBuffer numeros, IndiceHistograma indice, boolean anexar) {
+        Dataset atual = datasets.get(id);
+        if (anexar && atual == null) {
+            throw new IllegalStateException("Dataset " + id + " desconhecido (removido do cache?)");
+        }
+        Dataset novo = (anexar ? atual : new Dataset(id)).anexar(numeros, indice);
+        long liberado = atual == null ? 0 : atual.getTamanho();
+        if (novo.getTamanho() > capacidade) {
+            throw new IllegalStateException("Dataset " + id + " (" + novo.getTamanho() +
+                    " bytes) maior que o cache de datasets (" + capacidade + " bytes)");
+        }
+
+        if (atual != null) {
+            datasets.remove(id);
+            ocupado -= liberado;
+        }
+        Iterator<Map.Entry<Long, Dataset>> antigos = datasets.entrySet().iterator();
+        while (ocupado + novo.getTamanho() > capacidade && antigos.hasNext()) {
+            Dataset removido = antigos.next().getValue();
+            antigos.remove();
+            ocupado -= removido.getTamanho();
+            Log.info("Dataset " + removido.getId() + " removido do cache (LRU, " +
+                    removido.getTamanho() + " bytes)");
+        }
+        datasets.put(id, novo);
+        ocupado += novo.getTamanho();
+        return novo;
+    }
+
+    /** Dataset residente, ou null se ele nunca foi carregado ou já saiu do cache. */
+    synchronized Dataset obter(long id) {
+        return datasets.get(id);
+    }
+
+    synchronized boolean remover(long id) {
+        Dataset removido = datasets.remove(id);
+        if (removido == null) {
+            return false;
+        }
+        ocupado -= removido.getTamanho();
+        return true;
+    }
+
+    synchronized long getOcupado() {
+        return ocupado;
+    }
+
+    long getCapacidade() {
+        return capacidade;
+    }
+}
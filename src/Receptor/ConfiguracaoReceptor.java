@@ -0,0 +1,213 @@
+package src.Receptor;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import src.Metricas.Log;
+
+/**
+ * Opções de linha de comando do Receptor.
+ *
+ * Uso: java src.Receptor.Receptor [porta] [--opcao=valor ...]
+ * <pre>
+ *   --conexoes=plataforma|virtual  thread por conexão: de plataforma (padrão) ou virtual (Java 21+)
+ *   --max-conexoes=N               conexões simultâneas aceitas (padrão 10000)
+ *   --modo=bloqueante|nio          thread por conexão (padrão) ou laços de eventos com Selector
+ *   --lacos-nio=N                  laços de eventos no modo nio (padrão: metade dos núcleos, de 1 a 4)
+ *   --cache-datasets=MB            espaço para datasets residentes (padrão: metade do heap máximo;
+ *                                  no armazenamento mapeado, metade do espaço livre do diretório)
+ *   --armazenamento=heap|direto|mapeado
+ *                                  onde ficam os datasets: byte[] no heap (padrão), ByteBuffer direto
+ *                                  fora do heap ou arquivo mapeado em memória no diretório de spill
+ *   --dir-spill=caminho            diretório dos arquivos mapeados (padrão: java.io.tmpdir)
+ *   --indice-datasets=sim|nao      histograma por bloco de cada parte carregada (padrão sim)
+ *   --registro=host:porta          anuncia o receptor ao registro UDP do distribuidor a cada segundo
+ *   --anunciar=host                host anunciado ao registro (padrão: localhost se o registro é local,
+ *                                  senão o endereço desta máquina)
+ *   --filhos=host:porta,...        modo agregador: divide cada pedido entre estes receptores e soma
+ *   --filhos-registro=porta        modo agregador com os filhos vindos de um registro UDP nesta porta
+ *   --log=erro|aviso|info|detalhe  nível do log (padrão info; detalhe traz uma linha por pedido)
+ *   --metricas=porta               expõe as métricas por HTTP em 127.0.0.1:porta/metricas
+ *   --orcamento=MB                 bytes de números retidos por pedidos em andamento; acima disto o
+ *                                  pedido é recusado com RespostaOcupado (padrão: um quarto do heap máximo)
+ *   --fila=N                       pedidos em andamento no receptor, somando as conexões (padrão 1024)
+ * </pre>
+ */
+public class ConfiguracaoReceptor {
+
+    public enum ModoConexao { PLATAFORMA, VIRTUAL }
+
+    public enum ModoServidor { BLOQUEANTE, NIO }
+
+    public enum Armazenamento { HEAP, DIRETO, MAPEADO }
+
+    /** Porta de escuta; 0 quando não informada (o Receptor pergunta no console). */
+    int porta;
+    ModoConexao modoConexao = ModoConexao.PLATAFORMA;
+    int maxConexoes = 10_000;
+    ModoServidor modoServidor = ModoServidor.BLOQUEANTE;
+    /** Limite do cache de datasets em bytes; 0 = automático ({@link #getCacheDatasets()}). */
+    long cacheDatasets;
+    Armazenamento armazenamento = Armazenamento.HEAP;
+    Path dirSpill = Paths.get(System.getProperty("java.io.tmpdir"));
+    boolean indiceDatasets = true;
+    int lacosNio = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+    /** Registro a que o receptor se anuncia; null sem --registro. */
+    InetSocketAddress registro;
+    String hostAnunciado;
+    /** Filhos do modo agregador; vazio fora dele (ou com os filhos vindos do registro). */
+    List<String> filhos = Collections.emptyList();
+    int portaRegistroFilhos;
+    /** Nível do log; null mantém o de -Dlog.nivel. */
+    Log.Nivel nivelLog;
+    /** Porta do endpoint de métricas; 0 sem --metricas. */
+    int portaMetricas;
+    /** Orçamento de bytes de pedidos em andamento; 0 = automático ({@link #getOrcamento()}). */
+    long orcamento;
+    int maxFila = 1024;
+
+    public static ConfiguracaoReceptor lerArgumentos(String[] args) {
+        ConfiguracaoReceptor config = new ConfiguracaoReceptor();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                config.porta = Integer.parseInt(arg);
+                continue;
+            }
+
+            int igual = arg.indexOf('=');
+            String chave = igual < 0 ? arg.substring(2) : arg.substring(2, igual);
+            String valor = igual < 0 ? "" : arg.substring(igual + 1);
+
+            switch (chave) {
+                case "conexoes":
+                    config.modoConexao = ModoConexao.valueOf(valor.toUpperCase());
+                    break;
+                case "max-conexoes":
+                    config.maxConexoes = Integer.parseInt(valor);
+                    if (config.maxConexoes <= 0) {
+                        throw new IllegalArgumentException("--max-conexoes deve ser positivo");
+                    }
+                    break;
+                case "modo":
+                    config.modoServidor = ModoServidor.valueOf(valor.toUpperCase());
+                    break;
+                case "lacos-nio":
+                    config.lacosNio = Integer.parseInt(valor);
+                    if (config.lacosNio <= 0) {
+                        throw new IllegalArgumentException("--lacos-nio deve ser positivo");
+                    }
+                    break;
+                case "cache-datasets":
+                    config.cacheDatasets = Long.parseLong(valor) * 1024 * 1024;
+                    if (config.cacheDatasets <= 0) {
+                        throw new IllegalArgumentException("--cache-datasets deve ser positivo");
+                    }
+                    break;
+                case "armazenamento":
+                    config.armazenamento = Armazenamento.valueOf(valor.toUpperCase());
+                    break;
+                case "dir-spill":
+                    config.dirSpill = Paths.get(valor);
+                    break;
+                case "indice-datasets":
+                    if (!valor.equals("sim") && !valor.equals("nao")) {
+                        throw new IllegalArgumentException("--indice-datasets deve ser sim ou nao");
+                    }
+                    config.indiceDatasets = valor.equals("sim");
+                    break;
+                case "registro":
+                    int doisPontos = valor.lastIndexOf(':');
+                    if (doisPontos <= 0) {
+                        throw new IllegalArgumentException("--registro deve ser host:porta");
+                    }
+                    config.registro = new InetSocketAddress(valor.substring(0, doisPontos),
+                            Integer.parseInt(valor.substring(doisPontos + 1)));
+                    break;
+                case "anunciar":
+                    config.hostAnunciado = valor;
+                    break;
+                case "filhos":
+                    config.filhos = Arrays.asList(valor.split(","));
+                    break;
+                case "filhos-registro":
+                    config.portaRegistroFilhos = Integer.parseInt(valor);
+                    if (config.portaRegistroFilhos <= 0) {
+                        throw new IllegalArgumentException("--filhos-registro deve ser uma porta");
+                    }
+                    break;
+                case "log":
+                    config.nivelLog = Log.nivelDe(valor);
+                    break;
+                case "metricas":
+                    config.portaMetricas = Integer.parseInt(valor);
+                    if (config.portaMetricas <= 0) {
+                        throw new IllegalArgumentException("--metricas deve ser uma porta");
+                    }
+                    break;
+                case "orcamento":
+                    config.orcamento = Long.parseLong(valor) * 1024 * 1024;
+                    if (config.orcamento <= 0) {
+                        throw new IllegalArgumentException("--orcamento deve ser positivo");
+                    }
+                    break;
+                case "fila":
+                    config.maxFila = Integer.parseInt(valor);
+                    if (config.maxFila <= 0) {
+                        throw new IllegalArgumentException("--fila deve ser positivo");
+                    }
+                    break;
+                default:
+                    throw new IllegalArgumentException("Opção desconhecida: " + arg);
+            }
+        }
+        return config;
+    }
+
+    boolean isAgregador() {
+        return !filhos.isEmpty() || portaRegistroFilhos > 0;
+    }
+
+    /**
+     * Host que o receptor anuncia ao registro: o de --anunciar ou, sem ele,
+     * localhost quando o registro está nesta máquina e o endereço da máquina
+     * quando não está.
+     */
+    String getHostAnunciado() throws UnknownHostException {
+        if (hostAnunciado != null) {
+            return hostAnunciado;
+        }
+        InetAddress destino = registro.getAddress();
+        if (destino != null && destino.isLoopbackAddress()) {
+            return "localhost";
+        }
+        return InetAddress.getLocalHost().getHostAddress();
+    }
+
+    /**
+     * Limite do cache de datasets: o informado em --cache-datasets ou, sem ele,
+     * metade do heap máximo (heap e direto; o limite padrão de memória direta
+     * é o mesmo do heap) ou metade do espaço livre no diretório de spill.
+     */
+    long getCacheDatasets() {
+        if (cacheDatasets > 0) {
+            return cacheDatasets;
+        }
+        if (armazenamento == Armazenamento.MAPEADO) {
+            return dirSpill.toFile().getUsableSpace() / 2;
+        }
+        return Runtime.getRuntime().maxMemory() / 2;
+    }
+
+    /**
+     * Orçamento de bytes de pedidos em andamento: o de --orcamento ou, sem ele,
+     * um quarto do heap máximo (a outra metade padrão é do cache de datasets).
+     */
+    long getOrcamento() {
+        return orcamento > 0 ? orcamento : Runtime.getRuntime().maxMemory() / 4;
+    }
+}
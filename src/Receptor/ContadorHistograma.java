@@ -0,0 +1,59 @@
+package src.Receptor;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import src.Contagem.Histograma;
+
+/**
+ * Histograma completo por divisão e conquista, nos moldes de {@link ContadorRecursivo}.
+ *
+ * Cada folha acumula seu intervalo numa tabela int[256] própria, sem
+ * compartilhar memória com as outras threads, e as tabelas são somadas
+ * elemento a elemento na volta da recursão.
+ */
+class ContadorHistograma extends RecursiveTask<int[]> {
+
+    private final byte[] numeros;
+    private final int inicio;
+    private final int fim;
+    private final int limiar;
+
+    ContadorHistograma(byte[] numeros, int inicio, int fim, int limiar) {
+        this.numeros = numeros;
+        this.inicio = inicio;
+        this.fim = fim;
+        this.limiar = limiar;
+    }
+
+    /** Histograma de {@code numeros}: inline para vetores pequenos (se permitido), no pool para os grandes. */
+    static int[] contar(ForkJoinPool pool, byte[] numeros, boolean permitirInline) {
+        if (permitirInline && numeros.length <= ContadorRecursivo.LIMIAR_INLINE) {
+            int[] tabela = new int[Histograma.VALORES];
+            Histograma.acumular(numeros, 0, numeros.length, tabela);
+            return tabela;
+        }
+        ContadorHistograma tarefa = new ContadorHistograma(numeros, 0, numeros.length,
+                ContadorRecursivo.limiar(numeros.length, pool.getParallelism()));
+        return ForkJoinTask.getPool() == pool ? tarefa.invoke() : pool.invoke(tarefa);
+    }
+
+    @Override
+    protected int[] compute() {
+        if (fim - inicio <= limiar) {
+            int[] tabela = new int[Histograma.VALORES];
+            Histograma.acumular(numeros, inicio, fim, tabela);
+            return tabela;
+        }
+        int meio = (inicio + fim) >>> 1;
+        ContadorHistograma esquerda = new ContadorHistograma(numeros, inicio, meio, limiar);
+        ContadorHistograma direita = new ContadorHistograma(numeros, meio, fim, limiar);
+        esquerda.fork();
+        int[] tabela = direita.compute();
+        int[] outra = esquerda.join();
+        for (int v = 0; v < Histograma.VALORES; v++) {
+            tabela[v] += outra[v];
+        }
+        return tabela;
+    }
+}
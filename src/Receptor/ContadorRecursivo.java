@@ -0,0 +1,105 @@
+package src.Receptor;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import src.Contagem.Kernels;
+
+/**
+ * Contagem por divisão e conquista num ForkJoinPool.
+ *
+ * Cada tarefa divide seu intervalo ao meio até chegar ao limiar sequencial,
+ * e os workers ociosos roubam as metades pendentes. Assim uma fatia lenta não
+ * segura o pedido inteiro e pedidos de conexões diferentes dividem os núcleos
+ * entre si, em vez de cada um enfileirar N fatias fixas atrás do outro.
+ *
+ * Os números vêm de um byte[] ou de um ByteBuffer (dataset direto ou mapeado),
+ * varrido no lugar pelo kernel, sem cópia para o heap.
+ */
+public class ContadorRecursivo extends RecursiveTask<Integer> {
+
+    /** Abaixo disto a contagem é feita direto na thread da conexão, sem passar pelo pool. */
+    public static final int LIMIAR_INLINE = 256 * 1024;
+
+    // Menor intervalo que ainda vale a pena dividir (~alguns µs de varredura)
+    private static final int LIMIAR_MINIMO = 64 * 1024;
+
+    // Tarefas por worker: folga para o roubo de trabalho equilibrar a carga
+    private static final int TAREFAS_POR_WORKER = 8;
+
+    private final byte[] numeros;
+    // Usado quando numeros é null; índices absolutos
+    private final ByteBuffer buffer;
+    private final int inicio;
+    private final int fim;
+    private final byte procurado;
+    private final int limiar;
+
+    ContadorRecursivo(byte[] numeros, int inicio, int fim, byte procurado, int limiar) {
+        this(numeros, null, inicio, fim, procurado, limiar);
+    }
+
+    private ContadorRecursivo(byte[] numeros, ByteBuffer buffer, int inicio, int fim, byte procurado, int limiar) {
+        this.numeros = numeros;
+        this.buffer = buffer;
+        this.inicio = inicio;
+        this.fim = fim;
+        this.procurado = procurado;
+        this.limiar = limiar;
+    }
+
+    /**
+     * Conta {@code procurado} em {@code numeros}: inline para vetores pequenos,
+     * no pool com limiar proporcional ao tamanho e ao paralelismo para os grandes.
+     */
+    public static int contar(ForkJoinPool pool, byte[] numeros, byte procurado) {
+        return contar(pool, numeros, procurado, true);
+    }
+
+    /** Como {@link #contar(ForkJoinPool, byte[], byte)}; sem {@code permitirInline} tudo vai para o pool. */
+    public static int contar(ForkJoinPool pool, byte[] numeros, byte procurado, boolean permitirInline) {
+        if (permitirInline && numeros.length <= LIMIAR_INLINE) {
+            return Kernels.padrao().contar(numeros, 0, numeros.length, procurado);
+        }
+        ContadorRecursivo tarefa = new ContadorRecursivo(numeros, 0, numeros.length, procurado,
+                limiar(numeros.length, pool.getParallelism()));
+        // Já dentro do pool (receptor NIO), a tarefa roda e divide na própria thread worker
+        return ForkJoinTask.getPool() == pool ? tarefa.invoke() : pool.invoke(tarefa);
+    }
+
+    /** Conta {@code procurado} entre o índice 0 e o limite de {@code numeros}, ignorando a posição. */
+    public static int contar(ForkJoinPool pool, ByteBuffer numeros, byte procurado, boolean permitirInline) {
+        return contar(pool, numeros, 0, numeros.limit(), procurado, permitirInline);
+    }
+
+    /** Como {@link #contar(ForkJoinPool, ByteBuffer, byte, boolean)} só nos índices absolutos [inicio, fim). */
+    public static int contar(ForkJoinPool pool, ByteBuffer numeros, int inicio, int fim, byte procurado,
+                             boolean permitirInline) {
+        int tamanho = fim - inicio;
+        if (permitirInline && tamanho <= LIMIAR_INLINE) {
+            return Kernels.padrao().contar(numeros, inicio, fim, procurado);
+        }
+        ContadorRecursivo tarefa = new ContadorRecursivo(null, numeros, inicio, fim, procurado,
+                limiar(tamanho, pool.getParallelism()));
+        return ForkJoinTask.getPool() == pool ? tarefa.invoke() : pool.invoke(tarefa);
+    }
+
+    static int limiar(int tamanho, int paralelismo) {
+        return Math.max(LIMIAR_MINIMO, tamanho / (paralelismo * TAREFAS_POR_WORKER));
+    }
+
+    @Override
+    protected Integer compute() {
+        if (fim - inicio <= limiar) {
+            return numeros != null
+                    ? Kernels.padrao().contar(numeros, inicio, fim, procurado)
+                    : Kernels.padrao().contar(buffer, inicio, fim, procurado);
+        }
+        int meio = (inicio + fim) >>> 1;
+        ContadorRecursivo esquerda = new ContadorRecursivo(numeros, buffer, inicio, meio, procurado, limiar);
+        ContadorRecursivo direita = new ContadorRecursivo(numeros, buffer, meio, fim, procurado, limiar);
+        esquerda.fork();
+        return direita.compute() + esquerda.join();
+    }
+}
@@ -0,0 +1,124 @@
+package src.Receptor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import src.Comunicacao.BlocoComprimido;
+import src.Comunicacao.BlocoFluxo;
+import src.Comunicacao.Comunicado;
+import src.Comunicacao.PedidoFluxo;
+import src.Contagem.Kernels;
+
+/**
+ * Estado de um pedido em fluxo numa conexão: cada bloco é contado no pool
+ * assim que chega, e as parciais são somadas quando o último bloco é recebido.
+ *
+ * O fluxo passa pelo controle de admissão pelo tamanho total, ao chegar o
+ * PedidoFluxo. Recusado, os blocos que o cliente já despachou são só
+ * descartados até o último, para que não sejam tomados por blocos perdidos.
+ *
+ * Não é thread-safe: blocos de uma conexão chegam sempre pela mesma thread.
+ */
+class ContagemFluxo {
+
+    private final byte procurado;
+    private final long tamanhoTotal;
+    final long inicio = System.currentTimeMillis();
+    private final List<CompletableFuture<Integer>> parciais = new ArrayList<>();
+    private long recebido;
+    private boolean recusado;
+    // Controle que reservou o tamanho total; null se recusado, sem admissão ou já liberado
+    private ControleAdmissao admissao;
+
+    ContagemFluxo(PedidoFluxo pedido) {
+        this.procurado = pedido.getProcurado();
+        this.tamanhoTotal = pedido.getTamanhoTotal();
+    }
+
+    /** Reserva o tamanho total em {@code controle}; false se o fluxo foi recusado. */
+    boolean admitir(ControleAdmissao controle) {
+        if (!controle.reservar(tamanhoTotal, tamanhoTotal <= ControleAdmissao.LIMIAR_INTERATIVO)) {
+            recusado = true;
+            return false;
+        }
+        admissao = controle;
+        return true;
+    }
+
+    boolean isRecusado() {
+        return recusado;
+    }
+
+    /** Conta o bloco de um fluxo recusado como recebido, sem contá-lo. */
+    void descartar(Comunicado bloco) {
+        recebido += bloco instanceof BlocoComprimido
+                ? ((BlocoComprimido) bloco).getTamanho()
+                : ((BlocoFluxo) bloco).getTamanho();
+    }
+
+    /** Devolve a reserva; chamado ao fim da contagem ou ao fechar a conexão com o fluxo incompleto. */
+    void liberar() {
+        if (admissao != null) {
+            admissao.liberar(tamanhoTotal);
+            admissao = null;
+        }
+    }
+
+    /**
+     * Agenda a contagem de um {@link BlocoFluxo} ou {@link BlocoComprimido}: no
+     * pool ou, com {@code agregador}, dividida entre os filhos. Blocos
+     * comprimidos são contados sem descomprimir, exceto no agregador.
+     */
+    CompletableFuture<Integer> adicionar(Comunicado bloco, Executor pool, Agregador agregador) {
+        if (bloco instanceof BlocoComprimido) {
+            BlocoComprimido comprimido = (BlocoComprimido) bloco;
+            if (agregador != null) {
+                return adicionar(comprimido.getNumeros(), agregador);
+            }
+            return registrar(Receptor.agendar(() -> comprimido.contar(procurado), comprimido.getTamanho(), pool),
+                    comprimido.getTamanho());
+        }
+        byte[] numeros = ((BlocoFluxo) bloco).getNumeros();
+        return agregador != null ? adicionar(numeros, agregador) : adicionar(numeros, pool);
+    }
+
+    /** Agenda a contagem de um bloco no pool; o retorno completa quando ela termina. */
+    CompletableFuture<Integer> adicionar(byte[] numeros, Executor pool) {
+        return registrar(Receptor.agendar(
+                () -> Kernels.padrao().contar(numeros, 0, numeros.length, procurado), numeros.length, pool),
+                numeros.length);
+    }
+
+    /** Como {@link #adicionar(byte[], Executor)}, mas o bloco é dividido entre os filhos do agregador. */
+    CompletableFuture<Integer> adicionar(byte[] numeros, Agregador agregador) {
+        return registrar(agregador.contar(numeros, procurado), numeros.length);
+    }
+
+    private CompletableFuture<Integer> registrar(CompletableFuture<Integer> parcial, int tamanho) {
+        parciais.add(parcial);
+        recebido += tamanho;
+        return parcial;
+    }
+
+    boolean completo() {
+        return recebido >= tamanhoTotal;
+    }
+
+    int numeroBlocos() {
+        return parciais.size();
+    }
+
+    /** Soma das parciais, disponível quando todos os blocos foram contados; libera a reserva. */
+    CompletableFuture<Long> total() {
+        CompletableFuture<?>[] todas = parciais.toArray(new CompletableFuture<?>[0]);
+        return CompletableFuture.allOf(todas).thenApply(ignorado -> {
+            // O tamanho total de um fluxo é long: a soma pode passar de int
+            long total = 0;
+            for (CompletableFuture<Integer> parcial : parciais) {
+                total += parcial.join();
+            }
+            return total;
+        }).whenComplete((total, erro) -> liberar());
+    }
+}
@@ -0,0 +1,79 @@
+package src.Receptor;
+
+/**
+ * Controle de admissão do receptor: um orçamento de bytes de números retidos
+ * por pedidos em andamento (--orcamento) e um limite de pedidos em andamento
+ * (--fila), somando todas as conexões. Um pedido que não cabe é recusado na
+ * hora com {@code RespostaOcupado}, em vez de esperar na fila do pool segurando
+ * memória e atrasando os demais.
+ *
+ * Há duas faixas. Pedidos que varrem até {@link #LIMIAR_INTERATIVO} bytes são
+ * interativos: contam num pool próprio e podem usar o orçamento e a fila
+ * inteiros. Os volumosos param em {@code 1 - RESERVA_INTERATIVA} de cada um,
+ * então uma rajada de varreduras grandes não fecha a porta às consultas curtas.
+ */
+final class ControleAdmissao {
+
+    /** Bytes varridos até os quais um pedido vai para a faixa interativa. */
+    static final long LIMIAR_INTERATIVO = 1024 * 1024;
+
+    // Fração do orçamento e da fila que só a faixa interativa alcança
+    private static final double RESERVA_INTERATIVA = 0.125;
+
+    private static final int ESPERA_MINIMA_MS = 5;
+    private static final int ESPERA_MAXIMA_MS = 2000;
+
+    private final long orcamento;
+    private final int maxPedidos;
+    private final long limiteVolumoso;
+    private final int maxPedidosVolumosos;
+    // Bytes/s de varredura, para estimar quanto demora a esvaziar o que está em andamento; 0 se desconhecida
+    private final long vazao;
+
+    // Protegidos por this
+    private long bytesEmUso;
+    private int pedidosEmUso;
+
+    ControleAdmissao(long orcamento, int maxPedidos, long vazao) {
+        this.orcamento = orcamento;
+        this.maxPedidos = maxPedidos;
+        this.limiteVolumoso = (long) (orcamento * (1 - RESERVA_INTERATIVA));
+        this.maxPedidosVolumosos = Math.max(1, (int) (maxPedidos * (1 - RESERVA_INTERATIVA)));
+        this.vazao = vazao;
+    }
+
+    /**
+     * Reserva {@code bytes} e uma vaga na fila para um pedido; false se não há
+     * espaço na faixa dele. Um pedido maior que o orçamento inteiro só entra com
+     * o receptor ocioso, para não ser recusado para sempre.
+     */
+    synchronized boolean reservar(long bytes, boolean interativo) {
+        long limite = interativo ? orcamento : limiteVolumoso;
+        int vagas = interativo ? maxPedidos : maxPedidosVolumosos;
+        if (pedidosEmUso >= vagas || (pedidosEmUso > 0 && bytesEmUso + bytes > limite)) {
+            return false;
+        }
+        bytesEmUso += bytes;
+        pedidosEmUso++;
+        return true;
+    }
+
+    synchronized void liberar(long bytes) {
+        bytesEmUso -= bytes;
+        pedidosEmUso--;
+    }
+
+    /** Espera sugerida a quem foi recusado: o tempo de varrer o que já está em andamento. */
+    synchronized int esperaMs() {
+        long estimada = vazao > 0 ? bytesEmUso * 1000 / vazao : 0;
+        return (int) Math.max(ESPERA_MINIMA_MS, Math.min(ESPERA_MAXIMA_MS, estimada));
+    }
+
+    long getOrcamento() {
+        return orcamento;
+    }
+
+    int getMaxPedidos() {
+        return maxPedidos;
+    }
+}
@@ -0,0 +1,82 @@
+package src.Receptor;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Dataset residente no receptor: as partes recebidas por {@code CarregarDataset},
+ * na ordem de chegada. Imutável; anexar devolve um novo Dataset, então consultas
+ * em andamento continuam vendo a versão que pegaram do cache.
+ *
+ * Cada parte é um ByteBuffer de {@link ArmazenamentoDataset}: no heap, direto
+ * ou mapeado, conforme --armazenamento; a contagem varre qualquer um deles.
+ * Com o índice ligado, cada parte traz seu {@link IndiceHistograma}, montado só
+ * para ela na chegada: anexar não reindexa as partes anteriores.
+ */
+final class Dataset {
+
+    private final long id;
+    private final List<ByteBuffer> partes;
+    // Mesmo tamanho de partes; null nas posições sem índice
+    private final List<IndiceHistograma> indices;
+    private final long tamanho;
+
+    Dataset(long id) {
+        this(id, Collections.emptyList(), Collections.emptyList(), 0);
+    }
+
+    private Dataset(long id, List<ByteBuffer> partes, List<IndiceHistograma> indices, long tamanho) {
+        this.id = id;
+        this.partes = partes;
+        this.indices = indices;
+        this.tamanho = tamanho;
+    }
+
+    /** Novo Dataset com {@code numeros} no fim; {@code indice} pode ser null. */
+    Dataset anexar(ByteBuffer numeros, IndiceHistograma indice) {
+        List<ByteBuffer> novas = new ArrayList<>(partes.size() + 1);
+        novas.addAll(partes);
+        novas.add(numeros);
+        List<IndiceHistograma> novosIndices = new ArrayList<>(indices.size() + 1);
+        novosIndices.addAll(indices);
+        novosIndices.add(indice);
+        return new Dataset(id, Collections.unmodifiableList(novas), Collections.unmodifiableList(novosIndices),
+                tamanho + numeros.limit());
+    }
+
+    long getId() {
+        return id;
+    }
+
+    long getTamanho() {
+        return tamanho;
+    }
+
+    long contar(ForkJoinPool pool, byte procurado) {
+        return contar(pool, procurado, 0, tamanho);
+    }
+
+    /** Ocorrências de {@code procurado} nas posições [inicio, fim) do dataset; fim além do tamanho é cortado. */
+    long contar(ForkJoinPool pool, byte procurado, long inicio, long fim) {
+        fim = Math.min(fim, tamanho);
+        long total = 0;
+        long base = 0;
+        for (int i = 0; i < partes.size() && base < fim; i++) {
+            ByteBuffer parte = partes.get(i);
+            int tamanhoParte = parte.limit();
+            if (base + tamanhoParte > inicio) {
+                int ini = (int) Math.max(0, inicio - base);
+                int fimParte = (int) Math.min(tamanhoParte, fim - base);
+                IndiceHistograma indice = indices.get(i);
+                total += indice != null
+                        ? indice.contar(pool, parte, ini, fimParte, procurado)
+                        : ContadorRecursivo.contar(pool, parte, ini, fimParte, procurado, false);
+            }
+            base += tamanhoParte;
+        }
+        return total;
+    }
+}
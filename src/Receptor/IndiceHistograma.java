@@ -0,0 +1,89 @@
+package src.Receptor;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import src.Contagem.Histograma;
+
+/**
+ * Índice de uma parte de dataset: o histograma de cada bloco de
+ * {@link #TAMANHO_BLOCO} bytes e o da parte inteira, montados na carga.
+ *
+ * A contagem de um valor na parte inteira é uma leitura do resumo; num
+ * intervalo, os blocos inteiros saem do índice e só as pontas parciais são
+ * varridas. As contagens por bloco cabem em 16 bits sem sinal (char), o que
+ * custa 512 bytes a cada 32 KiB (1,6% da parte).
+ */
+final class IndiceHistograma {
+
+    /** Bytes por bloco: as contagens de um bloco (no máximo 32768) cabem num char. */
+    static final int TAMANHO_BLOCO = 32 * 1024;
+
+    private final int tamanho;
+    private final int numeroBlocos;
+    // Por valor, as contagens dos blocos em sequência: contagens[valor * numeroBlocos + bloco]
+    private final char[] contagens;
+    private final int[] resumo = new int[Histograma.VALORES];
+
+    private IndiceHistograma(int tamanho) {
+        this.tamanho = tamanho;
+        this.numeroBlocos = (tamanho + TAMANHO_BLOCO - 1) / TAMANHO_BLOCO;
+        this.contagens = new char[Histograma.VALORES * numeroBlocos];
+    }
+
+    /** Índice de {@code numeros} inteiro, numa única varredura. */
+    static IndiceHistograma construir(byte[] numeros) {
+        IndiceHistograma indice = new IndiceHistograma(numeros.length);
+        int[] tabela = new int[Histograma.VALORES];
+        for (int b = 0; b < indice.numeroBlocos; b++) {
+            int inicio = b * TAMANHO_BLOCO;
+            Arrays.fill(tabela, 0);
+            Histograma.acumular(numeros, inicio, Math.min(numeros.length, inicio + TAMANHO_BLOCO), tabela);
+            for (int v = 0; v < Histograma.VALORES; v++) {
+                indice.contagens[v * indice.numeroBlocos + b] = (char) tabela[v];
+                indice.resumo[v] += tabela[v];
+            }
+        }
+        return indice;
+    }
+
+    int getTamanho() {
+        return tamanho;
+    }
+
+    /** Histograma da parte inteira (cópia). */
+    int[] getResumo() {
+        return resumo.clone();
+    }
+
+    /**
+     * Ocorrências de {@code procurado} em [inicio, fim) de {@code parte}, o buffer
+     * indexado. Só as pontas fora de blocos inteiros são varridas, pelo pool.
+     */
+    int contar(ForkJoinPool pool, ByteBuffer parte, int inicio, int fim, byte procurado) {
+        int v = procurado & 0xFF;
+        if (inicio == 0 && fim == tamanho) {
+            return resumo[v];
+        }
+        int primeiroBloco = (inicio + TAMANHO_BLOCO - 1) / TAMANHO_BLOCO;
+        int fimBlocos = fim == tamanho ? numeroBlocos : fim / TAMANHO_BLOCO;
+        if (primeiroBloco >= fimBlocos) {
+            return ContadorRecursivo.contar(pool, parte, inicio, fim, procurado, true);
+        }
+
+        int total = 0;
+        int base = v * numeroBlocos;
+        for (int b = primeiroBloco; b < fimBlocos; b++) {
+            total += contagens[base + b];
+        }
+        int inicioBlocos = primeiroBloco * TAMANHO_BLOCO;
+        int fimIndexado = Math.min(tamanho, fimBlocos * TAMANHO_BLOCO);
+        if (inicio < inicioBlocos) {
+            total += ContadorRecursivo.contar(pool, parte, inicio, inicioBlocos, procurado, true);
+        }
+        if (fimIndexado < fim) {
+            total += ContadorRecursivo.contar(pool, parte, fimIndexado, fim, procurado, true);
+        }
+        return total;
+    }
+}
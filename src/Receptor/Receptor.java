@@ -1,153 +1,407 @@
 package src.Receptor;
 
+import com.sun.net.httpserver.HttpServer;
 import java.io.*;
+import java.lang.reflect.Method;
 import java.net.*;
+import java.nio.channels.ServerSocketChannel;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import src.Comunicacao.*;
+import src.Contagem.Kernels;
+import src.Contagem.Predicado;
+import src.Metricas.HistogramaLatencia;
+import src.Metricas.Log;
+import src.Metricas.Metricas;
 
 public class Receptor {
 
-    private static final ExecutorService cpuPool =
-            Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
-
-    private static final ExecutorService connectionPool =
-            Executors.newCachedThreadPool();
+    // Roubo de trabalho: pedidos grandes se dividem e pedidos concorrentes dividem os núcleos
+    private static final ForkJoinPool cpuPool =
+            new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+    // Faixa interativa: pedidos pequenos contam aqui, sem esperar atrás das varreduras grandes do cpuPool.
+    // As threads extras disputam os núcleos com o cpuPool, e o sistema divide o tempo entre as duas faixas
+    private static final ForkJoinPool poolInterativo =
+            new ForkJoinPool(Math.max(1, Runtime.getRuntime().availableProcessors() / 4));
+
+    // Orçamento de bytes e fila de pedidos em andamento (--orcamento, --fila)
+    static ControleAdmissao admissao;
+
+    // Uma thread por conexão: de plataforma ou virtual, conforme --conexoes
+    private static ExecutorService connectionPool;
+
+    // Com threads virtuais toda contagem vai para o cpuPool, que é limitado;
+    // contar inline prenderia a thread carregadora durante a varredura
+    private static boolean contagemInline = true;
+
+    // Datasets carregados pelo Distribuidor para consultas repetidas sem reenvio
+    private static CacheDatasets datasets;
+    private static ArmazenamentoDataset armazenamento;
+    private static boolean indexarDatasets = true;
+
+    // Cargas e remoções de dataset do modo nio: montar o índice, copiar para fora do
+    // heap e mapear o arquivo levam tempo demais para rodar na thread de um laço
+    static final ExecutorService trabalhoDatasets = Executors.newCachedThreadPool(tarefa -> {
+        Thread thread = new Thread(tarefa, "datasets");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Limite de blocos de pedidos em fluxo sendo contados ao mesmo tempo por conexão;
+    // a leitura do socket pára ao atingi-lo, limitando a memória a poucos blocos
+    private static final int MAX_BLOCOS_EM_VOO = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+    // Pedidos por conexão sendo contados ao mesmo tempo; acima disto a leitura espera
+    private static final int MAX_PEDIDOS_EM_VOO = 64;
+
+    // Vetor da medição de vazão na partida; grande o bastante para passar do cache
+    private static final int TAMANHO_MEDICAO = 16 * 1024 * 1024;
+    private static long vazaoMedida;
+    // Só no modo agregador: os pedidos vão para os filhos
+    static Agregador agregador;
+
+    // Contagem na thread que leu o pedido, para vetores pequenos (ver agendar)
+    static final Executor NA_HORA = Runnable::run;
+
+    private static final HistogramaLatencia FILA = Metricas.estagio(Metricas.FILA);
+    private static final HistogramaLatencia CONTAGEM = Metricas.estagio(Metricas.CONTAGEM);
+    private static final HistogramaLatencia SERIALIZACAO = Metricas.estagio(Metricas.SERIALIZACAO);
+    private static final LongAdder bytesContados = Metricas.contador("bytes_contados");
+    private static final LongAdder pedidosAtendidos = Metricas.contador("pedidos_atendidos");
+    private static final LongAdder respostasErro = Metricas.contador("respostas_erro");
+    private static final LongAdder pedidosRecusados = Metricas.contador("pedidos_recusados");
 
     public static void main(String[] args) {
         ServerSocket pedido = null;
+        HttpServer servidorMetricas = null;
         int porta = 0;
 
         try {
-            // Permitir escolher a porta via argumento de linha de comando
-            if (args.length > 0) {
-                porta = Integer.parseInt(args[0]);
-            } else {
+            // Permitir escolher a porta (e demais opções) via argumentos de linha de comando
+            ConfiguracaoReceptor config = ConfiguracaoReceptor.lerArgumentos(args);
+            porta = config.porta;
+            if (config.nivelLog != null) {
+                Log.setNivel(config.nivelLog);
+            }
+            if (config.portaMetricas > 0) {
+                servidorMetricas = Metricas.servir(config.portaMetricas);
+            }
+            if (porta == 0) {
                 Scanner scanner = new Scanner(System.in);
                 System.out.print("Digite a porta para o receptor (ex: 12345, 12346): ");
                 porta = scanner.nextInt();
                 scanner.close();
             }
 
-            pedido = new ServerSocket(porta);
+            if (config.isAgregador()) {
+                agregador = Agregador.conectar(config.filhos, config.portaRegistroFilhos);
+                System.out.println("[LOG] Modo agregador: " + agregador.descrever());
+            } else {
+                vazaoMedida = medirVazao();
+                System.out.printf("[LOG] Vazão de varredura medida: %.2f GB/s%n", vazaoMedida / 1e9);
+            }
+            admissao = new ControleAdmissao(config.getOrcamento(), config.maxFila, vazaoMedida);
+            System.out.println("[LOG] Admissão: " + admissao.getOrcamento() / (1024 * 1024) +
+                    " MB de pedidos em andamento, fila de " + admissao.getMaxPedidos() + " pedidos");
+            datasets = new CacheDatasets(config.getCacheDatasets());
+            armazenamento = new ArmazenamentoDataset(config.armazenamento, config.dirSpill);
+            indexarDatasets = config.indiceDatasets;
+            System.out.println("[LOG] Datasets: armazenamento " + config.armazenamento.name().toLowerCase() +
+                    (config.armazenamento == ConfiguracaoReceptor.Armazenamento.MAPEADO ? " em " + config.dirSpill : "") +
+                    ", cache de " + datasets.getCapacidade() / (1024 * 1024) + " MB" +
+                    (indexarDatasets ? ", com índice por bloco" : ""));
+
+            if (config.modoServidor == ConfiguracaoReceptor.ModoServidor.NIO) {
+                executarNio(config, porta);
+                return;
+            }
+
+            connectionPool = criarPoolConexoes(config.modoConexao);
+            Semaphore vagasConexao = new Semaphore(config.maxConexoes);
+
+            pedido = new ServerSocket(porta, Math.min(config.maxConexoes, 4096));
             System.out.println("=== RECEPTOR INICIADO ===");
             System.out.println("[LOG] Servidor rodando na porta: " + pedido.getLocalPort());
             System.out.println("[LOG] Processadores disponíveis: " + Runtime.getRuntime().availableProcessors());
+            System.out.println("[LOG] Kernel de contagem: " + Kernels.padrao().getNome());
+            System.out.println("[LOG] Threads de conexão: " + (contagemInline ? "plataforma" : "virtuais") +
+                    " (máximo " + config.maxConexoes + " conexões)");
+            anunciar(config, pedido.getLocalPort());
             System.out.println("[LOG] Aguardando conexões...\n");
 
             int numeroConexao = 0;
 
             while (true) {
+                // Acima do limite, novas conexões esperam no backlog do ServerSocket
+                vagasConexao.acquire();
                 Socket conexao = pedido.accept();
                 final int idConexao = ++numeroConexao;
 
-                System.out.println("[LOG] Conexão #" + idConexao + " aceita de: " +
+                Log.info("Conexão #" + idConexao + " aceita de: " +
                         conexao.getInetAddress().getHostAddress() + ":" + conexao.getPort());
 
                 connectionPool.submit(() -> {
-                    ObjectInputStream receptor = null;
-                    ObjectOutputStream transmissor = null;
+                    Canal canal = null;
+                    Map<Long, ContagemFluxo> fluxos = new HashMap<>();
+                    ReservaQuadros reservas = new ReservaQuadros(admissao);
 
                     try {
-                        System.out.println("[LOG] Conexão #" + idConexao + " - Inicializando streams...");
+                        if (Log.isDetalhe()) {
+                            Log.detalhe("Conexão #" + idConexao + " - Negociando protocolo...");
+                        }
 
-                        receptor = new ObjectInputStream(conexao.getInputStream());
-                        transmissor = new ObjectOutputStream(conexao.getOutputStream());
-                        transmissor.flush();
+                        conexao.setTcpNoDelay(true);
+                        canal = Canais.aceitar(conexao);
+                        canal.setAdmissao(reservas);
 
-                        System.out.println("[LOG] Conexão #" + idConexao + " - Pronto para receber pedidos");
+                        Log.info("Conexão #" + idConexao + " - Pronto para receber pedidos (protocolo " +
+                                canal.getProtocolo() + ")");
 
-                        Object objeto;
+                        Comunicado objeto;
                         int numeroPedido = 0;
+                        Semaphore blocosEmVoo = new Semaphore(MAX_BLOCOS_EM_VOO);
+                        // Pedidos em andamento nesta conexão: o cliente pode enviar vários
+                        // sem esperar, e as respostas voltam na ordem em que ficam prontas
+                        Semaphore pedidosEmVoo = new Semaphore(MAX_PEDIDOS_EM_VOO);
+                        final Canal saida = canal;
 
                         while (true) {
-                            objeto = receptor.readObject();
+                            objeto = canal.receber();
+
+                            if (objeto instanceof QuadroRecusado) {
+                                // Recusado pelo cabeçalho: o corpo nem chegou a ser lido
+                                long idPedido = ((QuadroRecusado) objeto).getId();
+                                pedidosEmVoo.acquire();
+                                responderQuandoPronto(saida, idConexao, idPedido, recusar(idPedido),
+                                        pedidosEmVoo, System.currentTimeMillis(), "recusado");
+                                continue;
+                            }
+                            long reservado = reservas.tomar(objeto);
 
-                            if (objeto instanceof Pedido) {
+                            if (agregador != null && Agregador.repassa(objeto)) {
+                                numeroPedido++;
+                                long idPedido = ((Identificado) objeto).getId();
+
+                                if (Log.isDetalhe()) {
+                                    Log.detalhe("Conexão #" + idConexao + " - Pedido #" + numeroPedido +
+                                            " " + objeto.getClass().getSimpleName() + " repassado aos filhos (id: " +
+                                            idPedido + ")");
+                                }
+
+                                pedidosEmVoo.acquire();
+                                responderQuandoPronto(saida, idConexao, idPedido, repassar(objeto, reservado),
+                                        pedidosEmVoo, System.currentTimeMillis(), "agregado");
+                            }
+                            else if (objeto instanceof Pedido) {
                                 numeroPedido++;
                                 Pedido pedidoRecebido = (Pedido) objeto;
+                                byte[] numeros = pedidoRecebido.getNumeros();
+                                byte procurado = pedidoRecebido.getProcurado();
 
-                                System.out.println("[LOG] Conexão #" + idConexao + " - Pedido #" + numeroPedido +
-                                        " recebido (tamanho vetor: " + pedidoRecebido.getNumeros().length +
-                                        ", procurado: " + pedidoRecebido.getProcurado() + ")");
+                                if (Log.isDetalhe()) {
+                                    Log.detalhe("Conexão #" + idConexao + " - Pedido #" + numeroPedido +
+                                            " recebido (id: " + pedidoRecebido.getId() + ", tamanho vetor: " +
+                                            numeros.length + ", procurado: " + procurado + ")");
+                                }
 
+                                pedidosEmVoo.acquire();
                                 long inicio = System.currentTimeMillis();
-                                int contagem = processarPedidoParalelo(
-                                        pedidoRecebido.getNumeros(),
-                                        pedidoRecebido.getProcurado()
-                                );
-                                long fim = System.currentTimeMillis();
-
-                                Resposta resposta = new Resposta(contagem);
-                                transmissor.writeObject(resposta);
-                                transmissor.flush();
-
-                                System.out.println("[LOG] Conexão #" + idConexao + " - Pedido #" + numeroPedido +
-                                        " processado: " + contagem + " ocorrências em " +
-                                        (fim - inicio) + " ms");
+                                long idPedido = pedidoRecebido.getId();
+                                responderQuandoPronto(saida, idConexao, idPedido,
+                                        executar(idPedido, reservado, numeros.length, contagemInline,
+                                                pool -> new Resposta(idPedido,
+                                                        processarPedidoParalelo(pool, numeros, procurado))),
+                                        pedidosEmVoo, inicio, numeros.length + " elementos");
+                            }
+                            else if (objeto instanceof PedidoHistograma) {
+                                numeroPedido++;
+                                PedidoHistograma pedidoHistograma = (PedidoHistograma) objeto;
+                                byte[] numeros = pedidoHistograma.getNumeros();
+                                long idPedido = pedidoHistograma.getId();
+
+                                if (Log.isDetalhe()) {
+                                    Log.detalhe("Conexão #" + idConexao + " - Pedido #" + numeroPedido +
+                                            " de histograma recebido (id: " + idPedido + ", tamanho vetor: " +
+                                            numeros.length + ")");
+                                }
+
+                                pedidosEmVoo.acquire();
+                                long inicio = System.currentTimeMillis();
+                                responderQuandoPronto(saida, idConexao, idPedido,
+                                        executar(idPedido, reservado, numeros.length, contagemInline,
+                                                pool -> new RespostaHistograma(idPedido,
+                                                        processarHistogramaParalelo(pool, numeros))),
+                                        pedidosEmVoo, inicio, numeros.length + " elementos");
+                            }
+                            else if (objeto instanceof PedidoConsulta) {
+                                numeroPedido++;
+                                PedidoConsulta pedidoConsulta = (PedidoConsulta) objeto;
+                                byte[] numeros = pedidoConsulta.getNumeros();
+                                Predicado[] predicados = pedidoConsulta.getPredicados();
+                                long idPedido = pedidoConsulta.getId();
+
+                                if (Log.isDetalhe()) {
+                                    Log.detalhe("Conexão #" + idConexao + " - Pedido #" + numeroPedido +
+                                            " de consulta recebido (id: " + idPedido + ", tamanho vetor: " +
+                                            numeros.length + ", predicados: " + predicados.length + ")");
+                                }
+
+                                pedidosEmVoo.acquire();
+                                long inicio = System.currentTimeMillis();
+                                responderQuandoPronto(saida, idConexao, idPedido,
+                                        executar(idPedido, reservado, numeros.length, contagemInline,
+                                                pool -> new RespostaConsulta(idPedido,
+                                                        processarConsultaParalela(pool, numeros, predicados))),
+                                        pedidosEmVoo, inicio, numeros.length + " elementos");
+                            }
+                            else if (isDataset(objeto)) {
+                                numeroPedido++;
+                                long idPedido = ((Identificado) objeto).getId();
+
+                                if (Log.isDetalhe()) {
+                                    Log.detalhe("Conexão #" + idConexao + " - Pedido #" + numeroPedido +
+                                            " " + objeto.getClass().getSimpleName() + " recebido (id: " +
+                                            idPedido + ")");
+                                }
+
+                                pedidosEmVoo.acquire();
+                                responderQuandoPronto(saida, idConexao, idPedido, atenderDataset(objeto, reservado),
+                                        pedidosEmVoo, System.currentTimeMillis(), "dataset");
+                            }
+                            else if (objeto instanceof PedidoCapacidade) {
+                                long idPedido = ((PedidoCapacidade) objeto).getId();
+                                pedidosEmVoo.acquire();
+                                responderQuandoPronto(saida, idConexao, idPedido,
+                                        CompletableFuture.completedFuture(capacidade(idPedido)),
+                                        pedidosEmVoo, System.currentTimeMillis(), "capacidade");
+                            }
+                            else if (objeto instanceof PedidoFluxo) {
+                                numeroPedido++;
+                                PedidoFluxo pedidoFluxo = (PedidoFluxo) objeto;
+
+                                if (Log.isDetalhe()) {
+                                    Log.detalhe("Conexão #" + idConexao + " - Pedido #" + numeroPedido +
+                                            " em fluxo iniciado (id: " + pedidoFluxo.getId() + ", tamanho vetor: " +
+                                            pedidoFluxo.getTamanhoTotal() + ", procurado: " +
+                                            pedidoFluxo.getProcurado() + ")");
+                                }
+
+                                ContagemFluxo fluxo = new ContagemFluxo(pedidoFluxo);
+                                if (fluxo.completo()) {
+                                    pedidosEmVoo.acquire();
+                                    responderQuandoPronto(saida, idConexao, pedidoFluxo.getId(),
+                                            CompletableFuture.completedFuture(new Resposta(pedidoFluxo.getId(), 0)),
+                                            pedidosEmVoo, fluxo.inicio, "vazio");
+                                } else if (!fluxo.admitir(admissao)) {
+                                    // Fica no mapa só para descartar os blocos que já vêm a caminho
+                                    fluxos.put(pedidoFluxo.getId(), fluxo);
+                                    pedidosEmVoo.acquire();
+                                    responderQuandoPronto(saida, idConexao, pedidoFluxo.getId(),
+                                            recusar(pedidoFluxo.getId()), pedidosEmVoo, fluxo.inicio, "recusado");
+                                } else {
+                                    fluxos.put(pedidoFluxo.getId(), fluxo);
+                                }
+                            }
+                            else if (objeto instanceof BlocoFluxo || objeto instanceof BlocoComprimido) {
+                                long idFluxo = ((Identificado) objeto).getId();
+                                ContagemFluxo fluxo = fluxos.get(idFluxo);
+                                if (fluxo == null) {
+                                    Log.erro("Conexão #" + idConexao +
+                                            " - Bloco de pedido em fluxo desconhecido: " + idFluxo);
+                                    continue;
+                                }
+                                if (fluxo.isRecusado()) {
+                                    fluxo.descartar(objeto);
+                                    if (fluxo.completo()) {
+                                        fluxos.remove(idFluxo);
+                                    }
+                                    continue;
+                                }
+
+                                blocosEmVoo.acquire();
+                                try {
+                                    fluxo.adicionar(objeto, cpuPool, agregador)
+                                            .whenComplete((parcial, erro) -> blocosEmVoo.release());
+                                } catch (RejectedExecutionException e) {
+                                    blocosEmVoo.release();
+                                    throw e;
+                                }
+
+                                if (fluxo.completo()) {
+                                    fluxos.remove(idFluxo);
+                                    pedidosEmVoo.acquire();
+                                    long idPedido = idFluxo;
+                                    responderQuandoPronto(saida, idConexao, idPedido,
+                                            fluxo.total().thenApply(total -> new Resposta(idPedido, total)),
+                                            pedidosEmVoo, fluxo.inicio, fluxo.numeroBlocos() + " blocos");
+                                }
                             }
                             else if (objeto instanceof ComunicadoEncerramento) {
-                                System.out.println("[LOG] Conexão #" + idConexao +
-                                        " - ComunicadoEncerramento recebido");
+                                Log.info("Conexão #" + idConexao + " - ComunicadoEncerramento recebido");
                                 break;
                             }
                             else {
-                                System.err.println("[ERRO] Conexão #" + idConexao +
+                                Log.erro("Conexão #" + idConexao +
                                         " - Objeto desconhecido recebido: " + objeto.getClass().getName());
                             }
                         }
 
-                        System.out.println("[LOG] Conexão #" + idConexao + " - Encerrando...");
+                        // Respostas ainda em cálculo saem antes de fechar o canal
+                        pedidosEmVoo.acquire(MAX_PEDIDOS_EM_VOO);
+                        Log.info("Conexão #" + idConexao + " - Encerrando...");
 
                     } catch (EOFException e) {
-                        System.err.println("[ERRO] Conexão #" + idConexao +
+                        Log.erro("Conexão #" + idConexao +
                                 " - Fim inesperado do stream (cliente desconectou?)");
                     } catch (SocketException e) {
-                        System.err.println("[ERRO] Conexão #" + idConexao +
+                        Log.erro("Conexão #" + idConexao +
                                 " - Erro de socket: " + e.getMessage());
                     } catch (ClassNotFoundException e) {
-                        System.err.println("[ERRO] Conexão #" + idConexao +
+                        Log.erro("Conexão #" + idConexao +
                                 " - Classe não encontrada: " + e.getMessage());
                     } catch (Exception e) {
-                        System.err.println("[ERRO] Conexão #" + idConexao +
+                        Log.erro("Conexão #" + idConexao +
                                 " - Exceção não esperada: " + e.getMessage());
                         e.printStackTrace();
                     } finally {
                         // Fechamento seguro dos recursos
                         try {
-                            if (transmissor != null) {
-                                transmissor.close();
-                                System.out.println("[LOG] Conexão #" + idConexao + " - Transmissor fechado");
-                            }
-                        } catch (IOException e) {
-                            System.err.println("[ERRO] Conexão #" + idConexao +
-                                    " - Erro ao fechar transmissor: " + e.getMessage());
-                        }
-
-                        try {
-                            if (receptor != null) {
-                                receptor.close();
-                                System.out.println("[LOG] Conexão #" + idConexao + " - Receptor fechado");
+                            if (canal != null) {
+                                canal.close();
+                                Log.info("Conexão #" + idConexao + " - Canal fechado");
                             }
                         } catch (IOException e) {
-                            System.err.println("[ERRO] Conexão #" + idConexao +
-                                    " - Erro ao fechar receptor: " + e.getMessage());
+                            Log.erro("Conexão #" + idConexao +
+                                    " - Erro ao fechar canal: " + e.getMessage());
                         }
 
                         try {
                             if (conexao != null && !conexao.isClosed()) {
                                 conexao.close();
-                                System.out.println("[LOG] Conexão #" + idConexao + " - Socket fechado\n");
+                                Log.info("Conexão #" + idConexao + " - Socket fechado");
                             }
                         } catch (IOException e) {
-                            System.err.println("[ERRO] Conexão #" + idConexao +
+                            Log.erro("Conexão #" + idConexao +
                                     " - Erro ao fechar socket: " + e.getMessage());
                         }
+
+                        // Fluxos interrompidos pela queda da conexão devolvem a reserva
+                        for (ContagemFluxo fluxo : fluxos.values()) {
+                            fluxo.liberar();
+                        }
+                        reservas.liberar();
+                        vagasConexao.release();
                     }
                 });
             }
         } catch (NumberFormatException e) {
             System.err.println("[ERRO FATAL] Porta inválida fornecida");
+        } catch (IllegalArgumentException e) {
+            System.err.println("[ERRO FATAL] " + e.getMessage());
         } catch (IOException e) {
             System.err.println("[ERRO FATAL] Erro ao criar ServerSocket na porta " + porta + ": " + e.getMessage());
         } catch (Exception e) {
@@ -157,11 +411,16 @@ public class Receptor {
             // Encerramento dos pools de threads
             System.out.println("\n[LOG] Encerrando pools de threads...");
 
-            connectionPool.shutdown();
+            // Sem pool de conexões no modo NIO ou se a inicialização falhou antes de criá-lo
+            if (connectionPool != null) {
+                connectionPool.shutdown();
+            }
             cpuPool.shutdown();
+            poolInterativo.shutdown();
+            trabalhoDatasets.shutdown();
 
             try {
-                if (!connectionPool.awaitTermination(5, TimeUnit.SECONDS)) {
+                if (connectionPool != null && !connectionPool.awaitTermination(5, TimeUnit.SECONDS)) {
                     System.out.println("[AVISO] Forçando encerramento do connectionPool...");
                     connectionPool.shutdownNow();
                 }
@@ -170,7 +429,9 @@ public class Receptor {
                     cpuPool.shutdownNow();
                 }
             } catch (InterruptedException e) {
-                connectionPool.shutdownNow();
+                if (connectionPool != null) {
+                    connectionPool.shutdownNow();
+                }
                 cpuPool.shutdownNow();
                 Thread.currentThread().interrupt();
             }
@@ -184,39 +445,367 @@ public class Receptor {
                 }
             }
 
+            if (servidorMetricas != null) {
+                servidorMetricas.stop(0);
+            }
+
             System.out.println("=== RECEPTOR ENCERRADO ===");
         }
     }
 
-    private static int processarPedidoParalelo(byte[] numeros, byte procurado)
-            throws InterruptedException, ExecutionException {
+    private static void executarNio(ConfiguracaoReceptor config, int porta) throws IOException, InterruptedException {
+        try (ServerSocketChannel servidor = ServerSocketChannel.open()) {
+            servidor.bind(new InetSocketAddress(porta), Math.min(config.maxConexoes, 4096));
+            System.out.println("=== RECEPTOR INICIADO (NIO) ===");
+            System.out.println("[LOG] Servidor rodando na porta: " + servidor.socket().getLocalPort());
+            System.out.println("[LOG] Processadores disponíveis: " + Runtime.getRuntime().availableProcessors());
+            System.out.println("[LOG] Kernel de contagem: " + Kernels.padrao().getNome());
+            System.out.println("[LOG] Laços de eventos: " + config.lacosNio +
+                    " (máximo " + config.maxConexoes + " conexões)");
+            anunciar(config, servidor.socket().getLocalPort());
+            System.out.println("[LOG] Aguardando conexões...\n");
 
-        int numProcessadores = Runtime.getRuntime().availableProcessors();
-        int tamanhoArray = numeros.length;
-        int tamanhoFatia = tamanhoArray / numProcessadores;
+            new ReceptorNio(cpuPool, config.lacosNio, config.maxConexoes, MAX_BLOCOS_EM_VOO).executar(servidor);
+        }
+    }
 
-        List<Future<Integer>> resultados = new ArrayList<>();
+    // Com --registro, passa a se anunciar só depois de aceitar conexões na porta
+    private static void anunciar(ConfiguracaoReceptor config, int porta) throws IOException {
+        if (config.registro != null) {
+            new AnuncianteRegistro(config.registro, config.getHostAnunciado() + ":" + porta).iniciar();
+        }
+    }
 
-        System.out.println("    [LOG] Processamento paralelo iniciado: " +
-                numProcessadores + " threads, " + tamanhoArray + " elementos");
+    // Threads virtuais vêm de Executors.newVirtualThreadPerTaskExecutor (Java 21+),
+    // obtido por reflexão para que o código continue compilando em Java 17
+    private static ExecutorService criarPoolConexoes(ConfiguracaoReceptor.ModoConexao modo) {
+        if (modo == ConfiguracaoReceptor.ModoConexao.VIRTUAL) {
+            try {
+                Method fabrica = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+                ExecutorService virtuais = (ExecutorService) fabrica.invoke(null);
+                contagemInline = false;
+                return virtuais;
+            } catch (ReflectiveOperationException e) {
+                Log.aviso("Threads virtuais indisponíveis nesta JVM (requer Java 21+); " +
+                        "usando threads de plataforma");
+            }
+        }
+        return Executors.newCachedThreadPool();
+    }
 
-        for (int i = 0; i < numProcessadores; i++) {
-            int inicio = i * tamanhoFatia;
-            int fim = (i == numProcessadores - 1) ? tamanhoArray : (i + 1) * tamanhoFatia;
+    /**
+     * Envia a resposta quando o cálculo terminar, na thread que o concluiu.
+     * Threads diferentes podem responder ao mesmo tempo, então o envio é
+     * sincronizado no canal; se o cálculo falhar, o cliente recebe uma
+     * RespostaErro em vez de ficar esperando.
+     */
+    private static void responderQuandoPronto(Canal canal, int idConexao, long idPedido,
+                                              CompletableFuture<? extends Comunicado> calculo,
+                                              Semaphore pedidosEmVoo, long inicio, String tamanho) {
+        calculo.whenComplete((resposta, erro) -> {
+            try {
+                Comunicado envio = resposta;
+                if (erro != null) {
+                    Log.erro("Conexão #" + idConexao + " - Falha no pedido " + idPedido + ": " + mensagemDe(erro));
+                    envio = new RespostaErro(idPedido, mensagemDe(erro));
+                }
+                synchronized (canal) {
+                    long enviadoEm = System.nanoTime();
+                    canal.enviar(envio);
+                    SERIALIZACAO.registrar(System.nanoTime() - enviadoEm);
+                }
+                contarResposta(envio);
+                if (erro == null && Log.isDetalhe()) {
+                    Log.detalhe("Conexão #" + idConexao + " - Pedido " + idPedido + " processado (" + tamanho + ")" +
+                            resumo(resposta) + " em " + (System.currentTimeMillis() - inicio) + " ms");
+                }
+            } catch (IOException e) {
+                Log.erro("Conexão #" + idConexao + " - Erro ao enviar resposta do pedido " +
+                        idPedido + ": " + e.getMessage());
+            } finally {
+                pedidosEmVoo.release();
+            }
+        });
+    }
 
-            System.out.println("    [LOG] Thread " + i + " processará índices [" + inicio + ", " + fim + ")");
+    /**
+     * Passa um pedido pelo controle de admissão e o agenda na sua faixa; sem
+     * espaço, responde na hora com {@link RespostaOcupado}. {@code bytes} são os
+     * números que o pedido retém e {@code varridos}, os que a contagem percorre
+     * (um dataset residente não ocupa o orçamento, mas a varredura decide a faixa).
+     * {@code tarefa} recebe o pool da faixa, onde ficam as subtarefas do fork/join;
+     * com {@code naHora}, pedidos pequenos contam na thread que os leu.
+     */
+    static CompletableFuture<Comunicado> admitir(long idPedido, long bytes, long varridos, boolean naHora,
+                                                 Function<ForkJoinPool, Comunicado> tarefa) {
+        boolean interativo = varridos <= ControleAdmissao.LIMIAR_INTERATIVO;
+        return executar(idPedido, admissao.reservar(bytes, interativo) ? bytes : -1, varridos, naHora, tarefa);
+    }
 
-            resultados.add(cpuPool.submit(new ContadorTask(numeros, inicio, fim, procurado)));
+    /**
+     * Como {@link #admitir}, para um pedido que já passou pelo controle de
+     * admissão (ver {@link ReservaQuadros#tomar}): {@code reservado} bytes são
+     * devolvidos quando a contagem termina; com -1, o pedido é recusado.
+     */
+    static CompletableFuture<Comunicado> executar(long idPedido, long reservado, long varridos, boolean naHora,
+                                                  Function<ForkJoinPool, Comunicado> tarefa) {
+        if (reservado < 0) {
+            return recusar(idPedido);
+        }
+        boolean interativo = varridos <= ControleAdmissao.LIMIAR_INTERATIVO;
+        ForkJoinPool faixa = interativo ? poolInterativo : cpuPool;
+        Executor executor = naHora && varridos <= ContadorRecursivo.LIMIAR_INLINE ? NA_HORA : faixa;
+        CompletableFuture<Comunicado> resposta;
+        try {
+            resposta = agendar(() -> tarefa.apply(faixa), varridos, executor);
+        } catch (RejectedExecutionException e) {
+            admissao.liberar(reservado);
+            throw e;
         }
+        return resposta.whenComplete((r, erro) -> admissao.liberar(reservado));
+    }
 
-        int total = 0;
-        for (int i = 0; i < resultados.size(); i++) {
-            int parcial = resultados.get(i).get();
-            total += parcial;
-            System.out.println("    [LOG] Thread " + i + " retornou: " + parcial + " ocorrências");
+    /**
+     * Repassa aos filhos um pedido do modo agregador. Pedidos com números (e
+     * cargas de dataset) seguram a sua reserva ({@code reservado}, de
+     * {@link ReservaQuadros#tomar}) até os filhos responderem; contagens e
+     * remoções de dataset seguem direto.
+     */
+    static CompletableFuture<Comunicado> repassar(Comunicado objeto, long reservado) {
+        if (objeto instanceof PedidoDataset || objeto instanceof EvictarDataset) {
+            return agregador.atender(objeto);
+        }
+        if (reservado < 0) {
+            return recusar(((Identificado) objeto).getId());
+        }
+        return agregador.atender(objeto).whenComplete((r, erro) -> admissao.liberar(reservado));
+    }
+
+    static CompletableFuture<Comunicado> recusar(long idPedido) {
+        pedidosRecusados.increment();
+        int espera = admissao.esperaMs();
+        if (Log.isDetalhe()) {
+            Log.detalhe("Pedido " + idPedido + " recusado: receptor ocupado, nova tentativa em " + espera + " ms");
+        }
+        return CompletableFuture.completedFuture(new RespostaOcupado(idPedido, espera));
+    }
+
+    static void contarResposta(Comunicado resposta) {
+        pedidosAtendidos.increment();
+        if (resposta instanceof RespostaErro) {
+            respostasErro.increment();
+        }
+    }
+
+    /**
+     * Executa {@code tarefa} em {@code pool} (ou na hora, com {@link #NA_HORA})
+     * medindo a espera na fila e a contagem; {@code bytes} entra em bytes_contados.
+     */
+    static <T> CompletableFuture<T> agendar(Supplier<T> tarefa, long bytes, Executor pool) {
+        bytesContados.add(bytes);
+        long submetidoEm = System.nanoTime();
+        return CompletableFuture.supplyAsync(() -> {
+            long inicio = System.nanoTime();
+            FILA.registrar(inicio - submetidoEm);
+            T resultado = tarefa.get();
+            CONTAGEM.registrar(System.nanoTime() - inicio);
+            return resultado;
+        }, pool);
+    }
+
+    // Mensagem da causa real, sem o invólucro CompletionException
+    static String mensagemDe(Throwable erro) {
+        Throwable causa = erro instanceof CompletionException && erro.getCause() != null ? erro.getCause() : erro;
+        return causa.getMessage() != null ? causa.getMessage() : causa.getClass().getSimpleName();
+    }
+
+    /**
+     * Atende os comunicados de dataset residente (carregar, contar e evictar),
+     * em comum aos dois modos de servidor. Carregar e evictar acontecem na
+     * thread que chama (a da conexão; no modo nio, uma de {@link #trabalhoDatasets},
+     * em ordem por conexão), para que pedidos seguintes da mesma conexão já vejam
+     * o dataset; só a contagem vai para o cpuPool. A carga segura a sua reserva
+     * ({@code reservado}, de {@link ReservaQuadros#tomar}) até ser guardada; sem
+     * reserva, volta como RespostaOcupado.
+     */
+    static CompletableFuture<Comunicado> atenderDataset(Comunicado objeto, long reservado) {
+        if (objeto instanceof CarregarDataset) {
+            CarregarDataset carga = (CarregarDataset) objeto;
+            if (reservado < 0) {
+                return recusar(carga.getId());
+            }
+            try {
+                byte[] numeros = carga.getNumeros();
+                // A cópia para fora do heap (ou para o arquivo) acontece antes de tomar o lock do cache
+                IndiceHistograma indice = indexarDatasets ? IndiceHistograma.construir(numeros) : null;
+                Dataset dataset = datasets.carregar(carga.getDatasetId(),
+                        armazenamento.guardar(carga.getDatasetId(), numeros), indice, carga.isAnexar());
+                Log.info("Dataset " + dataset.getId() + " residente: " + dataset.getTamanho() +
+                        " bytes (cache: " + datasets.getOcupado() + "/" + datasets.getCapacidade() + " bytes)");
+                return CompletableFuture.completedFuture(new Resposta(carga.getId(), numeros.length));
+            } catch (IOException e) {
+                return CompletableFuture.completedFuture(new RespostaErro(carga.getId(),
+                        "Falha ao guardar dataset " + carga.getDatasetId() + ": " + e.getMessage()));
+            } catch (IllegalStateException | OutOfMemoryError e) {
+                return CompletableFuture.completedFuture(new RespostaErro(carga.getId(), e.getMessage()));
+            } finally {
+                admissao.liberar(reservado);
+            }
+        }
+        if (objeto instanceof PedidoDataset) {
+            PedidoDataset pedido = (PedidoDataset) objeto;
+            Dataset dataset = datasets.obter(pedido.getDatasetId());
+            if (dataset == null) {
+                return CompletableFuture.completedFuture(new RespostaErro(pedido.getId(),
+                        "Dataset " + pedido.getDatasetId() + " desconhecido (removido do cache?)"));
+            }
+            if (pedido.getInicio() < 0 || pedido.getFim() < pedido.getInicio()) {
+                return CompletableFuture.completedFuture(new RespostaErro(pedido.getId(),
+                        "Intervalo inválido: [" + pedido.getInicio() + ", " + pedido.getFim() + ")"));
+            }
+            long bytes = Math.max(0, Math.min(pedido.getFim(), dataset.getTamanho()) - pedido.getInicio());
+            return admitir(pedido.getId(), 0, bytes, false, pool -> new Resposta(pedido.getId(),
+                    dataset.contar(pool, pedido.getProcurado(), pedido.getInicio(), pedido.getFim())));
+        }
+        EvictarDataset evictar = (EvictarDataset) objeto;
+        boolean removido = datasets.remover(evictar.getDatasetId());
+        return CompletableFuture.completedFuture(new Resposta(evictar.getId(), removido ? 1 : 0));
+    }
+
+    static boolean isDataset(Comunicado objeto) {
+        return objeto instanceof CarregarDataset || objeto instanceof PedidoDataset
+                || objeto instanceof EvictarDataset;
+    }
+
+    // Trecho do log de conclusão que descreve a resposta
+    static String resumo(Comunicado resposta) {
+        if (resposta instanceof Resposta) {
+            return ": " + ((Resposta) resposta).getContagem() + " ocorrências";
+        }
+        if (resposta instanceof RespostaHistograma) {
+            return ": histograma";
+        }
+        if (resposta instanceof RespostaErro) {
+            return ": erro (" + ((RespostaErro) resposta).getMensagem() + ")";
+        }
+        if (resposta instanceof RespostaOcupado) {
+            return ": recusado, receptor ocupado";
+        }
+        if (resposta instanceof RespostaConsulta) {
+            return ": " + ((RespostaConsulta) resposta).getContagens().length + " contagens";
+        }
+        if (resposta instanceof Capacidade) {
+            return ": " + ((Capacidade) resposta).getNucleos() + " núcleos, fila " + ((Capacidade) resposta).getFila();
+        }
+        return "";
+    }
+
+    /**
+     * Capacidade anunciada ao Distribuidor: núcleos, vazão medida na partida e
+     * fila atual do pool; no agregador, a da subárvore.
+     */
+    static Capacidade capacidade(long idPedido) {
+        if (agregador != null) {
+            return agregador.capacidade(idPedido);
+        }
+        return new Capacidade(idPedido, cpuPool.getParallelism(), vazaoMedida,
+                cpuPool.getQueuedSubmissionCount(), Capacidade.COMPRESSAO);
+    }
+
+    /**
+     * Mede a vazão de varredura do pool (bytes por segundo): a melhor de algumas
+     * contagens de um vetor de {@link #TAMANHO_MEDICAO} bytes, depois de aquecer o kernel.
+     */
+    static long medirVazao() {
+        byte[] amostra = new byte[TAMANHO_MEDICAO];
+        long melhor = Long.MAX_VALUE;
+        for (int i = 0; i < 3; i++) {
+            long inicio = System.nanoTime();
+            ContadorRecursivo.contar(cpuPool, amostra, (byte) 1, false);
+            melhor = Math.min(melhor, System.nanoTime() - inicio);
+        }
+        return (long) (TAMANHO_MEDICAO * 1e9 / Math.max(1, melhor));
+    }
+
+    /**
+     * Avalia todos os predicados numa única varredura: um histograma da fatia e,
+     * para cada predicado, a soma das posições da sua máscara. Um único predicado
+     * de igualdade vai direto ao kernel de contagem, que é mais rápido que o histograma.
+     */
+    static int[] avaliarConsulta(ForkJoinPool pool, byte[] numeros, Predicado[] predicados, boolean permitirInline) {
+        if (predicados.length == 1 && predicados[0].valorUnico() >= 0) {
+            byte valor = (byte) predicados[0].valorUnico();
+            return new int[]{ContadorRecursivo.contar(pool, numeros, valor, permitirInline)};
+        }
+        int[] tabela = ContadorHistograma.contar(pool, numeros, permitirInline);
+        int[] contagens = new int[predicados.length];
+        for (int i = 0; i < predicados.length; i++) {
+            contagens[i] = predicados[i].avaliar(tabela);
+        }
+        return contagens;
+    }
+
+    private static int[] processarConsultaParalela(ForkJoinPool pool, byte[] numeros, Predicado[] predicados) {
+        boolean inline = contagemInline && numeros.length <= ContadorRecursivo.LIMIAR_INLINE;
+
+        if (Log.isDetalhe()) {
+            Log.detalhe("Consulta com " + predicados.length + " predicados " + (inline ?
+                    "na thread da conexão" : "paralela (fork/join, " + pool.getParallelism() + " workers)") +
+                    " iniciada: " + numeros.length + " elementos");
+        }
+
+        return avaliarConsulta(pool, numeros, predicados, contagemInline);
+    }
+
+    private static int[] processarHistogramaParalelo(ForkJoinPool pool, byte[] numeros) {
+        boolean inline = contagemInline && numeros.length <= ContadorRecursivo.LIMIAR_INLINE;
+
+        if (Log.isDetalhe()) {
+            Log.detalhe("Histograma " + (inline ? "na thread da conexão" : "paralelo (fork/join, " +
+                    pool.getParallelism() + " workers)") + " iniciado: " + numeros.length + " elementos");
         }
 
-        System.out.println("    [LOG] Total combinado: " + total + " ocorrências");
+        return ContadorHistograma.contar(pool, numeros, contagemInline);
+    }
+
+    private static int processarPedidoParalelo(ForkJoinPool pool, byte[] numeros, byte procurado) {
+        boolean inline = contagemInline && numeros.length <= ContadorRecursivo.LIMIAR_INLINE;
+
+        if (Log.isDetalhe()) {
+            Log.detalhe("Processamento " + (inline ? "na thread da conexão" : "paralelo (fork/join, " +
+                    pool.getParallelism() + " workers)") + " iniciado: " + numeros.length + " elementos");
+        }
+
+        int total = ContadorRecursivo.contar(pool, numeros, procurado, contagemInline);
+
+        if (Log.isDetalhe()) {
+            Log.detalhe("Total combinado: " + total + " ocorrências");
+        }
+        return total;
+    }
+
+    /**
+     * Divisão fixa em {@code numFatias} fatias iguais, cada uma contada no pool.
+     * Era a estratégia de processarPedidoParalelo antes do fork/join; mantida
+     * para comparação nos benchmarks.
+     */
+    public static int contarEmFatias(ExecutorService pool, int numFatias, byte[] numeros, byte procurado)
+            throws InterruptedException, ExecutionException {
+
+        int tamanhoArray = numeros.length;
+        int tamanhoFatia = tamanhoArray / numFatias;
+
+        List<Future<Integer>> resultados = new ArrayList<>();
+        for (int i = 0; i < numFatias; i++) {
+            int inicio = i * tamanhoFatia;
+            int fim = (i == numFatias - 1) ? tamanhoArray : (i + 1) * tamanhoFatia;
+            resultados.add(pool.submit(new ContadorTask(numeros, inicio, fim, procurado)));
+        }
+
+        int total = 0;
+        for (Future<Integer> resultado : resultados) {
+            total += resultado.get();
+        }
         return total;
     }
 
@@ -232,16 +821,7 @@ public class Receptor {
 
         @Override
         public int contar() {
-            int cont = 0;
-            byte[] nums = getNumeros();
-            byte proc = getProcurado();
-
-            for (int i = inicio; i < fim; i++) {
-                if (nums[i] == proc) {
-                    cont++;
-                }
-            }
-            return cont;
+            return Kernels.padrao().contar(getNumeros(), inicio, fim, getProcurado());
         }
 
         @Override
@@ -249,4 +829,4 @@ public class Receptor {
             return contar();
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,455 @@
+package src.Receptor;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.util.*;
+import java.util.concurrent.*;
+import src.Comunicacao.*;
+import src.Metricas.HistogramaLatencia;
+import src.Metricas.Log;
+import src.Metricas.Metricas;
+
+/**
+ * Receptor em laço de eventos (--modo=nio), alternativa à thread por conexão.
+ *
+ * Uma thread aceita conexões e as distribui entre alguns laços de eventos, cada
+ * um com seu Selector. Os quadros são decodificados aos pedaços, conforme os
+ * bytes chegam, a partir de um buffer direto de leitura reaproveitado por laço;
+ * a contagem vai para o cpuPool e a Resposta volta ao laço para ser escrita sem
+ * bloquear. Um cliente lento ocupa só a sua fila de saída, não uma thread.
+ * Cargas e remoções de dataset também saem do laço: rodam em
+ * {@code Receptor.trabalhoDatasets}, uma após a outra em cada conexão.
+ *
+ * Só fala o protocolo binário: conexões que não abrem com o número mágico são fechadas.
+ */
+class ReceptorNio {
+
+    private static final int TAMANHO_LEITURA = 64 * 1024;
+
+    private static final HistogramaLatencia SERIALIZACAO = Metricas.estagio(Metricas.SERIALIZACAO);
+
+    private final ForkJoinPool cpuPool;
+    private final int maxBlocosEmVoo;
+    private final Semaphore vagasConexao;
+    private final LacoEventos[] lacos;
+
+    ReceptorNio(ForkJoinPool cpuPool, int numeroLacos, int maxConexoes, int maxBlocosEmVoo) {
+        this.cpuPool = cpuPool;
+        this.maxBlocosEmVoo = maxBlocosEmVoo;
+        this.vagasConexao = new Semaphore(maxConexoes);
+        this.lacos = new LacoEventos[numeroLacos];
+    }
+
+    /** Aceita conexões em {@code servidor} até a thread ser interrompida. */
+    void executar(ServerSocketChannel servidor) throws IOException, InterruptedException {
+        for (int i = 0; i < lacos.length; i++) {
+            lacos[i] = new LacoEventos();
+            Thread thread = new Thread(lacos[i], "laco-nio-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        int numeroConexao = 0;
+        while (true) {
+            // Acima do limite, novas conexões esperam no backlog do ServerSocket
+            vagasConexao.acquire();
+            SocketChannel canal;
+            try {
+                canal = servidor.accept();
+            } catch (IOException e) {
+                vagasConexao.release();
+                throw e;
+            }
+            int idConexao = ++numeroConexao;
+
+            Log.info("Conexão #" + idConexao + " aceita de: " + canal.getRemoteAddress());
+
+            canal.configureBlocking(false);
+            canal.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            lacos[idConexao % lacos.length].registrar(canal, idConexao);
+        }
+    }
+
+    private class LacoEventos implements Runnable {
+        private final Selector seletor;
+        private final Queue<Runnable> tarefas = new ConcurrentLinkedQueue<>();
+        // Todas as conexões do laço leem por este buffer; o decodificador copia o que precisa guardar
+        private final ByteBuffer leitura = ByteBuffer.allocateDirect(TAMANHO_LEITURA);
+
+        LacoEventos() {
+            try {
+                seletor = Selector.open();
+            } catch (IOException e) {
+                throw new IllegalStateException("Não foi possível abrir o Selector", e);
+            }
+        }
+
+        /** Executa {@code tarefa} na thread do laço (é a única que mexe nas conexões). */
+        void executar(Runnable tarefa) {
+            tarefas.add(tarefa);
+            seletor.wakeup();
+        }
+
+        void registrar(SocketChannel canal, int idConexao) {
+            executar(() -> {
+                try {
+                    Conexao conexao = new Conexao(this, canal, idConexao);
+                    conexao.chave = canal.register(seletor, SelectionKey.OP_READ, conexao);
+                } catch (IOException e) {
+                    Log.erro("Conexão #" + idConexao + " - Erro ao registrar: " + e.getMessage());
+                    fecharCanal(canal);
+                    vagasConexao.release();
+                }
+            });
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                try {
+                    seletor.select();
+                } catch (IOException e) {
+                    System.err.println("[ERRO FATAL] Falha no Selector: " + e.getMessage());
+                    return;
+                }
+
+                Runnable tarefa;
+                while ((tarefa = tarefas.poll()) != null) {
+                    try {
+                        tarefa.run();
+                    } catch (RuntimeException e) {
+                        // Uma tarefa com defeito não pode derrubar as demais conexões do laço
+                        Log.erro("Tarefa do laço falhou: " + e);
+                    }
+                }
+
+                Iterator<SelectionKey> prontas = seletor.selectedKeys().iterator();
+                while (prontas.hasNext()) {
+                    SelectionKey chave = prontas.next();
+                    prontas.remove();
+                    Conexao conexao = (Conexao) chave.attachment();
+                    try {
+                        if (chave.isValid() && chave.isReadable()) {
+                            conexao.ler();
+                        }
+                        if (chave.isValid() && chave.isWritable()) {
+                            conexao.escrever();
+                        }
+                    } catch (EOFException e) {
+                        Log.erro("Conexão #" + conexao.id +
+                                " - Fim inesperado do stream (cliente desconectou?)");
+                        conexao.fechar();
+                    } catch (IOException e) {
+                        Log.erro("Conexão #" + conexao.id + " - Erro de E/S: " + e.getMessage());
+                        conexao.fechar();
+                    } catch (RuntimeException e) {
+                        // Como o modo bloqueante: o erro fecha só esta conexão, nunca o laço
+                        Log.erro("Conexão #" + conexao.id + " - Erro inesperado: " + e);
+                        conexao.fechar();
+                    }
+                }
+            }
+        }
+    }
+
+    /** Estado de uma conexão; acessado só pela thread do seu laço. */
+    private class Conexao {
+        private final LacoEventos laco;
+        private final SocketChannel canal;
+        private final int id;
+        private SelectionKey chave;
+
+        private final ByteBuffer magico = ByteBuffer.allocate(4);
+        private final ReservaQuadros reservas = new ReservaQuadros(Receptor.admissao);
+        private final DecodificadorQuadros decodificador = new DecodificadorQuadros(reservas);
+        private final Deque<ByteBuffer> saida = new ArrayDeque<>();
+        private final Map<Long, ContagemFluxo> fluxos = new HashMap<>();
+        // Última carga ou remoção de dataset da conexão; a próxima, e as contagens, esperam por ela
+        private CompletableFuture<?> ultimaCarga = CompletableFuture.completedFuture(null);
+
+        private int pendentes;
+        private int blocosEmVoo;
+        private boolean encerrando;
+        private boolean fechada;
+
+        Conexao(LacoEventos laco, SocketChannel canal, int id) {
+            this.laco = laco;
+            this.canal = canal;
+            this.id = id;
+        }
+
+        void ler() throws IOException {
+            ByteBuffer leitura = laco.leitura;
+            leitura.clear();
+            if (canal.read(leitura) < 0) {
+                throw new EOFException();
+            }
+            leitura.flip();
+
+            if (magico.hasRemaining()) {
+                while (magico.hasRemaining() && leitura.hasRemaining()) {
+                    magico.put(leitura.get());
+                }
+                if (magico.hasRemaining()) {
+                    return;
+                }
+                if (magico.getInt(0) != ProtocoloBinario.MAGICO) {
+                    Log.erro("Conexão #" + id +
+                            " - Cliente sem protocolo binário (o modo nio não aceita serialização Java)");
+                    fechar();
+                    return;
+                }
+                enfileirar(ByteBuffer.allocate(4).putInt(0, ProtocoloBinario.MAGICO));
+                Log.info("Conexão #" + id + " - Pronto para receber pedidos (protocolo BINARIO)");
+            }
+
+            // Mesmo com a leitura pausada, o que já está no buffer é consumido:
+            // ele é compartilhado e será sobrescrito pela próxima conexão
+            Comunicado comunicado;
+            while (!fechada && !encerrando && (comunicado = decodificador.consumir(leitura)) != null) {
+                tratar(comunicado);
+            }
+        }
+
+        private void tratar(Comunicado objeto) {
+            if (objeto instanceof QuadroRecusado) {
+                // Recusado pelo cabeçalho: o corpo nem chegou a ser alocado
+                responder(Receptor.recusar(((QuadroRecusado) objeto).getId()).join());
+                return;
+            }
+            long reservado = reservas.tomar(objeto);
+
+            if (Receptor.isDataset(objeto)) {
+                tratarDataset(objeto, reservado);
+            }
+            else if (Receptor.agregador != null && Agregador.repassa(objeto)) {
+                concluir(((Identificado) objeto).getId(), Receptor.repassar(objeto, reservado),
+                        System.currentTimeMillis(), "agregado");
+            }
+            else if (objeto instanceof Pedido) {
+                Pedido pedido = (Pedido) objeto;
+                byte[] numeros = pedido.getNumeros();
+                long inicio = System.currentTimeMillis();
+                // Pedidos pequenos levam poucos µs: contam no laço, sem a ida e volta ao pool
+                concluir(pedido.getId(), Receptor.executar(pedido.getId(), reservado, numeros.length, true,
+                        pool -> new Resposta(pedido.getId(),
+                                ContadorRecursivo.contar(pool, numeros, pedido.getProcurado(), true))),
+                        inicio, numeros.length + " elementos");
+            }
+            else if (objeto instanceof PedidoHistograma) {
+                PedidoHistograma pedido = (PedidoHistograma) objeto;
+                byte[] numeros = pedido.getNumeros();
+                long inicio = System.currentTimeMillis();
+                concluir(pedido.getId(), Receptor.executar(pedido.getId(), reservado, numeros.length, false,
+                        pool -> new RespostaHistograma(pedido.getId(), ContadorHistograma.contar(pool, numeros, false))),
+                        inicio, numeros.length + " elementos");
+            }
+            else if (objeto instanceof PedidoConsulta) {
+                PedidoConsulta pedido = (PedidoConsulta) objeto;
+                byte[] numeros = pedido.getNumeros();
+                long inicio = System.currentTimeMillis();
+                concluir(pedido.getId(), Receptor.executar(pedido.getId(), reservado, numeros.length, false,
+                        pool -> new RespostaConsulta(pedido.getId(),
+                                Receptor.avaliarConsulta(pool, numeros, pedido.getPredicados(), false))),
+                        inicio, numeros.length + " elementos");
+            }
+            else if (objeto instanceof PedidoCapacidade) {
+                responder(Receptor.capacidade(((PedidoCapacidade) objeto).getId()));
+            }
+            else if (objeto instanceof PedidoFluxo) {
+                PedidoFluxo pedidoFluxo = (PedidoFluxo) objeto;
+                ContagemFluxo fluxo = new ContagemFluxo(pedidoFluxo);
+                if (fluxo.completo()) {
+                    responder(new Resposta(pedidoFluxo.getId(), 0));
+                } else if (!fluxo.admitir(Receptor.admissao)) {
+                    // Fica no mapa só para descartar os blocos que já vêm a caminho
+                    fluxos.put(pedidoFluxo.getId(), fluxo);
+                    responder(Receptor.recusar(pedidoFluxo.getId()).join());
+                } else {
+                    fluxos.put(pedidoFluxo.getId(), fluxo);
+                }
+            }
+            else if (objeto instanceof BlocoFluxo || objeto instanceof BlocoComprimido) {
+                long idFluxo = ((Identificado) objeto).getId();
+                ContagemFluxo fluxo = fluxos.get(idFluxo);
+                if (fluxo == null) {
+                    Log.erro("Conexão #" + id + " - Bloco de pedido em fluxo desconhecido: " + idFluxo);
+                    return;
+                }
+                if (fluxo.isRecusado()) {
+                    fluxo.descartar(objeto);
+                    if (fluxo.completo()) {
+                        fluxos.remove(idFluxo);
+                        fecharSeConcluida();
+                    }
+                    return;
+                }
+
+                blocosEmVoo++;
+                if (blocosEmVoo >= maxBlocosEmVoo) {
+                    chave.interestOps(chave.interestOps() & ~SelectionKey.OP_READ);
+                }
+                fluxo.adicionar(objeto, cpuPool, Receptor.agregador)
+                        .whenComplete((parcial, erro) -> laco.executar(this::blocoConcluido));
+
+                if (fluxo.completo()) {
+                    fluxos.remove(idFluxo);
+                    long idPedido = idFluxo;
+                    concluirNoLaco(idPedido, fluxo.total().thenApply(total -> new Resposta(idPedido, total)),
+                            fluxo.inicio, fluxo.numeroBlocos() + " blocos");
+                }
+            }
+            else if (objeto instanceof ComunicadoEncerramento) {
+                Log.info("Conexão #" + id + " - ComunicadoEncerramento recebido");
+                encerrando = true;
+                fecharSeConcluida();
+            }
+            else {
+                Log.erro("Conexão #" + id + " - Objeto desconhecido recebido: " +
+                        objeto.getClass().getName());
+            }
+        }
+
+        /**
+         * Carregar e evictar rodam fora do laço, encadeados na ordem em que
+         * chegaram; uma contagem espera as cargas anteriores, mas não segura as
+         * seguintes. Uma carga que falhou não trava a fila: a próxima segue.
+         * A reserva da carga foi tomada aqui, no laço, antes do quadro seguinte.
+         */
+        private void tratarDataset(Comunicado objeto, long reservado) {
+            long idPedido = ((Identificado) objeto).getId();
+            CompletableFuture<Comunicado> resposta;
+            if (objeto instanceof PedidoDataset) {
+                resposta = ultimaCarga.isDone() ? atenderDataset(objeto, reservado)
+                        : ultimaCarga.handle((r, erro) -> null).thenCompose(v -> atenderDataset(objeto, reservado));
+            } else {
+                resposta = ultimaCarga.handleAsync((r, erro) -> null, Receptor.trabalhoDatasets)
+                        .thenCompose(v -> atenderDataset(objeto, reservado));
+                ultimaCarga = resposta;
+            }
+            concluir(idPedido, resposta, System.currentTimeMillis(), "dataset");
+        }
+
+        private CompletableFuture<Comunicado> atenderDataset(Comunicado objeto, long reservado) {
+            return Receptor.agregador != null ? Receptor.repassar(objeto, reservado)
+                    : Receptor.atenderDataset(objeto, reservado);
+        }
+
+        // Resposta já pronta (contagem no laço, recusa por ocupação) sai direto; as demais, por concluirNoLaco
+        private void concluir(long idPedido, CompletableFuture<? extends Comunicado> calculo, long inicio,
+                              String tamanho) {
+            if (calculo.isDone() && !calculo.isCompletedExceptionally()) {
+                responder(calculo.join());
+                return;
+            }
+            concluirNoLaco(idPedido, calculo, inicio, tamanho);
+        }
+
+        // O cálculo termina numa thread do pool; a resposta é escrita pela thread do laço
+        private void concluirNoLaco(long idPedido, CompletableFuture<? extends Comunicado> calculo, long inicio,
+                                    String tamanho) {
+            pendentes++;
+            calculo.whenComplete((resposta, erro) -> laco.executar(() -> {
+                pendentes--;
+                if (fechada) {
+                    return;
+                }
+                if (erro != null) {
+                    Log.erro("Conexão #" + id + " - Falha no pedido " + idPedido +
+                            ": " + Receptor.mensagemDe(erro));
+                    responder(new RespostaErro(idPedido, Receptor.mensagemDe(erro)));
+                    fecharSeConcluida();
+                    return;
+                }
+                if (Log.isDetalhe()) {
+                    Log.detalhe("Conexão #" + id + " - Pedido " + idPedido + " processado (" + tamanho + ")" +
+                            Receptor.resumo(resposta) + " em " + (System.currentTimeMillis() - inicio) + " ms");
+                }
+                responder(resposta);
+                fecharSeConcluida();
+            }));
+        }
+
+        private void blocoConcluido() {
+            blocosEmVoo--;
+            if (!fechada && !encerrando && blocosEmVoo < maxBlocosEmVoo) {
+                chave.interestOps(chave.interestOps() | SelectionKey.OP_READ);
+            }
+        }
+
+        private void responder(Comunicado resposta) {
+            try {
+                long inicio = System.nanoTime();
+                ByteBuffer quadro = ProtocoloBinario.codificar(resposta);
+                SERIALIZACAO.registrar(System.nanoTime() - inicio);
+                Receptor.contarResposta(resposta);
+                enfileirar(quadro);
+            } catch (IOException e) {
+                Log.erro("Conexão #" + id + " - Erro ao codificar resposta: " + e.getMessage());
+                fechar();
+            }
+        }
+
+        private void enfileirar(ByteBuffer quadro) {
+            boolean ociosa = saida.isEmpty();
+            saida.add(quadro);
+            if (ociosa) {
+                try {
+                    escrever();
+                } catch (IOException e) {
+                    Log.erro("Conexão #" + id + " - Erro de E/S: " + e.getMessage());
+                    fechar();
+                }
+            }
+        }
+
+        void escrever() throws IOException {
+            while (!saida.isEmpty()) {
+                ByteBuffer quadro = saida.peek();
+                canal.write(quadro);
+                if (quadro.hasRemaining()) {
+                    // Buffer do socket cheio: espera o cliente ler, sem segurar o laço
+                    chave.interestOps(chave.interestOps() | SelectionKey.OP_WRITE);
+                    return;
+                }
+                saida.poll();
+            }
+            chave.interestOps(chave.interestOps() & ~SelectionKey.OP_WRITE);
+            fecharSeConcluida();
+        }
+
+        private void fecharSeConcluida() {
+            if (encerrando && pendentes == 0 && fluxos.isEmpty() && saida.isEmpty()) {
+                Log.info("Conexão #" + id + " - Encerrando...");
+                fechar();
+            }
+        }
+
+        void fechar() {
+            if (fechada) {
+                return;
+            }
+            fechada = true;
+            chave.cancel();
+            fecharCanal(canal);
+            // Fluxos interrompidos pela queda da conexão devolvem a reserva
+            for (ContagemFluxo fluxo : fluxos.values()) {
+                fluxo.liberar();
+            }
+            reservas.liberar();
+            vagasConexao.release();
+            Log.info("Conexão #" + id + " - Socket fechado");
+        }
+    }
+
+    private static void fecharCanal(SocketChannel canal) {
+        try {
+            canal.close();
+        } catch (IOException e) {
+            Log.erro("Ao fechar canal: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package src.Receptor;
+
+import src.Comunicacao.*;
+
+/**
+ * Admissão de uma conexão pelo cabeçalho dos quadros: o orçamento para os
+ * números de um pedido é reservado antes de o corpo ser alocado e, sem espaço,
+ * o corpo é descartado. A reserva fica guardada até o pedido ser lido por
+ * inteiro e tratado, que a toma com {@link #tomar}.
+ *
+ * Usada só pela thread que lê a conexão (a da conexão, ou a do laço no modo nio).
+ */
+final class ReservaQuadros implements AdmissaoQuadros {
+
+    private final ControleAdmissao admissao;
+    // Bytes reservados pelo último cabeçalho admitido e ainda não tomados; -1 se nenhum
+    private long pendente = -1;
+
+    ReservaQuadros(ControleAdmissao admissao) {
+        this.admissao = admissao;
+    }
+
+    @Override
+    public boolean admitir(byte tipo, long id, int comprimento) {
+        if (!retemNumeros(tipo)) {
+            return true;
+        }
+        if (!admissao.reservar(comprimento, comprimento <= ControleAdmissao.LIMIAR_INTERATIVO)) {
+            return false;
+        }
+        pendente = comprimento;
+        return true;
+    }
+
+    /**
+     * Reserva do comunicado recém-lido: a do cabeçalho, se ele passou por
+     * {@link #admitir}; senão (serialização Java, que só entrega o objeto
+     * inteiro) uma nova, pelo tamanho dos números.
+     *
+     * @return os bytes reservados, a devolver com {@link ControleAdmissao#liberar};
+     *         -1 se não couberam; 0 para comunicados que não retêm números
+     */
+    long tomar(Comunicado objeto) {
+        long bytes = bytesRetidos(objeto);
+        if (bytes < 0) {
+            return 0;
+        }
+        if (pendente >= 0) {
+            long reservado = pendente;
+            pendente = -1;
+            return reservado;
+        }
+        return admissao.reservar(bytes, bytes <= ControleAdmissao.LIMIAR_INTERATIVO) ? bytes : -1;
+    }
+
+    /** Devolve a reserva de um corpo que não chegou a ser tratado (quadro mal formado, conexão caída). */
+    void liberar() {
+        if (pendente >= 0) {
+            admissao.liberar(pendente);
+            pendente = -1;
+        }
+    }
+
+    private static boolean retemNumeros(byte tipo) {
+        return tipo == ProtocoloBinario.TIPO_PEDIDO || tipo == ProtocoloBinario.TIPO_PEDIDO_HISTOGRAMA
+                || tipo == ProtocoloBinario.TIPO_PEDIDO_CONSULTA || tipo == ProtocoloBinario.TIPO_CARREGAR_DATASET;
+    }
+
+    // Números que o comunicado retém enquanto é atendido; -1 para os que não passam pela admissão
+    private static long bytesRetidos(Comunicado objeto) {
+        if (objeto instanceof Pedido) {
+            return ((Pedido) objeto).getTamanho();
+        }
+        if (objeto instanceof PedidoHistograma) {
+            return ((PedidoHistograma) objeto).getTamanho();
+        }
+        if (objeto instanceof PedidoConsulta) {
+            return ((PedidoConsulta) objeto).getTamanho();
+        }
+        if (objeto instanceof CarregarDataset) {
+            return ((CarregarDataset) objeto).getTamanho();
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,140 @@
+package src.Comunicacao;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class CompressaoTest {
+
+    static int contarEscalar(byte[] numeros, byte procurado) {
+        int total = 0;
+        for (byte b : numeros) {
+            total += b == procurado ? 1 : 0;
+        }
+        return total;
+    }
+
+    // Corridas longas de poucos valores, boas para o RLE
+    static byte[] corridas(int tamanho, Random aleatorio) {
+        byte[] numeros = new byte[tamanho];
+        int i = 0;
+        while (i < tamanho) {
+            int fim = Math.min(tamanho, i + 1 + aleatorio.nextInt(300));
+            Arrays.fill(numeros, i, fim, (byte) (aleatorio.nextInt(5) - 2));
+            i = fim;
+        }
+        return numeros;
+    }
+
+    // Valores espalhados entre {@code distintos} possíveis, bons para o dicionário
+    static byte[] poucosValores(int tamanho, int distintos, Random aleatorio) {
+        byte[] numeros = new byte[tamanho];
+        for (int i = 0; i < tamanho; i++) {
+            numeros[i] = (byte) (aleatorio.nextInt(distintos) * 17 - 100);
+        }
+        return numeros;
+    }
+
+    @Test
+    void rleIdaVoltaEContagem() throws IOException {
+        Random aleatorio = new Random(1);
+        byte[] numeros = corridas(200_003, aleatorio);
+        assertEquals(Compressao.RLE, Compressao.escolher(ByteBuffer.wrap(numeros)));
+        byte[] codificado = Compressao.codificar(Compressao.RLE, ByteBuffer.wrap(numeros));
+        assertNotNull(codificado);
+        Compressao.validar(Compressao.RLE, codificado, numeros.length);
+
+        assertArrayEquals(numeros, Compressao.decodificar(Compressao.RLE, codificado, numeros.length));
+        for (byte procurado = -3; procurado <= 3; procurado++) {
+            assertEquals(contarEscalar(numeros, procurado),
+                    Compressao.contar(Compressao.RLE, codificado, numeros.length, procurado));
+        }
+    }
+
+    @Test
+    void dicionarioIdaVoltaEContagem() throws IOException {
+        Random aleatorio = new Random(2);
+        // 2, 4 e 16 valores: 1, 2 e 4 bits por código; tamanhos que deixam campos de enchimento
+        for (int distintos : new int[]{2, 4, 16}) {
+            for (int tamanho : new int[]{1, 7, 63, 1000, 65_537}) {
+                byte[] numeros = poucosValores(tamanho, distintos, aleatorio);
+                byte[] codificado = Compressao.codificar(Compressao.DICIONARIO, ByteBuffer.wrap(numeros));
+                assertNotNull(codificado);
+                Compressao.validar(Compressao.DICIONARIO, codificado, tamanho);
+
+                assertArrayEquals(numeros, Compressao.decodificar(Compressao.DICIONARIO, codificado, tamanho));
+                for (int v = 0; v < distintos + 1; v++) {
+                    byte procurado = (byte) (v * 17 - 100);
+                    assertEquals(contarEscalar(numeros, procurado),
+                            Compressao.contar(Compressao.DICIONARIO, codificado, tamanho, procurado),
+                            distintos + " valores, " + tamanho + " números, procurado " + procurado);
+                }
+            }
+        }
+    }
+
+    @Test
+    void dadosSemGanhoNaoSaoComprimidos() {
+        byte[] numeros = new byte[10_000];
+        new Random(3).nextBytes(numeros);
+        assertEquals(0, Compressao.escolher(ByteBuffer.wrap(numeros)));
+        assertNull(Compressao.codificar(Compressao.RLE, ByteBuffer.wrap(numeros)));
+        assertNull(Compressao.codificar(Compressao.DICIONARIO, ByteBuffer.wrap(numeros)));
+    }
+
+    @Test
+    void rleMalFormadoRecusado() {
+        byte[] numeros = corridas(5000, new Random(4));
+        byte[] codificado = Compressao.codificar(Compressao.RLE, ByteBuffer.wrap(numeros));
+
+        // Truncado no meio de uma corrida, corrida sem comprimento e soma diferente do tamanho
+        assertThrows(IOException.class, () -> Compressao.validar(Compressao.RLE,
+                Arrays.copyOf(codificado, codificado.length - 1), numeros.length));
+        assertThrows(IOException.class, () -> Compressao.validar(Compressao.RLE, new byte[]{5}, 1));
+        assertThrows(IOException.class, () -> Compressao.validar(Compressao.RLE, codificado, numeros.length + 1));
+        assertThrows(IOException.class, () -> Compressao.validar(Compressao.RLE, codificado, numeros.length - 1));
+        // Varint com mais de 5 bytes e comprimento além de um int
+        assertThrows(IOException.class, () -> Compressao.validar(Compressao.RLE,
+                new byte[]{1, -1, -1, -1, -1, -1, 1}, 5));
+        assertThrows(IOException.class, () -> Compressao.validar(Compressao.RLE,
+                new byte[]{1, -1, -1, -1, -1, 0x0F}, Integer.MAX_VALUE));
+    }
+
+    @Test
+    void dicionarioMalFormadoRecusado() {
+        byte[] numeros = poucosValores(100, 4, new Random(5));
+        byte[] codificado = Compressao.codificar(Compressao.DICIONARIO, ByteBuffer.wrap(numeros));
+
+        assertThrows(IOException.class, () -> Compressao.validar(Compressao.DICIONARIO, new byte[]{0}, 1));
+        assertThrows(IOException.class, () -> Compressao.validar(Compressao.DICIONARIO,
+                Arrays.copyOf(codificado, codificado.length - 1), numeros.length));
+        byte[] bitsInvalidos = codificado.clone();
+        bitsInvalidos[1 + 4] = 3;
+        assertThrows(IOException.class, () -> Compressao.validar(Compressao.DICIONARIO, bitsInvalidos, numeros.length));
+        assertThrows(IOException.class, () -> Compressao.validar((byte) 9, codificado, numeros.length));
+    }
+
+    @Test
+    void codigoForaDoDicionarioRecusado() throws IOException {
+        // 3 valores em códigos de 2 bits: o código 3 não aponta para nenhum valor
+        byte[] numeros = {7, 8, 9, 7, 8};
+        byte[] codificado = Compressao.codificar(Compressao.DICIONARIO, ByteBuffer.wrap(numeros));
+        assertEquals(2, codificado[1 + 3]);
+        Compressao.validar(Compressao.DICIONARIO, codificado, numeros.length);
+
+        byte[] foraDoDicionario = codificado.clone();
+        foraDoDicionario[2 + 3] |= 3 << 2;
+        assertThrows(IOException.class,
+                () -> Compressao.validar(Compressao.DICIONARIO, foraDoDicionario, numeros.length));
+
+        // Campos de enchimento do último byte não são números e não são checados
+        byte[] enchimento = codificado.clone();
+        enchimento[enchimento.length - 1] |= (byte) 0xFC;
+        Compressao.validar(Compressao.DICIONARIO, enchimento, numeros.length);
+        assertArrayEquals(numeros, Compressao.decodificar(Compressao.DICIONARIO, enchimento, numeros.length));
+    }
+}
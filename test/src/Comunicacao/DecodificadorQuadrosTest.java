@@ -0,0 +1,133 @@
+package src.Comunicacao;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import src.Contagem.Predicado;
+
+class DecodificadorQuadrosTest {
+
+    static ByteBuffer quadros(Comunicado... comunicados) throws IOException {
+        int total = 0;
+        List<ByteBuffer> partes = new ArrayList<>();
+        for (Comunicado c : comunicados) {
+            ByteBuffer quadro = ProtocoloBinario.codificar(c);
+            partes.add(quadro);
+            total += quadro.remaining();
+        }
+        ByteBuffer tudo = ByteBuffer.allocate(total);
+        partes.forEach(tudo::put);
+        return tudo.flip();
+    }
+
+    // Entrega a entrada em pedaços de {@code passo} bytes, como chegariam do socket
+    static List<Comunicado> consumirAosPedacos(DecodificadorQuadros decodificador, ByteBuffer entrada, int passo)
+            throws IOException {
+        List<Comunicado> lidos = new ArrayList<>();
+        while (entrada.hasRemaining()) {
+            int n = Math.min(passo, entrada.remaining());
+            ByteBuffer pedaco = ByteBuffer.allocate(n);
+            pedaco.put(entrada.slice(entrada.position(), n)).flip();
+            entrada.position(entrada.position() + n);
+            Comunicado c;
+            while ((c = decodificador.consumir(pedaco)) != null) {
+                lidos.add(c);
+            }
+            assertFalse(pedaco.hasRemaining(), "o decodificador deve consumir todo o pedaço");
+        }
+        return lidos;
+    }
+
+    @Test
+    void leituraByteAByte() throws IOException {
+        ByteBuffer entrada = quadros(
+                new Pedido(1, new byte[]{5, 6, 5}, 0, 3, (byte) 5),
+                new PedidoConsulta(2, new byte[]{1, 2}, 0, 2, Predicado.valor((byte) 1), Predicado.valor((byte) 2)),
+                new PedidoCapacidade(3),
+                new Resposta(4, 1L << 40));
+        List<Comunicado> lidos = consumirAosPedacos(new DecodificadorQuadros(), entrada, 1);
+
+        assertEquals(4, lidos.size());
+        assertArrayEquals(new byte[]{5, 6, 5}, ((Pedido) lidos.get(0)).getNumeros());
+        assertEquals(2, ((PedidoConsulta) lidos.get(1)).getPredicados().length);
+        assertEquals(3, ((PedidoCapacidade) lidos.get(2)).getId());
+        assertEquals(1L << 40, ((Resposta) lidos.get(3)).getContagem());
+    }
+
+    @Test
+    void consultaDivididaEmVariasLeituras() throws IOException {
+        Predicado[] predicados = new Predicado[40];
+        for (int i = 0; i < predicados.length; i++) {
+            predicados[i] = Predicado.intervalo((byte) -i, (byte) i);
+        }
+        byte[] numeros = new byte[3000];
+        for (int i = 0; i < numeros.length; i++) {
+            numeros[i] = (byte) i;
+        }
+        ByteBuffer entrada = quadros(new PedidoConsulta(7, numeros, 0, numeros.length, predicados),
+                new PedidoCapacidade(8));
+        // Passos que cortam o quadro no cabeçalho, no meio dos predicados e na carga
+        for (int passo : new int[]{5, 17, 100, 1000}) {
+            List<Comunicado> lidos = consumirAosPedacos(new DecodificadorQuadros(), entrada.duplicate(), passo);
+            assertEquals(2, lidos.size(), "passo " + passo);
+            PedidoConsulta consulta = (PedidoConsulta) lidos.get(0);
+            assertEquals(7, consulta.getId());
+            assertArrayEquals(predicados, consulta.getPredicados());
+            assertArrayEquals(numeros, consulta.getNumeros());
+            assertEquals(8, ((PedidoCapacidade) lidos.get(1)).getId());
+        }
+    }
+
+    @Test
+    void variosQuadrosNoMesmoPedaco() throws IOException {
+        byte[] grande = new byte[100_000];
+        grande[99_999] = 9;
+        ByteBuffer entrada = quadros(new Pedido(1, grande, (byte) 9), new Pedido(2, new byte[]{9}, (byte) 9));
+        for (int passo : new int[]{7, 4096, entrada.remaining()}) {
+            List<Comunicado> lidos = consumirAosPedacos(new DecodificadorQuadros(), entrada.duplicate(), passo);
+            assertEquals(2, lidos.size());
+            assertArrayEquals(grande, ((Pedido) lidos.get(0)).getNumeros());
+            assertEquals(2, ((Pedido) lidos.get(1)).getId());
+        }
+    }
+
+    @Test
+    void cabecalhoInvalidoRecusadoAntesDeAlocar() {
+        ByteBuffer entrada = ByteBuffer.allocate(ProtocoloBinario.TAMANHO_CABECALHO)
+                .put(ProtocoloBinario.TIPO_RESPOSTA).putLong(1).putInt(Integer.MAX_VALUE).flip();
+        assertThrows(IOException.class, () -> new DecodificadorQuadros().consumir(entrada));
+
+        ByteBuffer negativo = ByteBuffer.allocate(ProtocoloBinario.TAMANHO_CABECALHO)
+                .put(ProtocoloBinario.TIPO_BLOCO).putLong(1).putInt(-1).flip();
+        assertThrows(IOException.class, () -> new DecodificadorQuadros().consumir(negativo));
+    }
+
+    @Test
+    void corpoMalFormadoViraIOException() {
+        // Dicionário que declara 4 bits por código com só 2 bytes de códigos para 100 números
+        ByteBuffer entrada = ByteBuffer.allocate(ProtocoloBinario.TAMANHO_CABECALHO + 10)
+                .put(ProtocoloBinario.TIPO_BLOCO_COMPRIMIDO).putLong(1).putInt(10)
+                .put(Compressao.DICIONARIO).putInt(100).put(new byte[]{1, 7, 8, 4, 0}).flip();
+        assertThrows(IOException.class, () -> new DecodificadorQuadros().consumir(entrada));
+    }
+
+    @Test
+    void corpoRecusadoDescartadoAosPedacos() throws IOException {
+        List<Long> consultados = new ArrayList<>();
+        AdmissaoQuadros admissao = (tipo, id, comprimento) -> {
+            consultados.add(id);
+            return id != 1;
+        };
+        ByteBuffer entrada = quadros(new Pedido(1, new byte[50_000], (byte) 0), new Pedido(2, new byte[]{3}, (byte) 3));
+        List<Comunicado> lidos = consumirAosPedacos(new DecodificadorQuadros(admissao), entrada, 333);
+
+        assertEquals(List.of(1L, 2L), consultados);
+        assertEquals(2, lidos.size());
+        assertEquals(1, ((QuadroRecusado) lidos.get(0)).getId());
+        assertArrayEquals(new byte[]{3}, ((Pedido) lidos.get(1)).getNumeros());
+    }
+}
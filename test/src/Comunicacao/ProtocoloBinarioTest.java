@@ -0,0 +1,148 @@
+package src.Comunicacao;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+import src.Contagem.Predicado;
+
+class ProtocoloBinarioTest {
+
+    // Escreve e lê de volta um comunicado pelo enquadramento binário
+    static Comunicado idaVolta(Comunicado comunicado) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(buffer);
+        ProtocoloBinario.escrever(out, comunicado);
+        out.flush();
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(buffer.toByteArray()));
+        Comunicado lido = ProtocoloBinario.ler(in);
+        assertEquals(0, in.available(), "sobraram bytes depois do quadro");
+        return lido;
+    }
+
+    static byte[] quadro(byte tipo, long id, int comprimento, byte... corpo) {
+        return ByteBuffer.allocate(ProtocoloBinario.TAMANHO_CABECALHO + corpo.length)
+                .put(tipo).putLong(id).putInt(comprimento).put(corpo).array();
+    }
+
+    static Comunicado ler(byte[] bytes) throws IOException {
+        return ProtocoloBinario.ler(new DataInputStream(new ByteArrayInputStream(bytes)));
+    }
+
+    @Test
+    void pedidoIdaVolta() throws IOException {
+        byte[] numeros = {1, 2, 3, -4, 5, 6};
+        Pedido lido = (Pedido) idaVolta(new Pedido(7, numeros, 1, 5, (byte) -4));
+        assertEquals(7, lido.getId());
+        assertEquals(-4, lido.getProcurado());
+        assertArrayEquals(new byte[]{2, 3, -4, 5}, lido.getNumeros());
+    }
+
+    @Test
+    void respostaCurtaELonga() throws IOException {
+        assertEquals(42, ((Resposta) idaVolta(new Resposta(1, 42))).getContagem());
+        Resposta longa = (Resposta) idaVolta(new Resposta(2, 5_000_000_000L));
+        assertEquals(2, longa.getId());
+        assertEquals(5_000_000_000L, longa.getContagem());
+    }
+
+    @Test
+    void consultaIdaVolta() throws IOException {
+        Predicado[] predicados = {Predicado.valor((byte) 3), Predicado.intervalo((byte) -10, (byte) 10)};
+        PedidoConsulta lido = (PedidoConsulta) idaVolta(new PedidoConsulta(9, new byte[]{3, 3, -20}, 0, 3, predicados));
+        assertArrayEquals(predicados, lido.getPredicados());
+        assertArrayEquals(new byte[]{3, 3, -20}, lido.getNumeros());
+    }
+
+    @Test
+    void consultaComPredicadosDemaisRecusada() throws IOException {
+        Predicado[] maximo = new Predicado[PedidoConsulta.MAX_PREDICADOS];
+        Arrays.fill(maximo, Predicado.valor((byte) 1));
+        PedidoConsulta lido = (PedidoConsulta) idaVolta(new PedidoConsulta(1, new byte[]{1}, 0, 1, maximo));
+        assertEquals(PedidoConsulta.MAX_PREDICADOS, lido.getPredicados().length);
+
+        Predicado[] demais = Arrays.copyOf(maximo, PedidoConsulta.MAX_PREDICADOS + 1);
+        demais[PedidoConsulta.MAX_PREDICADOS] = Predicado.valor((byte) 2);
+        assertThrows(IllegalArgumentException.class, () -> new PedidoConsulta(2, new byte[]{1}, 0, 1, demais));
+        assertThrows(IllegalArgumentException.class, () -> new PedidoConsulta(3, new byte[]{1}, 0, 1));
+    }
+
+    @Test
+    void demaisTiposIdaVolta() throws IOException {
+        PedidoHistograma histograma = (PedidoHistograma) idaVolta(new PedidoHistograma(3, new byte[]{9, 8}, 0, 2));
+        assertArrayEquals(new byte[]{9, 8}, histograma.getNumeros());
+
+        CarregarDataset carga = (CarregarDataset) idaVolta(
+                new CarregarDataset(4, 77, true, ByteBuffer.wrap(new byte[]{1, 2, 3})));
+        assertEquals(77, carga.getDatasetId());
+        assertTrue(carga.isAnexar());
+        assertArrayEquals(new byte[]{1, 2, 3}, carga.getNumeros());
+
+        PedidoDataset pedido = (PedidoDataset) idaVolta(new PedidoDataset(5, 77, (byte) 2, 10, 20));
+        assertEquals(77, pedido.getDatasetId());
+        assertEquals(2, pedido.getProcurado());
+        assertEquals(10, pedido.getInicio());
+        assertEquals(20, pedido.getFim());
+
+        assertEquals(250, ((RespostaOcupado) idaVolta(new RespostaOcupado(6, 250))).getEsperaMs());
+        assertEquals("falhou: ç", ((RespostaErro) idaVolta(new RespostaErro(8, "falhou: ç"))).getMensagem());
+
+        Capacidade capacidade = (Capacidade) idaVolta(new Capacidade(10, 8, 1L << 33, 3, Capacidade.COMPRESSAO));
+        assertEquals(8, capacidade.getNucleos());
+        assertEquals(1L << 33, capacidade.getVazao());
+        assertEquals(Capacidade.COMPRESSAO, capacidade.getRecursos());
+
+        int[] contagens = new int[256];
+        contagens[0] = 5;
+        contagens[255] = 70000;
+        assertArrayEquals(contagens, ((RespostaHistograma) idaVolta(new RespostaHistograma(11, contagens))).getContagens());
+    }
+
+    @Test
+    void tipoDesconhecidoRecusado() {
+        IOException erro = assertThrows(IOException.class, () -> ler(quadro((byte) 99, 1, 0)));
+        assertTrue(erro.getMessage().contains("desconhecido"));
+    }
+
+    @Test
+    void comprimentoForaDosLimitesRecusadoAntesDeAlocar() {
+        // Corpo negativo, menor que os campos fixos e gigante num tipo de tamanho fixo
+        assertThrows(IOException.class, () -> ler(quadro(ProtocoloBinario.TIPO_PEDIDO, 1, -5)));
+        assertThrows(IOException.class, () -> ler(quadro(ProtocoloBinario.TIPO_CARREGAR_DATASET, 1, 3)));
+        assertThrows(IOException.class, () -> ler(quadro(ProtocoloBinario.TIPO_RESPOSTA, 1, Integer.MAX_VALUE)));
+        assertThrows(IOException.class, () -> ler(quadro(ProtocoloBinario.TIPO_PEDIDO, 1, 0)));
+    }
+
+    @Test
+    void consultaComPredicadosAlemDoQuadro() {
+        // Declara 1000 predicados num corpo de 4 bytes
+        byte[] bytes = quadro(ProtocoloBinario.TIPO_PEDIDO_CONSULTA, 1, 4, new byte[]{0x03, (byte) 0xE8, 0, 0});
+        assertThrows(IOException.class, () -> ler(bytes));
+    }
+
+    @Test
+    void corpoTruncado() {
+        byte[] bytes = quadro(ProtocoloBinario.TIPO_PEDIDO, 1, 10, new byte[]{1, 2, 3});
+        assertThrows(EOFException.class, () -> ler(bytes));
+    }
+
+    @Test
+    void corpoRecusadoEPuladoSemDessincronizar() throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(buffer);
+        ProtocoloBinario.escrever(out, new Pedido(1, new byte[1000], (byte) 0));
+        ProtocoloBinario.escrever(out, new Pedido(2, new byte[]{4, 4}, (byte) 4));
+        out.flush();
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(buffer.toByteArray()));
+
+        AdmissaoQuadros soPequenos = (tipo, id, comprimento) -> comprimento < 100;
+        Comunicado recusado = ProtocoloBinario.ler(in, soPequenos);
+        assertInstanceOf(QuadroRecusado.class, recusado);
+        assertEquals(1, ((QuadroRecusado) recusado).getId());
+        Pedido seguinte = (Pedido) ProtocoloBinario.ler(in, soPequenos);
+        assertEquals(2, seguinte.getId());
+        assertArrayEquals(new byte[]{4, 4}, seguinte.getNumeros());
+    }
+}
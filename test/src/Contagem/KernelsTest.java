@@ -0,0 +1,81 @@
+package src.Contagem;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+
+class KernelsTest {
+
+    private final KernelContagem escalar = new KernelEscalar();
+
+    // Vetor com bastante repetição do procurado, para exercitar as somas por palavra
+    static byte[] numeros(Random aleatorio, int tamanho) {
+        byte[] numeros = new byte[tamanho];
+        for (int i = 0; i < tamanho; i++) {
+            numeros[i] = (byte) (aleatorio.nextInt(4) == 0 ? -128 : aleatorio.nextInt(256));
+        }
+        return numeros;
+    }
+
+    void conferirContraEscalar(KernelContagem kernel) {
+        Random aleatorio = new Random(42);
+        byte[] numeros = numeros(aleatorio, 70_001);
+        ByteBuffer direto = ByteBuffer.allocateDirect(numeros.length).put(numeros).flip();
+        byte[] procurados = {-128, 0, 127, (byte) 0x80, 1, -1};
+        // Fatias vazias, menores que uma palavra, desalinhadas e o vetor inteiro
+        int[][] intervalos = {{0, 0}, {0, 1}, {3, 10}, {1, 65}, {7, 4099}, {0, numeros.length},
+                {numeros.length - 33, numeros.length}};
+        for (byte procurado : procurados) {
+            for (int[] intervalo : intervalos) {
+                int esperado = escalar.contar(numeros, intervalo[0], intervalo[1], procurado);
+                String caso = kernel.getNome() + " em [" + intervalo[0] + ", " + intervalo[1] + ") procurando " + procurado;
+                assertEquals(esperado, kernel.contar(numeros, intervalo[0], intervalo[1], procurado), caso);
+                assertEquals(esperado, kernel.contar(ByteBuffer.wrap(numeros), intervalo[0], intervalo[1], procurado),
+                        caso + " (heap)");
+                assertEquals(esperado, kernel.contar(direto, intervalo[0], intervalo[1], procurado), caso + " (direto)");
+            }
+        }
+        for (int i = 0; i < 200; i++) {
+            int inicio = aleatorio.nextInt(numeros.length);
+            int fim = inicio + aleatorio.nextInt(numeros.length - inicio + 1);
+            byte procurado = numeros[aleatorio.nextInt(numeros.length)];
+            assertEquals(escalar.contar(numeros, inicio, fim, procurado), kernel.contar(numeros, inicio, fim, procurado));
+        }
+    }
+
+    @Test
+    void swarIgualAoEscalar() {
+        conferirContraEscalar(Kernels.porNome("swar"));
+    }
+
+    @Test
+    void vetorialIgualAoEscalar() {
+        KernelContagem vetorial;
+        try {
+            vetorial = Kernels.porNome("vetorial");
+        } catch (IllegalArgumentException e) {
+            vetorial = null;
+        }
+        Assumptions.assumeTrue(vetorial != null, "kernel vetorial indisponível nesta JVM");
+        conferirContraEscalar(vetorial);
+    }
+
+    @Test
+    void escalarContaNoIntervalo() {
+        byte[] numeros = {5, 1, 5, 5, 2, 5};
+        assertEquals(4, escalar.contar(numeros, 0, numeros.length, (byte) 5));
+        assertEquals(2, escalar.contar(numeros, 1, 4, (byte) 5));
+        assertEquals(0, escalar.contar(numeros, 2, 2, (byte) 5));
+    }
+
+    @Test
+    void swarIguaisPorPalavra() {
+        long padrao = 0x0101010101010101L * 0x80;
+        assertEquals(8, KernelSwar.iguais(padrao, padrao));
+        assertEquals(0, KernelSwar.iguais(0x7F7F7F7F7F7F7F7FL, padrao));
+        assertEquals(1, KernelSwar.iguais(0x0000000000000080L, padrao));
+    }
+}
@@ -0,0 +1,48 @@
+package src.Contagem;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+class PredicadoTest {
+
+    @Test
+    void valorUnico() {
+        assertEquals(5, Predicado.valor((byte) 5).valorUnico());
+        assertEquals(0xFF, Predicado.valor((byte) -1).valorUnico());
+        assertEquals(-1, Predicado.conjunto((byte) 1, (byte) 2).valorUnico());
+        assertEquals(-1, Predicado.conjunto().valorUnico());
+        assertEquals(Predicado.valor((byte) 7), Predicado.intervalo((byte) 7, (byte) 7));
+    }
+
+    @Test
+    void intervaloComSinal() {
+        Predicado negativos = Predicado.intervalo((byte) -128, (byte) -1);
+        for (int v = -128; v <= 127; v++) {
+            assertEquals(v < 0, negativos.testar((byte) v), "valor " + v);
+        }
+        Predicado vazio = Predicado.intervalo((byte) 3, (byte) 2);
+        for (int v = -128; v <= 127; v++) {
+            assertFalse(vazio.testar((byte) v));
+        }
+    }
+
+    @Test
+    void mascaraIdaVolta() {
+        Predicado original = Predicado.conjunto((byte) 0, (byte) 63, (byte) 64, (byte) 127, (byte) -128, (byte) -1);
+        assertEquals(original, Predicado.mascara(original.getMascara()));
+        assertThrows(IllegalArgumentException.class, () -> Predicado.mascara(new byte[3]));
+    }
+
+    @Test
+    void avaliarSomaAsPosicoesDaMascara() {
+        int[] tabela = new int[Histograma.VALORES];
+        for (int i = 0; i < tabela.length; i++) {
+            tabela[i] = i + 1;
+        }
+        // Posições 0xFE e 0xFF (-2 e -1) e 0, 1 e 2
+        assertEquals(0xFF + 0x100 + 1 + 2 + 3, Predicado.intervalo((byte) -2, (byte) 2).avaliar(tabela));
+        assertEquals(0, Predicado.conjunto().avaliar(tabela));
+        assertEquals(tabela[10], Predicado.valor((byte) 10).avaliar(tabela));
+    }
+}
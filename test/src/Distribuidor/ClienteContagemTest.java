@@ -0,0 +1,77 @@
+package src.Distribuidor;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import src.Comunicacao.Anuncio;
+
+class ClienteContagemTest {
+
+    @Test
+    void semEstimativasAsPartesSaoIguais() {
+        List<ConexaoR> conexoes = List.of(ConexaoR.desconectada("a", 1), ConexaoR.desconectada("b", 1),
+                ConexaoR.desconectada("c", 1));
+        // Nenhum ativo: todos recebem parte, e a última leva o resto do arredondamento
+        assertArrayEquals(new int[]{0, 33, 67, 100}, ClienteContagem.dividir(conexoes, 100));
+        assertArrayEquals(new int[]{0, 0, 0, 0}, ClienteContagem.dividir(conexoes, 0));
+    }
+
+    @Test
+    void partesProporcionaisAVazaoEDesconectadosDeFora() throws IOException {
+        try (ReceptorFalso receptor = new ReceptorFalso()) {
+            ConexaoR rapido = receptor.conectar();
+            ConexaoR lento = receptor.conectar();
+            ConexaoR fora = ConexaoR.desconectada("localhost", 1);
+            try {
+                rapido.observar(3_000_000, 1_000_000);
+                lento.observar(1_000_000, 1_000_000);
+
+                int[] limites = ClienteContagem.dividir(List.of(rapido, fora, lento), 1000);
+                assertArrayEquals(new int[]{0, 750, 750, 1000}, limites);
+            } finally {
+                rapido.fechar();
+                lento.fechar();
+            }
+        }
+    }
+
+    @Test
+    void posicaoLocalDosSegmentos() {
+        ConexaoR a = ConexaoR.desconectada("a", 1);
+        ConexaoR b = ConexaoR.desconectada("b", 1);
+        ConexaoR c = ConexaoR.desconectada("c", 1);
+        // Carga de 100 bytes dividida entre a e b; anexo de 50 entre b e c
+        ClienteContagem.Segmento carga = new ClienteContagem.Segmento(0, List.of(a, b), new int[]{0, 60, 100});
+        ClienteContagem.Segmento anexo = new ClienteContagem.Segmento(100, List.of(b, c), new int[]{0, 30, 50});
+        List<ClienteContagem.Segmento> divisao = List.of(carga, anexo);
+
+        assertEquals(150, anexo.fimGlobal());
+        assertEquals(List.of(a, b, c), ClienteContagem.Segmento.membros(divisao));
+
+        assertEquals(0, ClienteContagem.Segmento.posicaoLocal(divisao, b, 60));
+        assertEquals(20, ClienteContagem.Segmento.posicaoLocal(divisao, b, 80));
+        assertEquals(60, ClienteContagem.Segmento.posicaoLocal(divisao, b, 120));
+        assertEquals(70, ClienteContagem.Segmento.posicaoLocal(divisao, b, 150));
+        assertEquals(60, ClienteContagem.Segmento.posicaoLocal(divisao, a, 150));
+        assertEquals(0, ClienteContagem.Segmento.posicaoLocal(divisao, c, 129));
+        assertEquals(20, ClienteContagem.Segmento.posicaoLocal(divisao, c, 150));
+    }
+
+    @Test
+    void entradasInvalidasDaFonteSaoIgnoradas(@TempDir Path pasta) throws IOException {
+        Path arquivo = pasta.resolve("receptores.txt");
+        Files.writeString(arquivo, "# receptores\nlocalhost:7000\nhost:abc\nh:99999\nsemporta\n:80\nh:0\nb:65535\n");
+        assertEquals(Set.of("localhost:7000", "b:65535"), new ArquivoReceptores(arquivo).receptores());
+
+        byte[] anuncio = "ANUNCIO host:abc".getBytes();
+        assertThrows(IllegalArgumentException.class, () -> Anuncio.decodificar(anuncio, anuncio.length));
+        assertFalse(Anuncio.enderecoValido("h:1:2"));
+        assertTrue(Anuncio.enderecoValido("h:1"));
+    }
+}
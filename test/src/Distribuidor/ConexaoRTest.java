@@ -0,0 +1,35 @@
+package src.Distribuidor;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.junit.jupiter.api.Test;
+import src.Comunicacao.Pedido;
+import src.Comunicacao.Resposta;
+
+class ConexaoRTest {
+
+    @Test
+    void escritaPresaNumReceptorQueNaoLeCaiNoPrazo() throws Exception {
+        try (ReceptorFalso receptor = new ReceptorFalso(true)) {
+            ConexaoR conexao = receptor.conectar();
+            try {
+                // Bem maior que os buffers do socket dos dois lados: a escrita só termina se a conexão cair
+                byte[] numeros = new byte[64 * 1024 * 1024];
+                CompletableFuture<Resposta> resposta = CompletableFuture
+                        .supplyAsync(() -> conexao.enviarPedido(new Pedido(conexao.proximoId(), numeros, (byte) 1)))
+                        .thenCompose(r -> r);
+                long limite = ConexaoR.prazoMs(numeros.length) + 5000;
+                ExecutionException erro = assertThrows(ExecutionException.class,
+                        () -> resposta.get(limite, TimeUnit.MILLISECONDS));
+                assertInstanceOf(TimeoutException.class, erro.getCause());
+                assertFalse(conexao.isAtiva());
+            } finally {
+                conexao.fechar();
+            }
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package src.Distribuidor;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class EscalonadorDinamicoTest {
+
+    private static final int TAMANHO = 95;
+    private static final int PEDACO = 10;
+
+    private final List<ReceptorFalso> receptores = new ArrayList<>();
+    private final List<ConexaoR> conexoes = new ArrayList<>();
+    private ExecutorService executor;
+
+    @BeforeEach
+    void abrir() throws IOException {
+        executor = Executors.newCachedThreadPool();
+        for (int i = 0; i < 2; i++) {
+            ReceptorFalso receptor = new ReceptorFalso();
+            receptores.add(receptor);
+            conexoes.add(receptor.conectar());
+        }
+    }
+
+    @AfterEach
+    void fechar() throws IOException {
+        for (ConexaoR c : conexoes) {
+            c.fechar();
+        }
+        for (ReceptorFalso r : receptores) {
+            r.close();
+        }
+        executor.shutdownNow();
+    }
+
+    // Início de cada pedaço, na ordem do vetor: o que um envio bem-sucedido devolve
+    static List<Integer> inicios() {
+        List<Integer> inicios = new ArrayList<>();
+        for (int inicio = 0; inicio < TAMANHO; inicio += PEDACO) {
+            inicios.add(inicio);
+        }
+        return inicios;
+    }
+
+    List<Integer> executar(List<ConexaoR> participantes, ClienteContagem.EnvioFatia<Integer> envio) throws Exception {
+        return new EscalonadorDinamico<>(participantes, executor, TAMANHO, PEDACO, envio)
+                .executar().get(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void respostasNaOrdemDoVetor() throws Exception {
+        Set<ConexaoR> usadas = ConcurrentHashMap.newKeySet();
+        List<Integer> resultado = executar(conexoes, (c, inicio, fim) -> {
+            usadas.add(c);
+            assertEquals(Math.min(TAMANHO, inicio + PEDACO), fim);
+            return CompletableFuture.supplyAsync(() -> inicio, executor);
+        });
+        assertEquals(inicios(), resultado);
+        assertEquals(Set.copyOf(conexoes), usadas);
+    }
+
+    @Test
+    void pedacoRecusadoVoltaParaAFila() throws Exception {
+        Set<Integer> recusados = ConcurrentHashMap.newKeySet();
+        AtomicInteger envios = new AtomicInteger();
+        List<Integer> resultado = executar(conexoes, (c, inicio, fim) -> {
+            envios.incrementAndGet();
+            // Toda primeira tentativa de cada pedaço é recusada por ocupação
+            if (recusados.add(inicio)) {
+                return CompletableFuture.failedFuture(new ReceptorOcupado("ocupado", 1));
+            }
+            return CompletableFuture.completedFuture(inicio);
+        });
+        assertEquals(inicios(), resultado);
+        assertTrue(envios.get() >= 2 * inicios().size());
+        // Recusa não derruba a conexão
+        assertTrue(conexoes.get(0).isAtiva() && conexoes.get(1).isAtiva());
+    }
+
+    @Test
+    void recusasDemaisEncerramAConsulta() {
+        ExecutionException erro = assertThrows(ExecutionException.class, () -> executar(conexoes,
+                (c, inicio, fim) -> CompletableFuture.failedFuture(new ReceptorOcupado("ocupado", 1))));
+        assertInstanceOf(ReceptorOcupado.class, erro.getCause());
+    }
+
+    @Test
+    void falhaDeUmReceptorPassaOsPedacosAoOutro() throws Exception {
+        ConexaoR falha = conexoes.get(0);
+        Set<Integer> atendidosPeloOutro = ConcurrentHashMap.newKeySet();
+        List<Integer> resultado = executar(conexoes, (c, inicio, fim) -> {
+            if (c == falha) {
+                return CompletableFuture.failedFuture(new IOException("conexão caiu"));
+            }
+            atendidosPeloOutro.add(inicio);
+            return CompletableFuture.completedFuture(inicio);
+        });
+        assertEquals(inicios(), resultado);
+        assertEquals(Set.copyOf(inicios()), atendidosPeloOutro);
+    }
+
+    @Test
+    void todosFalhando() {
+        ExecutionException erro = assertThrows(ExecutionException.class, () -> executar(conexoes,
+                (c, inicio, fim) -> CompletableFuture.failedFuture(new IOException("conexão caiu"))));
+        assertInstanceOf(IOException.class, erro.getCause());
+    }
+
+    @Test
+    void receptorDesconectadoNaoParticipa() throws Exception {
+        ConexaoR desconectada = ConexaoR.desconectada("localhost", 1);
+        List<ConexaoR> participantes = List.of(desconectada, conexoes.get(0));
+        List<Integer> resultado = executar(participantes, (c, inicio, fim) -> {
+            assertNotSame(desconectada, c);
+            return CompletableFuture.completedFuture(inicio);
+        });
+        assertEquals(inicios(), resultado);
+
+        ExecutionException erro = assertThrows(ExecutionException.class,
+                () -> executar(List.of(desconectada), (c, inicio, fim) -> CompletableFuture.completedFuture(inicio)));
+        assertInstanceOf(IOException.class, erro.getCause());
+    }
+}
@@ -0,0 +1,72 @@
+package src.Distribuidor;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import src.Comunicacao.ProtocoloBinario;
+
+/**
+ * Receptor mínimo para testes do Distribuidor: confirma o protocolo binário e
+ * descarta tudo o que recebe. Basta para uma {@link ConexaoR} ficar ativa
+ * quando o envio das fatias é simulado pelo próprio teste. Mudo, confirma o
+ * protocolo e não lê mais nada, como um receptor travado.
+ */
+final class ReceptorFalso implements AutoCloseable {
+
+    private final ServerSocket servidor;
+    private final boolean mudo;
+
+    ReceptorFalso() throws IOException {
+        this(false);
+    }
+
+    ReceptorFalso(boolean mudo) throws IOException {
+        this.mudo = mudo;
+        servidor = new ServerSocket(0);
+        Thread thread = new Thread(this::aceitar, "ReceptorFalso");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /** Conexão já aberta com este receptor. */
+    ConexaoR conectar() throws IOException {
+        return new ConexaoR("localhost", servidor.getLocalPort());
+    }
+
+    private void aceitar() {
+        while (!servidor.isClosed()) {
+            try {
+                Socket socket = servidor.accept();
+                Thread leitor = new Thread(() -> descartar(socket), "ReceptorFalso-conexao");
+                leitor.setDaemon(true);
+                leitor.start();
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    private void descartar(Socket socket) {
+        try (socket) {
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            in.readInt();
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            out.writeInt(ProtocoloBinario.MAGICO);
+            out.flush();
+            if (mudo) {
+                // Segura o socket aberto sem ler: o que o cliente escreve enche a janela TCP
+                Thread.sleep(Long.MAX_VALUE);
+            }
+            in.transferTo(java.io.OutputStream.nullOutputStream());
+        } catch (IOException | InterruptedException e) {
+            // Conexão encerrada pelo teste
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        servidor.close();
+    }
+}
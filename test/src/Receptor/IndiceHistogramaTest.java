@@ -0,0 +1,59 @@
+package src.Receptor;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.jupiter.api.Test;
+
+class IndiceHistogramaTest {
+
+    static int contarEscalar(byte[] numeros, int inicio, int fim, byte procurado) {
+        int total = 0;
+        for (int i = inicio; i < fim; i++) {
+            total += numeros[i] == procurado ? 1 : 0;
+        }
+        return total;
+    }
+
+    @Test
+    void intervalosIguaisAVarredura() {
+        int bloco = IndiceHistograma.TAMANHO_BLOCO;
+        // Último bloco incompleto
+        byte[] numeros = new byte[5 * bloco + 1234];
+        Random aleatorio = new Random(7);
+        for (int i = 0; i < numeros.length; i++) {
+            numeros[i] = (byte) aleatorio.nextInt(8);
+        }
+        IndiceHistograma indice = IndiceHistograma.construir(numeros);
+        ByteBuffer parte = ByteBuffer.wrap(numeros);
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+
+        int[][] intervalos = {{0, numeros.length}, {0, 0}, {5, 17}, {0, bloco}, {bloco, 3 * bloco},
+                {bloco - 1, 2 * bloco + 1}, {3, numeros.length}, {4 * bloco + 10, numeros.length},
+                {5 * bloco, numeros.length}, {bloco + 5, bloco + 6}};
+        for (int[] intervalo : intervalos) {
+            for (byte procurado = 0; procurado < 9; procurado++) {
+                assertEquals(contarEscalar(numeros, intervalo[0], intervalo[1], procurado),
+                        indice.contar(pool, parte, intervalo[0], intervalo[1], procurado),
+                        "[" + intervalo[0] + ", " + intervalo[1] + ") procurando " + procurado);
+            }
+        }
+    }
+
+    @Test
+    void resumoEBlocoCheio() {
+        // Um bloco inteiro do mesmo valor: 32768 ocorrências, o máximo que cabe num char
+        byte[] numeros = new byte[2 * IndiceHistograma.TAMANHO_BLOCO];
+        java.util.Arrays.fill(numeros, (byte) -1);
+        numeros[numeros.length - 1] = 3;
+        IndiceHistograma indice = IndiceHistograma.construir(numeros);
+
+        assertEquals(numeros.length, indice.getTamanho());
+        assertEquals(numeros.length - 1, indice.getResumo()[0xFF]);
+        assertEquals(1, indice.getResumo()[3]);
+        assertEquals(IndiceHistograma.TAMANHO_BLOCO, indice.contar(ForkJoinPool.commonPool(),
+                ByteBuffer.wrap(numeros), 0, IndiceHistograma.TAMANHO_BLOCO, (byte) -1));
+    }
+}